@@ -0,0 +1,77 @@
+package ru.panfio.legacytester.benchmark;
+
+import ru.panfio.legacytester.dependencies.soundcloud.Music;
+import ru.panfio.legacytester.dependencies.soundcloud.PlayHistory;
+import ru.panfio.legacytester.dependencies.soundcloud.SoundCloudDao;
+import ru.panfio.legacytester.dependencies.soundcloud.TrackInfo;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Benchmark fixtures of any size built from the SoundCloud test models.
+ */
+final class BenchmarkData {
+    private static final long FIRST_ID = 1579856369307L;
+    private static final int FIRST_EXTERNAL_ID = 732251920;
+
+    private BenchmarkData() {
+        throw new RuntimeException("Utility class");
+    }
+
+    static List<Music> musicList(int size) {
+        List<Music> music = new ArrayList<>(size);
+        for (int index = 0; index < size; index++) {
+            music.add(new Music(FIRST_ID + index, String.valueOf(FIRST_EXTERNAL_ID + index), Music.Type.SOUNDCLOUD,
+                    "Artist " + index, "Title " + index, Instant.ofEpochMilli(FIRST_ID + index),
+                    "https://soundcloud.com/artist" + index + "/title" + index));
+        }
+        return music;
+    }
+
+    static Map<String, TrackInfo> tracksInfo(int size) {
+        Map<String, TrackInfo> tracks = new LinkedHashMap<>();
+        for (int index = 0; index < size; index++) {
+            String id = String.valueOf(FIRST_EXTERNAL_ID + index);
+            tracks.put(id, new TrackInfo(id, "Artist " + index, "Title " + index,
+                    "https://soundcloud.com/artist" + index + "/title" + index));
+        }
+        return tracks;
+    }
+
+    static List<PlayHistory> playHistory(int size) {
+        List<PlayHistory> history = new ArrayList<>(size);
+        for (int index = 0; index < size; index++) {
+            history.add(new PlayHistory(FIRST_ID + index, String.valueOf(FIRST_EXTERNAL_ID + index),
+                    Instant.ofEpochMilli(FIRST_ID + index)));
+        }
+        return history;
+    }
+
+    /**
+     * @return dao returning the same fixtures on every call
+     */
+    static SoundCloudDao soundCloudDao(int size) {
+        final Map<String, TrackInfo> tracks = tracksInfo(size);
+        final List<PlayHistory> history = playHistory(size);
+        return new SoundCloudDao() {
+            @Override
+            public Map<String, TrackInfo> tracksInfo() {
+                return tracks;
+            }
+
+            @Override
+            public List<PlayHistory> recentlyPlayed() {
+                return history;
+            }
+
+            @Override
+            public List<PlayHistory> stub(String str, int inte, List<PlayHistory> list) {
+                return list;
+            }
+        };
+    }
+}
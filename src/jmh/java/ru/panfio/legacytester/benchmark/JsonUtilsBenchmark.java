@@ -0,0 +1,101 @@
+package ru.panfio.legacytester.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.panfio.legacytester.dependencies.soundcloud.Music;
+import ru.panfio.legacytester.dependencies.soundcloud.PlayHistory;
+import ru.panfio.legacytester.testclasses.Data;
+import ru.panfio.legacytester.util.JsonUtils;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the shared cached mapper with a mapper created for every call (previous behaviour),
+ * and readers cached per constructed type with {@code readValue} of the shared mapper.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonUtilsBenchmark {
+    private List<Music> musicList;
+    private String musicJson;
+    private String playHistoryJson;
+    private StringBuilder buffer;
+    private JavaType musicListType;
+
+    @Setup
+    public void setUp() {
+        musicList = Data.expectedMusicList;
+        musicJson = JsonUtils.toJson(Data.expectedMusicList);
+        playHistoryJson = JsonUtils.toJson(Data.recentlyPlayed);
+        buffer = new StringBuilder(musicJson.length() * 2);
+        musicListType = JsonUtils.getMapper().getTypeFactory().constructCollectionType(List.class, Music.class);
+    }
+
+    @Benchmark
+    public String toJsonNewMapper() throws IOException {
+        return new ObjectMapper().writeValueAsString(musicList);
+    }
+
+    @Benchmark
+    public String toJsonShared() {
+        return JsonUtils.toJson(musicList);
+    }
+
+    @Benchmark
+    public StringBuilder writeJsonStreaming() throws IOException {
+        buffer.setLength(0);
+        JsonUtils.writeJson(musicList, buffer);
+        return buffer;
+    }
+
+    @Benchmark
+    public List<Music> parseMusicNewMapper() throws IOException {
+        return new ObjectMapper().readValue(musicJson, new TypeReference<List<Music>>() {
+        });
+    }
+
+    @Benchmark
+    public List<Music> parseMusicCachedReader() {
+        return JsonUtils.parse(musicJson, new TypeReference<List<Music>>() {
+        });
+    }
+
+    @Benchmark
+    public List<PlayHistory> parsePlayHistoryNewMapper() throws IOException {
+        return new ObjectMapper().readValue(playHistoryJson, new TypeReference<List<PlayHistory>>() {
+        });
+    }
+
+    @Benchmark
+    public List<PlayHistory> parsePlayHistoryCachedReader() {
+        return JsonUtils.parse(playHistoryJson, new TypeReference<List<PlayHistory>>() {
+        });
+    }
+
+    @Benchmark
+    public List<Music> parseMusicTypeReadValue() throws IOException {
+        return JsonUtils.getMapper().readValue(musicJson, musicListType);
+    }
+
+    @Benchmark
+    public List<Music> parseMusicTypeCachedReader() {
+        return JsonUtils.parse(musicJson, musicListType);
+    }
+}
@@ -0,0 +1,81 @@
+package ru.panfio.legacytester.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.panfio.legacytester.MethodCapture;
+import ru.panfio.legacytester.MethodInvocation;
+import ru.panfio.legacytester.dependencies.MessageBus;
+import ru.panfio.legacytester.dependencies.soundcloud.Music;
+import ru.panfio.legacytester.dependencies.soundcloud.PlayHistory;
+import ru.panfio.legacytester.dependencies.soundcloud.SoundCloudDao;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Grouping of affected method captures into invocations, the captures cycle over the
+ * {@link MessageBus} and {@link SoundCloudDao} methods with arguments.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MethodInvocationBenchmark {
+    @Param({"10", "1000", "100000"})
+    public int captures;
+
+    private List<MethodCapture> affected;
+
+    @Setup
+    public void setUp() throws NoSuchMethodException {
+        List<Music> music = BenchmarkData.musicList(3);
+        List<PlayHistory> history = BenchmarkData.playHistory(3);
+        Method sendString = MessageBus.class.getMethod("send", String.class, String.class);
+        Method sendObject = MessageBus.class.getMethod("send", String.class, Object.class);
+        Method sendAll = MessageBus.class.getMethod("sendAll", String.class, List.class);
+        Method stub = SoundCloudDao.class.getMethod("stub", String.class, int.class, List.class);
+        affected = new ArrayList<>(captures);
+        for (int index = 0; index < captures; index++) {
+            switch (index % 4) {
+                case 0:
+                    affected.add(capture(sendString, "messageBus", "music", "message " + index));
+                    break;
+                case 1:
+                    affected.add(capture(sendObject, "messageBus", "music", music.get(index % music.size())));
+                    break;
+                case 2:
+                    affected.add(capture(sendAll, "messageBus", "music", music));
+                    break;
+                default:
+                    affected.add(capture(stub, "soundCloudDao", "history", index, history));
+            }
+        }
+    }
+
+    private static MethodCapture capture(Method method, String fieldName, Object... arguments) {
+        return MethodCapture.builder()
+                .method(method)
+                .type(MethodCapture.Type.AFFECT)
+                .arguments(arguments)
+                .fieldName(fieldName)
+                .build();
+    }
+
+    @Benchmark
+    public List<MethodInvocation> of() {
+        return MethodInvocation.of(affected);
+    }
+}
@@ -0,0 +1,183 @@
+package ru.panfio.legacytester.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.panfio.legacytester.FieldInvocationHandler;
+import ru.panfio.legacytester.LegacyTester;
+import ru.panfio.legacytester.ProxyBackend;
+import ru.panfio.legacytester.dependencies.soundcloud.PlayHistory;
+import ru.panfio.legacytester.dependencies.soundcloud.SoundCloudDao;
+import ru.panfio.legacytester.testclasses.ProxiedService;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a dependency call through the JDK and CGLib field proxies and of a testee call
+ * through the class proxy compared with a direct call.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProxyBenchmark {
+    private static final int CALLS_PER_TESTEE = 100;
+
+    private SoundCloudDao dao;
+    private SoundCloudDao fieldProxy;
+    private SoundCloudDao affectedFieldProxy;
+    private SoundCloudDao cglibFieldProxy;
+    private SoundCloudDao cglibAffectedFieldProxy;
+    private LegacyTester tester;
+    private ProxiedService service;
+    private ProxiedService classProxy;
+    private SoundCloudDao disarmedFieldProxy;
+    private ProxiedService disarmedClassProxy;
+
+    @Setup
+    public void setUp() {
+        dao = BenchmarkData.soundCloudDao(3);
+        // tests are not rendered, the benchmarks measure capture only
+        tester = new LegacyTester(ProxiedService.class).testHandler(test -> {
+        });
+        fieldProxy = tester.fieldProxy(SoundCloudDao.class,
+                new FieldInvocationHandler(dao).setFieldName("soundCloudDao"));
+        affectedFieldProxy = tester.fieldProxy(SoundCloudDao.class,
+                new FieldInvocationHandler(dao, "recentlyPlayed").setFieldName("affectedSoundCloudDao"));
+        tester.proxyBackend(ProxyBackend.CGLIB);
+        cglibFieldProxy = tester.fieldProxy(SoundCloudDao.class,
+                new FieldInvocationHandler(dao).setFieldName("cglibSoundCloudDao"));
+        cglibAffectedFieldProxy = tester.fieldProxy(SoundCloudDao.class,
+                new FieldInvocationHandler(dao, "recentlyPlayed").setFieldName("cglibAffectedSoundCloudDao"));
+        service = new ProxiedService(dao);
+        classProxy = (ProxiedService) LegacyTester.classProxy(service, tester);
+        LegacyTester disarmedTester = new LegacyTester(ProxiedService.class).armable(true);
+        disarmedFieldProxy = disarmedTester.fieldProxy(SoundCloudDao.class,
+                new FieldInvocationHandler(dao).setFieldName("disarmedSoundCloudDao"));
+        disarmedClassProxy = (ProxiedService) LegacyTester.classProxy(service, disarmedTester);
+    }
+
+    @Benchmark
+    public List<PlayHistory> directCall() {
+        return dao.recentlyPlayed();
+    }
+
+    /**
+     * Field proxy call outside of a testee invocation.
+     */
+    @Benchmark
+    public List<PlayHistory> fieldProxyIdle() {
+        return fieldProxy.recentlyPlayed();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLS_PER_TESTEE)
+    public void fieldProxyDependency(Blackhole blackhole) {
+        tester.test(() -> {
+            for (int call = 0; call < CALLS_PER_TESTEE; call++) {
+                blackhole.consume(fieldProxy.recentlyPlayed());
+            }
+        }, (Object[]) null);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLS_PER_TESTEE)
+    public void fieldProxyAffected(Blackhole blackhole) {
+        tester.test(() -> {
+            for (int call = 0; call < CALLS_PER_TESTEE; call++) {
+                blackhole.consume(affectedFieldProxy.recentlyPlayed());
+            }
+        }, (Object[]) null);
+    }
+
+    @Benchmark
+    public List<PlayHistory> cglibFieldProxyIdle() {
+        return cglibFieldProxy.recentlyPlayed();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLS_PER_TESTEE)
+    public void cglibFieldProxyDependency(Blackhole blackhole) {
+        tester.test(() -> {
+            for (int call = 0; call < CALLS_PER_TESTEE; call++) {
+                blackhole.consume(cglibFieldProxy.recentlyPlayed());
+            }
+        }, (Object[]) null);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLS_PER_TESTEE)
+    public void cglibFieldProxyAffected(Blackhole blackhole) {
+        tester.test(() -> {
+            for (int call = 0; call < CALLS_PER_TESTEE; call++) {
+                blackhole.consume(cglibAffectedFieldProxy.recentlyPlayed());
+            }
+        }, (Object[]) null);
+    }
+
+    @Benchmark
+    public int cglibFieldProxyHashCode() {
+        return cglibFieldProxy.hashCode();
+    }
+
+    @Benchmark
+    public int fieldProxyHashCode() {
+        return fieldProxy.hashCode();
+    }
+
+    @Benchmark
+    public String directNonTestee() {
+        return service.name();
+    }
+
+    /**
+     * Non-testee method of the class proxy, dispatched to the bean.
+     */
+    @Benchmark
+    public String classProxyNonTestee() {
+        return classProxy.name();
+    }
+
+    @Benchmark
+    public List<String> directTestee() {
+        return service.externalIds(3);
+    }
+
+    @Benchmark
+    public List<String> classProxyTestee() {
+        return classProxy.externalIds(3);
+    }
+
+    /**
+     * Class proxy of one more bean of a proxied class.
+     */
+    @Benchmark
+    public Object classProxyCreation() {
+        return LegacyTester.classProxy(service, tester);
+    }
+
+    /**
+     * Field proxy of an armable tester that is not armed.
+     */
+    @Benchmark
+    public List<PlayHistory> fieldProxyDisarmed() {
+        return disarmedFieldProxy.recentlyPlayed();
+    }
+
+    @Benchmark
+    public List<String> classProxyTesteeDisarmed() {
+        return disarmedClassProxy.externalIds(3);
+    }
+}
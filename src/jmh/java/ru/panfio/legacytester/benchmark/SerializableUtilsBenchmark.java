@@ -0,0 +1,74 @@
+package ru.panfio.legacytester.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.panfio.legacytester.dependencies.soundcloud.TrackInfo;
+import ru.panfio.legacytester.util.SerializableUtils;
+
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Java serialization round trips used for exceptions and {@link java.io.Serializable} values.
+ * The models are not serializable, so the payload is a map of track urls built from {@link TrackInfo}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializableUtilsBenchmark {
+    @Param({"10", "1000"})
+    public int size;
+
+    private LinkedHashMap<String, String> trackUrls;
+    private String serializedTrackUrls;
+    private IllegalStateException exception;
+    private String serializedException;
+
+    @Setup
+    public void setUp() {
+        trackUrls = new LinkedHashMap<>();
+        for (TrackInfo track : BenchmarkData.tracksInfo(size).values()) {
+            trackUrls.put(track.getId(), track.getUrl());
+        }
+        serializedTrackUrls = SerializableUtils.serializeToString(trackUrls);
+        exception = new IllegalStateException("Track " + size + " is not available");
+        serializedException = SerializableUtils.serializeToString(exception);
+    }
+
+    @Benchmark
+    public String serializeValue() {
+        return SerializableUtils.serializeToString(trackUrls);
+    }
+
+    @Benchmark
+    public Object deserializeValue() {
+        return SerializableUtils.serializeFromString(serializedTrackUrls);
+    }
+
+    @Benchmark
+    public Object roundTripValue() {
+        return SerializableUtils.serializeFromString(SerializableUtils.serializeToString(trackUrls));
+    }
+
+    @Benchmark
+    public String serializeException() {
+        return SerializableUtils.serializeToString(exception);
+    }
+
+    @Benchmark
+    public Object deserializeException() {
+        return SerializableUtils.serializeFromString(serializedException);
+    }
+}
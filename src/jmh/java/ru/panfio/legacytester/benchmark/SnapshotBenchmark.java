@@ -0,0 +1,73 @@
+package ru.panfio.legacytester.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.panfio.legacytester.dependencies.soundcloud.Music;
+import ru.panfio.legacytester.snapshot.SnapshotCodec;
+import ru.panfio.legacytester.snapshot.ValueSnapshot;
+import ru.panfio.legacytester.util.SizeEstimator;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Capture-time cost of snapshot mode. Run {@link #main(String[])} to print retained bytes
+ * of reference capture compared with snapshot capture.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SnapshotBenchmark {
+    @Param({"10", "1000"})
+    public int size;
+
+    private List<Music> musicList;
+    private ValueSnapshot musicSnapshot;
+
+    @Setup
+    public void setUp() {
+        musicList = BenchmarkData.musicList(size);
+        musicSnapshot = (ValueSnapshot) SnapshotCodec.snapshot(musicList, false);
+    }
+
+    @Benchmark
+    public Object snapshotCapture() {
+        return SnapshotCodec.snapshot(musicList, false);
+    }
+
+    @Benchmark
+    public Object snapshotCaptureWithText() {
+        return SnapshotCodec.snapshot(musicList, true);
+    }
+
+    @Benchmark
+    public String snapshotToJson() {
+        return musicSnapshot.toJson();
+    }
+
+    public static void main(String[] args) {
+        System.out.println("payload                  reference bytes   snapshot bytes");
+        for (int size : new int[]{10, 1000, 100000}) {
+            report("List<Music>[" + size + "]", BenchmarkData.musicList(size));
+            report("Map<String,TrackInfo>[" + size + "]", BenchmarkData.tracksInfo(size));
+        }
+    }
+
+    private static void report(String name, Object value) {
+        long reference = SizeEstimator.estimate(value);
+        long snapshot = SizeEstimator.estimate(SnapshotCodec.snapshot(value, false));
+        System.out.printf("%-28s %14d %16d%n", name, reference, snapshot);
+    }
+}
@@ -0,0 +1,130 @@
+package ru.panfio.legacytester.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.panfio.legacytester.LegacyTester;
+import ru.panfio.legacytester.constructor.RenderCache;
+import ru.panfio.legacytester.constructor.TestConstructor;
+import ru.panfio.legacytester.dependencies.MessageBus;
+import ru.panfio.legacytester.sampling.Sampler;
+import ru.panfio.legacytester.testclasses.ManualProxy;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link LegacyTester#test} end to end on the {@link ManualProxy} testee:
+ * a disarmed and a sampled out call, capture only, and capture with test rendering.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TesterBenchmark {
+    @Param({"3", "100"})
+    public int size;
+
+    private ManualProxy disarmed;
+    private ManualProxy sampledOut;
+    private ManualProxy capturing;
+    private ManualProxy generating;
+    private ManualProxy generatingCached;
+    private final StringBuilder test = new StringBuilder();
+
+    @Setup
+    public void setUp() {
+        disarmed = new ManualProxy(new NoopMessageBus(), BenchmarkData.soundCloudDao(size));
+        disarmed.tester = new LegacyTester(ManualProxy.class).armable(true);
+        disarmed.setTester();
+        sampledOut = new ManualProxy(new NoopMessageBus(), BenchmarkData.soundCloudDao(size));
+        sampledOut.tester = new LegacyTester(ManualProxy.class).sampler(Sampler.fixedRate(0));
+        sampledOut.setTester();
+        capturing = new ManualProxy(new NoopMessageBus(), BenchmarkData.soundCloudDao(size));
+        capturing.tester = new LegacyTester(ManualProxy.class).testHandler(constructor -> {
+        });
+        capturing.setTester();
+        generating = new ManualProxy(new NoopMessageBus(), BenchmarkData.soundCloudDao(size));
+        generating.tester = new LegacyTester(ManualProxy.class).testHandler(this::render);
+        generating.setTester();
+        generatingCached = new ManualProxy(new NoopMessageBus(), BenchmarkData.soundCloudDao(size));
+        generatingCached.tester = new LegacyTester(ManualProxy.class)
+                .renderCache(new RenderCache())
+                .testHandler(this::render);
+        generatingCached.setTester();
+    }
+
+    /**
+     * Baseline: the testee and its field proxies of an armable tester that is not armed.
+     */
+    @Benchmark
+    public ManualProxy disarmed() {
+        disarmed.process();
+        return disarmed;
+    }
+
+    /**
+     * The testee and its field proxies without capture.
+     */
+    @Benchmark
+    public ManualProxy sampledOut() {
+        sampledOut.process();
+        return sampledOut;
+    }
+
+    @Benchmark
+    public ManualProxy captureOnly() {
+        capturing.process();
+        return capturing;
+    }
+
+    @Benchmark
+    public StringBuilder captureAndGenerate() {
+        generating.process();
+        return test;
+    }
+
+    /**
+     * Dependency results repeat between calls and are rendered from the tester cache.
+     */
+    @Benchmark
+    public StringBuilder captureAndGenerateCached() {
+        generatingCached.process();
+        return test;
+    }
+
+    private void render(TestConstructor constructor) {
+        test.setLength(0);
+        try {
+            constructor.construct(test);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static final class NoopMessageBus implements MessageBus {
+        @Override
+        public void send(String topic, String message) {
+        }
+
+        @Override
+        public void send(String topic, Object message) {
+        }
+
+        @Override
+        public <T> void sendAll(String topic, List<T> messages) {
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package ru.panfio.legacytester.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.panfio.legacytester.constructor.ConstructorConfiguration;
+import ru.panfio.legacytester.dependencies.soundcloud.Music;
+import ru.panfio.legacytester.dependencies.soundcloud.SoundCloudDao;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Type names written into generated tests, verbose compared with simple names.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TypeNameBenchmark {
+    private ConstructorConfiguration verbose;
+    private ConstructorConfiguration simple;
+    private Method tracksInfo;
+    private Parameter playHistoryList;
+
+    @Setup
+    public void setUp() throws NoSuchMethodException {
+        verbose = ConstructorConfiguration.builder().verbose(true).build();
+        simple = ConstructorConfiguration.defaultConfig();
+        tracksInfo = SoundCloudDao.class.getMethod("tracksInfo");
+        playHistoryList = SoundCloudDao.class.getMethod("stub", String.class, int.class, List.class).getParameters()[2];
+    }
+
+    @Benchmark
+    public String classVerbose() {
+        return verbose.type(Music.class);
+    }
+
+    @Benchmark
+    public String classSimple() {
+        return simple.type(Music.class);
+    }
+
+    @Benchmark
+    public String parameterizedParameterSimple() {
+        return simple.type(playHistoryList);
+    }
+
+    @Benchmark
+    public String parameterizedReturnTypeVerbose() {
+        return verbose.type(tracksInfo);
+    }
+
+    @Benchmark
+    public String parameterizedReturnTypeSimple() {
+        return simple.type(tracksInfo);
+    }
+}
@@ -0,0 +1,184 @@
+package ru.panfio.legacytester;
+
+import ru.panfio.legacytester.snapshot.SnapshotCodec;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stands for a {@link CompletionStage} or {@link Future} returned by a call, recorded in place of the unfinished handle.
+ * The eventual value or exception of a completion stage is recorded by a completion callback
+ * without blocking the caller. A plain future has no callbacks and is polled while the test waits for it.
+ */
+public final class AsyncResult implements CapturedValue {
+    private static final AtomicInteger TIMER_NUMBER = new AtomicInteger();
+    private static final long POLL_INTERVAL_MILLIS = 10;
+
+    private final Class<?> type;
+    private final boolean snapshot;
+    private final boolean keepText;
+    private final transient CompletableFuture<Void> settled = new CompletableFuture<>();
+    private transient volatile Future<?> future;
+    private volatile boolean done;
+    private volatile Object value;
+    private volatile Throwable exception;
+
+    private AsyncResult(Class<?> type, boolean snapshot, boolean keepText) {
+        this.type = type;
+        this.snapshot = snapshot;
+        this.keepText = keepText;
+    }
+
+    /**
+     * @param snapshot snapshot the eventual value as in snapshot mode
+     * @param keepText keep {@code toString()} of the snapshotted value
+     * @return async result recording the eventual value of the handle, the result itself if it's not an async handle
+     */
+    static Object of(Object result, boolean snapshot, boolean keepText) {
+        if (result instanceof CompletionStage) {
+            final AsyncResult async = new AsyncResult(result.getClass(), snapshot, keepText);
+            ((CompletionStage<?>) result).whenComplete(async::complete);
+            return async;
+        }
+        if (result instanceof Future) {
+            final AsyncResult async = new AsyncResult(result.getClass(), snapshot, keepText);
+            async.future = (Future<?>) result;
+            async.poll();
+            return async;
+        }
+        return result;
+    }
+
+    /**
+     * Restores a settled result, e.g. read from a capture journal.
+     */
+    public static AsyncResult restore(Class<?> type, boolean done, Object value, Throwable exception) {
+        final AsyncResult async = new AsyncResult(type, false, false);
+        async.done = done;
+        async.value = value;
+        async.exception = exception;
+        async.settled.complete(null);
+        return async;
+    }
+
+    /**
+     * Plain futures among the results are polled at a short interval until they are done or the wait is over.
+     *
+     * @return future completed when all results have settled or the timeout has passed, whichever comes first
+     */
+    static CompletableFuture<Void> settled(Collection<AsyncResult> results, long timeoutMillis) {
+        final CompletableFuture<?>[] pending = results.stream()
+                .map(result -> result.settled)
+                .toArray(CompletableFuture<?>[]::new);
+        final CompletableFuture<Void> all = CompletableFuture.allOf(pending);
+        if (all.isDone()) {
+            return all;
+        }
+        final CompletableFuture<Void> settledOrTimeout = new CompletableFuture<>();
+        final List<ScheduledFuture<?>> timers = new ArrayList<>();
+        timers.add(Timer.SCHEDULER.schedule(() -> settledOrTimeout.complete(null), timeoutMillis, TimeUnit.MILLISECONDS));
+        for (AsyncResult result : results) {
+            if (result.future != null) {
+                timers.add(Timer.SCHEDULER.scheduleWithFixedDelay(result::poll,
+                        POLL_INTERVAL_MILLIS, POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS));
+            }
+        }
+        all.whenComplete((ignored, e) -> settledOrTimeout.complete(null));
+        settledOrTimeout.whenComplete((ignored, e) -> timers.forEach(timer -> timer.cancel(false)));
+        return settledOrTimeout;
+    }
+
+    private void complete(Object result, Throwable failure) {
+        if (failure instanceof CompletionException && failure.getCause() != null) {
+            failure = failure.getCause();
+        }
+        value = snapshot && failure == null ? SnapshotCodec.snapshot(result, keepText) : result;
+        exception = failure;
+        done = true;
+        settled.complete(null);
+    }
+
+    /**
+     * Records the outcome of a plain future if it's done.
+     */
+    void poll() {
+        final Future<?> handle = future;
+        if (handle == null || !handle.isDone()) {
+            return;
+        }
+        future = null;
+        try {
+            complete(handle.get(), null);
+        } catch (ExecutionException e) {
+            complete(null, e.getCause());
+        } catch (CancellationException e) {
+            complete(null, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    boolean isSettled() {
+        return settled.isDone();
+    }
+
+    /**
+     * @return runtime class of the handle
+     */
+    @Override
+    public Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * @return false if the handle was not completed in time
+     */
+    public boolean isDone() {
+        return done;
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    /**
+     * @return exception the handle was completed with, null if it was completed normally
+     */
+    public Throwable getException() {
+        return exception;
+    }
+
+    @Override
+    public String toString() {
+        if (!done) {
+            return "AsyncResult{not completed}";
+        }
+        return exception == null ? String.valueOf(value) : "AsyncResult{exception=" + exception + "}";
+    }
+
+    private static final class Timer {
+        private static final ScheduledExecutorService SCHEDULER = scheduler();
+
+        private static ScheduledExecutorService scheduler() {
+            ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, task -> {
+                Thread thread = new Thread(task, "legacytester-async-timeout-" + TIMER_NUMBER.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.setRemoveOnCancelPolicy(true);
+            return scheduler;
+        }
+    }
+}
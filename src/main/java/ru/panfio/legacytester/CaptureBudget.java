@@ -0,0 +1,171 @@
+package ru.panfio.legacytester;
+
+import ru.panfio.legacytester.util.SizeEstimator;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limits memory retained by captured dependency invocations.
+ * Limits apply to a single testee invocation (entries and estimated bytes)
+ * and to all captures of a tester whose tests are not yet written or dropped (estimated bytes).
+ * <pre>{@code
+ *    CaptureBudget budget = CaptureBudget.builder()
+ *                 .maxEntriesPerInvocation(1000)
+ *                 .maxBytesPerInvocation(10 * 1024 * 1024)
+ *                 .maxBytesPerTester(64 * 1024 * 1024)
+ *                 .policy(CaptureBudget.Policy.SUMMARISE)
+ *                 .build();
+ *    LegacyTester tester = new LegacyTester(MyTestClass.class).captureBudget(budget);
+ * }</pre>
+ */
+public class CaptureBudget {
+    public enum Policy {
+        /**
+         * Invocations over the budget are not recorded, the test is generated from the recorded part.
+         */
+        TRUNCATE,
+        /**
+         * Arguments and results over the budget are replaced with a {@link ValueSummary}.
+         */
+        SUMMARISE,
+        /**
+         * The whole capture is dropped and no test is generated.
+         */
+        ABANDON
+    }
+
+    private final int maxEntriesPerInvocation;
+    private final long maxBytesPerInvocation;
+    private final long maxBytesPerTester;
+    private final Policy policy;
+    private final LongAdder truncated = new LongAdder();
+    private final LongAdder summarised = new LongAdder();
+    private final LongAdder abandoned = new LongAdder();
+
+    CaptureBudget(int maxEntriesPerInvocation, long maxBytesPerInvocation, long maxBytesPerTester, Policy policy) {
+        this.maxEntriesPerInvocation = maxEntriesPerInvocation;
+        this.maxBytesPerInvocation = maxBytesPerInvocation;
+        this.maxBytesPerTester = maxBytesPerTester;
+        this.policy = policy;
+    }
+
+    public static CaptureBudgetBuilder builder() {
+        return new CaptureBudgetBuilder();
+    }
+
+    public int getMaxEntriesPerInvocation() {
+        return maxEntriesPerInvocation;
+    }
+
+    public long getMaxBytesPerInvocation() {
+        return maxBytesPerInvocation;
+    }
+
+    public long getMaxBytesPerTester() {
+        return maxBytesPerTester;
+    }
+
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * @return count of captures cut short by {@link Policy#TRUNCATE}
+     */
+    public long getTruncatedCount() {
+        return truncated.sum();
+    }
+
+    /**
+     * @return count of captures with values replaced by {@link Policy#SUMMARISE}
+     */
+    public long getSummarisedCount() {
+        return summarised.sum();
+    }
+
+    /**
+     * @return count of captures dropped by {@link Policy#ABANDON}
+     */
+    public long getAbandonedCount() {
+        return abandoned.sum();
+    }
+
+    void onTruncated() {
+        truncated.increment();
+    }
+
+    void onSummarised() {
+        summarised.increment();
+    }
+
+    void onAbandoned() {
+        abandoned.increment();
+    }
+
+    static long estimate(MethodCapture capture) {
+        return SizeEstimator.estimate(capture.getArguments()) + SizeEstimator.estimate(capture.getResult());
+    }
+
+    /**
+     * Replaces arguments and the result with their summaries.
+     */
+    static MethodCapture summarise(MethodCapture capture) {
+        Object[] arguments = capture.getArguments();
+        Object[] summaries = null;
+        if (arguments != null) {
+            summaries = new Object[arguments.length];
+            for (int index = 0; index < arguments.length; index++) {
+                summaries[index] = ValueSummary.of(arguments[index]);
+            }
+        }
+        return MethodCapture.builder()
+                .method(capture.getMethod())
+                .type(capture.getType())
+                .arguments(summaries)
+                .result(ValueSummary.of(capture.getResult()))
+                .exception(capture.getException())
+                .fieldName(capture.getFieldName())
+                .build();
+    }
+
+    public static class CaptureBudgetBuilder {
+        private int maxEntriesPerInvocation = Integer.MAX_VALUE;
+        private long maxBytesPerInvocation = Long.MAX_VALUE;
+        private long maxBytesPerTester = Long.MAX_VALUE;
+        private Policy policy = Policy.TRUNCATE;
+
+        CaptureBudgetBuilder() {
+        }
+
+        public CaptureBudget build() {
+            return new CaptureBudget(maxEntriesPerInvocation, maxBytesPerInvocation, maxBytesPerTester, policy);
+        }
+
+        public CaptureBudgetBuilder maxEntriesPerInvocation(int maxEntriesPerInvocation) {
+            this.maxEntriesPerInvocation = maxEntriesPerInvocation;
+            return this;
+        }
+
+        public CaptureBudgetBuilder maxBytesPerInvocation(long maxBytesPerInvocation) {
+            this.maxBytesPerInvocation = maxBytesPerInvocation;
+            return this;
+        }
+
+        public CaptureBudgetBuilder maxBytesPerTester(long maxBytesPerTester) {
+            this.maxBytesPerTester = maxBytesPerTester;
+            return this;
+        }
+
+        public CaptureBudgetBuilder policy(Policy policy) {
+            this.policy = policy;
+            return this;
+        }
+
+        public String toString() {
+            return "CaptureBudget.CaptureBudgetBuilder(maxEntriesPerInvocation=" + this.maxEntriesPerInvocation +
+                    ", maxBytesPerInvocation=" + this.maxBytesPerInvocation +
+                    ", maxBytesPerTester=" + this.maxBytesPerTester +
+                    ", policy=" + this.policy + ")";
+        }
+    }
+}
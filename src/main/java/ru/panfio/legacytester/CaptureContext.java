@@ -0,0 +1,392 @@
+package ru.panfio.legacytester;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Captured dependency invocations of a single testee invocation.
+ * A context is opened by {@link LegacyTester} when a testee call starts and closed when it returns.
+ * Dependency proxies record only while a context of their tester is open on the current thread,
+ * so concurrent requests never mix their captures and calls between testee invocations are not recorded.
+ * <p>
+ * Nested testee invocations form a chain; a dependency call is recorded into every open context
+ * of the tester that owns the dependency proxy.
+ * <p>
+ * Recorded entries and their estimated bytes are checked against the {@link CaptureBudget} of the tester.
+ * <p>
+ * Tasks the testee hands over to other threads see the context only when wrapped by {@link CapturePropagation}.
+ */
+public final class CaptureContext {
+    private static final ThreadLocal<CaptureContext> CURRENT = new ThreadLocal<>();
+
+    private final LegacyTester owner;
+    private final CaptureContext parent;
+    private final Queue<MethodCapture> captures = new ConcurrentLinkedQueue<>();
+    private final Queue<AsyncResult> asyncResults = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger entries = new AtomicInteger();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong testerBytes = new AtomicLong();
+    private volatile boolean closed;
+    private volatile boolean truncated;
+    private volatile boolean abandoned;
+
+    private CaptureContext(LegacyTester owner, CaptureContext parent) {
+        this.owner = owner;
+        this.parent = parent;
+    }
+
+    /**
+     * Opens a new context for the tester on the current thread.
+     */
+    static CaptureContext open(LegacyTester owner) {
+        CaptureContext context = new CaptureContext(owner, CURRENT.get());
+        CURRENT.set(context);
+        return context;
+    }
+
+    /**
+     * Restores the enclosing context on the current thread.
+     * Bytes charged to the tester stay charged, the tester takes them over with the captures.
+     */
+    void close() {
+        closed = true;
+        bytes.set(0);
+        if (CURRENT.get() != this) {
+            return;
+        }
+        if (parent == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(parent);
+        }
+    }
+
+    /**
+     * Installs a context chain taken on another thread, see {@link CapturePropagation}.
+     *
+     * @return the chain it replaces, to be passed to {@link #detach}
+     */
+    static CaptureContext attach(CaptureContext context) {
+        final CaptureContext previous = CURRENT.get();
+        if (previous != context) {
+            CURRENT.set(context);
+        }
+        return previous;
+    }
+
+    /**
+     * Restores the chain replaced by {@link #attach}.
+     */
+    static void detach(CaptureContext previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else if (CURRENT.get() != previous) {
+            CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * @return innermost open context on the current thread or null
+     */
+    public static CaptureContext current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * @return innermost open context of the tester on the current thread or null
+     */
+    public static CaptureContext current(LegacyTester owner) {
+        for (CaptureContext context = CURRENT.get(); context != null; context = context.parent) {
+            if (context.owner == owner) {
+                return context;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Records the capture into every open context of the owner.
+     * Without an owner the capture goes to the innermost context.
+     * With a capture budget the capture is charged to the tester once, by the outermost context of the owner,
+     * however many nested contexts record it.
+     *
+     * @return false if no context was recording
+     */
+    public static boolean record(LegacyTester owner, MethodCapture capture) {
+        CaptureContext context = CURRENT.get();
+        if (owner == null) {
+            return context != null && context.add(capture);
+        }
+        final CaptureBudget budget = owner.getCaptureBudget();
+        if (budget != null) {
+            return recordWithinBudget(owner, budget, context, capture);
+        }
+        boolean recorded = false;
+        for (; context != null; context = context.parent) {
+            if (context.owner == owner) {
+                recorded |= context.add(capture);
+            }
+        }
+        return recorded;
+    }
+
+    private static boolean recordWithinBudget(LegacyTester owner, CaptureBudget budget,
+                                              CaptureContext innermost, MethodCapture capture) {
+        CaptureContext outermost = null;
+        for (CaptureContext context = innermost; context != null; context = context.parent) {
+            if (context.owner == owner && !context.closed && !context.abandoned) {
+                outermost = context;
+            }
+        }
+        if (outermost == null) {
+            return false;
+        }
+        final long size = CaptureBudget.estimate(capture);
+        final Charge charge = new Charge(capture, size, outermost.reserveTesterBytes(budget, size));
+        boolean recorded = false;
+        for (CaptureContext context = innermost; context != null; context = context.parent) {
+            if (context.owner == owner) {
+                recorded |= context.addWithinBudget(budget, charge);
+            }
+        }
+        if (charge.testerBytes > 0 && !charge.keptInFull) {
+            outermost.releaseTesterBytes(charge.testerBytes);
+        }
+        if (charge.summary != null) {
+            outermost.chargeTesterBytes(charge.summarySize);
+        }
+        return recorded;
+    }
+
+    private boolean add(MethodCapture capture) {
+        if (closed || abandoned) {
+            return false;
+        }
+        captures.add(capture);
+        onAdded(capture);
+        return true;
+    }
+
+    private void onAdded(MethodCapture capture) {
+        if (capture.getResult() instanceof AsyncResult) {
+            asyncResults.add((AsyncResult) capture.getResult());
+        }
+    }
+
+    private boolean addWithinBudget(CaptureBudget budget, Charge charge) {
+        if (closed || abandoned) {
+            return false;
+        }
+        if (entries.incrementAndGet() > budget.getMaxEntriesPerInvocation()) {
+            entries.decrementAndGet();
+            return overBudget(budget, charge, false);
+        }
+        if (charge.testerBytes < 0 || !reserveBytes(budget, charge.size)) {
+            entries.decrementAndGet();
+            return overBudget(budget, charge, true);
+        }
+        charge.keptInFull = true;
+        captures.add(charge.capture);
+        onAdded(charge.capture);
+        return true;
+    }
+
+    private boolean reserveBytes(CaptureBudget budget, long size) {
+        if (bytes.addAndGet(size) > budget.getMaxBytesPerInvocation()) {
+            bytes.addAndGet(-size);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the reserved size, -1 if it doesn't fit into the tester budget
+     */
+    private long reserveTesterBytes(CaptureBudget budget, long size) {
+        if (owner.getCapturedBytes().addAndGet(size) > budget.getMaxBytesPerTester()) {
+            owner.getCapturedBytes().addAndGet(-size);
+            return -1;
+        }
+        testerBytes.addAndGet(size);
+        return size;
+    }
+
+    private void chargeTesterBytes(long size) {
+        owner.getCapturedBytes().addAndGet(size);
+        testerBytes.addAndGet(size);
+    }
+
+    private void releaseTesterBytes(long size) {
+        owner.getCapturedBytes().addAndGet(-size);
+        testerBytes.addAndGet(-size);
+    }
+
+    private boolean overBudget(CaptureBudget budget, Charge charge, boolean summarisable) {
+        switch (budget.getPolicy()) {
+            case SUMMARISE:
+                if (summarisable) {
+                    budget.onSummarised();
+                    final MethodCapture summary = charge.summary();
+                    bytes.addAndGet(charge.summarySize);
+                    captures.add(summary);
+                    entries.incrementAndGet();
+                    return true;
+                }
+                markTruncated(budget);
+                return false;
+            case ABANDON:
+                synchronized (this) {
+                    if (!abandoned) {
+                        abandoned = true;
+                        budget.onAbandoned();
+                    }
+                }
+                captures.clear();
+                releaseBytes();
+                return false;
+            case TRUNCATE:
+            default:
+                markTruncated(budget);
+                return false;
+        }
+    }
+
+    private void markTruncated(CaptureBudget budget) {
+        if (!truncated) {
+            synchronized (this) {
+                if (!truncated) {
+                    truncated = true;
+                    budget.onTruncated();
+                }
+            }
+        }
+    }
+
+    /**
+     * Hands the bytes charged to the tester for the captures over to the caller,
+     * which releases them once the test is written or dropped.
+     *
+     * @return bytes charged to the tester
+     */
+    long takeTesterBytes() {
+        return testerBytes.getAndSet(0);
+    }
+
+    private void releaseBytes() {
+        bytes.set(0);
+        final long released = testerBytes.getAndSet(0);
+        if (released != 0 && owner != null) {
+            owner.getCapturedBytes().addAndGet(-released);
+        }
+    }
+
+    /**
+     * A capture being recorded into the contexts of its owner, charged to the tester once.
+     */
+    private static final class Charge {
+        private final MethodCapture capture;
+        private final long size;
+        /**
+         * bytes reserved in the tester budget, -1 if the capture didn't fit
+         */
+        private final long testerBytes;
+        private boolean keptInFull;
+        private MethodCapture summary;
+        private long summarySize;
+
+        private Charge(MethodCapture capture, long size, long testerBytes) {
+            this.capture = capture;
+            this.size = size;
+            this.testerBytes = testerBytes;
+        }
+
+        private MethodCapture summary() {
+            if (summary == null) {
+                summary = CaptureBudget.summarise(capture);
+                summarySize = CaptureBudget.estimate(summary);
+            }
+            return summary;
+        }
+    }
+
+    /**
+     * Waits for async results of the recorded calls without blocking.
+     *
+     * @param result async result of the testee invocation or any other value
+     * @return future completed when the results have settled or the timeout has passed,
+     * null if none of them is pending
+     */
+    CompletableFuture<Void> whenSettled(Object result, long timeoutMillis) {
+        final List<AsyncResult> pending = new ArrayList<>();
+        if (result instanceof AsyncResult) {
+            asyncResults.add((AsyncResult) result);
+        }
+        for (AsyncResult asyncResult : asyncResults) {
+            asyncResult.poll();
+            if (!asyncResult.isSettled()) {
+                pending.add(asyncResult);
+            }
+        }
+        if (pending.isEmpty()) {
+            return null;
+        }
+        return AsyncResult.settled(pending, timeoutMillis).thenRun(() -> asyncResults.forEach(AsyncResult::poll));
+    }
+
+    public LegacyTester getOwner() {
+        return owner;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * @return true if some invocations were not recorded because of the capture budget
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * @return true if the capture was dropped because of the capture budget
+     */
+    public boolean isAbandoned() {
+        return abandoned;
+    }
+
+    /**
+     * @return estimated bytes retained by recorded invocations, tracked only with a capture budget
+     */
+    public long getCapturedBytes() {
+        return bytes.get();
+    }
+
+    /**
+     * @return copy of captured invocations in call order
+     */
+    public List<MethodCapture> getCaptures() {
+        return new ArrayList<>(captures);
+    }
+
+    public void clear() {
+        captures.clear();
+        asyncResults.clear();
+        entries.set(0);
+        releaseBytes();
+    }
+
+    /**
+     * Removes captures recorded by the dependency field.
+     */
+    public void clear(String fieldName) {
+        captures.removeIf(capture -> fieldName == null
+                ? capture.getFieldName() == null
+                : fieldName.equals(capture.getFieldName()));
+    }
+}
@@ -0,0 +1,209 @@
+package ru.panfio.legacytester;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Carries the {@link CaptureContext} of a testee invocation to tasks run on other threads,
+ * e.g. executor tasks, {@code CompletableFuture} async stages, {@code ForkJoinPool} tasks
+ * and parallel stream operations:
+ * <pre>
+ * CompletableFuture.supplyAsync(CapturePropagation.supplier(() -&gt; dao.find(id)), executor);
+ * ids.parallelStream().map(CapturePropagation.function(dao::find));
+ * ExecutorService executor = CapturePropagation.executorService(Executors.newFixedThreadPool(4));
+ * </pre>
+ * The context is taken when a task is wrapped or submitted, installed on the thread that runs it
+ * and replaced by the previous one when it ends, so pooled and virtual threads never keep it.
+ * Nothing is inherited by threads the task starts. Without a context in flight tasks are returned as they are.
+ * <p>
+ * Dependency calls are recorded while the testee invocation is in flight; calls of tasks that outlive it are dropped.
+ */
+public final class CapturePropagation {
+    private CapturePropagation() {
+        throw new RuntimeException("Utility class");
+    }
+
+    public static Runnable runnable(Runnable task) {
+        final CaptureContext context = CaptureContext.current();
+        if (context == null) {
+            return task;
+        }
+        return () -> {
+            final CaptureContext previous = CaptureContext.attach(context);
+            try {
+                task.run();
+            } finally {
+                CaptureContext.detach(previous);
+            }
+        };
+    }
+
+    public static <T> Callable<T> callable(Callable<T> task) {
+        final CaptureContext context = CaptureContext.current();
+        if (context == null) {
+            return task;
+        }
+        return () -> {
+            final CaptureContext previous = CaptureContext.attach(context);
+            try {
+                return task.call();
+            } finally {
+                CaptureContext.detach(previous);
+            }
+        };
+    }
+
+    public static <T> Supplier<T> supplier(Supplier<T> task) {
+        final CaptureContext context = CaptureContext.current();
+        if (context == null) {
+            return task;
+        }
+        return () -> {
+            final CaptureContext previous = CaptureContext.attach(context);
+            try {
+                return task.get();
+            } finally {
+                CaptureContext.detach(previous);
+            }
+        };
+    }
+
+    public static <T, R> Function<T, R> function(Function<T, R> task) {
+        final CaptureContext context = CaptureContext.current();
+        if (context == null) {
+            return task;
+        }
+        return value -> {
+            final CaptureContext previous = CaptureContext.attach(context);
+            try {
+                return task.apply(value);
+            } finally {
+                CaptureContext.detach(previous);
+            }
+        };
+    }
+
+    public static <T> Consumer<T> consumer(Consumer<T> task) {
+        final CaptureContext context = CaptureContext.current();
+        if (context == null) {
+            return task;
+        }
+        return value -> {
+            final CaptureContext previous = CaptureContext.attach(context);
+            try {
+                task.accept(value);
+            } finally {
+                CaptureContext.detach(previous);
+            }
+        };
+    }
+
+    /**
+     * @return executor running each command in the context of the thread that submits it
+     */
+    public static Executor executor(Executor executor) {
+        return command -> executor.execute(runnable(command));
+    }
+
+    /**
+     * @return executor service running each task in the context of the thread that submits it
+     */
+    public static ExecutorService executorService(ExecutorService executor) {
+        return new PropagatingExecutorService(executor);
+    }
+
+    private static <T> List<Callable<T>> callables(Collection<? extends Callable<T>> tasks) {
+        final List<Callable<T>> wrapped = new ArrayList<>(tasks.size());
+        for (Callable<T> task : tasks) {
+            wrapped.add(callable(task));
+        }
+        return wrapped;
+    }
+
+    private static final class PropagatingExecutorService implements ExecutorService {
+        private final ExecutorService executor;
+
+        private PropagatingExecutorService(ExecutorService executor) {
+            this.executor = executor;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            executor.execute(runnable(command));
+        }
+
+        @Override
+        public <T> Future<T> submit(Callable<T> task) {
+            return executor.submit(callable(task));
+        }
+
+        @Override
+        public <T> Future<T> submit(Runnable task, T result) {
+            return executor.submit(runnable(task), result);
+        }
+
+        @Override
+        public Future<?> submit(Runnable task) {
+            return executor.submit(runnable(task));
+        }
+
+        @Override
+        public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks) throws InterruptedException {
+            return executor.invokeAll(callables(tasks));
+        }
+
+        @Override
+        public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit)
+                throws InterruptedException {
+            return executor.invokeAll(callables(tasks), timeout, unit);
+        }
+
+        @Override
+        public <T> T invokeAny(Collection<? extends Callable<T>> tasks)
+                throws InterruptedException, ExecutionException {
+            return executor.invokeAny(callables(tasks));
+        }
+
+        @Override
+        public <T> T invokeAny(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit)
+                throws InterruptedException, ExecutionException, TimeoutException {
+            return executor.invokeAny(callables(tasks), timeout, unit);
+        }
+
+        @Override
+        public void shutdown() {
+            executor.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return executor.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return executor.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return executor.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return executor.awaitTermination(timeout, unit);
+        }
+    }
+}
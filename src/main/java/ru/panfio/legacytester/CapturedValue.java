@@ -0,0 +1,22 @@
+package ru.panfio.legacytester;
+
+/**
+ * Captured value that stands in place of the original object.
+ */
+public interface CapturedValue {
+
+    /**
+     * @return runtime class of the original value
+     */
+    Class<?> getType();
+
+    /**
+     * @return runtime class of the original value for both captured and live values
+     */
+    static Class<?> typeOf(Object value) {
+        if (value instanceof CapturedValue) {
+            return ((CapturedValue) value).getType();
+        }
+        return value.getClass();
+    }
+}
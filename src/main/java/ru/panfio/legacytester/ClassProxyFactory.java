@@ -0,0 +1,72 @@
+package ru.panfio.legacytester;
+
+import net.sf.cglib.proxy.Callback;
+import net.sf.cglib.proxy.Dispatcher;
+import net.sf.cglib.proxy.Enhancer;
+import net.sf.cglib.proxy.MethodInterceptor;
+import ru.panfio.legacytester.spring.MethodInvocationInterceptor;
+import ru.panfio.legacytester.spring.TesteeCallbackFilter;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Creates class proxies of testee beans. A proxy class is generated once per bean class and qualifier
+ * with a fixed {@link TesteeCallbackFilter}, further beans of the class are instantiated from the cached
+ * {@link ProxyClass} with their own callbacks, so no enhancer or class is created per bean.
+ */
+final class ClassProxyFactory {
+    private static final Class<?>[] CALLBACK_TYPES = {Dispatcher.class, MethodInterceptor.class};
+    private static final Map<ProxyKey, ProxyClass> PROXY_CLASSES = new ConcurrentHashMap<>();
+
+    private ClassProxyFactory() {
+        throw new RuntimeException("Utility class");
+    }
+
+    static Object create(Object bean, LegacyTester tester) {
+        ProxyKey key = new ProxyKey(bean.getClass(), tester.getQualifier());
+        ProxyClass proxyClass = PROXY_CLASSES.get(key);
+        if (proxyClass == null) {
+            proxyClass = PROXY_CLASSES.computeIfAbsent(key, ClassProxyFactory::generate);
+        }
+        Callback[] callbacks = new Callback[CALLBACK_TYPES.length];
+        callbacks[TesteeCallbackFilter.DIRECT] = (Dispatcher) () -> {
+            tester.beforeCall();
+            return bean;
+        };
+        callbacks[TesteeCallbackFilter.CAPTURE] = new MethodInvocationInterceptor(bean, tester);
+        return proxyClass.newInstance(callbacks);
+    }
+
+    private static ProxyClass generate(ProxyKey key) {
+        Enhancer enhancer = new Enhancer();
+        enhancer.setSuperclass(key.type);
+        enhancer.setCallbackFilter(new TesteeCallbackFilter(key.qualifier));
+        enhancer.setCallbackTypes(CALLBACK_TYPES);
+        return ProxyClass.generate(enhancer, key.type);
+    }
+
+    private static final class ProxyKey {
+        private final Class<?> type;
+        private final String qualifier;
+
+        private ProxyKey(Class<?> type, String qualifier) {
+            this.type = type;
+            this.qualifier = qualifier;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            ProxyKey that = (ProxyKey) o;
+            return type == that.type && qualifier.equals(that.qualifier);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, qualifier);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package ru.panfio.legacytester;
+
+import net.sf.cglib.proxy.Callback;
+import net.sf.cglib.proxy.CallbackFilter;
+import net.sf.cglib.proxy.Dispatcher;
+import net.sf.cglib.proxy.Enhancer;
+import net.sf.cglib.proxy.MethodInterceptor;
+import net.sf.cglib.proxy.NoOp;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static ru.panfio.legacytester.util.ReflectionUtils.isObjectMethod;
+
+/**
+ * Creates {@link ProxyBackend#CGLIB} dependency proxies. A proxy class is generated once per
+ * dependency type, additional interfaces and affected methods, further proxies are instantiated
+ * from the cached {@link ProxyClass} with callbacks of their handler.
+ */
+final class DependencyProxyFactory {
+    private static final int PASS = 0;
+    private static final int DEPENDENCY = 1;
+    private static final int AFFECT = 2;
+    private static final int SKIP = 3;
+    private static final Class<?>[] CALLBACK_TYPES = {Dispatcher.class, MethodInterceptor.class,
+            MethodInterceptor.class, NoOp.class};
+    private static final Map<ProxyKey, ProxyClass> PROXY_CLASSES = new ConcurrentHashMap<>();
+
+    private DependencyProxyFactory() {
+        throw new RuntimeException("Utility class");
+    }
+
+    static Object create(Class<?> type, Class<?>[] otherInterfaces, FieldInvocationHandler handler) {
+        ProxyKey key = new ProxyKey(type, otherInterfaces, handler.getAffectedMethods());
+        ProxyClass proxyClass = PROXY_CLASSES.get(key);
+        if (proxyClass == null) {
+            proxyClass = PROXY_CLASSES.computeIfAbsent(key, DependencyProxyFactory::generate);
+        }
+        return proxyClass.newInstance(callbacks(handler));
+    }
+
+    private static Callback[] callbacks(FieldInvocationHandler handler) {
+        final Object target = handler.getTarget();
+        Callback[] callbacks = new Callback[CALLBACK_TYPES.length];
+        callbacks[PASS] = (Dispatcher) () -> target;
+        callbacks[DEPENDENCY] = (MethodInterceptor) (proxy, method, args, methodProxy) ->
+                handler.captured(method, MethodCapture.Type.DEPENDENCY, args, methodProxy.invoke(target, args));
+        callbacks[AFFECT] = (MethodInterceptor) (proxy, method, args, methodProxy) ->
+                handler.captured(method, MethodCapture.Type.AFFECT, args, methodProxy.invoke(target, args));
+        callbacks[SKIP] = NoOp.INSTANCE;
+        return callbacks;
+    }
+
+    private static ProxyClass generate(ProxyKey key) {
+        Enhancer enhancer = new Enhancer();
+        if (key.type.isInterface()) {
+            enhancer.setInterfaces(key.interfaces.toArray(new Class<?>[0]));
+        } else {
+            enhancer.setSuperclass(key.type);
+            enhancer.setInterfaces(key.interfaces.stream()
+                    .filter(Class::isInterface)
+                    .toArray(Class<?>[]::new));
+        }
+        enhancer.setCallbackFilter(new CaptureCallbackFilter(key.affectedMethods));
+        enhancer.setCallbackTypes(CALLBACK_TYPES);
+        return ProxyClass.generate(enhancer, key.type.isInterface() ? null : key.type);
+    }
+
+    /**
+     * Capture type of each method, evaluated once when the proxy class is generated.
+     */
+    private static final class CaptureCallbackFilter implements CallbackFilter {
+        private final Set<String> affectedMethods;
+
+        private CaptureCallbackFilter(Set<String> affectedMethods) {
+            this.affectedMethods = affectedMethods;
+        }
+
+        @Override
+        public int accept(Method method) {
+            if (isObjectMethod(method)) {
+                return PASS;
+            }
+            if (method.getDeclaringClass() == Object.class) {
+                // finalize and clone belong to the proxy
+                return SKIP;
+            }
+            return affectedMethods.contains(method.getName()) ? AFFECT : DEPENDENCY;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            return affectedMethods.equals(((CaptureCallbackFilter) o).affectedMethods);
+        }
+
+        @Override
+        public int hashCode() {
+            return affectedMethods.hashCode();
+        }
+    }
+
+    private static final class ProxyKey {
+        private final Class<?> type;
+        private final List<Class<?>> interfaces;
+        private final Set<String> affectedMethods;
+        private final int hashCode;
+
+        private ProxyKey(Class<?> type, Class<?>[] otherInterfaces, Set<String> affectedMethods) {
+            this.type = type;
+            Set<Class<?>> allInterfaces = new LinkedHashSet<>();
+            allInterfaces.add(type);
+            allInterfaces.addAll(Arrays.asList(otherInterfaces));
+            this.interfaces = new ArrayList<>(allInterfaces);
+            this.affectedMethods = affectedMethods;
+            this.hashCode = Objects.hash(type, interfaces, affectedMethods);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            ProxyKey that = (ProxyKey) o;
+            return type == that.type && interfaces.equals(that.interfaces) && affectedMethods.equals(that.affectedMethods);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
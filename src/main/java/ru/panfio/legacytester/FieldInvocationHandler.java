@@ -1,23 +1,46 @@
 package ru.panfio.legacytester;
 
+import ru.panfio.legacytester.control.CaptureSwitch;
+import ru.panfio.legacytester.metrics.FieldMetrics;
+import ru.panfio.legacytester.metrics.TesterMetrics;
+import ru.panfio.legacytester.snapshot.SnapshotCodec;
+
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
-import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static ru.panfio.legacytester.util.ReflectionUtils.isObjectMethod;
 
 public class FieldInvocationHandler implements InvocationHandler {
     private final Object target;
     //todo find more efficient solution to check for what field is proxy created
     private String fieldName;
+    private volatile LegacyTester tester;
+    // rebound when the tester is armed from another thread
+    private volatile CaptureSwitch captureSwitch = CaptureSwitch.always();
 
-    private final List<String> affectedMethods;
-    private List<MethodCapture> capturedInvocations = new ArrayList<>();
+    private final Set<String> affectedMethods;
 
     public FieldInvocationHandler(Object target,
                                   String... affectedMethods) {
         this.target = target;
-        this.affectedMethods = Arrays.asList(affectedMethods);
+        this.affectedMethods = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(affectedMethods)));
+    }
+
+    Object getTarget() {
+        return target;
+    }
+
+    /**
+     * @return names of methods whose calls are verified by the generated test
+     */
+    Set<String> getAffectedMethods() {
+        return affectedMethods;
     }
 
     public String getFieldName() {
@@ -29,38 +52,104 @@ public class FieldInvocationHandler implements InvocationHandler {
         return this;
     }
 
+    /**
+     * Binds the handler to the tester whose testee invocations it records.
+     */
+    void setTester(LegacyTester tester) {
+        this.tester = tester;
+        this.captureSwitch = tester.getCaptureSwitch();
+    }
+
+    void setCaptureSwitch(CaptureSwitch captureSwitch) {
+        this.captureSwitch = captureSwitch;
+    }
+
+    /**
+     * @return invocations recorded by this handler in the current testee invocation
+     */
     public List<MethodCapture> getCapturedInvocations() {
-        return capturedInvocations;
+        CaptureContext context = tester == null ? CaptureContext.current() : CaptureContext.current(tester);
+        if (context == null) {
+            return Collections.emptyList();
+        }
+        return context.getCaptures().stream()
+                .filter(capture -> capture.getFieldName() == null ? fieldName == null : capture.getFieldName().equals(fieldName))
+                .collect(Collectors.toList());
     }
 
+    /**
+     * Removes invocations recorded by this handler in the current testee invocation.
+     */
     public void clearCapturedInvocations() {
-        this.capturedInvocations = new ArrayList<>();
+        CaptureContext context = tester == null ? CaptureContext.current() : CaptureContext.current(tester);
+        if (context != null) {
+            context.clear(fieldName);
+        }
     }
 
     @Override
     public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
         Object result = method.invoke(target, args);
+        if (isObjectMethod(method)) {
+            // passed to the target without capture, as by the CGLib proxy
+            return result;
+        }
         //todo catch mock exceptions
-        final String methodName = method.getName();
-        if (affectedMethods.contains(methodName)) {
-            capturedInvocations.add(
-                    MethodCapture.builder()
-                            .method(method)
-                            .type(MethodCapture.Type.AFFECT)
-                            .arguments(args)
-                            .result(result)
-                            .exception(null)
-                            .build());
+        final MethodCapture.Type type = affectedMethods.contains(method.getName())
+                ? MethodCapture.Type.AFFECT
+                : MethodCapture.Type.DEPENDENCY;
+        return captured(method, type, args, result);
+    }
+
+    /**
+     * Records the call of the target in the testee invocation in flight.
+     *
+     * @return the result
+     */
+    Object captured(Method method, MethodCapture.Type type, Object[] args, Object result) {
+        if (!captureSwitch.isCapturing()) {
+            return result;
+        }
+        final FieldMetrics metrics = metrics();
+        if (metrics != null) {
+            metrics.onCall();
+        }
+        if (CaptureContext.current() == null) {
+            // no testee invocation in flight
             return result;
         }
-        capturedInvocations.add(
-                MethodCapture.builder()
-                        .method(method)
-                        .type(MethodCapture.Type.DEPENDENCY)
-                        .arguments(args)
-                        .result(result)
-                        .exception(null)
-                        .build());
+        final LegacyTester owner = tester;
+        record(MethodCapture.builder()
+                .method(method)
+                .type(type)
+                .arguments(args)
+                .result(AsyncResult.of(result, owner != null && owner.isSnapshotMode(), false))
+                .exception(null)
+                .fieldName(fieldName)
+                .build());
         return result;
     }
+
+    private void record(MethodCapture capture) {
+        final LegacyTester owner = tester;
+        final FieldMetrics metrics = metrics();
+        if (owner != null && owner.isSnapshotMode()) {
+            final long start = metrics == null ? 0 : System.nanoTime();
+            capture = SnapshotCodec.snapshot(capture);
+            if (metrics != null) {
+                metrics.onSnapshot(System.nanoTime() - start, SnapshotCodec.encodedSize(capture));
+                metrics.onSnapshotFailures(SnapshotCodec.unencodableCount(capture));
+            }
+        }
+        final boolean recorded = CaptureContext.record(owner, capture);
+        if (metrics != null) {
+            metrics.onCapture(recorded);
+        }
+    }
+
+    private FieldMetrics metrics() {
+        final LegacyTester owner = tester;
+        final TesterMetrics testerMetrics = owner == null ? null : owner.getMetrics();
+        return testerMetrics == null ? null : testerMetrics.field(fieldName);
+    }
 }
@@ -1,43 +1,106 @@
 package ru.panfio.legacytester;
 
 import lombok.SneakyThrows;
-import net.sf.cglib.proxy.Callback;
-import net.sf.cglib.proxy.Enhancer;
+import ru.panfio.legacytester.async.AsyncTestGenerator;
+import ru.panfio.legacytester.async.GenerationTask;
 import ru.panfio.legacytester.constructor.ConstructorConfiguration;
+import ru.panfio.legacytester.constructor.ImportTable;
 import ru.panfio.legacytester.constructor.MockTestConstructor;
+import ru.panfio.legacytester.constructor.RenderCache;
 import ru.panfio.legacytester.constructor.TestConstructor;
 import ru.panfio.legacytester.constructor.ConstructorSupplier;
-import ru.panfio.legacytester.spring.MethodInvocationInterceptor;
+import ru.panfio.legacytester.control.CaptureControl;
+import ru.panfio.legacytester.control.CaptureSwitch;
+import ru.panfio.legacytester.fingerprint.CaptureFingerprint;
+import ru.panfio.legacytester.fingerprint.DuplicateFilter;
+import ru.panfio.legacytester.journal.CaptureJournal;
+import ru.panfio.legacytester.metrics.LegacyTesterMetrics;
+import ru.panfio.legacytester.metrics.TesterMetrics;
+import ru.panfio.legacytester.sampling.Sampler;
+import ru.panfio.legacytester.sink.TestSink;
+import ru.panfio.legacytester.snapshot.SnapshotCodec;
 
+import java.io.IOException;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 import java.util.stream.Stream;
 
-import static ru.panfio.legacytester.util.ReflectionUtils.containAnnotation;
+import static ru.panfio.legacytester.util.ReflectionUtils.getTesteeMethod;
 
 public class LegacyTester {
+    private static final Map<String, Sampler> ANNOTATION_SAMPLERS = new ConcurrentHashMap<>();
+    private static final long DEFAULT_ASYNC_RESULT_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    private static final int DEFAULT_MAX_DEFERRED_CAPTURES = 1024;
+    private static final Runnable NO_RELEASE = () -> {
+    };
+
     private final Class<?> testClass;
     private String qualifier = "default";
-    private Map<String, FieldInvocationHandler> handlers = new HashMap<>();
+    private final Map<String, FieldInvocationHandler> handlers = new ConcurrentHashMap<>();
     private ConstructorSupplier<Class, ConstructorConfiguration, List<MethodCapture>, TestConstructor> testConstructorSupplier;
     private Consumer<TestConstructor> testHandler;
+    private TestSink sink;
     private Supplier<ConstructorConfiguration> constructorConfigSupplier;
+    private AsyncTestGenerator asyncGenerator;
+    private volatile Sampler sampler;
+    private DuplicateFilter duplicateFilter;
+    private CaptureBudget captureBudget;
+    private CaptureJournal journal;
+    private RenderCache renderCache;
+    private final AtomicLong capturedBytes = new AtomicLong();
+    private volatile boolean snapshotMode;
+    private volatile long asyncResultTimeoutMillis = DEFAULT_ASYNC_RESULT_TIMEOUT_MILLIS;
+    private volatile int maxDeferredCaptures = DEFAULT_MAX_DEFERRED_CAPTURES;
+    private final AtomicInteger deferredCaptures = new AtomicInteger();
+    private volatile ProxyBackend proxyBackend = ProxyBackend.JDK;
+    private volatile TesterMetrics metrics;
+    private boolean armable;
+    private CaptureSwitch captureSwitch = CaptureSwitch.always();
+    private volatile Runnable armAction;
 
     public LegacyTester(Class<?> testClass) {
         this.testClass = testClass;
     }
 
+    /**
+     * Moves test construction and the test handler call to the generator workers.
+     * The testee call pays only for the capture snapshot and the queue hand-off.
+     *
+     * @param asyncGenerator shared generator, null switches back to synchronous generation
+     */
+    public LegacyTester async(AsyncTestGenerator asyncGenerator) {
+        this.asyncGenerator = asyncGenerator;
+        return this;
+    }
+
     public LegacyTester testHandler(Consumer<TestConstructor> testHandler) {
         this.testHandler = testHandler;
         return this;
     }
 
+    /**
+     * Sends generated tests to the sink instead of stdout, e.g. a {@link ru.panfio.legacytester.sink.FileTestSink}
+     * that assembles them into test classes.
+     * A test handler takes precedence over the sink.
+     */
+    public LegacyTester sink(TestSink sink) {
+        this.sink = sink;
+        return this;
+    }
+
     public LegacyTester constructorConfig(Supplier<ConstructorConfiguration> constructorConfig) {
         this.constructorConfigSupplier = constructorConfig;
         return this;
@@ -48,34 +111,264 @@ public class LegacyTester {
         return this;
     }
 
+    /**
+     * Sets the sampling strategy for this tester.
+     * Without an explicit sampler the {@link Testee#sampleRate()} and {@link Testee#samplesPerSecond()}
+     * attributes of the testable method are used.
+     *
+     * @param sampler sampler shared between testers of the same qualifier
+     */
+    public LegacyTester sampler(Sampler sampler) {
+        this.sampler = sampler;
+        return this;
+    }
+
+    /**
+     * Sets the implementation of proxies created by {@link #fieldProxy}.
+     * Concrete dependency classes always get {@link ProxyBackend#CGLIB} proxies.
+     */
+    public LegacyTester proxyBackend(ProxyBackend proxyBackend) {
+        this.proxyBackend = proxyBackend;
+        return this;
+    }
+
+    /**
+     * Rejects captures with an already seen structural fingerprint before the test is constructed.
+     * Hit and miss counts of the filter show how much generation work is avoided.
+     *
+     * @param duplicateFilter filter shared between testers of the same qualifier
+     */
+    public LegacyTester duplicateFilter(DuplicateFilter duplicateFilter) {
+        this.duplicateFilter = duplicateFilter;
+        return this;
+    }
+
+    /**
+     * Limits memory retained by captured dependency invocations of this tester.
+     *
+     * @param captureBudget budget, its counters show truncated, summarised and abandoned captures
+     */
+    public LegacyTester captureBudget(CaptureBudget captureBudget) {
+        this.captureBudget = captureBudget;
+        return this;
+    }
+
+    /**
+     * Encodes captured arguments and results into compact binary snapshots at capture time
+     * instead of holding references to live objects until the test is generated.
+     * Later mutations of captured objects don't affect the generated test.
+     */
+    public LegacyTester snapshot(boolean snapshotMode) {
+        this.snapshotMode = snapshotMode;
+        return this;
+    }
+
+    /**
+     * Appends captured data to the journal instead of constructing the test in this JVM.
+     * Tests are rendered later from the journal files.
+     *
+     * @param journal journal shared between testers, null switches back to test generation
+     */
+    public LegacyTester journal(CaptureJournal journal) {
+        this.journal = journal;
+        return this;
+    }
+
+    /**
+     * Renders values repeated across the tests of this tester once, e.g. dependency results
+     * that stay the same between testee calls. A cache of the constructor configuration takes precedence.
+     *
+     * @param renderCache cache of rendered values, null renders values once per test only
+     */
+    public LegacyTester renderCache(RenderCache renderCache) {
+        this.renderCache = renderCache;
+        return this;
+    }
+
+    /**
+     * Futures and completion stages returned by dependencies and by the testee are recorded when they complete,
+     * the test is generated once all of them have completed or the timeout has passed. Results that are
+     * not completed by then are stubbed with futures that never complete.
+     *
+     * @param timeout time to wait for async results after the testee call has returned
+     */
+    public LegacyTester asyncResultTimeout(long timeout, TimeUnit unit) {
+        this.asyncResultTimeoutMillis = unit.toMillis(timeout);
+        return this;
+    }
+
+    /**
+     * Limits captures held while their async results are pending, further captures are dropped until some settle.
+     *
+     * @param maxDeferredCaptures captures waiting for async results at once
+     */
+    public LegacyTester maxDeferredCaptures(int maxDeferredCaptures) {
+        this.maxDeferredCaptures = maxDeferredCaptures;
+        return this;
+    }
+
+    boolean isSnapshotMode() {
+        return snapshotMode;
+    }
+
+    CaptureBudget getCaptureBudget() {
+        return captureBudget;
+    }
+
+    /**
+     * Estimated bytes retained by captures of this tester, from the testee call until its test is written or dropped.
+     */
+    AtomicLong getCapturedBytes() {
+        return capturedBytes;
+    }
+
+    /**
+     * Records capture and generation overhead of this tester and exposes it through JMX,
+     * see {@link LegacyTesterMetrics}. Recording is lock-free and cheap enough to leave on in production.
+     */
+    public LegacyTester metrics(boolean enabled) {
+        replaceMetrics(enabled ? LegacyTesterMetrics.of(testClass, qualifier) : null);
+        return this;
+    }
+
+    /**
+     * Releases the previous metrics, so MBeans of a qualifier no tester uses are unregistered.
+     */
+    private void replaceMetrics(TesterMetrics replacement) {
+        final TesterMetrics previous = metrics;
+        metrics = replacement;
+        if (previous != null) {
+            LegacyTesterMetrics.release(previous);
+        }
+    }
+
+    /**
+     * @return metrics of this tester or null if they are not enabled
+     */
+    public TesterMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Captures testee calls only while the capture switch of the test class and qualifier is armed
+     * through {@link CaptureControl} or JMX. While disarmed the tester and its dependency proxies
+     * cost a volatile read on top of the direct call.
+     */
+    public LegacyTester armable(boolean armable) {
+        this.armable = armable;
+        bindCaptureSwitch();
+        return this;
+    }
+
+    /**
+     * @return true if testee calls are captured now
+     */
+    public boolean isArmed() {
+        return captureSwitch.isArmed();
+    }
+
+    /**
+     * Runs the action on the first armed call of an armable tester, before the call is captured,
+     * at once if capture is armed or the tester is not armable. The action is held by the tester only,
+     * so a tester that is never armed is discarded with it.
+     * <p>
+     * The action runs once, on the first call that enters the tester or its class proxy armed.
+     * Calls entering meanwhile wait for it, so e.g. dependency fields swapped by the action are
+     * complete and visible to every call that enters after it.
+     */
+    public LegacyTester whenArmed(Runnable action) {
+        if (!armable || captureSwitch.isArmed()) {
+            action.run();
+            return this;
+        }
+        synchronized (this) {
+            final Runnable previous = armAction;
+            armAction = previous == null ? action : () -> {
+                previous.run();
+                action.run();
+            };
+        }
+        return this;
+    }
+
+    /**
+     * Runs the pending arm action if capture is armed, called before a call enters the tester or its class proxy.
+     * Costs a volatile read once the action has run.
+     */
+    void beforeCall() {
+        if (armAction != null && captureSwitch.isArmed()) {
+            runArmAction();
+        }
+    }
+
+    /**
+     * Runs the action holding the tester lock, so concurrent calls wait for it. Clearing the volatile field
+     * after the action publishes its writes to calls that read the field afterwards.
+     */
+    private synchronized void runArmAction() {
+        final Runnable action = armAction;
+        if (action == null) {
+            return;
+        }
+        try {
+            action.run();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        } finally {
+            armAction = null;
+        }
+    }
+
+    CaptureSwitch getCaptureSwitch() {
+        return captureSwitch;
+    }
+
+    private void bindCaptureSwitch() {
+        captureSwitch = armable ? CaptureControl.of(testClass, qualifier) : CaptureSwitch.always();
+        handlers.values().forEach(handler -> handler.setCaptureSwitch(captureSwitch));
+    }
+
     public String getQualifier() {
         return qualifier;
     }
 
     public LegacyTester qualifier(String qualifier) {
         this.qualifier = qualifier;
+        if (metrics != null) {
+            replaceMetrics(LegacyTesterMetrics.of(testClass, qualifier));
+        }
+        if (armable) {
+            bindCaptureSwitch();
+        }
         return this;
     }
 
+    /**
+     * Generates a test from dependency invocations recorded in the enclosing testee invocation
+     * of this tester, if any.
+     */
     @Deprecated
     public void test(Object[] params) {
-        generateTest(null, null, params);
+        final Object ticket = getSampler().select(params);
+        if (ticket != null) {
+            generateTest(currentCaptures(), null, null, ticket, NO_RELEASE, params);
+        }
     }
 
     @Deprecated
     public void test(Object result, Object[] params) {
-        generateTest(result, null, params);
+        final Object ticket = getSampler().select(params);
+        if (ticket != null) {
+            generateTest(currentCaptures(), result, null, ticket, NO_RELEASE, params);
+        }
     }
 
     @SneakyThrows
     public void test(ThrowableRunnable testMethod, Object... params) {
-        try {
+        test(() -> {
             testMethod.run();
-            generateTest(null, null, params);
-        } catch (Throwable exception) {
-            generateTest(null, exception, params);
-            throw exception;
-        }
+            return null;
+        }, params);
     }
 
     /**
@@ -104,40 +397,298 @@ public class LegacyTester {
      */
     @SneakyThrows
     public <R> R test(ThrowableSupplier<R> testMethod, Object... params) {
+        final CaptureSwitch testerSwitch = captureSwitch;
+        if (!testerSwitch.isArmed()) {
+            return testMethod.get();
+        }
+        beforeCall();
+        final TesterMetrics testerMetrics = metrics;
+        if (testerMetrics != null) {
+            return testWithMetrics(testerSwitch, testerMetrics, testMethod, params);
+        }
+        final Object ticket = getSampler().select(params);
+        if (ticket == null) {
+            return testMethod.get();
+        }
+        if (!testerSwitch.acquire()) {
+            // not captured, the sampler takes its permit back
+            getSampler().refund(ticket);
+            return testMethod.get();
+        }
+        CaptureContext context = CaptureContext.open(this);
+        R result;
         try {
-            R result = testMethod.get();
-            generateTest(result, null, params);
-            return result;
+            result = testMethod.get();
         } catch (Throwable exception) {
-            generateTest(null, exception, params);
+            context.close();
+            testerSwitch.release();
+            if (!context.isAbandoned()) {
+                finishTest(context, null, exception, params, ticket);
+            }
+            throw exception;
+        }
+        context.close();
+        testerSwitch.release();
+        if (!context.isAbandoned()) {
+            finishTest(context, result, null, params, ticket);
+        }
+        return result;
+    }
+
+    /**
+     * Same as {@link #test(ThrowableSupplier, Object...)}, records the time added to the wrapped call.
+     */
+    @SneakyThrows
+    private <R> R testWithMetrics(CaptureSwitch testerSwitch, TesterMetrics testerMetrics,
+                                  ThrowableSupplier<R> testMethod, Object... params) {
+        final long start = System.nanoTime();
+        final Object ticket = getSampler().select(params);
+        if (ticket == null || !testerSwitch.acquire()) {
+            if (ticket != null) {
+                // not captured, the sampler takes its permit back
+                getSampler().refund(ticket);
+            }
+            testerMetrics.onCall(System.nanoTime() - start, false);
+            return testMethod.get();
+        }
+        CaptureContext context = CaptureContext.open(this);
+        R result = null;
+        Throwable exception = null;
+        final long callStart = System.nanoTime();
+        try {
+            result = testMethod.get();
+        } catch (Throwable e) {
+            exception = e;
+        }
+        final long callEnd = System.nanoTime();
+        context.close();
+        testerSwitch.release();
+        if (context.isAbandoned()) {
+            testerMetrics.onDropped();
+        } else {
+            finishTest(context, result, exception, params, ticket);
+        }
+        testerMetrics.onCall(System.nanoTime() - start - (callEnd - callStart), true);
+        if (exception != null) {
             throw exception;
         }
+        return result;
+    }
+
+    /**
+     * Generates the test once async results of the invocation have completed, without blocking the caller.
+     * A deferred test is generated by the async generator of the tester, or by a shared one without it.
+     * Arguments of a deferred test are snapshotted on the testee thread, the caller may change them
+     * before the results complete.
+     * Bytes the captures are charged to the capture budget stay charged until the test is written or dropped.
+     */
+    private void finishTest(CaptureContext context, Object result, Throwable exception, Object[] params,
+                            Object ticket) {
+        final Runnable release = bytesRelease(context.takeTesterBytes());
+        final Object testResult = exception == null ? AsyncResult.of(result, snapshotMode, true) : null;
+        final CompletableFuture<Void> settled = context.whenSettled(testResult, asyncResultTimeoutMillis);
+        if (settled == null) {
+            generateTest(context.getCaptures(), testResult, exception, ticket, release, params);
+            return;
+        }
+        if (deferredCaptures.incrementAndGet() > maxDeferredCaptures) {
+            deferredCaptures.decrementAndGet();
+            onDropped();
+            release.run();
+            return;
+        }
+        final Object[] capturedParams = SnapshotCodec.snapshot(params, false);
+        settled.thenRun(() -> {
+            deferredCaptures.decrementAndGet();
+            final AsyncTestGenerator generator = asyncGenerator != null ? asyncGenerator : DeferredGeneration.GENERATOR;
+            // a rejected task is dropped by the generator
+            if (!generator.submit(GenerationTask.of(() -> generateDeferredTest(context.getCaptures(), testResult,
+                    exception, ticket, release, capturedParams), release))) {
+                onDropped();
+            }
+        });
     }
 
-    private void generateTest(Object result, Throwable exception, Object... params) {
+    /**
+     * @return action releasing the bytes charged to the tester, runs once however many times it's called
+     */
+    private Runnable bytesRelease(long bytes) {
+        if (bytes == 0) {
+            return NO_RELEASE;
+        }
+        final AtomicLong charged = new AtomicLong(bytes);
+        return () -> capturedBytes.addAndGet(-charged.getAndSet(0));
+    }
+
+    private void generateDeferredTest(List<MethodCapture> capturedData, Object result, Throwable exception,
+                                      Object ticket, Runnable release, Object[] params) {
+        final List<MethodCapture> snapshot = captureTest(capturedData, result, exception, params);
+        if (snapshot == null) {
+            release.run();
+            return;
+        }
+        admit(snapshot, ticket, release, true);
+    }
+
+    private void onDropped() {
+        final TesterMetrics testerMetrics = metrics;
+        if (testerMetrics != null) {
+            testerMetrics.onDropped();
+        }
+    }
+
+    private List<MethodCapture> currentCaptures() {
+        CaptureContext context = CaptureContext.current(this);
+        return context == null ? new ArrayList<>() : context.getCaptures();
+    }
+
+    private void generateTest(List<MethodCapture> capturedData, Object result, Throwable exception,
+                              Object ticket, Runnable release, Object... params) {
+        final List<MethodCapture> snapshot = captureTest(capturedData, result, exception, params);
+        if (snapshot == null) {
+            release.run();
+            return;
+        }
+        admit(snapshot, ticket, release, false);
+    }
+
+    /**
+     * Hands the test to the sampler. A sampler that holds tests and runs them on its own thread gets
+     * a task that submits the test to a generator, the async generator of the tester or the shared one.
+     * Tasks the sampler or the generator drop release the bytes of the captures.
+     *
+     * @param onGenerator the caller already runs on a generator thread
+     */
+    private void admit(List<MethodCapture> snapshot, Object ticket, Runnable release, boolean onGenerator) {
+        final Sampler testSampler = getSampler();
+        final AsyncTestGenerator generator;
+        if (testSampler.defersGeneration()) {
+            generator = asyncGenerator != null ? asyncGenerator : DeferredGeneration.GENERATOR;
+        } else {
+            generator = onGenerator ? null : asyncGenerator;
+        }
+        final GenerationTask generation = GenerationTask.of(() -> handleCapturedData(snapshot, release), release);
+        if (generator == null) {
+            testSampler.admit(generation, ticket);
+            return;
+        }
+        testSampler.admit(GenerationTask.of(() -> {
+            if (!generator.submit(generation)) {
+                onDropped();
+            }
+        }, release), ticket);
+    }
+
+    /**
+     * Adds the capture of the testee call to the dependency captures.
+     *
+     * @return immutable captures of the invocation, null if the testable method is not annotated
+     */
+    private List<MethodCapture> captureTest(List<MethodCapture> capturedData, Object result, Throwable exception, Object[] params) {
         Method testMethod = getTestableMethod();
         if (testMethod == null) {
             System.out.println("Please annotate testable method with @Testee");
-            return;
+            return null;
         }
-        List<MethodCapture> capturedData = MethodCapture.collectFrom(handlers);
-        capturedData.add(MethodCapture.builder()
+        MethodCapture testCapture = MethodCapture.builder()
                 .method(testMethod)
                 .type(MethodCapture.Type.TEST)
-                .arguments(params)
+                .arguments(params == null ? null : params.clone())
                 .result(result)
                 .exception(exception)
-                .build());
+                .build();
+        final TesterMetrics testerMetrics = metrics;
+        if (snapshotMode) {
+            final long start = testerMetrics == null ? 0 : System.nanoTime();
+            testCapture = SnapshotCodec.snapshot(testCapture);
+            if (testerMetrics != null) {
+                testerMetrics.onSnapshot(System.nanoTime() - start, SnapshotCodec.encodedSize(testCapture));
+                testerMetrics.onSnapshotFailures(SnapshotCodec.unencodableCount(testCapture));
+            }
+        }
+        if (testerMetrics != null) {
+            testerMetrics.onCapture();
+        }
+        capturedData.add(testCapture);
+        return Collections.unmodifiableList(capturedData);
+    }
+
+    private Sampler getSampler() {
+        if (sampler == null) {
+            sampler = annotationSampler();
+        }
+        return sampler;
+    }
+
+    private Sampler annotationSampler() {
+        Method testMethod = getTestableMethod();
+        if (testMethod == null) {
+            return Sampler.always();
+        }
+        return ANNOTATION_SAMPLERS.computeIfAbsent(testClass.getName() + "#" + qualifier,
+                key -> Sampler.of(testMethod.getAnnotation(Testee.class)));
+    }
+
+    /**
+     * @param release releases the bytes of the captures, run by {@link TestConstructor#release()}
+     *                once the test is written or dropped
+     */
+    private void handleCapturedData(List<MethodCapture> capturedData, Runnable release) {
+        final TesterMetrics testerMetrics = metrics;
+        if (duplicateFilter != null && duplicateFilter.isDuplicate(CaptureFingerprint.of(capturedData))) {
+            if (testerMetrics != null) {
+                testerMetrics.onDropped();
+            }
+            release.run();
+            return;
+        }
+        if (journal != null) {
+            try {
+                journal.append(testClass, qualifier, capturedData);
+            } finally {
+                release.run();
+            }
+            return;
+        }
+        final TestConstructor testConstructor;
+        try {
+            ConstructorConfiguration constructorConfig = getConstructorConfiguration();
+            testConstructor = new ReleasingTestConstructor(getTestConstructor(capturedData, constructorConfig), release);
+        } catch (RuntimeException e) {
+            release.run();
+            throw e;
+        }
+        if (sink != null && testHandler == null) {
+            // the sink renders the test on its own thread
+            sink.accept(testClass, qualifier, testConstructor);
+            return;
+        }
+        try {
+            if (testerMetrics == null) {
+                renderTest(testConstructor);
+                return;
+            }
+            LegacyTesterMetrics.takeJsonNanos();
+            final long start = System.nanoTime();
+            try {
+                renderTest(testConstructor);
+            } finally {
+                final long jsonNanos = LegacyTesterMetrics.takeJsonNanos();
+                testerMetrics.onGeneration(jsonNanos, System.nanoTime() - start - jsonNanos);
+            }
+        } finally {
+            // the handler has taken the test
+            testConstructor.release();
+        }
+    }
 
-        ConstructorConfiguration constructorConfig = getConstructorConfiguration();
-        TestConstructor testConstructor = getTestConstructor(capturedData, constructorConfig);
+    private void renderTest(TestConstructor testConstructor) {
         if (testHandler != null) {
             testHandler.accept(testConstructor);
             return;
         }
         // default
-        String testText = testConstructor.construct();
-        printGeneratedTest(testText);
+        printGeneratedTest(testConstructor);
     }
 
     private TestConstructor getTestConstructor(List<MethodCapture> capturedData,
@@ -150,38 +701,42 @@ public class LegacyTester {
     }
 
     private ConstructorConfiguration getConstructorConfiguration() {
-        if (constructorConfigSupplier != null) {
-            return constructorConfigSupplier.get();
-        } else {
-            return ConstructorConfiguration.defaultConfig();
+        ConstructorConfiguration constructorConfig = constructorConfigSupplier != null
+                ? constructorConfigSupplier.get()
+                : ConstructorConfiguration.defaultConfig();
+        if (renderCache != null && constructorConfig.getRenderCache() == null) {
+            return constructorConfig.withRenderCache(renderCache);
         }
+        return constructorConfig;
     }
 
     private Method getTestableMethod() {
-        for (Method method : testClass.getDeclaredMethods()) {
-            if (!containAnnotation(method, Testee.class)) {
-                continue;
-            }
-            Testee testeeAnnotation = method.getAnnotation(Testee.class);
-            if (testeeAnnotation.qualifier().equals(qualifier)) {
-                return method;
-            }
-        }
-        return null;
+        return getTesteeMethod(testClass, qualifier);
     }
 
+    /**
+     * Removes dependency invocations recorded so far in the current testee invocation of this tester.
+     */
     public void clearInvocations() {
-        handlers.values().forEach(FieldInvocationHandler::clearCapturedInvocations);
+        CaptureContext context = CaptureContext.current(this);
+        if (context != null) {
+            context.clear();
+        }
     }
 
-    private void printGeneratedTest(String test) {
-        String header =
-                "//================================================================//\n" +
-                        "//======================== GENERATED TEST ========================//\n" +
-                        "//================================================================//\n";
-        String footer =
-                "//////////////////////////////// END ///////////////////////////////\n";
-        System.out.println(header + test + "\n" + footer);
+    private void printGeneratedTest(TestConstructor testConstructor) {
+        StringBuilder text = new StringBuilder(4096)
+                .append("//================================================================//\n")
+                .append("//======================== GENERATED TEST ========================//\n")
+                .append("//================================================================//\n");
+        try {
+            testConstructor.construct(text);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        text.append("\n").append("//////////////////////////////// END ///////////////////////////////\n");
+        System.out.println(text);
     }
 
     /**
@@ -206,7 +761,9 @@ public class LegacyTester {
      *     }
      * }</pre>
      *
-     * @param target          proxy target .class
+     * The proxy implementation is chosen by {@link #proxyBackend(ProxyBackend)}.
+     *
+     * @param target          proxy target .class, an interface or with {@link ProxyBackend#CGLIB} a class
      * @param handler         invocation handler LegacyTesterProxy
      * @param otherInterfaces another interfaces for implementation
      * @param <T>
@@ -215,7 +772,11 @@ public class LegacyTester {
     @SuppressWarnings("unchecked")
     public <T> T fieldProxy(Class<? extends T> target, InvocationHandler handler, Class<?>... otherInterfaces) {
         FieldInvocationHandler invocationHandler = (FieldInvocationHandler) handler;
-        handlers.put(invocationHandler.getFieldName(), invocationHandler);
+        invocationHandler.setTester(this);
+        handlers.put(String.valueOf(invocationHandler.getFieldName()), invocationHandler);
+        if (proxyBackend == ProxyBackend.CGLIB || !target.isInterface()) {
+            return (T) DependencyProxyFactory.create(target, otherInterfaces, invocationHandler);
+        }
         Class<?>[] allInterfaces =
                 Stream.concat(Stream.of(target), Stream.of(otherInterfaces))
                         .distinct()
@@ -225,17 +786,64 @@ public class LegacyTester {
 
     /**
      * Creates a CGLib proxy instance for the test class.
+     * Testee methods of the tester qualifier are captured, other methods are dispatched
+     * to the bean without reflection. The proxy class is generated once per bean class and qualifier.
      *
      * @param bean   target bean
      * @param tester LegacyTester object
      * @return proxy instance
      */
     public static Object classProxy(Object bean, LegacyTester tester) {
-        Enhancer enhancer = new Enhancer();
-        enhancer.setSuperclass(bean.getClass());
-        Callback saveCallback = new MethodInvocationInterceptor(bean, tester);
-        Callback[] callbacks = new Callback[]{saveCallback};
-        enhancer.setCallbacks(callbacks);
-        return enhancer.create();
+        return ClassProxyFactory.create(bean, tester);
+    }
+
+    /**
+     * Test constructor that releases the bytes of its captures along with the test.
+     */
+    private static final class ReleasingTestConstructor implements TestConstructor {
+        private final TestConstructor delegate;
+        private final Runnable release;
+
+        private ReleasingTestConstructor(TestConstructor delegate, Runnable release) {
+            this.delegate = delegate;
+            this.release = release;
+        }
+
+        @Override
+        public String construct() {
+            return delegate.construct();
+        }
+
+        @Override
+        public void construct(Appendable out) throws IOException {
+            delegate.construct(out);
+        }
+
+        @Override
+        public void construct(Appendable out, ImportTable imports) throws IOException {
+            delegate.construct(out, imports);
+        }
+
+        @Override
+        public Set<String> imports() {
+            return delegate.imports();
+        }
+
+        @Override
+        public void release() {
+            try {
+                delegate.release();
+            } finally {
+                release.run();
+            }
+        }
+    }
+
+    /**
+     * Generates deferred tests of testers without an async generator, off the thread that completed the results
+     * or the thread of a sampler holding tests.
+     */
+    private static final class DeferredGeneration {
+        private static final AsyncTestGenerator GENERATOR = AsyncTestGenerator.builder().build();
     }
 }
@@ -85,6 +85,10 @@ public class MethodCapture {
                 .findFirst().orElse(null);
     }
 
+    /**
+     * @deprecated captures are recorded into {@link CaptureContext} of the testee invocation
+     */
+    @Deprecated
     public static List<MethodCapture> collectFrom(Map<String, FieldInvocationHandler> handlers) {
         List<MethodCapture> capturedData = new ArrayList<>();
         for (Map.Entry<String, FieldInvocationHandler> entry : handlers.entrySet()) {
@@ -115,6 +119,7 @@ public class MethodCapture {
         private Object[] arguments;
         private Object result;
         private Throwable exception;
+        private String fieldName;
 
         MethodCaptureBuilder() {
         }
@@ -144,8 +149,14 @@ public class MethodCapture {
             return this;
         }
 
+        public MethodCaptureBuilder fieldName(String fieldName) {
+            this.fieldName = fieldName;
+            return this;
+        }
+
         public MethodCapture build() {
-            return new MethodCapture(method, type, arguments, result, exception);
+            return new MethodCapture(method, type, arguments, result, exception)
+                    .setFieldName(fieldName);
         }
 
         public String toString() {
@@ -153,7 +164,8 @@ public class MethodCapture {
                     ", type=" + this.type +
                     ", arguments=" + Arrays.deepToString(this.arguments) +
                     ", result=" + this.result +
-                    ", exception=" + this.exception + ")";
+                    ", exception=" + this.exception +
+                    ", fieldName=" + this.fieldName + ")";
         }
     }
 }
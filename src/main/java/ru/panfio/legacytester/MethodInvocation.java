@@ -7,10 +7,15 @@ import java.util.function.Function;
 
 import static ru.panfio.legacytester.util.ReflectionUtils.getParameterNames;
 
+/**
+ * Calls of one affected method. Arguments are kept in columns, one list of passed values per parameter.
+ */
 public class MethodInvocation {
     private final Method method;
     private final String fieldName;
     Map<String, List<Object>> arguments = new LinkedHashMap<>();
+    private List<List<Object>> columns;
+    private int invocations;
 
     public MethodInvocation(Method method, String field) {
         this.method = method;
@@ -25,6 +30,25 @@ public class MethodInvocation {
         }
     }
 
+    /**
+     * Adds the arguments of one call to the columns.
+     */
+    private void addCall(Object[] passed) {
+        if (columns == null) {
+            List<String> parameterNames = getParameterNames(method);
+            columns = new ArrayList<>(parameterNames.size());
+            for (String parameterName : parameterNames) {
+                List<Object> column = new ArrayList<>();
+                columns.add(column);
+                arguments.put(parameterName, column);
+            }
+        }
+        for (int index = 0; index < passed.length; index++) {
+            columns.get(index).add(passed[index]);
+        }
+        invocations++;
+    }
+
     public Method getMethod() {
         return method;
     }
@@ -38,7 +62,7 @@ public class MethodInvocation {
     }
 
     public Class argumentType(String argumentName) {
-        return arguments.get(argumentName).get(0).getClass();
+        return CapturedValue.typeOf(arguments.get(argumentName).get(0));
     }
 
     public String getFieldName() {
@@ -66,6 +90,9 @@ public class MethodInvocation {
     }
 
     public int invocationCount() {
+        if (invocations > 0) {
+            return invocations;
+        }
         for (String argumentName : arguments.keySet()) {
             List<Object> passedParameters = arguments.get(argumentName);
             return passedParameters.size();
@@ -73,51 +100,20 @@ public class MethodInvocation {
         return 0;
     }
 
+    /**
+     * Groups affected calls by method in the order of the first call, in a single pass over the captures.
+     */
     public static List<MethodInvocation> of(List<MethodCapture> affected) {
-        List<MethodInvocation> methodInvocations = new ArrayList<>();
+        Map<Method, MethodInvocation> methodInvocations = new LinkedHashMap<>();
         for (MethodCapture methodCapture : affected) {
-            if (isaMethodInvocationsContainMethod(methodInvocations, methodCapture)) {
-                addToExistingInvocation(methodInvocations, methodCapture);
-            } else {
-                addNewInvocation(methodInvocations, methodCapture);
+            MethodInvocation methodInvocation = methodInvocations.get(methodCapture.getMethod());
+            if (methodInvocation == null) {
+                methodInvocation = new MethodInvocation(methodCapture.getMethod(), methodCapture.getFieldName());
+                methodInvocations.put(methodCapture.getMethod(), methodInvocation);
             }
+            methodInvocation.addCall(methodCapture.getArguments());
         }
-        return methodInvocations;
-    }
-
-    private static void addNewInvocation(List<MethodInvocation> methodInvocations,
-                                         MethodCapture methodCapture) {
-        Method method = methodCapture.getMethod();
-        MethodInvocation methodInvocation = new MethodInvocation(method, methodCapture.getFieldName());
-        addInvocation(methodCapture, methodInvocation);
-        methodInvocations.add(methodInvocation);
-    }
-
-    private static void addToExistingInvocation(List<MethodInvocation> methodInvocations,
-                                                MethodCapture methodCapture) {
-        Method method = methodCapture.getMethod();
-        methodInvocations.stream()
-                .filter(methodInvocation -> methodInvocation.getMethod().equals(method))
-                .findFirst()
-                .ifPresent(methodInvocation -> addInvocation(methodCapture, methodInvocation));
-    }
-
-    private static boolean isaMethodInvocationsContainMethod(List<MethodInvocation> methodInvocations,
-                                                             MethodCapture capture) {
-        return methodInvocations.stream()
-                .anyMatch(methodInvocation -> methodInvocation.getMethod().equals(capture.getMethod()));
-    }
-
-    /**
-     * Mutates MethodInvocation object!
-     */
-    private static void addInvocation(MethodCapture capture, MethodInvocation methodInvocation) {
-        Method method = capture.getMethod();
-        List<String> parameterNames = getParameterNames(method);
-        Object[] arguments = capture.getArguments();
-        for (int index = 0; index < arguments.length; index++) {
-            methodInvocation.addInvocation(parameterNames.get(index), arguments[index]);
-        }
+        return new ArrayList<>(methodInvocations.values());
     }
 
     @Override
@@ -0,0 +1,19 @@
+package ru.panfio.legacytester;
+
+/**
+ * Implementation of dependency proxies created by {@link LegacyTester#fieldProxy}.
+ */
+public enum ProxyBackend {
+    /**
+     * {@link java.lang.reflect.Proxy} calling the target through reflection, interfaces only.
+     * {@code equals}, {@code hashCode} and {@code toString} are passed to the target without capture.
+     */
+    JDK,
+    /**
+     * CGLib class generated per dependency type and affected methods. The capture type of each method
+     * is fixed when the class is generated, calls reach the target without reflection,
+     * {@code equals}, {@code hashCode} and {@code toString} are passed to the target without capture.
+     * Supports concrete classes.
+     */
+    CGLIB
+}
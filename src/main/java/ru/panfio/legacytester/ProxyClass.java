@@ -0,0 +1,75 @@
+package ru.panfio.legacytester;
+
+import net.sf.cglib.proxy.Callback;
+import net.sf.cglib.proxy.Enhancer;
+import net.sf.cglib.proxy.Factory;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * CGLib proxy class generated once and instantiated with callbacks of each proxy.
+ * A class proxy is allocated without running a constructor of the proxied class, the way
+ * serialization does, so constructors with side effects or argument checks are never called by the tester.
+ */
+final class ProxyClass {
+    // sun.reflect.ReflectionFactory is looked up reflectively, it's not part of the public API
+    private static final Object REFLECTION_FACTORY;
+    private static final Method NEW_CONSTRUCTOR_FOR_SERIALIZATION;
+
+    static {
+        Object factory = null;
+        Method method = null;
+        try {
+            Class<?> type = Class.forName("sun.reflect.ReflectionFactory");
+            factory = type.getMethod("getReflectionFactory").invoke(null);
+            method = type.getMethod("newConstructorForSerialization", Class.class, Constructor.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            e.printStackTrace();
+        }
+        REFLECTION_FACTORY = factory;
+        NEW_CONSTRUCTOR_FOR_SERIALIZATION = method;
+    }
+
+    private final Constructor<?> constructor;
+
+    private ProxyClass(Constructor<?> constructor) {
+        this.constructor = constructor;
+    }
+
+    /**
+     * Generates the proxy class of an enhancer configured with callback types, not callbacks.
+     *
+     * @param superclass proxied class, null for an interface proxy
+     */
+    static ProxyClass generate(Enhancer enhancer, Class<?> superclass) {
+        enhancer.setUseFactory(true);
+        Class<?> type = enhancer.createClass();
+        try {
+            if (superclass == null) {
+                return new ProxyClass(type.getDeclaredConstructor());
+            }
+            if (NEW_CONSTRUCTOR_FOR_SERIALIZATION == null) {
+                throw new IllegalArgumentException("Can't allocate a proxy of " + superclass.getName()
+                        + " without its constructor on this JVM");
+            }
+            // only the Object constructor runs, proxies dispatch to the target
+            Constructor<?> constructor = (Constructor<?>) NEW_CONSTRUCTOR_FOR_SERIALIZATION.invoke(REFLECTION_FACTORY,
+                    type, Object.class.getDeclaredConstructor());
+            return new ProxyClass(constructor);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Can't allocate a proxy of " + type.getName(), e);
+        }
+    }
+
+    Object newInstance(Callback[] callbacks) {
+        try {
+            Factory proxy = (Factory) constructor.newInstance();
+            proxy.setCallbacks(callbacks);
+            return proxy;
+        } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("Can't instantiate proxy " + constructor.getDeclaringClass().getName(), e);
+        }
+    }
+}
@@ -23,4 +23,16 @@ public @interface Testee {
      * Contain methods for capturing dependency invocations.
      */
     String[] affectedMethods() default "";
+
+    /**
+     * Share of captured calls of the annotated method from 0 to 1.
+     * Used when the tester has no explicit sampler.
+     */
+    double sampleRate() default 1;
+
+    /**
+     * Maximum number of captured calls of the annotated method per second, 0 means unlimited.
+     * Takes precedence over {@link #sampleRate()}.
+     */
+    int samplesPerSecond() default 0;
 }
\ No newline at end of file
@@ -0,0 +1,67 @@
+package ru.panfio.legacytester;
+
+import ru.panfio.legacytester.util.SizeEstimator;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Stands for a captured value that did not fit into the {@link CaptureBudget}.
+ * Keeps only the type, the size of a collection and the estimated retained bytes.
+ */
+public final class ValueSummary implements CapturedValue {
+    private final Class<?> type;
+    private final int size;
+    private final long estimatedBytes;
+
+    private ValueSummary(Class<?> type, int size, long estimatedBytes) {
+        this.type = type;
+        this.size = size;
+        this.estimatedBytes = estimatedBytes;
+    }
+
+    static Object of(Object value) {
+        if (value == null || value instanceof ValueSummary) {
+            return value;
+        }
+        int size = -1;
+        if (value instanceof Collection) {
+            size = ((Collection<?>) value).size();
+        } else if (value instanceof Map) {
+            size = ((Map<?, ?>) value).size();
+        }
+        return new ValueSummary(value.getClass(), size, SizeEstimator.estimate(value));
+    }
+
+    /**
+     * Restores a summary, e.g. read from a capture journal.
+     */
+    public static ValueSummary restore(Class<?> type, int size, long estimatedBytes) {
+        return new ValueSummary(type, size, estimatedBytes);
+    }
+
+    @Override
+    public Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * @return element count of a collection or a map, -1 for other values
+     */
+    public int getSize() {
+        return size;
+    }
+
+    public long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "ValueSummary{" +
+                "type=" + type.getTypeName() +
+                (size >= 0 ? ", size=" + size : "") +
+                ", estimatedBytes=" + estimatedBytes +
+                '}';
+    }
+}
@@ -0,0 +1,320 @@
+package ru.panfio.legacytester.async;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs test generation off the caller thread.
+ * Captured data is handed over through a bounded queue to a dedicated pool of worker threads,
+ * so a testee call pays only for the hand-off.
+ * <pre>{@code
+ *    AsyncTestGenerator generator = AsyncTestGenerator.builder()
+ *                 .queueCapacity(256)
+ *                 .workers(2)
+ *                 .overflowPolicy(OverflowPolicy.DROP_OLDEST)
+ *                 .build();
+ *    LegacyTester tester = new LegacyTester(MyTestClass.class).async(generator);
+ * }</pre>
+ * One generator can be shared between several testers. Workers of all generators run on one pool
+ * of daemon threads, and generators draining on exit share one shutdown hook. {@link #close()} drains
+ * the queue and leaves the hook, so short-lived generators don't pile up threads or hooks.
+ */
+public class AsyncTestGenerator implements AutoCloseable {
+    private static final AtomicInteger WORKER_COUNTER = new AtomicInteger();
+    private static final ExecutorService WORKERS = Executors.newCachedThreadPool(task -> {
+        Thread worker = new Thread(task, "legacytester-generator-" + WORKER_COUNTER.incrementAndGet());
+        worker.setDaemon(true);
+        return worker;
+    });
+    // wakes up a worker waiting for a task once the generator stops accepting them
+    private static final Runnable WAKE_UP = () -> {
+    };
+
+    private final BlockingQueue<Runnable> queue;
+    private final OverflowPolicy overflowPolicy;
+    private final long blockTimeoutNanos;
+    private final boolean drainOnExit;
+    private final long drainTimeoutMillis;
+    private final List<Future<?>> workers = new ArrayList<>();
+    private final Set<Thread> workerThreads = ConcurrentHashMap.newKeySet();
+    private final CountDownLatch stopped;
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private volatile boolean accepting = true;
+
+    AsyncTestGenerator(int queueCapacity, int workerCount, OverflowPolicy overflowPolicy,
+                       long blockTimeoutNanos, boolean drainOnExit, long drainTimeoutMillis) {
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.overflowPolicy = overflowPolicy;
+        this.blockTimeoutNanos = blockTimeoutNanos;
+        this.drainOnExit = drainOnExit;
+        this.drainTimeoutMillis = drainTimeoutMillis;
+        this.stopped = new CountDownLatch(workerCount);
+        for (int index = 0; index < workerCount; index++) {
+            workers.add(WORKERS.submit(this::work));
+        }
+        if (drainOnExit) {
+            ExitDrain.register(this);
+        }
+    }
+
+    public static AsyncTestGeneratorBuilder builder() {
+        return new AsyncTestGeneratorBuilder();
+    }
+
+    /**
+     * Hands the generation task over to the workers.
+     *
+     * A {@link GenerationTask} the generator won't run, rejected, evicted or left queued by a forced shutdown,
+     * is dropped.
+     *
+     * @param task generation task, must work on an immutable snapshot of captured data
+     * @return false if the task was rejected
+     */
+    public boolean submit(Runnable task) {
+        if (!accepting) {
+            dropped.increment();
+            GenerationTask.drop(task);
+            return false;
+        }
+        boolean accepted;
+        switch (overflowPolicy) {
+            case DROP_OLDEST:
+                accepted = offerEvictingOldest(task);
+                break;
+            case BLOCK:
+                accepted = offerWithTimeout(task);
+                break;
+            case DROP_NEWEST:
+            default:
+                accepted = queue.offer(task);
+        }
+        if (accepted) {
+            submitted.increment();
+        } else {
+            dropped.increment();
+            GenerationTask.drop(task);
+        }
+        return accepted;
+    }
+
+    private boolean offerEvictingOldest(Runnable task) {
+        while (!queue.offer(task)) {
+            final Runnable evicted = queue.poll();
+            if (evicted != null) {
+                dropped.increment();
+                GenerationTask.drop(evicted);
+            }
+        }
+        return true;
+    }
+
+    private boolean offerWithTimeout(Runnable task) {
+        try {
+            return queue.offer(task, blockTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void work() {
+        workerThreads.add(Thread.currentThread());
+        try {
+            while (true) {
+                // blocks while accepting, drains the rest of the queue after
+                final Runnable task = accepting ? queue.take() : queue.poll();
+                if (task == null) {
+                    // passes the wake-up on to a worker that checked for new tasks before they stopped
+                    queue.offer(WAKE_UP);
+                    return;
+                }
+                try {
+                    task.run();
+                } catch (Throwable e) {
+                    failed.increment();
+                    e.printStackTrace();
+                }
+            }
+        } catch (InterruptedException e) {
+            // interrupted by a forced shutdown
+        } finally {
+            workerThreads.remove(Thread.currentThread());
+            stopped.countDown();
+        }
+    }
+
+    private void stopAccepting() {
+        accepting = false;
+        // a full queue has no waiting workers, the first one to drain it wakes up the others
+        queue.offer(WAKE_UP);
+    }
+
+    /**
+     * Stops accepting new tasks and waits until already queued tasks are processed.
+     * Workers still busy after the timeout are interrupted.
+     *
+     * @return true if the queue was drained within the timeout
+     */
+    public boolean shutdown(long timeout, TimeUnit unit) {
+        if (drainOnExit) {
+            ExitDrain.unregister(this);
+        }
+        stopAccepting();
+        if (workerThreads.contains(Thread.currentThread())) {
+            // called by a task, its worker can't be awaited
+            return false;
+        }
+        boolean drained;
+        try {
+            drained = stopped.await(timeout, unit);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            drained = false;
+        }
+        if (!drained) {
+            workers.forEach(worker -> worker.cancel(true));
+            for (Runnable task = queue.poll(); task != null; task = queue.poll()) {
+                GenerationTask.drop(task);
+            }
+        }
+        return drained;
+    }
+
+    /**
+     * Shuts the generator down with its drain timeout.
+     */
+    @Override
+    public void close() {
+        shutdown(drainTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public boolean isAccepting() {
+        return accepting;
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public long getSubmittedCount() {
+        return submitted.sum();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    /**
+     * The shutdown hook shared by generators draining on exit.
+     */
+    private static final class ExitDrain {
+        private static final Set<AsyncTestGenerator> GENERATORS = ConcurrentHashMap.newKeySet();
+
+        static {
+            Runtime.getRuntime().addShutdownHook(new Thread(ExitDrain::drain, "legacytester-generator-drain"));
+        }
+
+        private ExitDrain() {
+            throw new RuntimeException("Utility class");
+        }
+
+        static void register(AsyncTestGenerator generator) {
+            GENERATORS.add(generator);
+        }
+
+        static void unregister(AsyncTestGenerator generator) {
+            GENERATORS.remove(generator);
+        }
+
+        private static void drain() {
+            final List<AsyncTestGenerator> generators = new ArrayList<>(GENERATORS);
+            // all queues are drained at once, each generator is awaited up to its drain timeout
+            generators.forEach(AsyncTestGenerator::stopAccepting);
+            generators.forEach(AsyncTestGenerator::close);
+        }
+    }
+
+    public static class AsyncTestGeneratorBuilder {
+        private static final int DEFAULT_QUEUE_CAPACITY = 1024;
+        private static final int DEFAULT_WORKERS = 1;
+        private static final long DEFAULT_BLOCK_TIMEOUT_MILLIS = 10;
+        private static final long DEFAULT_DRAIN_TIMEOUT_MILLIS = 5000;
+
+        private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+        private int workers = DEFAULT_WORKERS;
+        private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_NEWEST;
+        private long blockTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_BLOCK_TIMEOUT_MILLIS);
+        private boolean drainOnExit = true;
+        private long drainTimeoutMillis = DEFAULT_DRAIN_TIMEOUT_MILLIS;
+
+        AsyncTestGeneratorBuilder() {
+        }
+
+        public AsyncTestGenerator build() {
+            if (queueCapacity <= 0 || workers <= 0) {
+                throw new IllegalArgumentException("Queue capacity and workers count must be positive");
+            }
+            return new AsyncTestGenerator(queueCapacity, workers, overflowPolicy,
+                    blockTimeoutNanos, drainOnExit, drainTimeoutMillis);
+        }
+
+        public AsyncTestGeneratorBuilder queueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        public AsyncTestGeneratorBuilder workers(int workers) {
+            this.workers = workers;
+            return this;
+        }
+
+        public AsyncTestGeneratorBuilder overflowPolicy(OverflowPolicy overflowPolicy) {
+            this.overflowPolicy = overflowPolicy;
+            return this;
+        }
+
+        /**
+         * Maximum time a caller waits for a free slot with {@link OverflowPolicy#BLOCK}.
+         */
+        public AsyncTestGeneratorBuilder blockTimeout(long timeout, TimeUnit unit) {
+            this.blockTimeoutNanos = unit.toNanos(timeout);
+            return this;
+        }
+
+        /**
+         * Drains the queue when the JVM exits, unless the generator was shut down before.
+         */
+        public AsyncTestGeneratorBuilder drainOnExit(boolean drainOnExit) {
+            this.drainOnExit = drainOnExit;
+            return this;
+        }
+
+        public AsyncTestGeneratorBuilder drainTimeout(long timeout, TimeUnit unit) {
+            this.drainTimeoutMillis = unit.toMillis(timeout);
+            return this;
+        }
+
+        public String toString() {
+            return "AsyncTestGenerator.AsyncTestGeneratorBuilder(queueCapacity=" + this.queueCapacity +
+                    ", workers=" + this.workers +
+                    ", overflowPolicy=" + this.overflowPolicy + ")";
+        }
+    }
+}
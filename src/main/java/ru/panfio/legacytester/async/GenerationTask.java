@@ -0,0 +1,40 @@
+package ru.panfio.legacytester.async;
+
+/**
+ * Generation task holding captured data until the test is generated.
+ * Queues and samplers that discard a task without running it call {@link #drop()},
+ * so the task can release what it holds, e.g. the bytes charged to the capture budget of its tester.
+ */
+public interface GenerationTask extends Runnable {
+    /**
+     * Called instead of {@link #run()} when the task is discarded.
+     */
+    void drop();
+
+    static GenerationTask of(Runnable generation, Runnable onDropped) {
+        return new GenerationTask() {
+            @Override
+            public void run() {
+                generation.run();
+            }
+
+            @Override
+            public void drop() {
+                onDropped.run();
+            }
+        };
+    }
+
+    /**
+     * Drops the task if it's a generation task, other tasks hold nothing to release.
+     */
+    static void drop(Runnable task) {
+        if (task instanceof GenerationTask) {
+            try {
+                ((GenerationTask) task).drop();
+            } catch (Throwable e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
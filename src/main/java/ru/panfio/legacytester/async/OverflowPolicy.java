@@ -0,0 +1,19 @@
+package ru.panfio.legacytester.async;
+
+/**
+ * Defines what happens with a generation task when the hand-off queue is full.
+ */
+public enum OverflowPolicy {
+    /**
+     * The new task is rejected, already queued tasks are kept.
+     */
+    DROP_NEWEST,
+    /**
+     * The oldest queued task is evicted to make room for the new one.
+     */
+    DROP_OLDEST,
+    /**
+     * The caller waits for a free slot up to the configured timeout, then the new task is rejected.
+     */
+    BLOCK
+}
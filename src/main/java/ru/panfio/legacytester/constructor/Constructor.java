@@ -1,35 +1,53 @@
 package ru.panfio.legacytester.constructor;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
+import ru.panfio.legacytester.AsyncResult;
 import ru.panfio.legacytester.MethodCapture;
+import ru.panfio.legacytester.ValueSummary;
+import ru.panfio.legacytester.fixture.FixtureStore;
+import ru.panfio.legacytester.metrics.LegacyTesterMetrics;
+import ru.panfio.legacytester.snapshot.ValueSnapshot;
 import ru.panfio.legacytester.util.JsonUtils;
+import ru.panfio.legacytester.util.ResourceUtils;
 import ru.panfio.legacytester.util.SerializableUtils;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.Parameter;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Base64;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
-import static ru.panfio.legacytester.util.JsonUtils.toJson;
 import static ru.panfio.legacytester.util.ReflectionUtils.*;
-import static ru.panfio.legacytester.util.SerializableUtils.serializeToString;
 
 /**
  * Class contains common functionality for all Test Constructors.
+ * Sections of a test are written straight into an {@link Appendable}.
  */
 public class Constructor {
     private static final List<String> TYPES_FOR_SERIALIZATION = new ArrayList<>(Arrays.asList("java.lang.String",
             "byte", "short", "int", "long", "float", "double", "boolean", "char",
             "byte[]", "short[]", "int[]", "long[]", "float[]", "double[]", "boolean[]", "char[]"));
+    private static final String ASYNC_VALUE_SUFFIX = "Value";
     private final Class<?> testClass;
     private final ConstructorConfiguration conf;
     private final MethodCapture testMethodCapture;
+    private final ValueRenderer values;
+    private final List<String> fixtureResources = new ArrayList<>();
 
     public Constructor(Class<?> testClass,
                        ConstructorConfiguration conf,
@@ -37,6 +55,7 @@ public class Constructor {
         this.testClass = testClass;
         this.conf = conf;
         this.testMethodCapture = testMethodCapture;
+        this.values = new ValueRenderer(conf.getRenderCache());
     }
 
     protected static boolean isIsaSerializableType(String type) {
@@ -44,103 +63,402 @@ public class Constructor {
     }
 
     protected String generateThrowsDeclaration() {
+        if (isCompletedAsyncResult()) {
+            return " throws NoSuchFieldException, IllegalAccessException, NoSuchMethodException, java.lang.reflect.InvocationTargetException, " +
+                    "java.util.concurrent.ExecutionException, InterruptedException ";
+        }
         return " throws NoSuchFieldException, IllegalAccessException, NoSuchMethodException, java.lang.reflect.InvocationTargetException ";
     }
 
+    /**
+     * @deprecated use {@link #writeTestAnnotation(Appendable)}, which doesn't build an intermediate string
+     */
+    @Deprecated
     protected String generateTestAnnotation() {
-        return conf.getSignatureSpace() + "@Test\n";
+        return render(this::writeTestAnnotation);
+    }
+
+    protected void writeTestAnnotation(Appendable out) throws IOException {
+        out.append(conf.getSignatureSpace()).append("@Test\n");
     }
 
+    /**
+     * @deprecated use {@link #writeTestMethodName(Appendable)}, which doesn't build an intermediate string
+     */
+    @Deprecated
     protected String generateTestMethodName() {
+        return render(this::writeTestMethodName);
+    }
+
+    protected void writeTestMethodName(Appendable out) throws IOException {
         String methodName = conf.getTestMethodNameGenerator().apply(testMethodCapture.getMethod());
-        return conf.getSignatureSpace() + "public void " + methodName + "()" + generateThrowsDeclaration() + "{\n";
+        out.append(conf.getSignatureSpace()).append("public void ").append(methodName).append("()")
+                .append(generateThrowsDeclaration()).append("{\n");
     }
 
+    /**
+     * @deprecated use {@link #writeCloseBracket(Appendable)}, which doesn't build an intermediate string
+     */
+    @Deprecated
     protected String generateCloseBracket() {
-        return conf.getSignatureSpace() + "}";
+        return render(this::writeCloseBracket);
     }
 
+    protected void writeCloseBracket(Appendable out) throws IOException {
+        out.append(conf.getSignatureSpace()).append("}");
+    }
+
+    /**
+     * @deprecated use {@link #writeClassCreation(Appendable)}, which doesn't build an intermediate string
+     */
+    @Deprecated
     protected String generateClassCreation() {
+        return render(this::writeClassCreation);
+    }
+
+    protected void writeClassCreation(Appendable out) throws IOException {
         final String constructorArguments = repeatArguments(getConstructorArguments(testClass), "null");
-        return conf.getBodySpace() + "//Please create a test class manually if necessary\n" +
-                conf.getBodySpace() + conf.type(testClass) + " testClass = new " + conf.type(testClass) + "(" + constructorArguments + ");\n";
+        final String type = conf.type(testClass);
+        out.append(conf.getBodySpace()).append("//Please create a test class manually if necessary\n")
+                .append(conf.getBodySpace()).append(type).append(" testClass = new ").append(type)
+                .append("(").append(constructorArguments).append(");\n");
     }
 
+    /**
+     * @deprecated use {@link #writeInputParams(Appendable)}, which doesn't build an intermediate string
+     */
+    @Deprecated
     protected String generateInputParams() {
+        return render(this::writeInputParams);
+    }
+
+    protected void writeInputParams(Appendable out) throws IOException {
         Object[] params = testMethodCapture.getArguments();
         List<Parameter> parameters = getMethodParameters(testMethodCapture.getMethod());
         if (parameters.isEmpty()) {
-            return "";
+            return;
         }
-
-        StringBuilder inputData = new StringBuilder();
         for (int index = 0; index < params.length; index++) {
             Parameter parameter = parameters.get(index);
-            final String name = parameter.getName();
-            String param = generateObjectSerialization(params[index], name, conf.type(parameter));
-            inputData.append(param);
+            writeObjectSerialization(out, params[index], parameter.getName(), conf.type(parameter));
         }
-        return inputData.toString();
     }
 
     protected String generateObjectSerialization(Object value, String name, String type) {
+        return render(out -> writeObjectSerialization(out, value, name, type));
+    }
+
+    /**
+     * Writes a variable declaration initialized with the captured value.
+     * JSON of the value is streamed into the string literal without building intermediate strings.
+     */
+    protected void writeObjectSerialization(Appendable out, Object value, String name, String type) throws IOException {
+        if (value instanceof ValueSummary) {
+            out.append(conf.getBodySpace()).append("//Value is not captured because of the capture budget: ")
+                    .append(value.toString()).append("\n")
+                    .append(conf.getBodySpace()).append(type).append(" ").append(name).append(" = null;\n");
+            return;
+        }
+        if (value instanceof ValueSnapshot && !((ValueSnapshot) value).isReplayable()) {
+            out.append(conf.getBodySpace()).append("//Value could not be snapshotted: ")
+                    .append(commentLineBreaks(value.toString())).append("\n")
+                    .append(conf.getBodySpace()).append(type).append(" ").append(name).append(" = null;\n");
+            return;
+        }
         if (isIsaSerializableType(type) && Serializable.class.isAssignableFrom(value.getClass())) {
-            String serVal = serializeToString((Serializable) value);
-            return conf.getBodySpace() + "//Original value: " + commentLineBreaks(value.toString()) + "\n" +
-                    conf.getBodySpace() + type + " " + name + " = (" + type + ") " + conf.type(SerializableUtils.class) + ".serializeFromString(\"" + serVal + "\");\n";
+            writeOriginalValueComment(out, value.toString());
+            out.append(conf.getBodySpace()).append(type).append(" ").append(name).append(" = (").append(type).append(") ")
+                    .append(conf.type(SerializableUtils.class));
+            writeSerialized(out, value, () -> SerializableUtils.serialize((Serializable) value), name);
+            out.append(";\n");
+            return;
         }
-        final String jsonValue = toJson(value);
-        return conf.getBodySpace() + type + " " + name + " = " + conf.type(JsonUtils.class) + ".parse(\"" + escapeQuotes(jsonValue) + "\", new " + conf.type(TypeReference.class) + "<" + type + ">() {});\n";
+        out.append(conf.getBodySpace()).append(type).append(" ").append(name).append(" = ")
+                .append(conf.type(JsonUtils.class));
+        writeJson(out, value, name);
+        out.append(", new ").append(conf.type(TypeReference.class)).append("<").append(type).append(">() {});\n");
     }
 
+    /**
+     * Writes a variable declaration initialized with a future completed the same way as the captured async result.
+     *
+     * @param returnType declared type of the async result
+     */
+    protected void writeAsyncResultCreation(Appendable out, AsyncResult async, String name, Type returnType) throws IOException {
+        final Class<?> rawType = rawType(returnType);
+        if (rawType == null || !rawType.isAssignableFrom(CompletableFuture.class)) {
+            out.append(conf.getBodySpace()).append("//").append(async.getType().getTypeName())
+                    .append(" can't be created, please create it manually\n")
+                    .append(conf.getBodySpace()).append(conf.type(returnType)).append(" ").append(name).append(" = null;\n");
+            return;
+        }
+        final String future = conf.type(CompletableFuture.class);
+        final String valueType = conf.type(asyncValueType(returnType));
+        if (!async.isDone()) {
+            out.append(conf.getBodySpace()).append("//Was not completed when the test was generated\n")
+                    .append(conf.getBodySpace()).append(future).append("<").append(valueType).append("> ").append(name)
+                    .append(" = new ").append(future).append("<>();\n");
+            return;
+        }
+        if (async.getException() != null) {
+            out.append(conf.getBodySpace()).append(future).append("<").append(valueType).append("> ").append(name)
+                    .append(" = new ").append(future).append("<>();\n")
+                    .append(conf.getBodySpace()).append(name).append(".completeExceptionally(");
+            writeExceptionCreation(out, async.getException(), name + "Exception");
+            out.append(");\n");
+            return;
+        }
+        final String valueName = name + ASYNC_VALUE_SUFFIX;
+        if (async.getValue() == null) {
+            out.append(conf.getBodySpace()).append(valueType).append(" ").append(valueName).append(" = null;\n");
+        } else {
+            writeObjectSerialization(out, async.getValue(), valueName, valueType);
+        }
+        out.append(conf.getBodySpace()).append(future).append("<").append(valueType).append("> ").append(name)
+                .append(" = ").append(future).append(".completedFuture(").append(valueName).append(");\n");
+    }
+
+    /**
+     * Writes the deserialization of the exception, a runtime exception with its message if it's not serializable.
+     */
+    private void writeExceptionCreation(Appendable out, Throwable exception, String name) throws IOException {
+        final byte[] data = SerializableUtils.serialize(exception);
+        if (data == null) {
+            out.append("new RuntimeException(\"").append(escapeQuotes(commentLineBreaks(exception.toString()))).append("\")");
+            return;
+        }
+        out.append("(Throwable) ").append(conf.type(SerializableUtils.class));
+        writeSerialized(out, exception, () -> data, name);
+    }
+
+    /**
+     * @return type of the value of a future or a completion stage, Object if it's unknown
+     */
+    private static Type asyncValueType(Type type) {
+        if (type instanceof ParameterizedType) {
+            final Type[] arguments = ((ParameterizedType) type).getActualTypeArguments();
+            if (arguments.length == 1 && (arguments[0] instanceof Class || arguments[0] instanceof ParameterizedType)) {
+                return arguments[0];
+            }
+        }
+        return Object.class;
+    }
+
+    private static Class<?> rawType(Type type) {
+        if (type instanceof Class) {
+            return (Class<?>) type;
+        }
+        if (type instanceof ParameterizedType) {
+            return (Class<?>) ((ParameterizedType) type).getRawType();
+        }
+        return null;
+    }
+
+    private void writeOriginalValueComment(Appendable out, String text) throws IOException {
+        final FixtureStore fixtures = conf.getFixtureStore();
+        out.append(conf.getBodySpace());
+        if (fixtures != null && text.length() > fixtures.getThresholdChars()) {
+            out.append("//Original value (first ").append(String.valueOf(fixtures.getThresholdChars())).append(" of ")
+                    .append(String.valueOf(text.length())).append(" chars): ")
+                    .append(commentLineBreaks(text.substring(0, fixtures.getThresholdChars()))).append("\n");
+            return;
+        }
+        out.append("//Original value: ").append(commentLineBreaks(text)).append("\n");
+    }
+
+    /**
+     * Writes the deserialization call of the value, a Base64 literal or a fixture file above the threshold.
+     * Only the Base64 form is cached, the fixture is resolved on each use.
+     */
+    private void writeSerialized(Appendable out, Object value, Supplier<byte[]> serialization, String name) throws IOException {
+        final StringBuilder base64 = new StringBuilder();
+        final boolean serialized = values.write(base64, RenderCache.Form.SERIALIZED, value, literal -> {
+            final byte[] data = serialization.get();
+            if (data == null) {
+                return false;
+            }
+            literal.append(Base64.getEncoder().encodeToString(data));
+            return true;
+        });
+        final FixtureStore fixtures = conf.getFixtureStore();
+        if (serialized && fixtures != null && base64.length() > fixtures.getThresholdChars()) {
+            FixtureStore.Fixture fixture = fixtures.create(testClass.getSimpleName(), name, "ser");
+            fixture.write(Base64.getDecoder().decode(base64.toString()));
+            out.append(".deserializeResource(\"").append(handOut(fixture)).append("\")");
+            return;
+        }
+        out.append(".serializeFromString(\"").append(serialized ? base64 : null).append("\")");
+    }
+
+    /**
+     * Writes the parse call of the value: JSON rendered into memory, or into a fixture file once it grows
+     * past the threshold. Nothing is written until the value is serialized completely, a value that fails
+     * to serialize gets an empty literal and its fixture file is deleted. Only the JSON is cached,
+     * the fixture is resolved on each use.
+     */
+    private void writeJson(Appendable out, Object value, String name) throws IOException {
+        final FixtureStore fixtures = conf.getFixtureStore();
+        if (fixtures == null) {
+            final StringBuilder json = new StringBuilder();
+            if (!values.write(json, RenderCache.Form.JSON, value, rendering -> writeJson(rendering, value))) {
+                json.setLength(0);
+            }
+            out.append(".parse(\"");
+            new QuoteEscapingWriter(out).append(json);
+            out.append('"');
+            return;
+        }
+        final SpillingWriter json = new SpillingWriter(fixtures, testClass.getSimpleName(), name, "json");
+        boolean written = false;
+        try {
+            written = values.write(json, RenderCache.Form.JSON, value, rendering -> writeJson(rendering, value));
+        } finally {
+            if (!written) {
+                json.discard();
+            }
+            json.close();
+        }
+        if (json.getFixture() != null) {
+            out.append(".parseResource(\"").append(handOut(json.getFixture())).append('"');
+            return;
+        }
+        out.append(".parse(\"");
+        new QuoteEscapingWriter(out).append(json.getText());
+        out.append('"');
+    }
 
+    /**
+     * @return false if the value is not serializable, the output holds a part of its JSON then
+     */
+    private static boolean writeJson(Appendable out, Object value) throws IOException {
+        final long start = System.nanoTime();
+        try {
+            if (value instanceof ValueSnapshot) {
+                ((ValueSnapshot) value).writeJson(out);
+            } else {
+                JsonUtils.writeJson(value, out);
+            }
+            return true;
+        } catch (JsonProcessingException e) {
+            // the literal stays empty as with toJson
+            return false;
+        } finally {
+            LegacyTesterMetrics.addJsonNanos(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Writes a string literal of the text, or the loading of a fixture file above the threshold.
+     */
+    private void writeText(Appendable out, String text, String name) throws IOException {
+        final FixtureStore fixtures = conf.getFixtureStore();
+        if (fixtures == null || text.length() <= fixtures.getThresholdChars()) {
+            out.append('"');
+            new QuoteEscapingWriter(out).append(text);
+            out.append('"');
+            return;
+        }
+        final SpillingWriter file = new SpillingWriter(fixtures, testClass.getSimpleName(), name, "txt");
+        boolean written = false;
+        try {
+            file.append(text);
+            written = true;
+        } finally {
+            if (!written) {
+                file.discard();
+            }
+            file.close();
+        }
+        out.append(conf.type(ResourceUtils.class)).append(".readString(\"").append(handOut(file.getFixture()))
+                .append("\")");
+    }
+
+    /**
+     * @return resource name of the fixture the test refers to, released with {@link #releaseFixtures()}
+     */
+    private String handOut(FixtureStore.Fixture fixture) {
+        fixtureResources.add(fixture.getResource());
+        return fixture.getResource();
+    }
+
+    /**
+     * Releases fixtures handed out for the tests written so far, once they are written or dropped.
+     */
+    void releaseFixtures() {
+        final FixtureStore fixtures = conf.getFixtureStore();
+        if (fixtures != null) {
+            fixtureResources.forEach(fixtures::release);
+        }
+        fixtureResources.clear();
+    }
+
+    /**
+     * @return toString of a captured value, computed once per equal value
+     */
+    protected String valueToString(Object value) {
+        return values.toString(value);
+    }
+
+    /**
+     * @deprecated use {@link #writeTestMethodInvocation(Appendable)}, which doesn't build an intermediate string
+     */
+    @Deprecated
     protected String generateTestMethodInvocation() {
+        return render(this::writeTestMethodInvocation);
+    }
+
+    protected void writeTestMethodInvocation(Appendable out) throws IOException {
         if (Modifier.isPrivate(testMethodCapture.getMethod().getModifiers())) {
-            return privateMethodInvocation();
+            writePrivateMethodInvocation(out);
+            return;
         }
-        return publicMethodInvocation();
+        writePublicMethodInvocation(out);
     }
 
-    private String publicMethodInvocation() {
+    private void writePublicMethodInvocation(Appendable out) throws IOException {
         Method testMethod = testMethodCapture.getMethod();
         String methodName = testMethod.getName();
-        String returnType = conf.type(testMethod);
         String params = generateArguments(testMethod);
         if (testMethodCapture.getException() != null) {
             String exceptionType = testMethodCapture.getException().getClass().getTypeName();
-            return conf.getBodySpace() + conf.getAssertion() + ".assertThrows(" + exceptionType + ".class, () -> testClass." + testMethodCapture.getMethod().getName() + "(" + params + "));\n";
+            out.append(conf.getBodySpace()).append(conf.getAssertion()).append(".assertThrows(").append(exceptionType)
+                    .append(".class, () -> testClass.").append(methodName).append("(").append(params).append("));\n");
+            return;
         }
-        if (isVoidReturnType()) {
-            return conf.getBodySpace() + "testClass." + methodName + "(" + params + ");\n";
+        out.append(conf.getBodySpace());
+        if (!isVoidReturnType()) {
+            out.append(conf.type(testMethod)).append(" result = ");
         }
-        return conf.getBodySpace() + returnType + " result = testClass." + methodName + "(" + params + ");\n";
+        out.append("testClass.").append(methodName).append("(").append(params).append(");\n");
     }
 
-    private String privateMethodInvocation() {
+    private void writePrivateMethodInvocation(Appendable out) throws IOException {
         Method testMethod = testMethodCapture.getMethod();
         String methodName = testMethod.getName();
-        String returnType = conf.type(testMethod);
         String params = generateArguments(testMethod);
-        final String parameterClasses = generateParameterClasses(testMethod);
-        String methodConfiguration = setMethodAccessible(methodName, parameterClasses);
         if (testMethodCapture.getException() != null) {
             String exceptionType = testMethodCapture.getException().getClass().getTypeName();
-            return methodConfiguration + conf.getBodySpace() + conf.getAssertion() + ".assertThrows(" + exceptionType + ".class, () -> {try{" + testMethodCapture.getMethod().getName() + ".invoke(testClass, " + params + ");} catch (" + conf.type(InvocationTargetException.class)+ " e) {throw e.getCause();}});\n";
+            writeSetMethodAccessible(out, methodName, generateParameterClasses(testMethod));
+            out.append(conf.getBodySpace()).append(conf.getAssertion()).append(".assertThrows(").append(exceptionType)
+                    .append(".class, () -> {try{").append(methodName).append(".invoke(testClass, ").append(params)
+                    .append(");} catch (").append(conf.type(InvocationTargetException.class)).append(" e) {throw e.getCause();}});\n");
+            return;
         }
         if (isVoidReturnType()) {
-            return conf.getBodySpace() + "testClass." + methodName + "(" + params + ");\n";
+            out.append(conf.getBodySpace()).append("testClass.").append(methodName).append("(").append(params).append(");\n");
+            return;
         }
-        return methodConfiguration + invokePrivateMethod(returnType + " result = (" + returnType + ") ", methodName, params);
-    }
-
-    private String setMethodAccessible(String methodName, String parameterClasses) {
-        return conf.getBodySpace() + conf.type(Method.class) + " " + methodName + " = testClass.getClass().getDeclaredMethod(\"" + methodName + "\", " + parameterClasses + ");\n" +
-                conf.getBodySpace() + methodName + ".setAccessible(true);\n";
-
+        String returnType = conf.type(testMethod);
+        writeSetMethodAccessible(out, methodName, generateParameterClasses(testMethod));
+        out.append(conf.getBodySpace()).append(returnType).append(" result = (").append(returnType).append(") ")
+                .append(methodName).append(".invoke(testClass, ").append(params).append(");\n");
     }
 
-    private String invokePrivateMethod(String result, String methodName, String params) {
-        return conf.getBodySpace() + result + methodName + ".invoke(testClass, " + params + ");\n";
+    private void writeSetMethodAccessible(Appendable out, String methodName, String parameterClasses) throws IOException {
+        out.append(conf.getBodySpace()).append(conf.type(Method.class)).append(" ").append(methodName)
+                .append(" = testClass.getClass().getDeclaredMethod(\"").append(methodName).append("\", ")
+                .append(parameterClasses).append(");\n")
+                .append(conf.getBodySpace()).append(methodName).append(".setAccessible(true);\n");
     }
 
     private String generateParameterClasses(Method method) {
@@ -151,18 +469,39 @@ public class Constructor {
                 .collect(Collectors.joining(", "));
     }
 
+    /**
+     * @deprecated use {@link #writeResultToString(Appendable)}, which doesn't build an intermediate string
+     */
+    @Deprecated
     protected String generateResultToString() {
+        return render(this::writeResultToString);
+    }
+
+    protected void writeResultToString(Appendable out) throws IOException {
         if (testMethodCapture.getException() != null) {
-            return "";
+            return;
         }
         Object expectedResult = testMethodCapture.getResult();
         if (isVoidReturnType()) {
-            return "";
+            return;
+        }
+        if (expectedResult instanceof AsyncResult) {
+            final AsyncResult async = (AsyncResult) expectedResult;
+            if (!async.isDone()) {
+                out.append(conf.getBodySpace()).append("//Result was not completed when the test was generated\n");
+                return;
+            }
+            expectedResult = async.getValue();
+            if (async.getException() != null) {
+                return;
+            }
         }
+        out.append(conf.getBodySpace()).append("String expectedResult = ");
         if (expectedResult == null) {
-            return conf.getBodySpace() + "String expectedResult = " + null + ";\n";
+            out.append("null;\n");
         } else {
-            return conf.getBodySpace() + "String expectedResult = \"" + escapeQuotes(expectedResult.toString()) + "\";\n";
+            writeText(out, values.toString(expectedResult), "expectedResult");
+            out.append(";\n");
         }
     }
 
@@ -170,19 +509,74 @@ public class Constructor {
         return "void".equals(testMethodCapture.getMethod().getGenericReturnType().getTypeName());
     }
 
+    /**
+     * @deprecated use {@link #writeAssertions(Appendable)}, which doesn't build an intermediate string
+     */
+    @Deprecated
     protected String generateAssertions() {
+        return render(this::writeAssertions);
+    }
+
+    protected void writeAssertions(Appendable out) throws IOException {
         final Throwable exception = testMethodCapture.getException();
         if (exception == null) {
-            return generateResultAssertToString();
+            writeResultAssertToString(out);
         }
-        return "";
     }
 
+    /**
+     * @deprecated use {@link #writeResultAssertToString(Appendable)}, which doesn't build an intermediate string
+     */
+    @Deprecated
     protected String generateResultAssertToString() {
+        return render(this::writeResultAssertToString);
+    }
+
+    protected void writeResultAssertToString(Appendable out) throws IOException {
         if (isVoidReturnType()) {
-            return "";
+            return;
         }
-        return conf.getBodySpace() + conf.getAssertion() + ".assertEquals(expectedResult, result.toString());\n";
+        final Object result = testMethodCapture.getResult();
+        if (result instanceof AsyncResult) {
+            writeAsyncResultAssert(out, (AsyncResult) result);
+            return;
+        }
+        out.append(conf.getBodySpace()).append(conf.getAssertion()).append(".assertEquals(expectedResult, result.toString());\n");
+    }
+
+    private void writeAsyncResultAssert(Appendable out, AsyncResult async) throws IOException {
+        if (!async.isDone()) {
+            return;
+        }
+        final Class<?> returnType = testMethodCapture.getMethod().getReturnType();
+        final String value = Future.class.isAssignableFrom(returnType) || !CompletionStage.class.isAssignableFrom(returnType)
+                ? "result.get()"
+                : "result.toCompletableFuture().get()";
+        if (async.getException() != null) {
+            out.append(conf.getBodySpace()).append(conf.getAssertion())
+                    .append(".assertThrows(java.util.concurrent.ExecutionException.class, () -> ").append(value).append(");\n");
+            return;
+        }
+        out.append(conf.getBodySpace()).append(conf.getAssertion()).append(".assertEquals(expectedResult, ")
+                .append(value).append(".toString());\n");
+    }
+
+    private boolean isCompletedAsyncResult() {
+        return testMethodCapture.getResult() instanceof AsyncResult && ((AsyncResult) testMethodCapture.getResult()).isDone();
+    }
+
+    private static String render(Writing writing) {
+        StringBuilder text = new StringBuilder();
+        try {
+            writing.write(text);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return text.toString();
+    }
+
+    private interface Writing {
+        void write(Appendable out) throws IOException;
     }
 
     protected static String repeatArguments(int count, String argumentName) {
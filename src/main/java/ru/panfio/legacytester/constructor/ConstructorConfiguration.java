@@ -1,9 +1,12 @@
 package ru.panfio.legacytester.constructor;
 
+import ru.panfio.legacytester.fixture.FixtureStore;
+
 import java.lang.reflect.Method;
 import java.lang.reflect.Parameter;
-import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Set;
 import java.util.function.Function;
 
 public class ConstructorConfiguration {
@@ -21,12 +24,18 @@ public class ConstructorConfiguration {
     private final String signatureSpace;
     private final String testAnnotation;
     private final Function<Method, String> testMethodNameGenerator;
+    private final ImportTable importTable;
+    private final TypeRenderer typeRenderer;
+    private final RenderCache renderCache;
+    private final FixtureStore fixtureStore;
+    private final int maxInlinedInvocations;
 
     ConstructorConfiguration(boolean isVerbose, String assertion, String argumentCaptor, String bodySpace,
                              String aptorVariableSuffix, String aptorExpectedResultVariableSuffix,
                              String aptorResultVariableSuffix, String mockito, String ockFieldVariableSuffix,
                              String ockParameterVariableSuffix, String ockResultVariableSuffix,
-                             String signatureSpace, String testAnnotation, Function<Method, String> testMethodNameGenerator) {
+                             String signatureSpace, String testAnnotation, Function<Method, String> testMethodNameGenerator,
+                             RenderCache renderCache, FixtureStore fixtureStore, int maxInlinedInvocations) {
         this.isVerbose = isVerbose;
         this.assertion = assertion;
         this.argumentCaptor = argumentCaptor;
@@ -41,6 +50,49 @@ public class ConstructorConfiguration {
         this.signatureSpace = signatureSpace;
         this.testAnnotation = testAnnotation;
         this.testMethodNameGenerator = testMethodNameGenerator;
+        this.importTable = new ImportTable();
+        this.typeRenderer = bind(importTable);
+        this.renderCache = renderCache;
+        this.fixtureStore = fixtureStore;
+        this.maxInlinedInvocations = maxInlinedInvocations;
+    }
+
+    private ConstructorConfiguration(ConstructorConfiguration source, ImportTable importTable, RenderCache renderCache) {
+        this.isVerbose = source.isVerbose;
+        this.assertion = source.assertion;
+        this.argumentCaptor = source.argumentCaptor;
+        this.bodySpace = source.bodySpace;
+        this.captorVariableSuffix = source.captorVariableSuffix;
+        this.captorExpectedResultVariableSuffix = source.captorExpectedResultVariableSuffix;
+        this.captorResultVariableSuffix = source.captorResultVariableSuffix;
+        this.mockito = source.mockito;
+        this.mockFieldVariableSuffix = source.mockFieldVariableSuffix;
+        this.mockParameterVariableSuffix = source.mockParameterVariableSuffix;
+        this.mockResultVariableSuffix = source.mockResultVariableSuffix;
+        this.signatureSpace = source.signatureSpace;
+        this.testAnnotation = source.testAnnotation;
+        this.testMethodNameGenerator = source.testMethodNameGenerator;
+        this.importTable = importTable;
+        this.typeRenderer = importTable == source.importTable ? source.typeRenderer : bind(importTable);
+        this.renderCache = renderCache;
+        this.fixtureStore = source.fixtureStore;
+        this.maxInlinedInvocations = source.maxInlinedInvocations;
+    }
+
+    /**
+     * Reserves names the test templates write literally and creates the renderer of type names.
+     */
+    private TypeRenderer bind(ImportTable imports) {
+        imports.reference(testAnnotation);
+        imports.reference(List.class.getName());
+        imports.reference(String.class.getName());
+        if (isVerbose) {
+            return new TypeRenderer(null);
+        }
+        imports.reference(assertion);
+        imports.reference(mockito);
+        imports.reference(argumentCaptor);
+        return new TypeRenderer(imports);
     }
 
     public static ConstructorConfigurationBuilder builder() {
@@ -51,29 +103,74 @@ public class ConstructorConfiguration {
         return new ConstructorConfigurationBuilder().build();
     }
 
-    private String isVerboseType(String type) {
-        return isVerbose ? type : unVerbose(type);
+    /**
+     * @return true if types are written with fully qualified names
+     */
+    public boolean isVerbose() {
+        return isVerbose;
+    }
+
+    /**
+     * @return the same configuration writing type names through the import table, e.g. of a test class
+     * assembled from several tests
+     */
+    public ConstructorConfiguration withImportTable(ImportTable importTable) {
+        return new ConstructorConfiguration(this, importTable, renderCache);
+    }
+
+    /**
+     * @return the same configuration rendering captured values through the cache shared between tests
+     */
+    public ConstructorConfiguration withRenderCache(RenderCache renderCache) {
+        return new ConstructorConfiguration(this, importTable, renderCache);
+    }
+
+    /**
+     * @return store of values too large for string literals, null if all values are inlined
+     */
+    public FixtureStore getFixtureStore() {
+        return fixtureStore;
+    }
+
+    /**
+     * @return calls of an affected method verified value by value, more calls are verified by a digest
+     */
+    public int getMaxInlinedInvocations() {
+        return maxInlinedInvocations;
+    }
+
+    /**
+     * @return cache of rendered values shared between tests, null if values are cached per test only
+     */
+    public RenderCache getRenderCache() {
+        return renderCache;
+    }
+
+    /**
+     * @return fully qualified names of classes the tests refer to by simple names
+     */
+    public Set<String> getImports() {
+        return importTable.getImports();
+    }
+
+    public String type(Type type) {
+        return typeRenderer.render(type);
     }
 
     public String type(Class<?> target) {
-        return isVerboseType(target.getTypeName());
+        return typeRenderer.render(target);
     }
 
     public String type(Parameter parameter) {
-        return isVerboseType(parameter.getParameterizedType().getTypeName());
+        return typeRenderer.render(parameter.getParameterizedType());
     }
 
     public String type(Method method) {
-        Type type = method.getGenericReturnType();
-        if (type instanceof ParameterizedType) {
-            return isVerboseType(type.getTypeName());
-        } else {
-            return type(type.getClass());
-        }
+        return typeRenderer.render(method.getGenericReturnType());
     }
 
     public String getArgumentCaptor() {
-        return isVerboseType(argumentCaptor);
+        return typeRenderer.reference(argumentCaptor);
     }
 
     public String getCaptorVariableSuffix() {
@@ -105,11 +202,11 @@ public class ConstructorConfiguration {
     }
 
     public String getAssertion() {
-        return isVerboseType(assertion);
+        return typeRenderer.reference(assertion);
     }
 
     public String getMockito() {
-        return isVerboseType(mockito);
+        return typeRenderer.reference(mockito);
     }
 
     public String getBodySpace() {
@@ -124,18 +221,6 @@ public class ConstructorConfiguration {
         return testMethodNameGenerator;
     }
 
-    private String unVerbose(String typeName) {
-        String result = "";
-        boolean isVerbose = false;
-        for (int i = typeName.length() - 1; i > 0; i--) {
-            char c = typeName.charAt(i);
-            if (c == '.') isVerbose = true;
-            if (c == '<' || c == '>' || c == ' ' || c == '?') isVerbose = false;
-            if (!isVerbose) result += typeName.charAt(i);
-        }
-        return new StringBuilder(result).reverse().toString();
-    }
-
     public static class ConstructorConfigurationBuilder {
         private static final String DEFAULT_SPACE_BEFORE_METHOD_SIGNATURE = "    ";
         private static final String DEFAULT_SPACE_BEFORE_METHOD_BODY = "        ";
@@ -150,6 +235,7 @@ public class ConstructorConfiguration {
         private static final String CAPTOR_VARIABLE_SUFFIX = "Captor";
         private static final String CAPTOR_RESULT_VARIABLE_SUFFIX = "Result";
         private static final String CAPTOR_EXPECTED_RESULT_VARIABLE_SUFFIX = "ExpectedResult";
+        private static final int MAX_INLINED_INVOCATIONS = 100;
         private static final Function<Method, String> TEST_METHOD_NAME_GENERATOR = (method) -> method.getName() + TEST_METHOD_NAME_SUFFIX + (int) (Math.random() * 100000);
 
         private boolean isVerbose = false;
@@ -166,6 +252,9 @@ public class ConstructorConfiguration {
         private String signatureSpace = DEFAULT_SPACE_BEFORE_METHOD_SIGNATURE;
         private String testAnnotation = TEST_ANNOTATION_CLASS;
         private Function<Method, String> testMethodNameGenerator = TEST_METHOD_NAME_GENERATOR;
+        private RenderCache renderCache;
+        private FixtureStore fixtureStore;
+        private int maxInlinedInvocations = MAX_INLINED_INVOCATIONS;
 
         ConstructorConfigurationBuilder() {
         }
@@ -175,7 +264,7 @@ public class ConstructorConfiguration {
                     captorVariableSuffix, captorExpectedResultVariableSuffix,
                     captorResultVariableSuffix, mockito, mockFieldVariableSuffix,
                     mockParameterVariableSuffix, mockResultVariableSuffix,
-                    signatureSpace, testAnnotation, testMethodNameGenerator);
+                    signatureSpace, testAnnotation, testMethodNameGenerator, renderCache, fixtureStore, maxInlinedInvocations);
         }
 
         public String toString() {
@@ -252,6 +341,31 @@ public class ConstructorConfiguration {
             return this;
         }
 
+        /**
+         * @param renderCache cache of rendered values shared between the tests built with the configuration
+         */
+        public ConstructorConfigurationBuilder renderCache(RenderCache renderCache) {
+            this.renderCache = renderCache;
+            return this;
+        }
+
+        /**
+         * @param fixtureStore store that takes values above its threshold out of the test source into resource files
+         */
+        public ConstructorConfigurationBuilder fixtureStore(FixtureStore fixtureStore) {
+            this.fixtureStore = fixtureStore;
+            return this;
+        }
+
+        /**
+         * @param maxInlinedInvocations calls of an affected method above which the test verifies
+         *                              a digest of the arguments instead of every value
+         */
+        public ConstructorConfigurationBuilder maxInlinedInvocations(int maxInlinedInvocations) {
+            this.maxInlinedInvocations = maxInlinedInvocations;
+            return this;
+        }
+
         public ConstructorConfigurationBuilder testAnnotationClass(Class<?> testAnnotationClass) {
             this.testAnnotation = testAnnotationClass.getTypeName();
             return this;
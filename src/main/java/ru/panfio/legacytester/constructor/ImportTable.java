@@ -0,0 +1,63 @@
+package ru.panfio.legacytester.constructor;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Imports of one generated class. A class is referred to by its simple name while the name
+ * is free or taken by the same class, otherwise by its qualified name, so simple names never clash.
+ * Classes of {@code java.lang} and of the class package take their simple names without imports.
+ */
+public final class ImportTable {
+    private static final String JAVA_LANG = "java.lang";
+
+    private final String packageName;
+    private final Map<String, String> qualifiedNames = new HashMap<>();
+    private final Set<String> imports = new TreeSet<>();
+
+    public ImportTable() {
+        this("");
+    }
+
+    /**
+     * @param packageName package of the generated class
+     */
+    public ImportTable(String packageName) {
+        this.packageName = packageName;
+    }
+
+    /**
+     * @param qualifiedName qualified name of a top-level class
+     * @return name the generated code refers to the class by
+     */
+    public synchronized String reference(String qualifiedName) {
+        final int lastDot = qualifiedName.lastIndexOf('.');
+        if (lastDot < 0) {
+            return qualifiedName;
+        }
+        final String simpleName = qualifiedName.substring(lastDot + 1);
+        final String bound = qualifiedNames.putIfAbsent(simpleName, qualifiedName);
+        if (bound == null) {
+            final String classPackage = qualifiedName.substring(0, lastDot);
+            if (!JAVA_LANG.equals(classPackage) && !packageName.equals(classPackage)) {
+                imports.add(qualifiedName);
+            }
+            return simpleName;
+        }
+        return bound.equals(qualifiedName) ? simpleName : qualifiedName;
+    }
+
+    public String getPackageName() {
+        return packageName;
+    }
+
+    /**
+     * @return sorted qualified names to import
+     */
+    public synchronized Set<String> getImports() {
+        return Collections.unmodifiableSet(new TreeSet<>(imports));
+    }
+}
@@ -1,23 +1,41 @@
 package ru.panfio.legacytester.constructor;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import ru.panfio.legacytester.AsyncResult;
+import ru.panfio.legacytester.CapturedValue;
 import ru.panfio.legacytester.MethodCapture;
 import ru.panfio.legacytester.MethodInvocation;
+import ru.panfio.legacytester.util.ArgumentDigest;
+import ru.panfio.legacytester.util.JsonUtils;
+import ru.panfio.legacytester.util.SerializableUtils;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
 import java.lang.reflect.Parameter;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 import static ru.panfio.legacytester.util.ReflectionUtils.*;
 
 public class MockTestConstructor implements TestConstructor {
+    private static final String DIGEST_VARIABLE_SUFFIX = "Digest";
+    private static final int PREVIEW_CALLS = 3;
+    private static final int PREVIEW_CHARS = 100;
+
     private final Class<?> testClass;
     private final ConstructorConfiguration conf;
     private final List<MethodCapture> capturedData;
     private final Constructor constructor;
+    private final List<MockTestConstructor> importingTests = new ArrayList<>();
+    private List<MethodInvocation> affectedInvocations;
 
     public MockTestConstructor(Class<?> testClass,
                                ConstructorConfiguration conf,
@@ -30,184 +48,327 @@ public class MockTestConstructor implements TestConstructor {
 
     @Override
     public String construct() {
-        return new StringBuilder()
-                .append(constructor.generateTestAnnotation())
-                .append(constructor.generateTestMethodName())
-                .append(constructor.generateClassCreation())
-                .append("\n")
-                .append(createDependencyMocks())
-                .append(Comment.GIVEN.text(conf.getBodySpace()))
-                .append(constructor.generateInputParams())
-                .append("\n")
-                .append(generateMockDependencyInvocation())
-                .append("\n")
-                .append(Comment.WHEN.text(conf.getBodySpace()))
-                .append(constructor.generateTestMethodInvocation())
-                .append("\n")
-                .append(Comment.THEN.text(conf.getBodySpace()))
-                .append(generateMockMethodInvocationChecks())
-                .append("\n")
-                .append(constructor.generateResultToString())
-                .append(constructor.generateAssertions())
-                .append(constructor.generateCloseBracket())
-                .toString();
-    }
-
-    private String createDependencyMocks() {
-        return getClassFields(testClass).stream()
-                .filter(this::isaFieldNeededAProxy)
-                .map(this::createMockString)
-                .collect(Collectors.joining());
-    }
-
-    private boolean isaFieldNeededAProxy(Field field) {
-        final String typeName = field.getType().getTypeName();
-        if (Modifier.isStatic(field.getModifiers()) || "ru.panfio.legacytester.LegacyTester".equals(typeName)) {
-            return false;
-        }
-        return true;
-    }
-
-    private String createMockString(Field field) {
+        StringBuilder test = new StringBuilder(4096);
+        try {
+            construct(test);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return test.toString();
+    }
+
+    @Override
+    public void construct(Appendable out) throws IOException {
+        constructor.writeTestAnnotation(out);
+        constructor.writeTestMethodName(out);
+        constructor.writeClassCreation(out);
+        out.append("\n");
+        writeDependencyMocks(out);
+        out.append(Comment.GIVEN.text(conf.getBodySpace()));
+        constructor.writeInputParams(out);
+        out.append("\n");
+        writeMockDependencyInvocation(out);
+        writeDigestAnswers(out);
+        out.append("\n");
+        out.append(Comment.WHEN.text(conf.getBodySpace()));
+        constructor.writeTestMethodInvocation(out);
+        out.append("\n");
+        out.append(Comment.THEN.text(conf.getBodySpace()));
+        writeMockMethodInvocationChecks(out);
+        out.append("\n");
+        constructor.writeResultToString(out);
+        constructor.writeAssertions(out);
+        constructor.writeCloseBracket(out);
+    }
+
+    /**
+     * Writes the test with type names of the shared import table.
+     */
+    @Override
+    public void construct(Appendable out, ImportTable imports) throws IOException {
+        MockTestConstructor test = new MockTestConstructor(testClass, conf.withImportTable(imports), capturedData);
+        importingTests.add(test);
+        test.construct(out);
+    }
+
+    @Override
+    public void release() {
+        constructor.releaseFixtures();
+        importingTests.forEach(MockTestConstructor::release);
+        importingTests.clear();
+    }
+
+    @Override
+    public Set<String> imports() {
+        for (Class<?> type : new Class<?>[]{testClass, JsonUtils.class, TypeReference.class, SerializableUtils.class,
+                Field.class, Method.class, InvocationTargetException.class}) {
+            conf.type(type);
+        }
+        for (Field field : getProxyableFields(testClass)) {
+            conf.type(field.getType());
+        }
+        for (MethodInvocation methodInvocation : affectedInvocations()) {
+            if (isDigested(methodInvocation)) {
+                conf.type(ArgumentDigest.class);
+            }
+        }
+        for (MethodCapture capture : capturedData) {
+            Method method = capture.getMethod();
+            for (Parameter parameter : getMethodParameters(method)) {
+                conf.type(parameter);
+            }
+            conf.type(method);
+            if (capture.getResult() instanceof AsyncResult) {
+                conf.type(CompletableFuture.class);
+            }
+            if (capture.getType() == MethodCapture.Type.AFFECT && capture.getArguments() != null) {
+                for (Object argument : capture.getArguments()) {
+                    if (argument != null) {
+                        conf.type(CapturedValue.typeOf(argument));
+                    }
+                }
+            }
+        }
+        return conf.getImports();
+    }
+
+    private void writeDependencyMocks(Appendable out) throws IOException {
         if (capturedData.size() == 1) {
             // no field proxy data and mock is redundant
-            return "";
+            return;
         }
+        for (Field field : getProxyableFields(testClass)) {
+            writeMockCreation(out, field);
+        }
+    }
+
+    private void writeMockCreation(Appendable out, Field field) throws IOException {
         final String typeName = conf.type(field.getType());
         final String fieldName = field.getName();
         final String fieldVariable = fieldName + conf.getMockFieldVariableSuffix();
-        return mockCreation(typeName, fieldName, fieldVariable);
+        out.append(conf.getBodySpace()).append(typeName).append(" ").append(fieldName).append(" = ")
+                .append(conf.getMockito()).append(".mock(").append(typeName).append(".class);\n")
+                .append(conf.getBodySpace()).append(conf.type(Field.class)).append(" ").append(fieldVariable)
+                .append(" = testClass.getClass().getDeclaredField(\"").append(fieldName).append("\");\n")
+                .append(conf.getBodySpace()).append(fieldVariable).append(".setAccessible(true);\n")
+                .append(conf.getBodySpace()).append(fieldVariable).append(".set(testClass, ").append(fieldName).append(");\n");
     }
 
-    private String mockCreation(String typeName, String fieldName, String fieldVariable) {
-        return conf.getBodySpace() + typeName + " " + fieldName + " = " + conf.getMockito() + ".mock(" + typeName + ".class);\n" +
-                conf.getBodySpace() + conf.type(Field.class) + " " + fieldVariable + " = testClass.getClass().getDeclaredField(\"" + fieldName + "\");\n" +
-                conf.getBodySpace() + fieldVariable + ".setAccessible(true);\n" +
-                conf.getBodySpace() + fieldVariable + ".set(testClass, " + fieldName + ");\n";
-    }
-
-    private String generateMockDependencyInvocation() {
+    private void writeMockDependencyInvocation(Appendable out) throws IOException {
         List<MethodCapture> dependenciesInvocations = MethodCapture.dependenciesInvocations(capturedData);
-        StringBuilder mocksInvocations = new StringBuilder();
         for (int counter = 0; counter < dependenciesInvocations.size(); counter++) {
             MethodCapture capture = dependenciesInvocations.get(counter);
-            mocksInvocations
-                    .append(generateMockInvocationReturnValue(capture, counter))
-                    .append(generateCaptorPassedArgumentSerialization(capture, counter))
-                    .append(generateMockConfiguration(capture, counter));
+            writeMockInvocationReturnValue(out, capture, counter);
+            writeCaptorPassedArgumentSerialization(out, capture, counter);
+            writeMockConfiguration(out, capture, counter);
         }
-        return mocksInvocations.toString();
     }
 
-    private String generateMockInvocationReturnValue(MethodCapture capture, int counter) {
+    private void writeMockInvocationReturnValue(Appendable out, MethodCapture capture, int counter) throws IOException {
         Object result = capture.getResult();
         final String resultName = capture.methodName() + counter + conf.getMockResultVariableSuffix();
+        if (result instanceof AsyncResult) {
+            constructor.writeAsyncResultCreation(out, (AsyncResult) result, resultName, capture.getMethod().getGenericReturnType());
+            return;
+        }
         final String type = conf.type(capture.getMethod());
-        return constructor.generateObjectSerialization(result, resultName, type);
+        constructor.writeObjectSerialization(out, result, resultName, type);
     }
 
-    protected String generateCaptorPassedArgumentSerialization(MethodCapture methodCapture, int counter) {
+    protected void writeCaptorPassedArgumentSerialization(Appendable out, MethodCapture methodCapture, int counter) throws IOException {
         final Object[] arguments = methodCapture.getArguments();
-        StringBuilder passedArguments = new StringBuilder();
         List<Parameter> methodParameters = getMethodParameters(methodCapture.getMethod());
         for (int index = 0; index < methodParameters.size(); index++) {
             Parameter parameter = methodParameters.get(index);
             final String parameterName = parameter.getName() + counter + conf.getMockParameterVariableSuffix();
-            passedArguments.append(constructor.generateObjectSerialization(arguments[index], parameterName, conf.type(parameter)));
+            constructor.writeObjectSerialization(out, arguments[index], parameterName, conf.type(parameter));
         }
-        return passedArguments.toString();
     }
 
-    private String generateMockConfiguration(MethodCapture capture, int counter) {
+    private void writeMockConfiguration(Appendable out, MethodCapture capture, int counter) throws IOException {
         String fieldMock = capture.getFieldName();
         final String resultName = capture.methodName() + counter + conf.getMockResultVariableSuffix();
         final String methodName = capture.methodName();
         String parametersArguments = generateCaptorPassedArgumentNames(capture.getMethod(), counter);
-        return mockInvocation(fieldMock, resultName, methodName, parametersArguments);
-    }
-
-    private String mockInvocation(String fieldMock, String resultName, String methodName, String parametersArguments) {
-        return conf.getBodySpace() + conf.getMockito() + ".when(" + fieldMock + "." + methodName + "(" + parametersArguments + ")).thenReturn(" + resultName + ");\n";
+        out.append(conf.getBodySpace()).append(conf.getMockito()).append(".when(").append(fieldMock).append(".")
+                .append(methodName).append("(").append(parametersArguments).append(")).thenReturn(")
+                .append(resultName).append(");\n");
     }
 
     protected String generateCaptorPassedArgumentNames(Method method, int counter) {
-        String params = getMethodParameters(method)
+        return getMethodParameters(method)
                 .stream()
                 .map(parameter -> parameter.getName() + counter + conf.getMockParameterVariableSuffix())
-                .map(parameterName -> parameterName + ",")
-                .collect(Collectors.joining());
-        return "".equals(params) ? "" : params.substring(0, params.length() - 1);
+                .collect(Collectors.joining(","));
     }
 
-    private String generateMockMethodInvocationChecks() {
-        List<MethodCapture> affected = MethodCapture.affectedInvocations(capturedData);
-        List<MethodInvocation> methodInvocations = MethodInvocation.of(affected);
-        return methodInvocations.stream()
-                .map(this::generateMockMethodInvocationChecksString)
-                .collect(Collectors.joining());
+    private List<MethodInvocation> affectedInvocations() {
+        if (affectedInvocations == null) {
+            affectedInvocations = MethodInvocation.of(MethodCapture.affectedInvocations(capturedData));
+        }
+        return affectedInvocations;
     }
 
-    private String generateMockMethodInvocationChecksString(MethodInvocation methodInvocation) {
-        return methodInvocation.forEachArgument(this::createCaptors)
-                + methodInvocation.apply(this::createMockVerifyConfiguration)
-                + methodInvocation.forEachArgument(this::createArgumentCollection)
-                + methodInvocation.forEachArgument(this::createExpectedResults)
-                + methodInvocation.forEachArgument(this::createMockAssertions);
+    /**
+     * Calls above the limit are verified by a digest of their arguments instead of argument captors.
+     */
+    private boolean isDigested(MethodInvocation methodInvocation) {
+        return methodInvocation.invocationCount() > conf.getMaxInlinedInvocations();
     }
 
-    private String createCaptors(MethodInvocation methodInvocation, String argumentName) {
-        final String type = conf.type(methodInvocation.argumentType(argumentName));
-        String captor = methodInvocation.methodName() + argumentName + conf.getCaptorVariableSuffix();
-        return captorCreation(type, captor);
+    /**
+     * Stubs digested methods to add the arguments of every call to a digest, the values aren't kept.
+     */
+    private void writeDigestAnswers(Appendable out) throws IOException {
+        for (MethodInvocation methodInvocation : affectedInvocations()) {
+            if (!isDigested(methodInvocation)) {
+                continue;
+            }
+            final String digest = methodInvocation.methodName() + DIGEST_VARIABLE_SUFFIX;
+            final String mockito = conf.getMockito();
+            out.append(conf.getBodySpace()).append("final ").append(conf.type(ArgumentDigest.class)).append(" ")
+                    .append(digest).append(" = new ").append(conf.type(ArgumentDigest.class)).append("();\n")
+                    .append(conf.getBodySpace()).append(mockito).append(".doAnswer(invocation -> ").append(digest)
+                    .append(".answer(invocation.getArguments(), ").append(mockito)
+                    .append(".RETURNS_DEFAULTS.answer(invocation))).when(").append(methodInvocation.getFieldName())
+                    .append(").").append(methodInvocation.methodName()).append("(")
+                    .append(anyArguments(methodInvocation.getMethod())).append(");\n");
+        }
+    }
+
+    private void writeMockMethodInvocationChecks(Appendable out) throws IOException {
+        for (MethodInvocation methodInvocation : affectedInvocations()) {
+            if (isDigested(methodInvocation)) {
+                writeDigestChecks(out, methodInvocation);
+            } else {
+                writeMockMethodInvocationChecks(out, methodInvocation);
+            }
+        }
+    }
+
+    private void writeDigestChecks(Appendable out, MethodInvocation methodInvocation) throws IOException {
+        final String methodName = methodInvocation.methodName();
+        final int invocationCount = methodInvocation.invocationCount();
+        final List<List<Object>> columns = new ArrayList<>(methodInvocation.getArguments().values());
+        ArgumentDigest expected = new ArgumentDigest();
+        StringBuilder firstCalls = new StringBuilder();
+        for (int call = 0; call < invocationCount; call++) {
+            if (call < PREVIEW_CALLS) {
+                firstCalls.append(call == 0 ? "" : ", ").append('(');
+            }
+            for (int index = 0; index < columns.size(); index++) {
+                final String argument = constructor.valueToString(columns.get(index).get(call));
+                expected.update(argument);
+                if (call < PREVIEW_CALLS) {
+                    firstCalls.append(index == 0 ? "" : ", ").append(preview(argument));
+                }
+            }
+            expected.endCall();
+            if (call < PREVIEW_CALLS) {
+                firstCalls.append(')');
+            }
+        }
+        out.append(conf.getBodySpace()).append("//").append(String.valueOf(invocationCount))
+                .append(" calls verified by the digest of their arguments, the first calls: ")
+                .append(constructor.commentLineBreaks(firstCalls.toString())).append("\n")
+                .append(conf.getBodySpace()).append(conf.getMockito()).append(".verify(").append(methodInvocation.getFieldName())
+                .append(", ").append(conf.getMockito()).append(".times(").append(String.valueOf(invocationCount)).append("))")
+                .append(".").append(methodName).append("(").append(anyArguments(methodInvocation.getMethod())).append(");\n")
+                .append(conf.getBodySpace()).append(conf.getAssertion()).append(".assertEquals(\"").append(expected.digest())
+                .append("\", ").append(methodName).append(DIGEST_VARIABLE_SUFFIX).append(".digest());\n");
+    }
+
+    private static String preview(String argument) {
+        return argument.length() <= PREVIEW_CHARS ? argument : argument.substring(0, PREVIEW_CHARS) + "...";
+    }
+
+    /**
+     * @return matchers of any value of each parameter, typed to pick the overload
+     */
+    private String anyArguments(Method method) {
+        return Arrays.stream(method.getParameterTypes())
+                .map(this::anyArgument)
+                .collect(Collectors.joining(", "));
+    }
+
+    private String anyArgument(Class<?> type) {
+        if (type.isPrimitive()) {
+            final String name = type.getName();
+            return conf.getMockito() + ".any" + Character.toUpperCase(name.charAt(0)) + name.substring(1) + "()";
+        }
+        return conf.getMockito() + ".<" + conf.type(type) + ">any()";
     }
 
-    private String captorCreation(String type, String captor) {
-        return conf.getBodySpace() + "final " + conf.getArgumentCaptor() + "<" + type + "> " + captor + " = " + conf.getArgumentCaptor() + ".forClass(" + type + ".class);\n";
+    private void writeMockMethodInvocationChecks(Appendable out, MethodInvocation methodInvocation) throws IOException {
+        for (String argumentName : methodInvocation.argumentNames()) {
+            writeCaptor(out, methodInvocation, argumentName);
+        }
+        writeMockVerifyConfiguration(out, methodInvocation);
+        for (String argumentName : methodInvocation.argumentNames()) {
+            writeArgumentCollection(out, methodInvocation, argumentName);
+        }
+        for (String argumentName : methodInvocation.argumentNames()) {
+            writeExpectedResult(out, methodInvocation, argumentName);
+        }
+        for (String argumentName : methodInvocation.argumentNames()) {
+            writeMockAssertion(out, methodInvocation, argumentName);
+        }
+    }
+
+    private void writeCaptor(Appendable out, MethodInvocation methodInvocation, String argumentName) throws IOException {
+        final String type = conf.type(methodInvocation.argumentType(argumentName));
+        String captor = methodInvocation.methodName() + argumentName + conf.getCaptorVariableSuffix();
+        out.append(conf.getBodySpace()).append("final ").append(conf.getArgumentCaptor()).append("<").append(type)
+                .append("> ").append(captor).append(" = ").append(conf.getArgumentCaptor())
+                .append(".forClass(").append(type).append(".class);\n");
     }
 
-    private String createMockVerifyConfiguration(MethodInvocation methodInvocation) {
+    private void writeMockVerifyConfiguration(Appendable out, MethodInvocation methodInvocation) throws IOException {
         String fieldMock = methodInvocation.getFieldName();
         int invocationCount = methodInvocation.invocationCount();
         String methodName = methodInvocation.methodName();
         String captorArguments = generateCaptorArguments(methodInvocation.argumentNames(), methodName);
-        return mockVerification(fieldMock, invocationCount, methodName, captorArguments);
+        out.append(conf.getBodySpace()).append(conf.getMockito()).append(".verify(").append(fieldMock).append(", ")
+                .append(conf.getMockito()).append(".times(").append(String.valueOf(invocationCount)).append("))")
+                .append(".").append(methodName).append("(").append(captorArguments).append(");\n");
     }
 
-    private String mockVerification(String fieldMock, int invocationCount, String methodName, String captorArguments) {
-        return conf.getBodySpace() + conf.getMockito() + ".verify(" + fieldMock + ", " + conf.getMockito() + ".times(" + invocationCount + "))." + methodName + "(" + captorArguments + ");\n";
-    }
-
-    private String createArgumentCollection(MethodInvocation methodInvocation, String argumentName) {
+    private void writeArgumentCollection(Appendable out, MethodInvocation methodInvocation, String argumentName) throws IOException {
         final String variable = methodInvocation.methodName() + argumentName;
         final String type = conf.type(methodInvocation.argumentType(argumentName));
         String captor = variable + conf.getCaptorVariableSuffix();
         String result = variable + conf.getCaptorResultVariableSuffix();
-        return captorArgumentCollection(type, result, captor);
-    }
-
-    private String captorArgumentCollection(String type, String result, String captor) {
-        return conf.getBodySpace() + "List<" + type + "> " + result + " = " + captor + ".getAllValues();\n";
+        out.append(conf.getBodySpace()).append("List<").append(type).append("> ").append(result).append(" = ")
+                .append(captor).append(".getAllValues();\n");
     }
 
-    private String createExpectedResults(MethodInvocation methodInvocation, String argumentName) {
+    private void writeExpectedResult(Appendable out, MethodInvocation methodInvocation, String argumentName) throws IOException {
         String result = methodInvocation.methodName() + argumentName + conf.getCaptorExpectedResultVariableSuffix();
-        final String passedParameters = methodInvocation.getArgument(argumentName).toString();
-        return captorExpectedResult(result, passedParameters);
+        out.append(conf.getBodySpace()).append("String ").append(result).append(" = \"");
+        writeArguments(out, methodInvocation.getArguments().get(argumentName));
+        out.append("\";\n");
     }
 
-    private String captorExpectedResult(String result, String passedParameters) {
-        return conf.getBodySpace() + "String " + result + " = \"" + passedParameters + "\";\n";
+    /**
+     * Writes the same text as {@code List.toString()} of the passed arguments.
+     */
+    private void writeArguments(Appendable out, List<Object> arguments) throws IOException {
+        out.append('[');
+        for (int index = 0; index < arguments.size(); index++) {
+            if (index > 0) {
+                out.append(", ");
+            }
+            out.append(constructor.valueToString(arguments.get(index)));
+        }
+        out.append(']');
     }
 
-    private String createMockAssertions(MethodInvocation methodInvocation, String argumentName) {
+    private void writeMockAssertion(Appendable out, MethodInvocation methodInvocation, String argumentName) throws IOException {
         final String variable = methodInvocation.methodName() + argumentName;
         String result = variable + conf.getCaptorResultVariableSuffix();
         String expectedResult = variable + conf.getCaptorExpectedResultVariableSuffix();
-        return mockAssertion(result, expectedResult);
-    }
-
-    private String mockAssertion(String result, String expectedResult) {
-        return conf.getBodySpace() + conf.getAssertion() + ".assertEquals(" + expectedResult + ", " + result + ".toString());\n";
+        out.append(conf.getBodySpace()).append(conf.getAssertion()).append(".assertEquals(").append(expectedResult)
+                .append(", ").append(result).append(".toString());\n");
     }
 
     private String generateCaptorArguments(Collection<String> argumentNames, String methodName) {
@@ -0,0 +1,66 @@
+package ru.panfio.legacytester.constructor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+
+/**
+ * Escapes double quotes like {@link Constructor#escapeQuotes(String)} while streaming the text
+ * into the target, so a JSON fixture is written into a string literal without intermediate copies.
+ */
+class QuoteEscapingWriter extends Writer {
+    private final Appendable target;
+
+    QuoteEscapingWriter(Appendable target) {
+        this.target = target;
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        if (c == '"') {
+            target.append('\\');
+        }
+        target.append((char) c);
+    }
+
+    @Override
+    public void write(char[] buffer, int offset, int length) throws IOException {
+        write(CharBuffer.wrap(buffer), offset, offset + length);
+    }
+
+    @Override
+    public void write(String text, int offset, int length) throws IOException {
+        write(text, offset, offset + length);
+    }
+
+    @Override
+    public Writer append(CharSequence text) throws IOException {
+        write(text, 0, text.length());
+        return this;
+    }
+
+    @Override
+    public Writer append(CharSequence text, int start, int end) throws IOException {
+        write(text, start, end);
+        return this;
+    }
+
+    private void write(CharSequence text, int start, int end) throws IOException {
+        int from = start;
+        for (int index = start; index < end; index++) {
+            if (text.charAt(index) == '"') {
+                target.append(text, from, index).append("\\\"");
+                from = index + 1;
+            }
+        }
+        target.append(text, from, end);
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,146 @@
+package ru.panfio.legacytester.constructor;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rendered forms of captured values shared between generation passes, e.g. of a tester whose
+ * consecutive captures return the same dependency results. Values are matched by {@code equals},
+ * the least recently used forms are evicted when the entry or character limit is reached.
+ * A mutable value changed between captures in a way its {@code equals} doesn't see is rendered as first seen.
+ */
+public final class RenderCache {
+    private static final int DEFAULT_MAX_ENTRIES = 1024;
+    private static final long DEFAULT_MAX_CHARS = 4L * 1024 * 1024;
+
+    enum Form {
+        JSON, SERIALIZED, TO_STRING
+    }
+
+    private final int maxEntries;
+    private final long maxChars;
+    private final Map<Key, String> forms = new LinkedHashMap<>(16, 0.75f, true);
+    private long chars;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public RenderCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_CHARS);
+    }
+
+    /**
+     * @param maxEntries rendered forms kept
+     * @param maxChars   characters of rendered forms kept, longer forms are not cached
+     */
+    public RenderCache(int maxEntries, long maxChars) {
+        this.maxEntries = maxEntries;
+        this.maxChars = maxChars;
+    }
+
+    long getMaxChars() {
+        return maxChars;
+    }
+
+    /**
+     * @return cached form or null, also if the value can't be hashed
+     */
+    synchronized String get(Form form, Object value) {
+        final Key key = Key.of(form, value);
+        final String text = key == null ? null : forms.get(key);
+        if (text == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return text;
+    }
+
+    synchronized void put(Form form, Object value, String text) {
+        final Key key = Key.of(form, value);
+        if (key == null || text.length() > maxChars) {
+            return;
+        }
+        final String previous = forms.put(key, text);
+        chars += text.length() - (previous == null ? 0 : previous.length());
+        Iterator<String> eldest = forms.values().iterator();
+        while (forms.size() > maxEntries || chars > maxChars) {
+            chars -= eldest.next().length();
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public synchronized int size() {
+        return forms.size();
+    }
+
+    public synchronized void clear() {
+        forms.clear();
+        chars = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "RenderCache{" +
+                "maxEntries=" + maxEntries +
+                ", maxChars=" + maxChars +
+                ", hits=" + getHits() +
+                ", misses=" + getMisses() +
+                ", evictions=" + getEvictions() +
+                '}';
+    }
+
+    private static final class Key {
+        private final Form form;
+        private final Object value;
+        private final int hashCode;
+
+        private Key(Form form, Object value, int hashCode) {
+            this.form = form;
+            this.value = value;
+            this.hashCode = hashCode;
+        }
+
+        private static Key of(Form form, Object value) {
+            try {
+                return new Key(form, value, 31 * form.hashCode() + value.hashCode());
+            } catch (RuntimeException e) {
+                // e.g. a lazy collection that can't be iterated any more
+                return null;
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key that = (Key) o;
+            if (form != that.form || hashCode != that.hashCode) return false;
+            try {
+                return value == that.value || value.equals(that.value);
+            } catch (RuntimeException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package ru.panfio.legacytester.constructor;
+
+import ru.panfio.legacytester.fixture.FixtureStore;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Keeps a rendered value in memory up to the threshold of the fixture store. The first write past the threshold
+ * creates a fixture file, moves the kept text there and streams the rest of the value into the file.
+ */
+class SpillingWriter extends Writer {
+    private final FixtureStore fixtures;
+    private final String group;
+    private final String name;
+    private final String extension;
+    private final StringBuilder text = new StringBuilder();
+    private FixtureStore.Fixture fixture;
+    private Writer file;
+
+    SpillingWriter(FixtureStore fixtures, String group, String name, String extension) {
+        this.fixtures = fixtures;
+        this.group = group;
+        this.name = name;
+        this.extension = extension;
+    }
+
+    @Override
+    public void write(char[] buffer, int offset, int length) throws IOException {
+        if (file == null && text.length() + length > fixtures.getThresholdChars()) {
+            spill();
+        }
+        if (file != null) {
+            file.write(buffer, offset, length);
+        } else {
+            text.append(buffer, offset, length);
+        }
+    }
+
+    @Override
+    public void write(String value, int offset, int length) throws IOException {
+        if (file == null && text.length() + length > fixtures.getThresholdChars()) {
+            spill();
+        }
+        if (file != null) {
+            file.write(value, offset, length);
+        } else {
+            text.append(value, offset, offset + length);
+        }
+    }
+
+    private void spill() throws IOException {
+        fixture = fixtures.create(group, name, extension);
+        file = fixture.openWriter();
+        file.append(text);
+        text.setLength(0);
+    }
+
+    /**
+     * @return the fixture the value was spilled to, null if it is kept in memory
+     */
+    FixtureStore.Fixture getFixture() {
+        return fixture;
+    }
+
+    /**
+     * @return the value kept in memory
+     */
+    CharSequence getText() {
+        return text;
+    }
+
+    /**
+     * Drops the value written so far, a spilled fixture file is deleted when the writer is closed.
+     */
+    void discard() throws IOException {
+        text.setLength(0);
+        if (fixture != null) {
+            fixture.discard();
+            fixture = null;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (file != null) {
+            file.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (file != null) {
+            file.close();
+        }
+    }
+}
@@ -1,5 +1,42 @@
 package ru.panfio.legacytester.constructor;
 
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+
 public interface TestConstructor {
     String construct();
-}
\ No newline at end of file
+
+    /**
+     * Writes the test into the appendable, e.g. a reusable buffer or a file writer.
+     * The default implementation still builds the whole test with {@link #construct()} and appends it,
+     * constructors that stream without the intermediate string, like {@link MockTestConstructor}, override it.
+     */
+    default void construct(Appendable out) throws IOException {
+        out.append(construct());
+    }
+
+    /**
+     * Writes the test referring to classes through the import table shared by tests of one generated class.
+     */
+    default void construct(Appendable out, ImportTable imports) throws IOException {
+        construct(out);
+        for (String name : imports()) {
+            imports.reference(name);
+        }
+    }
+
+    /**
+     * @return fully qualified names of classes the test refers to by simple names
+     */
+    default Set<String> imports() {
+        return Collections.emptySet();
+    }
+
+    /**
+     * Called once the constructed test is written or dropped, e.g. to release fixtures
+     * kept for the test by a {@link ru.panfio.legacytester.fixture.FixtureStore}.
+     */
+    default void release() {
+    }
+}
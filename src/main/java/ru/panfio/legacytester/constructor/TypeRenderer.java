@@ -0,0 +1,113 @@
+package ru.panfio.legacytester.constructor;
+
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes type names of a generated test. Names are rendered once per type and then taken from the cache,
+ * so the cost doesn't grow with the number of times a type appears in the test.
+ * Without an import table names are fully qualified.
+ */
+final class TypeRenderer {
+    private final ImportTable imports;
+    private final Map<Type, String> names = new HashMap<>();
+
+    /**
+     * @param imports import table of simple names, null for fully qualified names
+     */
+    TypeRenderer(ImportTable imports) {
+        this.imports = imports;
+    }
+
+    synchronized String render(Type type) {
+        String name = names.get(type);
+        if (name == null) {
+            name = imports == null ? type.getTypeName() : simpleName(type);
+            names.put(type, name);
+        }
+        return name;
+    }
+
+    /**
+     * @param qualifiedName qualified name of a top-level class
+     */
+    String reference(String qualifiedName) {
+        return imports == null ? qualifiedName : imports.reference(qualifiedName);
+    }
+
+    private String simpleName(Type type) {
+        if (type instanceof Class) {
+            return simpleClassName((Class<?>) type);
+        }
+        if (type instanceof ParameterizedType) {
+            ParameterizedType parameterized = (ParameterizedType) type;
+            Class<?> raw = (Class<?>) parameterized.getRawType();
+            StringBuilder name = new StringBuilder();
+            if (parameterized.getOwnerType() instanceof ParameterizedType) {
+                name.append(render(parameterized.getOwnerType())).append('.').append(raw.getSimpleName());
+            } else {
+                name.append(render(raw));
+            }
+            Type[] arguments = parameterized.getActualTypeArguments();
+            name.append('<');
+            for (int index = 0; index < arguments.length; index++) {
+                if (index > 0) {
+                    name.append(", ");
+                }
+                name.append(render(arguments[index]));
+            }
+            return name.append('>').toString();
+        }
+        if (type instanceof WildcardType) {
+            WildcardType wildcard = (WildcardType) type;
+            if (wildcard.getLowerBounds().length > 0) {
+                return bounds("? super ", wildcard.getLowerBounds());
+            }
+            Type[] upperBounds = wildcard.getUpperBounds();
+            if (upperBounds.length == 0 || Object.class.equals(upperBounds[0])) {
+                return "?";
+            }
+            return bounds("? extends ", upperBounds);
+        }
+        if (type instanceof GenericArrayType) {
+            return render(((GenericArrayType) type).getGenericComponentType()) + "[]";
+        }
+        if (type instanceof TypeVariable) {
+            return ((TypeVariable<?>) type).getName();
+        }
+        return type.getTypeName();
+    }
+
+    private String simpleClassName(Class<?> target) {
+        if (target.isArray()) {
+            return render(target.getComponentType()) + "[]";
+        }
+        if (target.isPrimitive()) {
+            return target.getName();
+        }
+        if (target.getCanonicalName() == null) {
+            // local and anonymous classes can't be referred to
+            return target.getTypeName();
+        }
+        if (target.getEnclosingClass() != null) {
+            return render(target.getEnclosingClass()) + "." + target.getSimpleName();
+        }
+        return imports.reference(target.getName());
+    }
+
+    private String bounds(String prefix, Type[] bounds) {
+        StringBuilder name = new StringBuilder(prefix);
+        for (int index = 0; index < bounds.length; index++) {
+            if (index > 0) {
+                name.append(" & ");
+            }
+            name.append(render(bounds[index]));
+        }
+        return name.toString();
+    }
+}
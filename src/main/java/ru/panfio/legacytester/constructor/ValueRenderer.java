@@ -0,0 +1,169 @@
+package ru.panfio.legacytester.constructor;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Renders captured values of one generation pass. A value that appears several times in the test,
+ * e.g. the same map returned by several dependency calls, is rendered once: repeated references are found
+ * by identity, equal values through the {@link RenderCache} of the pass or the one shared by the tester.
+ * Only values of classes overriding {@code equals} go to the cache, arrays and other values compared
+ * by identity may change between passes. Forms are kept without fixture references, a fixture
+ * is resolved by the caller on each use.
+ */
+final class ValueRenderer {
+    private static final int PASS_MAX_ENTRIES = 256;
+    private static final long PASS_MAX_CHARS = 1024 * 1024;
+    private static final ClassValue<Boolean> VALUE_EQUALITY = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            try {
+                return type.getMethod("equals", Object.class).getDeclaringClass() != Object.class;
+            } catch (NoSuchMethodException e) {
+                return false;
+            }
+        }
+    };
+
+    private final RenderCache cache;
+    private final Map<RenderCache.Form, Map<Object, String>> identities = new EnumMap<>(RenderCache.Form.class);
+
+    /**
+     * @param cache cache shared between passes, null for a cache of this pass only
+     */
+    ValueRenderer(RenderCache cache) {
+        this.cache = cache == null ? new RenderCache(PASS_MAX_ENTRIES, PASS_MAX_CHARS) : cache;
+    }
+
+    interface Rendering {
+        /**
+         * @return false if the value could not be rendered completely, the text is not reused then
+         */
+        boolean write(Appendable out) throws IOException;
+    }
+
+    /**
+     * Writes the form of the value, rendering it into the output at most once per equal value.
+     *
+     * @return false if the value could not be rendered completely
+     */
+    boolean write(Appendable out, RenderCache.Form form, Object value, Rendering rendering) throws IOException {
+        if (!isCacheable(form, value)) {
+            return rendering.write(out);
+        }
+        final boolean valueEquality = VALUE_EQUALITY.get(value.getClass());
+        final Map<Object, String> identity = identities.computeIfAbsent(form, key -> new IdentityHashMap<>());
+        String text = identity.get(value);
+        if (text == null && valueEquality) {
+            text = cache.get(form, value);
+        }
+        if (text != null) {
+            identity.put(value, text);
+            out.append(text);
+            return true;
+        }
+        Recording recording = new Recording(out, cache.getMaxChars());
+        if (!rendering.write(recording)) {
+            return false;
+        }
+        if (!recording.isOverflowed()) {
+            text = recording.getText();
+            identity.put(value, text);
+            if (valueEquality) {
+                cache.put(form, value, text);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return toString of the value
+     */
+    String toString(Object value) {
+        if (!isCacheable(RenderCache.Form.TO_STRING, value)) {
+            return String.valueOf(value);
+        }
+        StringBuilder text = new StringBuilder();
+        try {
+            write(text, RenderCache.Form.TO_STRING, value, out -> {
+                out.append(value.toString());
+                return true;
+            });
+        } catch (IOException e) {
+            // StringBuilder doesn't throw
+        }
+        return text.toString();
+    }
+
+    /**
+     * Strings, boxed primitives and enums are cheaper to render than to look up, except for serialization.
+     */
+    private static boolean isCacheable(RenderCache.Form form, Object value) {
+        if (value == null) {
+            return false;
+        }
+        return form == RenderCache.Form.SERIALIZED || !(value instanceof String) && !(value instanceof Number)
+                && !(value instanceof Boolean) && !(value instanceof Character) && !(value instanceof Enum);
+    }
+
+    /**
+     * Passes the rendered text to the output and keeps a copy for the cache up to the limit.
+     */
+    private static final class Recording implements Appendable {
+        private final Appendable out;
+        private final long maxChars;
+        private StringBuilder text = new StringBuilder();
+
+        private Recording(Appendable out, long maxChars) {
+            this.out = out;
+            this.maxChars = maxChars;
+        }
+
+        @Override
+        public Appendable append(CharSequence sequence) throws IOException {
+            out.append(sequence);
+            record(sequence, 0, sequence.length());
+            return this;
+        }
+
+        @Override
+        public Appendable append(CharSequence sequence, int start, int end) throws IOException {
+            out.append(sequence, start, end);
+            record(sequence, start, end);
+            return this;
+        }
+
+        @Override
+        public Appendable append(char c) throws IOException {
+            out.append(c);
+            if (text != null) {
+                text.append(c);
+                checkLimit();
+            }
+            return this;
+        }
+
+        private void record(CharSequence sequence, int start, int end) {
+            if (text != null) {
+                text.append(sequence, start, end);
+                checkLimit();
+            }
+        }
+
+        private void checkLimit() {
+            if (text.length() > maxChars) {
+                text = null;
+            }
+        }
+
+        private boolean isOverflowed() {
+            return text == null;
+        }
+
+        private String getText() {
+            return text.toString();
+        }
+    }
+}
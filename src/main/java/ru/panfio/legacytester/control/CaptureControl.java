@@ -0,0 +1,57 @@
+package ru.panfio.legacytester.control;
+
+import ru.panfio.legacytester.metrics.LegacyTesterMetrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registry of capture switches of armable testers, see {@link ru.panfio.legacytester.LegacyTester#armable}.
+ * Switches are exposed through the platform MBean server as
+ * {@code ru.panfio.legacytester:type=Capture,class=<test class>,qualifier=<qualifier>}
+ * and can be armed there or through this class.
+ */
+public final class CaptureControl {
+    private static final Map<String, CaptureSwitch> SWITCHES = new ConcurrentHashMap<>();
+
+    private CaptureControl() {
+        throw new RuntimeException("Utility class");
+    }
+
+    /**
+     * @return switch shared by all testers of the test class and qualifier, disarmed when created
+     */
+    public static CaptureSwitch of(Class<?> testClass, String qualifier) {
+        final String key = testClass.getName() + "#" + qualifier;
+        CaptureSwitch captureSwitch = SWITCHES.get(key);
+        if (captureSwitch != null) {
+            return captureSwitch;
+        }
+        return SWITCHES.computeIfAbsent(key, name -> {
+            CaptureSwitch created = new CaptureSwitch();
+            LegacyTesterMetrics.register(created, "Capture", testClass.getName(), qualifier, null);
+            return created;
+        });
+    }
+
+    /**
+     * Captures the next testee calls of the test class and qualifier.
+     *
+     * @param calls testee calls to capture
+     */
+    public static void arm(Class<?> testClass, String qualifier, long calls) {
+        of(testClass, qualifier).arm(calls, 0, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Captures testee calls of the test class and qualifier for a period of time.
+     */
+    public static void arm(Class<?> testClass, String qualifier, long duration, TimeUnit unit) {
+        of(testClass, qualifier).arm(0, duration, unit);
+    }
+
+    public static void disarm(Class<?> testClass, String qualifier) {
+        of(testClass, qualifier).disarm();
+    }
+}
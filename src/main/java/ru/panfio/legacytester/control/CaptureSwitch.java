@@ -0,0 +1,175 @@
+package ru.panfio.legacytester.control;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Arms capture of one test class and qualifier for a number of calls or a period of time.
+ * The whole state the capture path checks is a single volatile word: the armed bit and the number
+ * of captured invocations in flight. A disarmed tester and its dependency proxies read it once
+ * and call the target directly. Dependency calls of an invocation that took the last armed call
+ * are still recorded because the invocation stays in flight until it completes.
+ * The time limit is checked by testee calls, so an idle switch reports itself armed past its deadline
+ * until the next call.
+ */
+public final class CaptureSwitch implements CaptureSwitchMXBean {
+    private static final long ARMED = 1;
+    private static final long INVOCATION = 2;
+    private static final long NO_DEADLINE = Long.MAX_VALUE;
+    private static final AtomicLongFieldUpdater<CaptureSwitch> STATE =
+            AtomicLongFieldUpdater.newUpdater(CaptureSwitch.class, "state");
+    private static final CaptureSwitch ALWAYS = new CaptureSwitch(true);
+
+    private final boolean permanent;
+    private volatile long state;
+    private final AtomicLong remainingCalls = new AtomicLong();
+    private volatile long deadlineNanos = NO_DEADLINE;
+    private final LongAdder capturedCalls = new LongAdder();
+
+    CaptureSwitch() {
+        this(false);
+    }
+
+    private CaptureSwitch(boolean permanent) {
+        this.permanent = permanent;
+        this.state = permanent ? ARMED : 0;
+    }
+
+    /**
+     * @return switch of testers that capture regardless of {@link CaptureControl}
+     */
+    public static CaptureSwitch always() {
+        return ALWAYS;
+    }
+
+    @Override
+    public boolean isArmed() {
+        return (state & ARMED) != 0;
+    }
+
+    /**
+     * @return true while the switch is armed or captured invocations are in flight,
+     * dependency proxies skip recording otherwise
+     */
+    public boolean isCapturing() {
+        return state != 0;
+    }
+
+    /**
+     * Takes an armed call for a testee invocation, to be paired with {@link #release()}.
+     *
+     * @return false if the switch is disarmed or its limits are reached
+     */
+    public boolean acquire() {
+        if (permanent) {
+            return true;
+        }
+        final long deadline = deadlineNanos;
+        if (deadline != NO_DEADLINE && System.nanoTime() - deadline >= 0) {
+            disarm();
+            return false;
+        }
+        final long left = remainingCalls.getAndDecrement();
+        if (left <= 0) {
+            disarm();
+            return false;
+        }
+        final long current = STATE.addAndGet(this, INVOCATION);
+        if ((current & ARMED) == 0) {
+            // disarmed concurrently
+            release();
+            return false;
+        }
+        if (left == 1) {
+            disarm();
+        }
+        capturedCalls.increment();
+        return true;
+    }
+
+    /**
+     * Completes a testee invocation that took an armed call.
+     */
+    public void release() {
+        if (!permanent) {
+            STATE.addAndGet(this, -INVOCATION);
+        }
+    }
+
+    /**
+     * Arms capture until either limit is reached.
+     *
+     * @param calls    testee calls to capture, 0 for no limit
+     * @param duration time to capture for, 0 for no limit
+     */
+    public synchronized void arm(long calls, long duration, TimeUnit unit) {
+        if (permanent) {
+            return;
+        }
+        remainingCalls.set(calls > 0 ? calls : Long.MAX_VALUE);
+        deadlineNanos = duration > 0 ? System.nanoTime() + unit.toNanos(duration) : NO_DEADLINE;
+        long current;
+        do {
+            current = state;
+        } while (!STATE.compareAndSet(this, current, current | ARMED));
+    }
+
+    @Override
+    public void arm(long calls, long seconds) {
+        arm(calls, seconds, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void disarm() {
+        if (permanent) {
+            return;
+        }
+        long current;
+        do {
+            current = state;
+        } while ((current & ARMED) != 0 && !STATE.compareAndSet(this, current, current & ~ARMED));
+    }
+
+    @Override
+    public long getRemainingCalls() {
+        final long left = remainingCalls.get();
+        if (!isArmed()) {
+            return 0;
+        }
+        return left > Long.MAX_VALUE / 2 ? -1 : Math.max(left, 0);
+    }
+
+    @Override
+    public long getRemainingSeconds() {
+        final long deadline = deadlineNanos;
+        if (!isArmed()) {
+            return 0;
+        }
+        if (deadline == NO_DEADLINE) {
+            return -1;
+        }
+        return Math.max(TimeUnit.NANOSECONDS.toSeconds(deadline - System.nanoTime()), 0);
+    }
+
+    @Override
+    public long getInFlight() {
+        return state / INVOCATION;
+    }
+
+    @Override
+    public long getCapturedCalls() {
+        return capturedCalls.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "CaptureSwitch{" +
+                "armed=" + isArmed() +
+                ", remainingCalls=" + getRemainingCalls() +
+                ", remainingSeconds=" + getRemainingSeconds() +
+                ", inFlight=" + getInFlight() +
+                '}';
+    }
+}
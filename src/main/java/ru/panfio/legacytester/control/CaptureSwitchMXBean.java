@@ -0,0 +1,42 @@
+package ru.panfio.legacytester.control;
+
+/**
+ * Runtime control of capture for one test class and qualifier.
+ */
+public interface CaptureSwitchMXBean {
+
+    /**
+     * @return true while testee calls are captured
+     */
+    boolean isArmed();
+
+    /**
+     * @return captured calls left before the switch disarms, -1 if calls are not limited
+     */
+    long getRemainingCalls();
+
+    /**
+     * @return seconds left before the switch disarms, -1 if time is not limited
+     */
+    long getRemainingSeconds();
+
+    /**
+     * @return captured testee invocations in flight
+     */
+    long getInFlight();
+
+    /**
+     * @return testee calls captured since the switch was created
+     */
+    long getCapturedCalls();
+
+    /**
+     * Arms capture until either limit is reached.
+     *
+     * @param calls   testee calls to capture, 0 for no limit
+     * @param seconds seconds to capture for, 0 for no limit
+     */
+    void arm(long calls, long seconds);
+
+    void disarm();
+}
@@ -0,0 +1,84 @@
+package ru.panfio.legacytester.fingerprint;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+public class BloomDuplicateFilter implements DuplicateFilter {
+    private final int expectedInsertions;
+    private final int bitCount;
+    private final int hashCount;
+    private volatile AtomicLongArray bits;
+    private final LongAdder insertions = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public BloomDuplicateFilter(int expectedInsertions, double falsePositiveProbability) {
+        if (expectedInsertions <= 0 || falsePositiveProbability <= 0 || falsePositiveProbability >= 1) {
+            throw new IllegalArgumentException("Expected insertions must be positive and probability between 0 and 1");
+        }
+        this.expectedInsertions = expectedInsertions;
+        final double ln2 = Math.log(2);
+        this.bitCount = (int) Math.max(64, Math.ceil(-expectedInsertions * Math.log(falsePositiveProbability) / (ln2 * ln2)));
+        this.hashCount = (int) Math.max(1, Math.round((double) bitCount / expectedInsertions * ln2));
+        this.bits = new AtomicLongArray((bitCount + 63) / 64);
+    }
+
+    @Override
+    public boolean isDuplicate(long fingerprint) {
+        final AtomicLongArray current = bits;
+        final int first = (int) fingerprint;
+        final int second = (int) (fingerprint >>> 32);
+        boolean seen = true;
+        for (int index = 1; index <= hashCount; index++) {
+            int combined = first + index * second;
+            final int bit = (combined & Integer.MAX_VALUE) % bitCount;
+            if (setBit(current, bit)) {
+                seen = false;
+            }
+        }
+        if (seen) {
+            hits.increment();
+            return true;
+        }
+        misses.increment();
+        insertions.increment();
+        if (insertions.sum() >= expectedInsertions) {
+            clear();
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the bit was not set before
+     */
+    private static boolean setBit(AtomicLongArray array, int bit) {
+        final int index = bit >>> 6;
+        final long mask = 1L << bit;
+        while (true) {
+            final long word = array.get(index);
+            if ((word & mask) != 0) {
+                return false;
+            }
+            if (array.compareAndSet(index, word, word | mask)) {
+                return true;
+            }
+        }
+    }
+
+    private synchronized void clear() {
+        if (insertions.sum() >= expectedInsertions) {
+            bits = new AtomicLongArray(bits.length());
+            insertions.reset();
+        }
+    }
+
+    @Override
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMissCount() {
+        return misses.sum();
+    }
+}
@@ -0,0 +1,52 @@
+package ru.panfio.legacytester.fingerprint;
+
+import ru.panfio.legacytester.MethodCapture;
+
+import java.util.List;
+
+import static ru.panfio.legacytester.fingerprint.StructuralHasher.combine;
+import static ru.panfio.legacytester.fingerprint.StructuralHasher.finish;
+import static ru.panfio.legacytester.fingerprint.StructuralHasher.hashString;
+
+/**
+ * Structural fingerprint of captured data.
+ * Two captures that would produce the same test (except a random test method name)
+ * have the same fingerprint. It covers:
+ * <ul>
+ *     <li>test invocation arguments and the exception type</li>
+ *     <li>dependency invocation results</li>
+ *     <li>affected invocation arguments</li>
+ * </ul>
+ */
+public final class CaptureFingerprint {
+    private CaptureFingerprint() {
+        throw new RuntimeException("Utility class");
+    }
+
+    public static long of(List<MethodCapture> capturedData) {
+        long hash = 0;
+        for (MethodCapture capture : capturedData) {
+            hash = combine(hash, of(capture));
+        }
+        return finish(hash);
+    }
+
+    private static long of(MethodCapture capture) {
+        long hash = hashString(capture.getType().ordinal(), capture.getMethod().toGenericString());
+        if (capture.getFieldName() != null) {
+            hash = hashString(hash, capture.getFieldName());
+        }
+        switch (capture.getType()) {
+            case TEST:
+                hash = combine(hash, StructuralHasher.hash(capture.getArguments()));
+                final Throwable exception = capture.getException();
+                return exception == null ? hash : hashString(hash, exception.getClass().getName());
+            case DEPENDENCY:
+                return combine(hash, StructuralHasher.hash(capture.getResult()));
+            case AFFECT:
+                return combine(hash, StructuralHasher.hash(capture.getArguments()));
+            default:
+                return hash;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package ru.panfio.legacytester.fingerprint;
+
+/**
+ * "Already seen" set of capture fingerprints.
+ * Duplicate captures are rejected before any JSON rendering.
+ * Implementations are thread-safe.
+ */
+public interface DuplicateFilter {
+
+    /**
+     * Remembers the fingerprint.
+     *
+     * @return true if the fingerprint was seen before
+     */
+    boolean isDuplicate(long fingerprint);
+
+    /**
+     * @return count of rejected duplicates
+     */
+    long getHitCount();
+
+    /**
+     * @return count of new fingerprints
+     */
+    long getMissCount();
+
+    /**
+     * Keeps the last {@code capacity} fingerprints, exact.
+     */
+    static DuplicateFilter lru(int capacity) {
+        return new LruDuplicateFilter(capacity);
+    }
+
+    /**
+     * Probabilistic filter with a fixed memory footprint.
+     * A false positive rejects a new capture with the given probability.
+     * The filter is cleared after {@code expectedInsertions} new fingerprints.
+     */
+    static DuplicateFilter bloom(int expectedInsertions, double falsePositiveProbability) {
+        return new BloomDuplicateFilter(expectedInsertions, falsePositiveProbability);
+    }
+}
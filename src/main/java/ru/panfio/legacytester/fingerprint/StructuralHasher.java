@@ -0,0 +1,179 @@
+package ru.panfio.legacytester.fingerprint;
+
+import ru.panfio.legacytester.util.ClassMetadata;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Computes a 64-bit hash over the structure of an object graph.
+ * Unlike {@link Object#hashCode()} it does not depend on identity hash codes,
+ * so two equal graphs produce the same hash even if their classes don't override hashCode.
+ * Each node is hashed once, a node referenced several times in the graph reuses its hash.
+ * Map entries and set elements are combined regardless of their iteration order.
+ */
+public final class StructuralHasher {
+    private static final long SEED = 0xcbf29ce484222325L;
+    private static final long PRIME = 0x100000001b3L;
+    private static final long NULL_HASH = 0x9e3779b97f4a7c15L;
+    private static final long CYCLE_HASH = 0xc2b2ae3d27d4eb4fL;
+    private static final int MAX_DEPTH = 32;
+
+    private final Map<Object, Boolean> visited = new IdentityHashMap<>();
+    private final Map<Object, Long> hashes = new IdentityHashMap<>();
+
+    private StructuralHasher() {
+    }
+
+    public static long hash(Object value) {
+        return finish(new StructuralHasher().hash(SEED, value, 0));
+    }
+
+    static long combine(long hash, long value) {
+        return (hash ^ value) * PRIME;
+    }
+
+    static long hashString(long hash, String value) {
+        for (int index = 0; index < value.length(); index++) {
+            hash = combine(hash, value.charAt(index));
+        }
+        return combine(hash, value.length());
+    }
+
+    static long finish(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private long hash(long hash, Object value, int depth) {
+        return combine(hash, nodeHash(value, depth));
+    }
+
+    /**
+     * @return hash of the value and the graph it refers to, independent of where the value is referenced
+     */
+    private long nodeHash(Object value, int depth) {
+        if (value == null) {
+            return NULL_HASH;
+        }
+        final Class<?> type = value.getClass();
+        if (isValueType(type)) {
+            return hashString(hashString(SEED, type.getName()), value.toString());
+        }
+        final Long known = hashes.get(value);
+        if (known != null) {
+            return known;
+        }
+        if (depth > MAX_DEPTH || visited.put(value, Boolean.TRUE) != null) {
+            return CYCLE_HASH;
+        }
+        try {
+            final long hash = hashNode(hashString(SEED, type.getName()), value, depth);
+            hashes.put(value, hash);
+            return hash;
+        } finally {
+            visited.remove(value);
+        }
+    }
+
+    private long hashNode(long hash, Object value, int depth) {
+        if (value.getClass().isArray()) {
+            return hashArray(hash, value, depth);
+        }
+        if (value instanceof Map) {
+            long entries = 0;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                entries += finish(combine(nodeHash(entry.getKey(), depth + 1), nodeHash(entry.getValue(), depth + 1)));
+            }
+            return combine(combine(hash, entries), ((Map<?, ?>) value).size());
+        }
+        if (value instanceof Set) {
+            long elements = 0;
+            for (Object element : (Set<?>) value) {
+                elements += finish(nodeHash(element, depth + 1));
+            }
+            return combine(combine(hash, elements), ((Set<?>) value).size());
+        }
+        if (value instanceof Iterable) {
+            for (Object element : (Iterable<?>) value) {
+                hash = hash(hash, element, depth + 1);
+            }
+            return hash;
+        }
+        return hashFields(hash, value, depth);
+    }
+
+    private long hashArray(long hash, Object array, int depth) {
+        if (array.getClass().getComponentType().isPrimitive()) {
+            return combine(combine(hash, primitiveArrayHash(array)), Array.getLength(array));
+        }
+        final Object[] elements = (Object[]) array;
+        for (Object element : elements) {
+            hash = hash(hash, element, depth + 1);
+        }
+        return combine(hash, elements.length);
+    }
+
+    /**
+     * Hashes the elements without boxing them.
+     */
+    private static int primitiveArrayHash(Object array) {
+        if (array instanceof byte[]) {
+            return Arrays.hashCode((byte[]) array);
+        }
+        if (array instanceof int[]) {
+            return Arrays.hashCode((int[]) array);
+        }
+        if (array instanceof long[]) {
+            return Arrays.hashCode((long[]) array);
+        }
+        if (array instanceof char[]) {
+            return Arrays.hashCode((char[]) array);
+        }
+        if (array instanceof short[]) {
+            return Arrays.hashCode((short[]) array);
+        }
+        if (array instanceof double[]) {
+            return Arrays.hashCode((double[]) array);
+        }
+        if (array instanceof float[]) {
+            return Arrays.hashCode((float[]) array);
+        }
+        return Arrays.hashCode((boolean[]) array);
+    }
+
+    private long hashFields(long hash, Object value, int depth) {
+        final List<Field> fields = value.getClass().getName().startsWith("java.")
+                ? null
+                : ClassMetadata.of(value.getClass()).getInstanceFields();
+        if (fields == null) {
+            return hashString(hash, String.valueOf(value));
+        }
+        for (Field field : fields) {
+            try {
+                hash = hash(hash, field.get(value), depth + 1);
+            } catch (IllegalAccessException e) {
+                hash = combine(hash, CYCLE_HASH);
+            }
+        }
+        return hash;
+    }
+
+    private static boolean isValueType(Class<?> type) {
+        return type == String.class
+                || type.isEnum()
+                || Number.class.isAssignableFrom(type)
+                || type == Boolean.class
+                || type == Character.class
+                || type == Class.class;
+    }
+}
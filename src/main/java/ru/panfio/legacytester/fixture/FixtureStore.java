@@ -0,0 +1,568 @@
+package ru.panfio.legacytester.fixture;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Resource files holding captured values too large to be inlined into a generated test as string literals.
+ * Values above the threshold are streamed into {@code <directory>/<folder>/<test class>/<variable>-<n>.<extension>}
+ * and the test loads them from the classpath, so test sources stay small and compile quickly.
+ * <p>
+ * A content-addressed store names files by the SHA-256 digest of their content instead:
+ * {@code <directory>/<folder>/<first two digits>/<digest>.<extension>}. A value is written once
+ * and every test that uses it refers to the same file, fixtures no longer referenced by test sources
+ * are removed by {@link #collectGarbage}. Fixtures handed out by the store are kept until the tests referring
+ * to them are written or dropped, they may still be buffered, e.g. by a {@link ru.panfio.legacytester.sink.FileTestSink}.
+ * Hand-outs never released, e.g. by a custom test constructor, expire after the hand-out timeout, and only
+ * the most recent ones up to a limit are tracked.
+ * <pre>{@code
+ *    FixtureStore fixtures = FixtureStore.builder()
+ *                 .directory(Paths.get("src/test/resources"))
+ *                 .thresholdChars(16 * 1024)
+ *                 .build();
+ *    LegacyTester tester = new LegacyTester(MyTestClass.class)
+ *                 .constructorConfig(() -> ConstructorConfiguration.builder().fixtureStore(fixtures).build());
+ * }</pre>
+ * Files are never overwritten, fixtures of earlier tests stay valid.
+ */
+public class FixtureStore {
+    private static final int DIGEST_LENGTH = 64;
+    private static final String TEMPORARY_EXTENSION = ".tmp";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Path directory;
+    private final String folder;
+    private final int thresholdChars;
+    private final boolean contentAddressed;
+    private final int maxHandedOut;
+    private final long handOutTimeoutNanos;
+    private final Pattern digestReference;
+    // temporary files of other stores sharing the directory, e.g. of another process, are not touched
+    private final String temporaryPrefix = "store-" + Long.toHexString(ThreadLocalRandom.current().nextLong()) + "-";
+    private final AtomicLong sequence = new AtomicLong();
+    private final LongAdder fixtures = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder deduplicated = new LongAdder();
+    // digests by the time of their last hand-out, guarded by itself
+    private final Map<String, HandOut> handedOut = new LinkedHashMap<>();
+    private final Set<Path> temporaries = ConcurrentHashMap.newKeySet();
+
+    FixtureStore(Path directory, String folder, int thresholdChars, boolean contentAddressed,
+                 int maxHandedOut, long handOutTimeoutNanos) {
+        this.directory = directory;
+        this.folder = folder;
+        this.thresholdChars = thresholdChars;
+        this.contentAddressed = contentAddressed;
+        this.maxHandedOut = maxHandedOut;
+        this.handOutTimeoutNanos = handOutTimeoutNanos;
+        this.digestReference = Pattern.compile(Pattern.quote(folder + "/") + "[0-9a-f]{2}/([0-9a-f]{64})\\.");
+    }
+
+    public static FixtureStoreBuilder builder() {
+        return new FixtureStoreBuilder();
+    }
+
+    /**
+     * @return length of the string literal above which a value goes to a fixture file
+     */
+    public int getThresholdChars() {
+        return thresholdChars;
+    }
+
+    /**
+     * Reserves a new fixture file.
+     *
+     * @param group     test class the fixture belongs to
+     * @param name      variable initialized with the fixture
+     * @param extension file extension
+     */
+    public Fixture create(String group, String name, String extension) throws IOException {
+        if (contentAddressed) {
+            final Path fixturesDirectory = directory.resolve(folder);
+            Files.createDirectories(fixturesDirectory);
+            final Path temporary = Files.createTempFile(fixturesDirectory, temporaryPrefix + name, TEMPORARY_EXTENSION);
+            temporaries.add(temporary);
+            return new Fixture(temporary, null, extension);
+        }
+        final String groupFolder = folder + "/" + group;
+        final Path groupDirectory = directory.resolve(groupFolder);
+        Files.createDirectories(groupDirectory);
+        while (true) {
+            final String fileName = name + "-" + sequence.incrementAndGet() + "." + extension;
+            try {
+                Path path = Files.createFile(groupDirectory.resolve(fileName));
+                return new Fixture(path, groupFolder + "/" + fileName, extension);
+            } catch (FileAlreadyExistsException e) {
+                // written by an earlier run
+            }
+        }
+    }
+
+    /**
+     * @return fixture files written
+     */
+    public long getFixtures() {
+        return fixtures.sum();
+    }
+
+    /**
+     * @return bytes of fixture files written
+     */
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    /**
+     * @return values of a content-addressed store found already written
+     */
+    public long getDeduplicated() {
+        return deduplicated.sum();
+    }
+
+    /**
+     * @return content-addressed fixtures kept for tests not written yet
+     */
+    public int getHandedOut() {
+        synchronized (handedOut) {
+            expireHandOuts(System.nanoTime());
+            return handedOut.size();
+        }
+    }
+
+    /**
+     * Releases a fixture handed out for a test once the test is written or dropped.
+     * A fixture handed out for several tests is kept until all of them release it.
+     *
+     * @param resource resource name of the fixture
+     */
+    public void release(String resource) {
+        final Matcher matcher = digestReference.matcher(resource);
+        if (!matcher.lookingAt()) {
+            // not content-addressed
+            return;
+        }
+        synchronized (handedOut) {
+            final HandOut handOut = handedOut.get(matcher.group(1));
+            if (handOut != null && --handOut.count <= 0) {
+                handedOut.remove(matcher.group(1));
+            }
+        }
+    }
+
+    private void handOut(String digest) {
+        final long now = System.nanoTime();
+        synchronized (handedOut) {
+            HandOut handOut = handedOut.remove(digest);
+            if (handOut == null) {
+                handOut = new HandOut();
+            }
+            handOut.count++;
+            handOut.nanos = now;
+            handedOut.put(digest, handOut);
+            expireHandOuts(now);
+            final Iterator<HandOut> eldest = handedOut.values().iterator();
+            while (handedOut.size() > maxHandedOut) {
+                eldest.next();
+                eldest.remove();
+            }
+        }
+    }
+
+    private boolean isHandedOut(String digest) {
+        synchronized (handedOut) {
+            final HandOut handOut = handedOut.get(digest);
+            return handOut != null && System.nanoTime() - handOut.nanos < handOutTimeoutNanos;
+        }
+    }
+
+    private void expireHandOuts(long now) {
+        final Iterator<HandOut> eldest = handedOut.values().iterator();
+        while (eldest.hasNext() && now - eldest.next().nanos >= handOutTimeoutNanos) {
+            eldest.remove();
+        }
+    }
+
+    private void onWritten(Path path) throws IOException {
+        fixtures.increment();
+        bytes.add(Files.size(path));
+    }
+
+    /**
+     * Moves the written temporary file to its digest, unless the same content is already stored.
+     *
+     * @return resource name of the content
+     */
+    private String store(Path temporary, byte[] digest, String extension) throws IOException {
+        final String hex = toHex(digest);
+        final String resource = folder + "/" + hex.substring(0, 2) + "/" + hex + "." + extension;
+        final Path path = directory.resolve(resource);
+        // kept by the garbage collection before the test referring to it is written
+        handOut(hex);
+        try {
+            if (Files.exists(path)) {
+                deduplicated.increment();
+                return resource;
+            }
+            Files.createDirectories(path.getParent());
+            try {
+                Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException e) {
+                // stored concurrently
+                deduplicated.increment();
+                return resource;
+            }
+            onWritten(path);
+            return resource;
+        } finally {
+            discardTemporary(temporary);
+        }
+    }
+
+    private void discardTemporary(Path temporary) throws IOException {
+        try {
+            Files.deleteIfExists(temporary);
+        } finally {
+            temporaries.remove(temporary);
+        }
+    }
+
+    /**
+     * Removes content-addressed fixtures no test source refers to, e.g. after tests were regenerated or deleted,
+     * and temporary files left by failed writes of this store. Fixtures handed out by this store are kept,
+     * as well as temporary files of other stores writing into the directory.
+     *
+     * @param testSources directories or files of test sources using the store
+     * @return number of removed fixtures
+     */
+    public int collectGarbage(Path... testSources) throws IOException {
+        final Map<String, Integer> references = references(testSources);
+        final Path fixturesDirectory = directory.resolve(folder);
+        if (!Files.isDirectory(fixturesDirectory)) {
+            return 0;
+        }
+        final List<Path> unreferenced;
+        final List<Path> stale;
+        try (Stream<Path> files = Files.walk(fixturesDirectory)) {
+            final Map<Boolean, List<Path>> candidates = files
+                    .filter(Files::isRegularFile)
+                    .filter(file -> isStale(file) || isUnreferenced(file, references))
+                    .collect(Collectors.partitioningBy(this::isStale));
+            unreferenced = candidates.get(false);
+            stale = candidates.get(true);
+        }
+        for (Path file : stale) {
+            Files.deleteIfExists(file);
+        }
+        for (Path file : unreferenced) {
+            Files.deleteIfExists(file);
+        }
+        return unreferenced.size();
+    }
+
+    /**
+     * @return number of references to each digest in the test sources
+     */
+    public Map<String, Integer> references(Path... testSources) throws IOException {
+        final Map<String, Integer> references = new HashMap<>();
+        for (Path testSource : testSources) {
+            if (!Files.exists(testSource)) {
+                continue;
+            }
+            final List<Path> sources;
+            try (Stream<Path> files = Files.walk(testSource)) {
+                sources = files.filter(file -> file.toString().endsWith(".java")).collect(Collectors.toList());
+            }
+            for (Path source : sources) {
+                try (BufferedReader reader = Files.newBufferedReader(source, StandardCharsets.UTF_8)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        Matcher matcher = digestReference.matcher(line);
+                        while (matcher.find()) {
+                            references.merge(matcher.group(1), 1, Integer::sum);
+                        }
+                    }
+                }
+            }
+        }
+        return references;
+    }
+
+    /**
+     * @return true for a temporary file of this store no writer is using
+     */
+    private boolean isStale(Path file) {
+        final String fileName = file.getFileName().toString();
+        return fileName.startsWith(temporaryPrefix) && fileName.endsWith(TEMPORARY_EXTENSION)
+                && !temporaries.contains(file);
+    }
+
+    private boolean isUnreferenced(Path file, Map<String, Integer> references) {
+        final String fileName = file.getFileName().toString();
+        if (!isDigestName(fileName)) {
+            return false;
+        }
+        final String digest = digestOf(fileName);
+        return !references.containsKey(digest) && !isHandedOut(digest);
+    }
+
+    private static boolean isDigestName(String fileName) {
+        final int dot = fileName.indexOf('.');
+        return dot == DIGEST_LENGTH && fileName.substring(0, dot).chars().allMatch(FixtureStore::isHexDigit);
+    }
+
+    private static String digestOf(String fileName) {
+        return fileName.substring(0, DIGEST_LENGTH);
+    }
+
+    private static boolean isHexDigit(int c) {
+        return c >= '0' && c <= '9' || c >= 'a' && c <= 'f';
+    }
+
+    private static String toHex(byte[] digest) {
+        StringBuilder hex = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            hex.append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+        }
+        return hex.toString();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform supports SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "FixtureStore{" +
+                "directory=" + directory +
+                ", folder='" + folder + '\'' +
+                ", thresholdChars=" + thresholdChars +
+                ", contentAddressed=" + contentAddressed +
+                ", fixtures=" + getFixtures() +
+                ", handedOut=" + getHandedOut() +
+                ", deduplicated=" + getDeduplicated() +
+                ", bytes=" + getBytes() +
+                '}';
+    }
+
+    private static final class HandOut {
+        private int count;
+        private long nanos;
+    }
+
+    /**
+     * A reserved fixture file. The resource name of a content-addressed fixture is known once it is written.
+     */
+    public final class Fixture {
+        private final Path path;
+        private final String extension;
+        private String resource;
+        private boolean open;
+        private boolean discarded;
+
+        /**
+         * @param path      the fixture file or a temporary file of a content-addressed fixture
+         * @param resource  resource name, null until a content-addressed fixture is stored
+         * @param extension extension of a content-addressed fixture
+         */
+        private Fixture(Path path, String resource, String extension) {
+            this.path = path;
+            this.resource = resource;
+            this.extension = extension;
+        }
+
+        /**
+         * @return classpath resource name the generated test loads the fixture by
+         */
+        public String getResource() {
+            return resource;
+        }
+
+        /**
+         * @return buffered UTF-8 writer of the file, the fixture is stored when the writer is closed
+         */
+        public Writer openWriter() throws IOException {
+            final MessageDigest digest = contentAddressed ? sha256() : null;
+            OutputStream out;
+            try {
+                out = Files.newOutputStream(path);
+            } catch (IOException e) {
+                delete();
+                throw e;
+            }
+            open = true;
+            if (digest != null) {
+                out = new DigestOutputStream(out, digest);
+            }
+            return new FilterWriter(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE)) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } catch (IOException e) {
+                        delete();
+                        throw e;
+                    }
+                    if (discarded) {
+                        delete();
+                    } else {
+                        stored(digest);
+                    }
+                }
+            };
+        }
+
+        /**
+         * Drops a fixture whose value could not be rendered completely. The file is deleted
+         * when its writer is closed, or right away if no writer was opened.
+         */
+        public void discard() throws IOException {
+            discarded = true;
+            if (!open) {
+                delete();
+            }
+        }
+
+        public void write(byte[] data) throws IOException {
+            try {
+                Files.write(path, data);
+            } catch (IOException e) {
+                delete();
+                throw e;
+            }
+            stored(contentAddressed ? sha256().digest(data) : null);
+        }
+
+        /**
+         * Deletes the file of a fixture that was not written completely.
+         */
+        private void delete() throws IOException {
+            if (resource == null) {
+                discardTemporary(path);
+            } else {
+                Files.deleteIfExists(path);
+            }
+        }
+
+        private void stored(MessageDigest digest) throws IOException {
+            stored(digest == null ? null : digest.digest());
+        }
+
+        private void stored(byte[] digest) throws IOException {
+            if (digest == null) {
+                onWritten(path);
+            } else {
+                resource = store(path, digest, extension);
+            }
+        }
+    }
+
+    public static class FixtureStoreBuilder {
+        private Path directory = Paths.get("src/test/resources");
+        private String folder = "fixtures";
+        private int thresholdChars = 16 * 1024;
+        private boolean contentAddressed;
+        private int maxHandedOut = 10_000;
+        private long handOutTimeoutNanos = TimeUnit.HOURS.toNanos(1);
+
+        FixtureStoreBuilder() {
+        }
+
+        /**
+         * @param directory resource root of the generated tests
+         */
+        public FixtureStoreBuilder directory(Path directory) {
+            this.directory = directory;
+            return this;
+        }
+
+        /**
+         * @param folder resource folder of the fixtures
+         */
+        public FixtureStoreBuilder folder(String folder) {
+            this.folder = folder;
+            return this;
+        }
+
+        public FixtureStoreBuilder thresholdChars(int thresholdChars) {
+            this.thresholdChars = thresholdChars;
+            return this;
+        }
+
+        /**
+         * @param contentAddressed name fixtures by the digest of their content, so equal values are stored once
+         */
+        public FixtureStoreBuilder contentAddressed(boolean contentAddressed) {
+            this.contentAddressed = contentAddressed;
+            return this;
+        }
+
+        /**
+         * @param maxHandedOut most recently handed out fixtures kept by the garbage collection
+         */
+        public FixtureStoreBuilder maxHandedOut(int maxHandedOut) {
+            this.maxHandedOut = maxHandedOut;
+            return this;
+        }
+
+        /**
+         * @param handOutTimeout time a fixture not released by its tests is kept by the garbage collection
+         */
+        public FixtureStoreBuilder handOutTimeout(long handOutTimeout, TimeUnit unit) {
+            this.handOutTimeoutNanos = unit.toNanos(handOutTimeout);
+            return this;
+        }
+
+        public FixtureStore build() {
+            if (maxHandedOut <= 0 || handOutTimeoutNanos <= 0) {
+                throw new IllegalArgumentException("Hand-out limit and timeout must be positive");
+            }
+            return new FixtureStore(directory, folder, thresholdChars, contentAddressed,
+                    maxHandedOut, handOutTimeoutNanos);
+        }
+
+        @Override
+        public String toString() {
+            return "FixtureStore.FixtureStoreBuilder(directory=" + this.directory +
+                    ", folder=" + this.folder +
+                    ", thresholdChars=" + this.thresholdChars +
+                    ", contentAddressed=" + this.contentAddressed +
+                    ", maxHandedOut=" + this.maxHandedOut +
+                    ", handOutTimeoutNanos=" + this.handOutTimeoutNanos + ")";
+        }
+    }
+}
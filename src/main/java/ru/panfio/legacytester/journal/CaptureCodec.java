@@ -0,0 +1,320 @@
+package ru.panfio.legacytester.journal;
+
+import com.fasterxml.jackson.databind.JavaType;
+import ru.panfio.legacytester.AsyncResult;
+import ru.panfio.legacytester.MethodCapture;
+import ru.panfio.legacytester.ValueSummary;
+import ru.panfio.legacytester.snapshot.SnapshotCodec;
+import ru.panfio.legacytester.snapshot.ValueSnapshot;
+import ru.panfio.legacytester.util.JsonUtils;
+import ru.panfio.legacytester.util.SizeEstimator;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary form of a journal record payload.
+ * Methods are stored as signatures, values as Smile snapshots.
+ */
+final class CaptureCodec {
+    private static final int VERSION = 1;
+
+    private static final byte NULL = 0;
+    private static final byte SNAPSHOT = 1;
+    private static final byte VALUE = 2;
+    private static final byte SUMMARY = 3;
+    private static final byte ASYNC = 4;
+
+    private static final byte NO_EXCEPTION = 0;
+    private static final byte SERIALIZED_EXCEPTION = 1;
+    private static final byte DESCRIBED_EXCEPTION = 2;
+
+    private static final Map<String, Class<?>> PRIMITIVES = new HashMap<>();
+
+    static {
+        for (Class<?> type : new Class<?>[]{boolean.class, byte.class, short.class, char.class,
+                int.class, long.class, float.class, double.class, void.class}) {
+            PRIMITIVES.put(type.getName(), type);
+        }
+    }
+
+    private CaptureCodec() {
+        throw new RuntimeException("Utility class");
+    }
+
+    static byte[] encode(JournalRecord record) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(VERSION);
+        out.writeLong(record.getTimestamp());
+        writeString(out, record.getTestClassName());
+        writeString(out, record.getQualifier());
+        out.writeInt(record.getCaptures().size());
+        for (MethodCapture capture : record.getCaptures()) {
+            writeCapture(out, capture);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    static JournalRecord decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported record version " + version);
+        }
+        long timestamp = in.readLong();
+        String testClassName = readString(in);
+        String qualifier = readString(in);
+        int count = in.readInt();
+        List<MethodCapture> captures = new ArrayList<>(count);
+        for (int index = 0; index < count; index++) {
+            captures.add(readCapture(in));
+        }
+        return new JournalRecord(testClassName, qualifier, timestamp, Collections.unmodifiableList(captures));
+    }
+
+    /**
+     * Decodes the test class name and the qualifier of a record, captures are not decoded.
+     */
+    static String[] decodeShard(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported record version " + version);
+        }
+        in.readLong();
+        return new String[]{readString(in), readString(in)};
+    }
+
+    private static void writeCapture(DataOutputStream out, MethodCapture capture) throws IOException {
+        // values that are still live references are snapshotted the same way as in snapshot mode
+        MethodCapture snapshot = SnapshotCodec.snapshot(capture);
+        out.writeByte(snapshot.getType().ordinal());
+        writeString(out, snapshot.getFieldName());
+        writeMethod(out, snapshot.getMethod());
+        Object[] arguments = snapshot.getArguments();
+        out.writeInt(arguments == null ? -1 : arguments.length);
+        if (arguments != null) {
+            for (Object argument : arguments) {
+                writeValue(out, argument);
+            }
+        }
+        writeValue(out, snapshot.getResult());
+        writeException(out, snapshot.getException());
+    }
+
+    private static MethodCapture readCapture(DataInputStream in) throws IOException {
+        MethodCapture.Type type = MethodCapture.Type.values()[in.readUnsignedByte()];
+        String fieldName = readString(in);
+        Method method = readMethod(in);
+        int argumentCount = in.readInt();
+        Object[] arguments = null;
+        if (argumentCount >= 0) {
+            arguments = new Object[argumentCount];
+            for (int index = 0; index < argumentCount; index++) {
+                arguments[index] = readValue(in);
+            }
+        }
+        return MethodCapture.builder()
+                .type(type)
+                .fieldName(fieldName)
+                .method(method)
+                .arguments(arguments)
+                .result(readValue(in))
+                .exception(readException(in))
+                .build();
+    }
+
+    private static void writeMethod(DataOutputStream out, Method method) throws IOException {
+        writeString(out, method.getDeclaringClass().getName());
+        writeString(out, method.getName());
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        out.writeInt(parameterTypes.length);
+        for (Class<?> parameterType : parameterTypes) {
+            writeString(out, parameterType.getName());
+        }
+    }
+
+    private static Method readMethod(DataInputStream in) throws IOException {
+        String className = readString(in);
+        String name = readString(in);
+        Class<?>[] parameterTypes = new Class<?>[in.readInt()];
+        for (int index = 0; index < parameterTypes.length; index++) {
+            parameterTypes[index] = resolveClass(readString(in));
+        }
+        try {
+            return resolveClass(className).getDeclaredMethod(name, parameterTypes);
+        } catch (NoSuchMethodException e) {
+            throw new IOException("Method " + className + "#" + name + " is not found", e);
+        }
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof ValueSnapshot && !((ValueSnapshot) value).isReplayable()) {
+            // only the type of a value that couldn't be encoded is journaled
+            writeSummary(out, ValueSummary.restore(((ValueSnapshot) value).getType(), -1, 0));
+        } else if (value instanceof ValueSnapshot) {
+            ValueSnapshot snapshot = (ValueSnapshot) value;
+            out.writeByte(SNAPSHOT);
+            writeString(out, snapshot.getType().getName());
+            writeBytes(out, SnapshotCodec.bytes(snapshot));
+            writeString(out, snapshot.getText());
+        } else if (value instanceof ValueSummary) {
+            writeSummary(out, (ValueSummary) value);
+        } else if (value instanceof AsyncResult) {
+            AsyncResult async = (AsyncResult) value;
+            out.writeByte(ASYNC);
+            writeString(out, async.getType().getName());
+            out.writeBoolean(async.isDone());
+            writeValue(out, async.getValue());
+            writeException(out, async.getException());
+        } else {
+            byte[] data;
+            try {
+                data = SnapshotCodec.encode(value);
+            } catch (IOException e) {
+                // the value is not serializable, only its shape is journaled
+                writeSummary(out, ValueSummary.restore(value.getClass(), -1, SizeEstimator.estimate(value)));
+                return;
+            }
+            out.writeByte(VALUE);
+            writeString(out, value.getClass().getName());
+            writeBytes(out, data);
+        }
+    }
+
+    private static void writeSummary(DataOutputStream out, ValueSummary summary) throws IOException {
+        out.writeByte(SUMMARY);
+        writeString(out, summary.getType().getName());
+        out.writeInt(summary.getSize());
+        out.writeLong(summary.getEstimatedBytes());
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case SNAPSHOT:
+                return SnapshotCodec.restore(resolveValueClass(readString(in)), readBytes(in), readString(in));
+            case VALUE:
+                Class<?> type = resolveClass(readString(in));
+                JavaType javaType = JsonUtils.getMapper().getTypeFactory().constructType(type);
+                return SnapshotCodec.decode(SnapshotCodec.restore(type, readBytes(in), null), javaType);
+            case SUMMARY:
+                return ValueSummary.restore(resolveValueClass(readString(in)), in.readInt(), in.readLong());
+            case ASYNC:
+                return AsyncResult.restore(resolveValueClass(readString(in)), in.readBoolean(), readValue(in), readException(in));
+            default:
+                throw new IOException("Unknown value tag " + tag);
+        }
+    }
+
+    private static void writeException(DataOutputStream out, Throwable exception) throws IOException {
+        if (exception == null) {
+            out.writeByte(NO_EXCEPTION);
+            return;
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream objects = new ObjectOutputStream(bytes)) {
+                objects.writeObject(exception);
+            }
+            out.writeByte(SERIALIZED_EXCEPTION);
+            writeBytes(out, bytes.toByteArray());
+        } catch (IOException e) {
+            // a non-serializable cause or suppressed exception
+            out.writeByte(DESCRIBED_EXCEPTION);
+            writeString(out, exception.getClass().getName());
+            writeString(out, exception.getMessage());
+        }
+    }
+
+    private static Throwable readException(DataInputStream in) throws IOException {
+        byte tag = in.readByte();
+        if (tag == NO_EXCEPTION) {
+            return null;
+        }
+        if (tag == SERIALIZED_EXCEPTION) {
+            try (ObjectInputStream objects = new ObjectInputStream(new ByteArrayInputStream(readBytes(in)))) {
+                return (Throwable) objects.readObject();
+            } catch (ClassNotFoundException e) {
+                throw new IOException(e);
+            }
+        }
+        String className = readString(in);
+        String message = readString(in);
+        try {
+            return (Throwable) resolveClass(className).getConstructor(String.class).newInstance(message);
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            return new RuntimeException(className + ": " + message);
+        }
+    }
+
+    private static Class<?> resolveClass(String name) throws IOException {
+        Class<?> primitive = PRIMITIVES.get(name);
+        if (primitive != null) {
+            return primitive;
+        }
+        try {
+            ClassLoader loader = Thread.currentThread().getContextClassLoader();
+            return Class.forName(name, false, loader != null ? loader : CaptureCodec.class.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Class " + name + " is not found", e);
+        }
+    }
+
+    /**
+     * Snapshots and summaries don't need the original class to be rendered.
+     */
+    private static Class<?> resolveValueClass(String name) {
+        try {
+            return resolveClass(name);
+        } catch (IOException e) {
+            return Object.class;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        writeBytes(out, value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = readBytes(in);
+        return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        if (bytes == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,296 @@
+package ru.panfio.legacytester.journal;
+
+import ru.panfio.legacytester.MethodCapture;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Append-only journal of captured invocations.
+ * A capture costs an encoding and a sequential write into a memory-mapped segment,
+ * tests are rendered later from the journal by {@link JournalReader}.
+ * <pre>{@code
+ *    CaptureJournal journal = CaptureJournal.builder()
+ *                 .directory(Paths.get("/var/log/legacytester"))
+ *                 .segmentSize(64 * 1024 * 1024)
+ *                 .commitInterval(200, TimeUnit.MILLISECONDS)
+ *                 .build();
+ *    LegacyTester tester = new LegacyTester(MyTestClass.class).journal(journal);
+ * }</pre>
+ * Records are flushed to the storage device by a background committer in groups:
+ * every commit interval or as soon as the commit batch of records is written.
+ * A full segment is flushed and the journal rolls over to the next one.
+ */
+public class CaptureJournal implements AutoCloseable {
+    private static final String SEGMENT_PREFIX = "captures-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final AtomicInteger JOURNAL_COUNTER = new AtomicInteger();
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int commitBatch;
+    private final long commitIntervalNanos;
+    private final Object lock = new Object();
+    private final Thread committer;
+    private final LongAdder appended = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder commits = new LongAdder();
+    private final LongAdder rollovers = new LongAdder();
+    private JournalSegment segment;
+    private int uncommitted;
+    private volatile boolean open = true;
+
+    CaptureJournal(Path directory, int segmentSize, int commitBatch, long commitIntervalNanos,
+                   boolean commitOnExit) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.commitBatch = commitBatch;
+        this.commitIntervalNanos = commitIntervalNanos;
+        Files.createDirectories(directory);
+        List<Path> segments = segments(directory);
+        if (segments.isEmpty()) {
+            segment = JournalSegment.create(segmentPath(directory, 0), 0, segmentSize);
+        } else {
+            segment = JournalSegment.recover(segments.get(segments.size() - 1));
+        }
+        final int journalNumber = JOURNAL_COUNTER.incrementAndGet();
+        committer = new Thread(this::commitLoop, "legacytester-journal-" + journalNumber);
+        committer.setDaemon(true);
+        committer.start();
+        if (commitOnExit) {
+            Runtime.getRuntime().addShutdownHook(new Thread(this::close, "legacytester-journal-" + journalNumber + "-close"));
+        }
+    }
+
+    public static CaptureJournalBuilder builder() {
+        return new CaptureJournalBuilder();
+    }
+
+    /**
+     * Appends captured data of one testee invocation.
+     *
+     * @param testClass class of the testee
+     * @param qualifier testee qualifier
+     * @param captures  test, dependency and affect captures
+     * @return false if the journal is closed or the record is larger than a segment
+     */
+    public boolean append(Class<?> testClass, String qualifier, List<MethodCapture> captures) {
+        if (!open) {
+            rejected.increment();
+            return false;
+        }
+        byte[] payload;
+        try {
+            payload = CaptureCodec.encode(new JournalRecord(testClass.getName(), qualifier,
+                    System.currentTimeMillis(), captures));
+        } catch (IOException e) {
+            rejected.increment();
+            e.printStackTrace();
+            return false;
+        }
+        if (payload.length > segmentSize - JournalSegment.HEADER_SIZE - JournalSegment.RECORD_HEADER_SIZE) {
+            rejected.increment();
+            return false;
+        }
+        final int crc = JournalSegment.checksum(payload);
+        synchronized (lock) {
+            if (!open) {
+                rejected.increment();
+                return false;
+            }
+            if (!segment.fits(payload.length)) {
+                try {
+                    rollover();
+                } catch (IOException e) {
+                    rejected.increment();
+                    e.printStackTrace();
+                    return false;
+                }
+            }
+            segment.append(payload, crc);
+            appended.increment();
+            if (++uncommitted >= commitBatch) {
+                lock.notifyAll();
+            }
+        }
+        return true;
+    }
+
+    private void rollover() throws IOException {
+        JournalSegment full = segment;
+        full.force();
+        segment = JournalSegment.create(segmentPath(directory, full.getSequence() + 1),
+                full.getSequence() + 1, segmentSize);
+        rollovers.increment();
+    }
+
+    /**
+     * Flushes all appended records to the storage device.
+     */
+    public void commit() {
+        JournalSegment current;
+        synchronized (lock) {
+            if (uncommitted == 0) {
+                return;
+            }
+            uncommitted = 0;
+            current = segment;
+        }
+        // the segment is flushed outside the lock, appenders keep writing meanwhile
+        current.force();
+        commits.increment();
+    }
+
+    private void commitLoop() {
+        while (open) {
+            synchronized (lock) {
+                if (open && uncommitted < commitBatch) {
+                    try {
+                        TimeUnit.NANOSECONDS.timedWait(lock, commitIntervalNanos);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+            commit();
+        }
+    }
+
+    /**
+     * Stops accepting records and flushes the appended ones.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            if (!open) {
+                return;
+            }
+            open = false;
+            lock.notifyAll();
+        }
+        commit();
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    public long getAppendedCount() {
+        return appended.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public long getCommitCount() {
+        return commits.sum();
+    }
+
+    public long getRolloverCount() {
+        return rollovers.sum();
+    }
+
+    /**
+     * @return segment files of the directory in append order
+     */
+    static List<Path> segments(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return segments;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            stream.forEach(segments::add);
+        }
+        // sequence numbers are zero-padded
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private static Path segmentPath(Path directory, long sequence) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX));
+    }
+
+    public static class CaptureJournalBuilder {
+        private static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+        private static final int DEFAULT_COMMIT_BATCH = 64;
+        private static final long DEFAULT_COMMIT_INTERVAL_MILLIS = 200;
+
+        private Path directory;
+        private int segmentSize = DEFAULT_SEGMENT_SIZE;
+        private int commitBatch = DEFAULT_COMMIT_BATCH;
+        private long commitIntervalNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_COMMIT_INTERVAL_MILLIS);
+        private boolean commitOnExit = true;
+
+        CaptureJournalBuilder() {
+        }
+
+        /**
+         * Opens the journal. Appending continues after the last valid record of the last segment.
+         */
+        public CaptureJournal build() throws IOException {
+            if (directory == null) {
+                throw new IllegalArgumentException("Journal directory is required");
+            }
+            if (segmentSize <= JournalSegment.HEADER_SIZE + JournalSegment.RECORD_HEADER_SIZE
+                    || commitBatch <= 0 || commitIntervalNanos <= 0) {
+                throw new IllegalArgumentException("Segment size, commit batch and commit interval must be positive");
+            }
+            return new CaptureJournal(directory, segmentSize, commitBatch, commitIntervalNanos, commitOnExit);
+        }
+
+        public CaptureJournalBuilder directory(Path directory) {
+            this.directory = directory;
+            return this;
+        }
+
+        /**
+         * @param segmentSize size of a segment file in bytes, also limits the size of a record
+         */
+        public CaptureJournalBuilder segmentSize(int segmentSize) {
+            this.segmentSize = segmentSize;
+            return this;
+        }
+
+        /**
+         * @param commitBatch count of records that triggers a commit before the commit interval passes
+         */
+        public CaptureJournalBuilder commitBatch(int commitBatch) {
+            this.commitBatch = commitBatch;
+            return this;
+        }
+
+        public CaptureJournalBuilder commitInterval(long commitInterval, TimeUnit unit) {
+            this.commitIntervalNanos = unit.toNanos(commitInterval);
+            return this;
+        }
+
+        /**
+         * @param commitOnExit flush appended records on JVM exit
+         */
+        public CaptureJournalBuilder commitOnExit(boolean commitOnExit) {
+            this.commitOnExit = commitOnExit;
+            return this;
+        }
+
+        public String toString() {
+            return "CaptureJournal.CaptureJournalBuilder(directory=" + this.directory +
+                    ", segmentSize=" + this.segmentSize +
+                    ", commitBatch=" + this.commitBatch +
+                    ", commitIntervalNanos=" + this.commitIntervalNanos +
+                    ", commitOnExit=" + this.commitOnExit + ")";
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package ru.panfio.legacytester.journal;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Reads records of a {@link CaptureJournal} directory in append order.
+ * A torn or corrupted record ends its segment, records that can't be decoded
+ * (e.g. the testee class is not on the classpath) are skipped.
+ * <pre>{@code
+ *    JournalReader reader = new JournalReader(Paths.get("/var/log/legacytester"));
+ *    reader.read(record -> System.out.println(new MockTestConstructor(record.getTestClass(),
+ *                 ConstructorConfiguration.defaultConfig(), record.getCaptures()).construct()));
+ * }</pre>
+ */
+public class JournalReader {
+    private final Path directory;
+    private long records;
+    private long undecodable;
+    private int corruptedSegments;
+
+    public JournalReader(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Passes all valid records of the journal to the consumer.
+     */
+    public void read(Consumer<JournalRecord> consumer) throws IOException {
+        for (Path segment : segments()) {
+            read(segment, consumer);
+        }
+    }
+
+    /**
+     * Passes valid records of one segment to the consumer.
+     */
+    public void read(Path segment, Consumer<JournalRecord> consumer) throws IOException {
+        boolean corrupted = JournalSegment.read(segment, payload -> {
+            JournalRecord record;
+            try {
+                record = CaptureCodec.decode(payload);
+            } catch (IOException | RuntimeException e) {
+                undecodable++;
+                e.printStackTrace();
+                return;
+            }
+            records++;
+            consumer.accept(record);
+        });
+        if (corrupted) {
+            corruptedSegments++;
+        }
+    }
+
+    /**
+     * Passes the test class name and the qualifier of valid records of one segment to the consumer.
+     * Captures are not decoded, so it's a cheap way to index a journal.
+     */
+    public void readShards(Path segment, BiConsumer<String, String> consumer) throws IOException {
+        boolean corrupted = JournalSegment.read(segment, payload -> {
+            String[] shard;
+            try {
+                shard = CaptureCodec.decodeShard(payload);
+            } catch (IOException | RuntimeException e) {
+                undecodable++;
+                e.printStackTrace();
+                return;
+            }
+            records++;
+            consumer.accept(shard[0], shard[1]);
+        });
+        if (corrupted) {
+            corruptedSegments++;
+        }
+    }
+
+    /**
+     * Passes valid records of one segment with the given test class and qualifier to the consumer.
+     * Other records are skipped without decoding their captures and are not counted.
+     */
+    public void read(Path segment, String testClassName, String qualifier, Consumer<JournalRecord> consumer)
+            throws IOException {
+        boolean corrupted = JournalSegment.read(segment, payload -> {
+            try {
+                String[] shard = CaptureCodec.decodeShard(payload);
+                if (!shard[0].equals(testClassName) || !shard[1].equals(qualifier)) {
+                    return;
+                }
+            } catch (IOException | RuntimeException e) {
+                return;
+            }
+            JournalRecord record;
+            try {
+                record = CaptureCodec.decode(payload);
+            } catch (IOException | RuntimeException e) {
+                undecodable++;
+                e.printStackTrace();
+                return;
+            }
+            records++;
+            consumer.accept(record);
+        });
+        if (corrupted) {
+            corruptedSegments++;
+        }
+    }
+
+    /**
+     * @return segment files in append order
+     */
+    public List<Path> segments() throws IOException {
+        return CaptureJournal.segments(directory);
+    }
+
+    public long getRecordCount() {
+        return records;
+    }
+
+    public long getUndecodableCount() {
+        return undecodable;
+    }
+
+    /**
+     * @return count of segments that end with a torn or corrupted record
+     */
+    public int getCorruptedSegmentCount() {
+        return corruptedSegments;
+    }
+}
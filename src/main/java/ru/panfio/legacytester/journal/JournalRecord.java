@@ -0,0 +1,62 @@
+package ru.panfio.legacytester.journal;
+
+import ru.panfio.legacytester.MethodCapture;
+
+import java.util.List;
+
+/**
+ * Captured data of one testee invocation read from a {@link CaptureJournal}.
+ */
+public final class JournalRecord {
+    private final String testClassName;
+    private final String qualifier;
+    private final long timestamp;
+    private final List<MethodCapture> captures;
+
+    JournalRecord(String testClassName, String qualifier, long timestamp, List<MethodCapture> captures) {
+        this.testClassName = testClassName;
+        this.qualifier = qualifier;
+        this.timestamp = timestamp;
+        this.captures = captures;
+    }
+
+    public String getTestClassName() {
+        return testClassName;
+    }
+
+    /**
+     * @return test class loaded by the context class loader
+     */
+    public Class<?> getTestClass() throws ClassNotFoundException {
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        return Class.forName(testClassName, false, loader != null ? loader : JournalRecord.class.getClassLoader());
+    }
+
+    public String getQualifier() {
+        return qualifier;
+    }
+
+    /**
+     * @return capture time in epoch milliseconds
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return test, dependency and affect captures of the invocation
+     */
+    public List<MethodCapture> getCaptures() {
+        return captures;
+    }
+
+    @Override
+    public String toString() {
+        return "JournalRecord{" +
+                "testClassName='" + testClassName + '\'' +
+                ", qualifier='" + qualifier + '\'' +
+                ", timestamp=" + timestamp +
+                ", captures=" + captures.size() +
+                '}';
+    }
+}
@@ -0,0 +1,192 @@
+package ru.panfio.legacytester.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Memory-mapped journal file.
+ * <pre>
+ *   header: [magic:int][version:int][sequence:long]
+ *   record: [length:int][crc32:int][payload:length bytes]
+ * </pre>
+ * A zero length marks the end of written records. The payload and the checksum of a record
+ * are written before its length, so a torn write is either invisible or fails the checksum,
+ * and records before it stay readable.
+ */
+final class JournalSegment {
+    static final int MAGIC = 0x4C544A31;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int RECORD_HEADER_SIZE = 8;
+
+    private final Path path;
+    private final long sequence;
+    private final MappedByteBuffer buffer;
+    private int position;
+    private int records;
+
+    private JournalSegment(Path path, long sequence, MappedByteBuffer buffer, int position, int records) {
+        this.path = path;
+        this.sequence = sequence;
+        this.buffer = buffer;
+        this.position = position;
+        this.records = records;
+    }
+
+    /**
+     * Creates a new segment file of the given size.
+     */
+    static JournalSegment create(Path path, long sequence, int size) throws IOException {
+        MappedByteBuffer buffer = map(path, size, true);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putLong(8, sequence);
+        return new JournalSegment(path, sequence, buffer, HEADER_SIZE, 0);
+    }
+
+    /**
+     * Opens an existing segment for appending after its last valid record.
+     * A torn tail after the last valid record is zeroed.
+     */
+    static JournalSegment recover(Path path) throws IOException {
+        MappedByteBuffer buffer = map(path, 0, true);
+        long sequence = checkHeader(path, buffer);
+        int[] end = new int[2];
+        scan(buffer, payload -> end[1]++, end);
+        int position = end[0];
+        if (hasGarbage(buffer, position)) {
+            // stale bytes of a torn record must not be taken for a record after the next append
+            for (int index = position; index < buffer.capacity(); index++) {
+                buffer.put(index, (byte) 0);
+            }
+            buffer.force();
+        }
+        return new JournalSegment(path, sequence, buffer, position, end[1]);
+    }
+
+    /**
+     * Reads valid records of a segment.
+     *
+     * @return true if the segment ends with a torn or corrupted record
+     */
+    static boolean read(Path path, Consumer<byte[]> records) throws IOException {
+        MappedByteBuffer buffer = map(path, 0, false);
+        checkHeader(path, buffer);
+        int[] end = new int[2];
+        return scan(buffer, records, end);
+    }
+
+    private static MappedByteBuffer map(Path path, int size, boolean write) throws IOException {
+        StandardOpenOption[] options = write
+                ? new StandardOpenOption[]{StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE}
+                : new StandardOpenOption[]{StandardOpenOption.READ};
+        try (FileChannel channel = FileChannel.open(path, options)) {
+            long length = Math.max(channel.size(), size);
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("Journal segment " + path + " is too large");
+            }
+            // the mapping stays valid after the channel is closed
+            return channel.map(write ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY, 0, length);
+        }
+    }
+
+    private static long checkHeader(Path path, ByteBuffer buffer) throws IOException {
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a journal segment " + path);
+        }
+        return buffer.getLong(8);
+    }
+
+    /**
+     * @param end receives the position after the last valid record and the record count
+     * @return true if scanning stopped at a torn or corrupted record
+     */
+    private static boolean scan(ByteBuffer buffer, Consumer<byte[]> records, int[] end) {
+        int position = HEADER_SIZE;
+        boolean corrupted = false;
+        while (position + RECORD_HEADER_SIZE <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length == 0) {
+                break;
+            }
+            if (length < 0 || length > buffer.capacity() - position - RECORD_HEADER_SIZE) {
+                corrupted = true;
+                break;
+            }
+            byte[] payload = new byte[length];
+            ByteBuffer source = buffer.duplicate();
+            source.position(position + RECORD_HEADER_SIZE);
+            source.get(payload);
+            if (checksum(payload) != buffer.getInt(position + 4)) {
+                corrupted = true;
+                break;
+            }
+            records.accept(payload);
+            position += RECORD_HEADER_SIZE + length;
+        }
+        end[0] = position;
+        return corrupted;
+    }
+
+    private static boolean hasGarbage(ByteBuffer buffer, int position) {
+        for (int index = position; index < buffer.capacity(); index++) {
+            if (buffer.get(index) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static int checksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        return (int) crc.getValue();
+    }
+
+    boolean fits(int payloadLength) {
+        return position + RECORD_HEADER_SIZE + payloadLength <= buffer.capacity();
+    }
+
+    /**
+     * Must be called under the journal lock after {@link #fits(int)}.
+     */
+    void append(byte[] payload, int crc) {
+        ByteBuffer target = buffer.duplicate();
+        target.position(position + RECORD_HEADER_SIZE);
+        target.put(payload);
+        buffer.putInt(position + 4, crc);
+        // the length publishes the record
+        buffer.putInt(position, payload.length);
+        position += RECORD_HEADER_SIZE + payload.length;
+        records++;
+    }
+
+    /**
+     * Flushes written records to the storage device.
+     */
+    void force() {
+        buffer.force();
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    long getSequence() {
+        return sequence;
+    }
+
+    int getPosition() {
+        return position;
+    }
+
+    int getRecords() {
+        return records;
+    }
+}
@@ -0,0 +1,87 @@
+package ru.panfio.legacytester.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public final class FieldMetrics implements FieldMetricsMXBean {
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder captures = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder bytesSerialized = new LongAdder();
+    private final LongAdder snapshotFailures = new LongAdder();
+    private final LatencyHistogram snapshot = new LatencyHistogram();
+
+    FieldMetrics() {
+    }
+
+    public void onCall() {
+        calls.increment();
+    }
+
+    /**
+     * @param recorded false if the capture didn't fit into the budget
+     */
+    public void onCapture(boolean recorded) {
+        if (recorded) {
+            captures.increment();
+        } else {
+            dropped.increment();
+        }
+    }
+
+    public void onSnapshot(long nanos, long bytes) {
+        snapshot.record(nanos);
+        bytesSerialized.add(bytes);
+    }
+
+    /**
+     * @param count values kept as non-replayable snapshots because they couldn't be encoded
+     */
+    public void onSnapshotFailures(int count) {
+        snapshotFailures.add(count);
+    }
+
+    @Override
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    @Override
+    public long getCaptures() {
+        return captures.sum();
+    }
+
+    @Override
+    public long getDroppedCaptures() {
+        return dropped.sum();
+    }
+
+    @Override
+    public long getBytesSerialized() {
+        return bytesSerialized.sum();
+    }
+
+    @Override
+    public long getSnapshotFailures() {
+        return snapshotFailures.sum();
+    }
+
+    @Override
+    public long getSnapshotMeanNanos() {
+        return snapshot.getMeanNanos();
+    }
+
+    @Override
+    public long getSnapshotP99Nanos() {
+        return snapshot.getPercentileNanos(99);
+    }
+
+    @Override
+    public void reset() {
+        calls.reset();
+        captures.reset();
+        dropped.reset();
+        bytesSerialized.reset();
+        snapshotFailures.reset();
+        snapshot.reset();
+    }
+}
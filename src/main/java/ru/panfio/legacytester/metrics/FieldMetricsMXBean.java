@@ -0,0 +1,35 @@
+package ru.panfio.legacytester.metrics;
+
+/**
+ * Capture overhead of one dependency field of a tester.
+ */
+public interface FieldMetricsMXBean {
+
+    /**
+     * @return calls of the dependency proxy
+     */
+    long getCalls();
+
+    /**
+     * @return calls recorded into a testee invocation
+     */
+    long getCaptures();
+
+    /**
+     * @return calls made during a testee invocation but not recorded because of the capture budget
+     */
+    long getDroppedCaptures();
+
+    long getBytesSerialized();
+
+    /**
+     * @return captured values snapshot mode couldn't encode, kept by their text form only
+     */
+    long getSnapshotFailures();
+
+    long getSnapshotMeanNanos();
+
+    long getSnapshotP99Nanos();
+
+    void reset();
+}
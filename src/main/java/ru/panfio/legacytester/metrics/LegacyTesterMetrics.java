@@ -0,0 +1,112 @@
+package ru.panfio.legacytester.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of tester metrics exposed through the platform MBean server as
+ * {@code ru.panfio.legacytester:type=Tester,class=<test class>,qualifier=<qualifier>}
+ * and {@code ru.panfio.legacytester:type=Field,class=<test class>,qualifier=<qualifier>,field=<field>}.
+ */
+public final class LegacyTesterMetrics {
+    public static final String DOMAIN = "ru.panfio.legacytester";
+
+    private static final Map<String, TesterMetrics> TESTERS = new ConcurrentHashMap<>();
+    private static final ThreadLocal<long[]> JSON_NANOS = ThreadLocal.withInitial(() -> new long[1]);
+
+    private LegacyTesterMetrics() {
+        throw new RuntimeException("Utility class");
+    }
+
+    /**
+     * @return metrics shared by all testers of the test class and qualifier, to be {@link #release released}
+     * when the tester stops using them
+     */
+    public static TesterMetrics of(Class<?> testClass, String qualifier) {
+        return TESTERS.compute(testClass.getName() + "#" + qualifier, (key, metrics) -> {
+            if (metrics == null) {
+                metrics = new TesterMetrics(testClass.getName(), qualifier);
+                register(metrics, "Tester", testClass.getName(), qualifier, null);
+            }
+            metrics.users++;
+            return metrics;
+        });
+    }
+
+    /**
+     * Unregisters MBeans of the metrics when the last tester using them releases them.
+     */
+    public static void release(TesterMetrics metrics) {
+        TESTERS.computeIfPresent(metrics.getTestClassName() + "#" + metrics.getQualifier(), (key, registered) -> {
+            if (registered != metrics || --registered.users > 0) {
+                return registered;
+            }
+            unregister("Tester", metrics.getTestClassName(), metrics.getQualifier(), null);
+            for (String fieldName : metrics.fieldNames()) {
+                unregister("Field", metrics.getTestClassName(), metrics.getQualifier(), fieldName);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Registers an MBean of the test class and qualifier in the {@link #DOMAIN} domain.
+     */
+    public static void register(Object metrics, String type, String testClassName, String qualifier, String fieldName) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = objectName(type, testClassName, qualifier, fieldName);
+            if (!server.isRegistered(objectName)) {
+                server.registerMBean(metrics, objectName);
+            }
+        } catch (JMException | RuntimeException e) {
+            // metrics are still collected and available through the tester
+            e.printStackTrace();
+        }
+    }
+
+    private static void unregister(String type, String testClassName, String qualifier, String fieldName) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = objectName(type, testClassName, qualifier, fieldName);
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (JMException | RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static ObjectName objectName(String type, String testClassName, String qualifier, String fieldName)
+            throws JMException {
+        StringBuilder name = new StringBuilder(DOMAIN)
+                .append(":type=").append(type)
+                .append(",class=").append(ObjectName.quote(testClassName))
+                .append(",qualifier=").append(ObjectName.quote(String.valueOf(qualifier)));
+        if (fieldName != null) {
+            name.append(",field=").append(ObjectName.quote(fieldName));
+        }
+        return new ObjectName(name.toString());
+    }
+
+    /**
+     * Adds JSON serialization time of the test being constructed on the current thread.
+     */
+    public static void addJsonNanos(long nanos) {
+        JSON_NANOS.get()[0] += nanos;
+    }
+
+    /**
+     * @return JSON serialization time accumulated on the current thread since the last call
+     */
+    public static long takeJsonNanos() {
+        long[] accumulated = JSON_NANOS.get();
+        final long nanos = accumulated[0];
+        accumulated[0] = 0;
+        return nanos;
+    }
+}
@@ -0,0 +1,198 @@
+package ru.panfio.legacytester.metrics;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms of one test class and qualifier.
+ * All recording methods are lock-free: counters are {@link LongAdder}s,
+ * per-field metrics are created once and then only read from the map.
+ */
+public final class TesterMetrics implements TesterMetricsMXBean {
+    private final String testClassName;
+    private final String qualifier;
+    private final Map<String, FieldMetrics> fields = new ConcurrentHashMap<>();
+    private final LongAdder interceptedCalls = new LongAdder();
+    private final LongAdder sampledOutCalls = new LongAdder();
+    private final LongAdder captures = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder bytesSerialized = new LongAdder();
+    private final LongAdder snapshotFailures = new LongAdder();
+    private final LatencyHistogram callOverhead = new LatencyHistogram();
+    private final LatencyHistogram snapshot = new LatencyHistogram();
+    private final LatencyHistogram json = new LatencyHistogram();
+    private final LatencyHistogram render = new LatencyHistogram();
+    /**
+     * Count of testers using the metrics, guarded by the {@link LegacyTesterMetrics} registry.
+     */
+    int users;
+
+    TesterMetrics(String testClassName, String qualifier) {
+        this.testClassName = testClassName;
+        this.qualifier = qualifier;
+    }
+
+    /**
+     * @return metrics of the dependency field, registered on first use
+     */
+    public FieldMetrics field(String fieldName) {
+        final String key = String.valueOf(fieldName);
+        FieldMetrics metrics = fields.get(key);
+        if (metrics != null) {
+            return metrics;
+        }
+        return fields.computeIfAbsent(key, name -> {
+            FieldMetrics created = new FieldMetrics();
+            LegacyTesterMetrics.register(created, "Field", testClassName, qualifier, name);
+            return created;
+        });
+    }
+
+    Set<String> fieldNames() {
+        return fields.keySet();
+    }
+
+    /**
+     * @param overheadNanos time the tester added to the wrapped call
+     */
+    public void onCall(long overheadNanos, boolean sampled) {
+        interceptedCalls.increment();
+        if (!sampled) {
+            sampledOutCalls.increment();
+        }
+        callOverhead.record(overheadNanos);
+    }
+
+    public void onCapture() {
+        captures.increment();
+    }
+
+    public void onDropped() {
+        dropped.increment();
+    }
+
+    public void onSnapshot(long nanos, long bytes) {
+        snapshot.record(nanos);
+        bytesSerialized.add(bytes);
+    }
+
+    /**
+     * @param count values kept as non-replayable snapshots because they couldn't be encoded
+     */
+    public void onSnapshotFailures(int count) {
+        snapshotFailures.add(count);
+    }
+
+    /**
+     * @param renderNanos test construction time without JSON serialization
+     */
+    public void onGeneration(long jsonNanos, long renderNanos) {
+        json.record(jsonNanos);
+        render.record(renderNanos);
+    }
+
+    public String getTestClassName() {
+        return testClassName;
+    }
+
+    public String getQualifier() {
+        return qualifier;
+    }
+
+    @Override
+    public long getInterceptedCalls() {
+        return interceptedCalls.sum();
+    }
+
+    @Override
+    public long getSampledOutCalls() {
+        return sampledOutCalls.sum();
+    }
+
+    @Override
+    public long getCaptures() {
+        return captures.sum();
+    }
+
+    @Override
+    public long getDroppedCaptures() {
+        return dropped.sum();
+    }
+
+    @Override
+    public long getBytesSerialized() {
+        return bytesSerialized.sum();
+    }
+
+    @Override
+    public long getCallOverheadMeanNanos() {
+        return callOverhead.getMeanNanos();
+    }
+
+    @Override
+    public long getCallOverheadP50Nanos() {
+        return callOverhead.getPercentileNanos(50);
+    }
+
+    @Override
+    public long getCallOverheadP99Nanos() {
+        return callOverhead.getPercentileNanos(99);
+    }
+
+    @Override
+    public long getCallOverheadMaxNanos() {
+        return callOverhead.getMaxNanos();
+    }
+
+    @Override
+    public long getSnapshotFailures() {
+        return snapshotFailures.sum();
+    }
+
+    @Override
+    public long getSnapshotMeanNanos() {
+        return snapshot.getMeanNanos();
+    }
+
+    @Override
+    public long getSnapshotP99Nanos() {
+        return snapshot.getPercentileNanos(99);
+    }
+
+    @Override
+    public long getJsonMeanNanos() {
+        return json.getMeanNanos();
+    }
+
+    @Override
+    public long getJsonP99Nanos() {
+        return json.getPercentileNanos(99);
+    }
+
+    @Override
+    public long getRenderMeanNanos() {
+        return render.getMeanNanos();
+    }
+
+    @Override
+    public long getRenderP99Nanos() {
+        return render.getPercentileNanos(99);
+    }
+
+    @Override
+    public void reset() {
+        interceptedCalls.reset();
+        sampledOutCalls.reset();
+        captures.reset();
+        dropped.reset();
+        bytesSerialized.reset();
+        snapshotFailures.reset();
+        callOverhead.reset();
+        snapshot.reset();
+        json.reset();
+        render.reset();
+        fields.values().forEach(FieldMetrics::reset);
+    }
+}
@@ -0,0 +1,60 @@
+package ru.panfio.legacytester.metrics;
+
+/**
+ * Capture and generation overhead of one test class and qualifier.
+ * Durations are in nanoseconds, percentiles are power-of-two bucket bounds.
+ */
+public interface TesterMetricsMXBean {
+
+    /**
+     * @return testee calls that went through the tester
+     */
+    long getInterceptedCalls();
+
+    /**
+     * @return testee calls rejected by the sampler
+     */
+    long getSampledOutCalls();
+
+    /**
+     * @return testee invocations captured for test generation
+     */
+    long getCaptures();
+
+    /**
+     * @return captures abandoned by the capture budget, suppressed as duplicates or rejected by the generator queue
+     */
+    long getDroppedCaptures();
+
+    /**
+     * @return bytes of captured values encoded by snapshot mode
+     */
+    long getBytesSerialized();
+
+    /**
+     * @return captured values snapshot mode couldn't encode, kept by their text form only
+     */
+    long getSnapshotFailures();
+
+    long getCallOverheadMeanNanos();
+
+    long getCallOverheadP50Nanos();
+
+    long getCallOverheadP99Nanos();
+
+    long getCallOverheadMaxNanos();
+
+    long getSnapshotMeanNanos();
+
+    long getSnapshotP99Nanos();
+
+    long getJsonMeanNanos();
+
+    long getJsonP99Nanos();
+
+    long getRenderMeanNanos();
+
+    long getRenderP99Nanos();
+
+    void reset();
+}
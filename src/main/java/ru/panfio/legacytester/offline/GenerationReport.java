@@ -0,0 +1,93 @@
+package ru.panfio.legacytester.offline;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counters and per-phase wall-clock timings of an {@link OfflineTestGenerator} run.
+ */
+public final class GenerationReport {
+    private final int shards;
+    private final long captures;
+    private final long generated;
+    private final long failed;
+    private final long undecodable;
+    private final int corruptedSegments;
+    private final long deserialisationNanos;
+    private final long renderingNanos;
+    private final long writingNanos;
+
+    GenerationReport(int shards, long captures, long generated, long failed, long undecodable,
+                     int corruptedSegments, long deserialisationNanos, long renderingNanos, long writingNanos) {
+        this.shards = shards;
+        this.captures = captures;
+        this.generated = generated;
+        this.failed = failed;
+        this.undecodable = undecodable;
+        this.corruptedSegments = corruptedSegments;
+        this.deserialisationNanos = deserialisationNanos;
+        this.renderingNanos = renderingNanos;
+        this.writingNanos = writingNanos;
+    }
+
+    /**
+     * @return count of distinct (test class, qualifier) pairs
+     */
+    public int getShards() {
+        return shards;
+    }
+
+    /**
+     * @return count of decoded capture records
+     */
+    public long getCaptures() {
+        return captures;
+    }
+
+    public long getGenerated() {
+        return generated;
+    }
+
+    /**
+     * @return count of records whose test could not be rendered
+     */
+    public long getFailed() {
+        return failed;
+    }
+
+    public long getUndecodable() {
+        return undecodable;
+    }
+
+    public int getCorruptedSegments() {
+        return corruptedSegments;
+    }
+
+    public long getDeserialisation(TimeUnit unit) {
+        return unit.convert(deserialisationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public long getRendering(TimeUnit unit) {
+        return unit.convert(renderingNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public long getWriting(TimeUnit unit) {
+        return unit.convert(writingNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return captures processed per second of the whole run
+     */
+    public double getThroughput() {
+        long totalNanos = deserialisationNanos + renderingNanos + writingNanos;
+        return totalNanos == 0 ? 0 : captures * 1e9 / totalNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Generated %d of %d captures in %d shards (%d failed, %d undecodable, %d corrupted segments)%n" +
+                        "deserialisation %d ms, rendering %d ms, writing %d ms, throughput %.1f captures/s",
+                generated, captures, shards, failed, undecodable, corruptedSegments,
+                getDeserialisation(TimeUnit.MILLISECONDS), getRendering(TimeUnit.MILLISECONDS),
+                getWriting(TimeUnit.MILLISECONDS), getThroughput());
+    }
+}
@@ -0,0 +1,430 @@
+package ru.panfio.legacytester.offline;
+
+import ru.panfio.legacytester.MethodCapture;
+import ru.panfio.legacytester.constructor.ConstructorConfiguration;
+import ru.panfio.legacytester.constructor.ConstructorSupplier;
+import ru.panfio.legacytester.constructor.MockTestConstructor;
+import ru.panfio.legacytester.constructor.TestConstructor;
+import ru.panfio.legacytester.journal.JournalReader;
+import ru.panfio.legacytester.journal.JournalRecord;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Renders tests from a {@link ru.panfio.legacytester.journal.CaptureJournal} outside the production JVM.
+ * <pre>
+ *   java -cp app.jar:legacytester.jar ru.panfio.legacytester.offline.OfflineTestGenerator \
+ *        /var/log/legacytester generated-tests --parallelism=8
+ * </pre>
+ * Records are sharded by test class and qualifier. Segments are first indexed without decoding captures,
+ * then shards are decoded, rendered and written one at a time, so only one shard is held in memory.
+ * Segments are decoded and tests are rendered in parallel on a fork-join pool, large shards are split into chunks.
+ * Rendering of a capture is bounded by a timeout, a capture that is not rendered in time is reported as failed.
+ * The output doesn't depend on parallelism: shards are written in the order of their keys,
+ * tests of a shard in the journal order.
+ */
+public class OfflineTestGenerator {
+    private static final Object FAILED = new Object();
+
+    private final Path journalDirectory;
+    private final Path outputDirectory;
+    private final int parallelism;
+    private final int chunkSize;
+    private final long renderTimeoutNanos;
+    private final Supplier<ConstructorConfiguration> constructorConfigSupplier;
+    private final ConstructorSupplier<Class<?>, ConstructorConfiguration, List<MethodCapture>, TestConstructor> testConstructorSupplier;
+
+    OfflineTestGenerator(Path journalDirectory, Path outputDirectory, int parallelism, int chunkSize, long renderTimeoutNanos,
+                         Supplier<ConstructorConfiguration> constructorConfigSupplier,
+                         ConstructorSupplier<Class<?>, ConstructorConfiguration, List<MethodCapture>, TestConstructor> testConstructorSupplier) {
+        this.journalDirectory = journalDirectory;
+        this.outputDirectory = outputDirectory;
+        this.parallelism = parallelism;
+        this.chunkSize = chunkSize;
+        this.renderTimeoutNanos = renderTimeoutNanos;
+        this.constructorConfigSupplier = constructorConfigSupplier;
+        this.testConstructorSupplier = testConstructorSupplier;
+    }
+
+    public static OfflineTestGeneratorBuilder builder() {
+        return new OfflineTestGeneratorBuilder();
+    }
+
+    /**
+     * Usage: {@code OfflineTestGenerator <journal-directory> [<output-directory>] [--parallelism=N]}.
+     * Without an output directory tests are printed to stdout.
+     */
+    public static void main(String[] args) throws IOException {
+        OfflineTestGeneratorBuilder builder = builder();
+        List<String> paths = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--parallelism=")) {
+                builder.parallelism(Integer.parseInt(arg.substring("--parallelism=".length())));
+            } else {
+                paths.add(arg);
+            }
+        }
+        if (paths.isEmpty() || paths.size() > 2) {
+            System.err.println("Usage: OfflineTestGenerator <journal-directory> [<output-directory>] [--parallelism=N]");
+            System.exit(2);
+        }
+        builder.journalDirectory(Paths.get(paths.get(0)));
+        if (paths.size() == 2) {
+            builder.outputDirectory(Paths.get(paths.get(1)));
+        }
+        GenerationReport report = builder.build().generate();
+        System.err.println(report);
+    }
+
+    /**
+     * Reads the journal, renders and writes tests.
+     */
+    public GenerationReport generate() throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return generate(pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private GenerationReport generate(ForkJoinPool pool) throws IOException {
+        long start = System.nanoTime();
+        JournalReader journal = new JournalReader(journalDirectory);
+        List<Callable<SegmentIndex>> reads = new ArrayList<>();
+        for (Path segment : journal.segments()) {
+            reads.add(() -> SegmentIndex.read(journalDirectory, segment));
+        }
+        Map<String, Shard> shards = new TreeMap<>();
+        long undecodable = 0;
+        int corruptedSegments = 0;
+        for (Future<SegmentIndex> read : pool.invokeAll(reads)) {
+            SegmentIndex segment = join(read);
+            undecodable += segment.reader.getUndecodableCount();
+            corruptedSegments += segment.reader.getCorruptedSegmentCount();
+            for (Shard shard : segment.shards.values()) {
+                shards.computeIfAbsent(shard.key, key -> new Shard(shard.testClassName, shard.qualifier))
+                        .segments.add(segment.segment);
+            }
+        }
+        long deserialisation = System.nanoTime() - start;
+        long rendering = 0;
+        long writing = 0;
+
+        long captures = 0;
+        long generated = 0;
+        LongAdder failed = new LongAdder();
+        Writer stdout = null;
+        if (outputDirectory == null) {
+            stdout = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        } else {
+            Files.createDirectories(outputDirectory);
+        }
+        for (Shard shard : shards.values()) {
+            long phase = System.nanoTime();
+            List<JournalRecord> records = new ArrayList<>();
+            List<Callable<SegmentRecords>> shardReads = new ArrayList<>();
+            for (Path segment : shard.segments) {
+                shardReads.add(() -> SegmentRecords.read(journalDirectory, segment, shard));
+            }
+            for (Future<SegmentRecords> read : pool.invokeAll(shardReads)) {
+                SegmentRecords segment = join(read);
+                undecodable += segment.reader.getUndecodableCount();
+                records.addAll(segment.records);
+            }
+            captures += records.size();
+            long read = System.nanoTime();
+            deserialisation += read - phase;
+
+            AtomicReferenceArray<Object> tests = render(pool, records, failed);
+            long rendered = System.nanoTime();
+            rendering += rendered - read;
+
+            generated += write(shard, tests, stdout);
+            writing += System.nanoTime() - rendered;
+        }
+        return new GenerationReport(shards.size(), captures, generated, failed.sum(), undecodable, corruptedSegments,
+                deserialisation, rendering, writing);
+    }
+
+    /**
+     * Renders records in chunks and waits for each chunk at most the render timeout per record.
+     * Records of a chunk that is not done in time are reported as failed, their late tests are dropped.
+     */
+    private AtomicReferenceArray<Object> render(ForkJoinPool pool, List<JournalRecord> records, LongAdder failed)
+            throws IOException {
+        AtomicReferenceArray<Object> tests = new AtomicReferenceArray<>(records.size());
+        List<Future<?>> chunks = new ArrayList<>();
+        for (int from = 0; from < records.size(); from += chunkSize) {
+            int to = Math.min(from + chunkSize, records.size());
+            chunks.add(pool.submit(new RenderTask(records, tests, from, to, failed)));
+        }
+        for (int chunk = 0; chunk < chunks.size(); chunk++) {
+            int from = chunk * chunkSize;
+            int to = Math.min(from + chunkSize, records.size());
+            try {
+                chunks.get(chunk).get(renderTimeoutNanos * (to - from), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                chunks.get(chunk).cancel(true);
+                for (int index = from; index < to; index++) {
+                    if (tests.compareAndSet(index, null, FAILED)) {
+                        failed.increment();
+                        System.err.println("Rendering of " + records.get(index) + " timed out after "
+                                + TimeUnit.NANOSECONDS.toMillis(renderTimeoutNanos) + " ms");
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            } catch (ExecutionException e) {
+                e.getCause().printStackTrace();
+            }
+        }
+        return tests;
+    }
+
+    private long write(Shard shard, AtomicReferenceArray<Object> tests, Writer stdout) throws IOException {
+        if (stdout != null) {
+            stdout.write("// " + shard.key + "\n");
+            long generated = writeTests(tests, stdout);
+            stdout.flush();
+            return generated;
+        }
+        Path file = outputDirectory.resolve(shard.key.replace('#', '.') + ".txt");
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            return writeTests(tests, out);
+        }
+    }
+
+    private static long writeTests(AtomicReferenceArray<Object> tests, Writer out) throws IOException {
+        long generated = 0;
+        for (int index = 0; index < tests.length(); index++) {
+            Object test = tests.get(index);
+            if (!(test instanceof String)) {
+                continue;
+            }
+            out.write((String) test);
+            out.write("\n\n");
+            generated++;
+        }
+        return generated;
+    }
+
+    private static <T> T join(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private static final class Shard {
+        private final String testClassName;
+        private final String qualifier;
+        private final String key;
+        private final List<Path> segments = new ArrayList<>();
+
+        private Shard(String testClassName, String qualifier) {
+            this.testClassName = testClassName;
+            this.qualifier = qualifier;
+            this.key = testClassName + "#" + qualifier;
+        }
+    }
+
+    /**
+     * Shards of one segment, read without decoding captures.
+     */
+    private static final class SegmentIndex {
+        private final Path segment;
+        private final JournalReader reader;
+        private final Map<String, Shard> shards = new HashMap<>();
+
+        private SegmentIndex(Path segment, JournalReader reader) {
+            this.segment = segment;
+            this.reader = reader;
+        }
+
+        static SegmentIndex read(Path directory, Path segment) {
+            SegmentIndex result = new SegmentIndex(segment, new JournalReader(directory));
+            try {
+                result.reader.readShards(segment, (testClassName, qualifier) ->
+                        result.shards.computeIfAbsent(testClassName + "#" + qualifier,
+                                key -> new Shard(testClassName, qualifier)));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return result;
+        }
+    }
+
+    private static final class SegmentRecords {
+        private final JournalReader reader;
+        private final List<JournalRecord> records = new ArrayList<>();
+
+        private SegmentRecords(JournalReader reader) {
+            this.reader = reader;
+        }
+
+        static SegmentRecords read(Path directory, Path segment, Shard shard) {
+            SegmentRecords result = new SegmentRecords(new JournalReader(directory));
+            try {
+                result.reader.read(segment, shard.testClassName, shard.qualifier, result.records::add);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Renders a chunk of shard records. A test rendered after its chunk timed out is dropped.
+     */
+    private final class RenderTask implements Runnable {
+        private final List<JournalRecord> records;
+        private final AtomicReferenceArray<Object> tests;
+        private final int from;
+        private final int to;
+        private final LongAdder failed;
+
+        private RenderTask(List<JournalRecord> records, AtomicReferenceArray<Object> tests, int from, int to,
+                           LongAdder failed) {
+            this.records = records;
+            this.tests = tests;
+            this.from = from;
+            this.to = to;
+            this.failed = failed;
+        }
+
+        @Override
+        public void run() {
+            ConstructorConfiguration conf = constructorConfigSupplier.get();
+            for (int index = from; index < to && tests.get(index) == null; index++) {
+                JournalRecord record = records.get(index);
+                TestConstructor constructor = null;
+                try {
+                    constructor = testConstructorSupplier.get(record.getTestClass(), conf, record.getCaptures());
+                    String test = constructor.construct();
+                    tests.compareAndSet(index, null, test);
+                } catch (Exception | LinkageError e) {
+                    if (tests.compareAndSet(index, null, FAILED)) {
+                        failed.increment();
+                        e.printStackTrace();
+                    }
+                } finally {
+                    // the test is kept as text
+                    if (constructor != null) {
+                        constructor.release();
+                    }
+                }
+            }
+        }
+    }
+
+    public static class OfflineTestGeneratorBuilder {
+        private static final int DEFAULT_CHUNK_SIZE = 64;
+        private static final long DEFAULT_RENDER_TIMEOUT_SECONDS = 30;
+
+        private Path journalDirectory;
+        private Path outputDirectory;
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+        private int chunkSize = DEFAULT_CHUNK_SIZE;
+        private long renderTimeoutNanos = TimeUnit.SECONDS.toNanos(DEFAULT_RENDER_TIMEOUT_SECONDS);
+        private Supplier<ConstructorConfiguration> constructorConfigSupplier = ConstructorConfiguration::defaultConfig;
+        private ConstructorSupplier<Class<?>, ConstructorConfiguration, List<MethodCapture>, TestConstructor> testConstructorSupplier =
+                MockTestConstructor::new;
+
+        OfflineTestGeneratorBuilder() {
+        }
+
+        public OfflineTestGenerator build() {
+            if (journalDirectory == null) {
+                throw new IllegalArgumentException("Journal directory is required");
+            }
+            if (parallelism <= 0 || chunkSize <= 0 || renderTimeoutNanos <= 0) {
+                throw new IllegalArgumentException("Parallelism, chunk size and render timeout must be positive");
+            }
+            return new OfflineTestGenerator(journalDirectory, outputDirectory, parallelism, chunkSize, renderTimeoutNanos,
+                    constructorConfigSupplier, testConstructorSupplier);
+        }
+
+        public OfflineTestGeneratorBuilder journalDirectory(Path journalDirectory) {
+            this.journalDirectory = journalDirectory;
+            return this;
+        }
+
+        /**
+         * @param outputDirectory directory for one file per test class and qualifier, null prints tests to stdout
+         */
+        public OfflineTestGeneratorBuilder outputDirectory(Path outputDirectory) {
+            this.outputDirectory = outputDirectory;
+            return this;
+        }
+
+        public OfflineTestGeneratorBuilder parallelism(int parallelism) {
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * @param chunkSize count of records rendered by one fork-join task
+         */
+        public OfflineTestGeneratorBuilder chunkSize(int chunkSize) {
+            this.chunkSize = chunkSize;
+            return this;
+        }
+
+        /**
+         * @param timeout time to render one capture, a capture not rendered in time is reported as failed
+         */
+        public OfflineTestGeneratorBuilder renderTimeout(long timeout, TimeUnit unit) {
+            this.renderTimeoutNanos = unit.toNanos(timeout);
+            return this;
+        }
+
+        public OfflineTestGeneratorBuilder constructorConfig(Supplier<ConstructorConfiguration> constructorConfig) {
+            this.constructorConfigSupplier = constructorConfig;
+            return this;
+        }
+
+        public OfflineTestGeneratorBuilder testConstructor(ConstructorSupplier<Class<?>, ConstructorConfiguration, List<MethodCapture>, TestConstructor> supplier) {
+            this.testConstructorSupplier = supplier;
+            return this;
+        }
+
+        public String toString() {
+            return "OfflineTestGenerator.OfflineTestGeneratorBuilder(journalDirectory=" + this.journalDirectory +
+                    ", outputDirectory=" + this.outputDirectory +
+                    ", parallelism=" + this.parallelism +
+                    ", chunkSize=" + this.chunkSize +
+                    ", renderTimeoutNanos=" + this.renderTimeoutNanos + ")";
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package ru.panfio.legacytester.sampling;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.Function;
+
+public class ConsistentHashSampler implements Sampler {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final double rate;
+    private final Function<Object[], Object> keyExtractor;
+
+    public ConsistentHashSampler(double rate, Function<Object[], Object> keyExtractor) {
+        if (rate < 0 || rate > 1) {
+            throw new IllegalArgumentException("Sample rate must be between 0 and 1");
+        }
+        this.rate = rate;
+        this.keyExtractor = keyExtractor;
+    }
+
+    @Override
+    public boolean sample(Object[] params) {
+        final Object key = keyExtractor.apply(params);
+        return key != null && unitInterval(stableHash(key.toString())) < rate;
+    }
+
+    /**
+     * FNV-1a over UTF-8 bytes with a final avalanche step.
+     * Unlike {@link Object#hashCode()} the result is the same on every JVM.
+     */
+    static long stableHash(String key) {
+        long hash = FNV_OFFSET_BASIS;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= FNV_PRIME;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static double unitInterval(long hash) {
+        return (hash >>> 11) * 0x1.0p-53;
+    }
+
+    @Override
+    public String toString() {
+        return "ConsistentHashSampler{rate=" + rate + '}';
+    }
+}
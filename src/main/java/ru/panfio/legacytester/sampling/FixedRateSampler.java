@@ -0,0 +1,24 @@
+package ru.panfio.legacytester.sampling;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+public class FixedRateSampler implements Sampler {
+    private final double rate;
+
+    public FixedRateSampler(double rate) {
+        if (rate < 0 || rate > 1) {
+            throw new IllegalArgumentException("Sample rate must be between 0 and 1");
+        }
+        this.rate = rate;
+    }
+
+    @Override
+    public boolean sample(Object[] params) {
+        return rate >= 1 || (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate);
+    }
+
+    @Override
+    public String toString() {
+        return "FixedRateSampler{rate=" + rate + '}';
+    }
+}
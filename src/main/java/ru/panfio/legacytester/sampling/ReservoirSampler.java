@@ -0,0 +1,223 @@
+package ru.panfio.legacytester.sampling;
+
+import ru.panfio.legacytester.async.GenerationTask;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Reservoir sampling (algorithm R) over time windows.
+ * The first {@code size} calls of a window take the slots in order, the n-th call draws j uniformly
+ * from [0, n) and is captured only if j &lt; size, replacing slot j. The decision is made by
+ * {@link #select(Object[])}, the generation task admitted with its ticket goes to the drawn slot,
+ * unless a later call has claimed the slot meanwhile.
+ * A window is closed by a timer when it ends, or by the first call that notices it ended, or by {@link #flush()}.
+ * Held generation tasks of a closed window are run by the timer, never on the caller thread;
+ * testers admit tasks that hand the generation over to their test generator.
+ * A {@link GenerationTask} replaced by a later call is dropped.
+ */
+public class ReservoirSampler implements Sampler {
+    private static final AtomicInteger TIMER_NUMBER = new AtomicInteger();
+
+    private final int size;
+    private final long windowNanos;
+    private final AtomicReference<Window> window = new AtomicReference<>();
+
+    public ReservoirSampler(int size, long windowNanos) {
+        if (size <= 0 || windowNanos <= 0) {
+            throw new IllegalArgumentException("Reservoir size and window must be positive");
+        }
+        this.size = size;
+        this.windowNanos = windowNanos;
+        final Window first = new Window(size, System.nanoTime());
+        window.set(first);
+        scheduleClose(first);
+    }
+
+    @Override
+    public boolean sample(Object[] params) {
+        return select(params) != null;
+    }
+
+    @Override
+    public Object select(Object[] params) {
+        Window current = window.get();
+        if (System.nanoTime() - current.start >= windowNanos) {
+            close(current);
+            current = window.get();
+        }
+        final long count = current.seen.incrementAndGet();
+        final long slot = count <= size ? count - 1 : ThreadLocalRandom.current().nextLong(count);
+        if (slot >= size) {
+            return null;
+        }
+        current.claims.accumulateAndGet((int) slot, count, Math::max);
+        return new Ticket(this, current, (int) slot, count);
+    }
+
+    /**
+     * Admits a task without a ticket, the slot is drawn as for a new call.
+     */
+    @Override
+    public void admit(Runnable generation) {
+        final Object ticket = select(null);
+        if (ticket != null) {
+            admit(generation, ticket);
+        } else {
+            GenerationTask.drop(generation);
+        }
+    }
+
+    @Override
+    public void admit(Runnable generation, Object ticket) {
+        if (!(ticket instanceof Ticket) || ((Ticket) ticket).sampler != this) {
+            // selected by another sampler
+            admit(generation);
+            return;
+        }
+        final Ticket slot = (Ticket) ticket;
+        final Window owner = slot.window;
+        final Runnable dropped;
+        boolean held = false;
+        synchronized (owner) {
+            if (owner.claims.get(slot.index) != slot.call) {
+                // replaced by a later call of the window
+                dropped = generation;
+            } else if (owner.closed) {
+                dropped = null;
+            } else {
+                // the task of an earlier call that drew the slot, if any, is replaced
+                dropped = owner.reservoir[slot.index];
+                owner.reservoir[slot.index] = generation;
+                held = true;
+            }
+        }
+        GenerationTask.drop(dropped);
+        if (held || dropped == generation) {
+            return;
+        }
+        // completed after its window was closed, still one of its samples
+        Timer.SCHEDULER.execute(() -> run(Collections.singletonList(generation)));
+    }
+
+    @Override
+    public boolean defersGeneration() {
+        return true;
+    }
+
+    /**
+     * Closes the current window and hands held generation tasks to the timer.
+     */
+    public void flush() {
+        close(window.get());
+    }
+
+    /**
+     * Replaces the window unless another thread did it first, so each held task is run exactly once.
+     */
+    private void close(Window current) {
+        final Window next = new Window(size, System.nanoTime());
+        if (!window.compareAndSet(current, next)) {
+            return;
+        }
+        scheduleClose(next);
+        final List<Runnable> selected = new ArrayList<>(size);
+        synchronized (current) {
+            current.closed = true;
+            for (int index = 0; index < size; index++) {
+                if (current.reservoir[index] != null) {
+                    selected.add(current.reservoir[index]);
+                    current.reservoir[index] = null;
+                }
+            }
+        }
+        if (!selected.isEmpty()) {
+            Timer.SCHEDULER.execute(() -> run(selected));
+        }
+    }
+
+    /**
+     * Closes the window when it ends, so tasks of the last window are generated even if calls stop.
+     * The timer doesn't keep the sampler reachable.
+     */
+    private void scheduleClose(Window scheduled) {
+        final WeakReference<ReservoirSampler> sampler = new WeakReference<>(this);
+        Timer.SCHEDULER.schedule(() -> {
+            final ReservoirSampler owner = sampler.get();
+            if (owner != null && owner.window.get() == scheduled) {
+                owner.close(scheduled);
+            }
+        }, windowNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static void run(List<Runnable> tasks) {
+        for (Runnable task : tasks) {
+            try {
+                task.run();
+            } catch (Throwable e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ReservoirSampler{size=" + size + ", windowNanos=" + windowNanos + '}';
+    }
+
+    private static final class Window {
+        private final long start;
+        private final AtomicLong seen = new AtomicLong();
+        // number of the latest call that drew each slot
+        private final AtomicLongArray claims;
+        private final Runnable[] reservoir;
+        private boolean closed;
+
+        private Window(int size, long start) {
+            this.start = start;
+            this.claims = new AtomicLongArray(size);
+            this.reservoir = new Runnable[size];
+        }
+    }
+
+    /**
+     * Slot drawn by a call of a window.
+     */
+    private static final class Ticket {
+        private final ReservoirSampler sampler;
+        private final Window window;
+        private final int index;
+        private final long call;
+
+        private Ticket(ReservoirSampler sampler, Window window, int index, long call) {
+            this.sampler = sampler;
+            this.window = window;
+            this.index = index;
+            this.call = call;
+        }
+    }
+
+    private static final class Timer {
+        private static final ScheduledExecutorService SCHEDULER = scheduler();
+
+        private static ScheduledExecutorService scheduler() {
+            ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, task -> {
+                Thread thread = new Thread(task, "legacytester-reservoir-" + TIMER_NUMBER.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.setRemoveOnCancelPolicy(true);
+            return scheduler;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package ru.panfio.legacytester.sampling;
+
+import ru.panfio.legacytester.Testee;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Decides which testee calls are captured.
+ * A call that is not sampled runs without capture and test generation.
+ * <p>
+ * Samplers keep their state (counters, windows), so share one instance
+ * between testers that serve the same qualifier.
+ */
+public interface Sampler {
+
+    /**
+     * Called before the testee invocation.
+     *
+     * @param params input parameters of the testee call
+     * @return true if the call must be captured
+     */
+    boolean sample(Object[] params);
+
+    /**
+     * Called by testers before the testee invocation instead of {@link #sample(Object[])}.
+     * The returned ticket is handed back with the generation task of the call, so a sampler
+     * can tie the admission to its decision.
+     *
+     * @param params input parameters of the testee call
+     * @return ticket of the call, null if the call must not be captured
+     */
+    default Object select(Object[] params) {
+        return sample(params) ? Boolean.TRUE : null;
+    }
+
+    /**
+     * Called when a selected call is not captured after all, e.g. the capture switch rejected it.
+     * A sampler counting its permits takes the permit of the call back.
+     *
+     * @param ticket the ticket returned for the call
+     */
+    default void refund(Object ticket) {
+    }
+
+    /**
+     * Called with a generation task of a sampled call.
+     * The default implementation runs the task immediately.
+     */
+    default void admit(Runnable generation) {
+        generation.run();
+    }
+
+    /**
+     * Called with a generation task of a call selected by {@link #select(Object[])}.
+     *
+     * @param ticket the ticket returned for the call
+     */
+    default void admit(Runnable generation, Object ticket) {
+        admit(generation);
+    }
+
+    /**
+     * @return true if admitted tasks are held and run later on a thread of the sampler,
+     * testers then admit tasks that only hand the generation over to their test generator
+     */
+    default boolean defersGeneration() {
+        return false;
+    }
+
+    /**
+     * Captures every call.
+     */
+    static Sampler always() {
+        return params -> true;
+    }
+
+    /**
+     * Captures a random share of calls.
+     *
+     * @param rate share of captured calls from 0 to 1
+     */
+    static Sampler fixedRate(double rate) {
+        return new FixedRateSampler(rate);
+    }
+
+    /**
+     * Captures up to {@code permits} calls per interval.
+     */
+    static Sampler tokenBucket(int permits, long interval, TimeUnit unit) {
+        return new TokenBucketSampler(permits, unit.toNanos(interval));
+    }
+
+    /**
+     * Keeps {@code size} uniformly chosen calls per window and generates tests for them when the window closes.
+     */
+    static Sampler reservoir(int size, long window, TimeUnit unit) {
+        return new ReservoirSampler(size, unit.toNanos(window));
+    }
+
+    /**
+     * Captures calls whose key hash falls into the rate.
+     * The hash does not depend on the JVM instance, so every node of a cluster
+     * captures the same logical requests.
+     *
+     * @param rate         share of captured keys from 0 to 1
+     * @param keyExtractor extracts a request key from input parameters
+     */
+    static Sampler consistentHash(double rate, Function<Object[], Object> keyExtractor) {
+        return new ConsistentHashSampler(rate, keyExtractor);
+    }
+
+    /**
+     * Creates a sampler from {@link Testee#sampleRate()} and {@link Testee#samplesPerSecond()} attributes.
+     */
+    static Sampler of(Testee testee) {
+        if (testee.samplesPerSecond() > 0) {
+            return tokenBucket(testee.samplesPerSecond(), 1, TimeUnit.SECONDS);
+        }
+        if (testee.sampleRate() < 1) {
+            return fixedRate(testee.sampleRate());
+        }
+        return always();
+    }
+}
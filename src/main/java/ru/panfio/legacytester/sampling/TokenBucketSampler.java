@@ -0,0 +1,65 @@
+package ru.panfio.legacytester.sampling;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket refilled to full capacity at every interval boundary.
+ * Tokens never go below zero or above the capacity, a call the tester doesn't capture gets its token refunded.
+ */
+public class TokenBucketSampler implements Sampler {
+    private final int permits;
+    private final long intervalNanos;
+    private final AtomicLong intervalStart;
+    private final AtomicLong tokens;
+
+    public TokenBucketSampler(int permits, long intervalNanos) {
+        if (permits <= 0 || intervalNanos <= 0) {
+            throw new IllegalArgumentException("Permits and interval must be positive");
+        }
+        this.permits = permits;
+        this.intervalNanos = intervalNanos;
+        this.intervalStart = new AtomicLong(System.nanoTime());
+        this.tokens = new AtomicLong(permits);
+    }
+
+    @Override
+    public boolean sample(Object[] params) {
+        refill();
+        while (true) {
+            final long available = tokens.get();
+            if (available <= 0) {
+                return false;
+            }
+            if (tokens.compareAndSet(available, available - 1)) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public void refund(Object ticket) {
+        while (true) {
+            final long available = tokens.get();
+            // the bucket may have been refilled since the token was taken
+            if (available >= permits || tokens.compareAndSet(available, available + 1)) {
+                return;
+            }
+        }
+    }
+
+    private void refill() {
+        final long start = intervalStart.get();
+        final long now = System.nanoTime();
+        if (now - start < intervalNanos) {
+            return;
+        }
+        if (intervalStart.compareAndSet(start, now)) {
+            tokens.set(permits);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "TokenBucketSampler{permits=" + permits + ", intervalNanos=" + intervalNanos + '}';
+    }
+}
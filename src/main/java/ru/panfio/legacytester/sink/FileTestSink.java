@@ -0,0 +1,277 @@
+package ru.panfio.legacytester.sink;
+
+import ru.panfio.legacytester.constructor.TestConstructor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects generated tests into compilable JUnit classes, one class per test class and qualifier:
+ * {@code <directory>/<package>/<TestClass><Qualifier>GeneratedTest.java}.
+ * <pre>{@code
+ *    FileTestSink sink = FileTestSink.builder()
+ *                 .directory(Paths.get("src/test/java"))
+ *                 .flushInterval(5, TimeUnit.SECONDS)
+ *                 .build();
+ *    LegacyTester tester = new LegacyTester(MyTestClass.class).sink(sink);
+ * }</pre>
+ * Tests are rendered and written by a single background writer, the caller only hands
+ * the test constructor over through a bounded queue. Changed classes are written every flush interval
+ * into a temporary file that atomically replaces the class file.
+ */
+public class FileTestSink implements TestSink, AutoCloseable {
+    private static final AtomicInteger SINK_COUNTER = new AtomicInteger();
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long POLL_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final Path directory;
+    private final String classNameSuffix;
+    private final int maxTestsPerClass;
+    private final long flushIntervalNanos;
+    private final BlockingQueue<PendingTest> queue;
+    private final Thread writer;
+    private final Map<String, TestClassFile> files = new LinkedHashMap<>();
+    // added to class files and released once the files are written
+    private final List<TestConstructor> unwritten = new ArrayList<>();
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private volatile boolean open = true;
+
+    FileTestSink(Path directory, String classNameSuffix, int queueCapacity, int maxTestsPerClass,
+                 long flushIntervalNanos, boolean flushOnExit) {
+        this.directory = directory;
+        this.classNameSuffix = classNameSuffix;
+        this.maxTestsPerClass = maxTestsPerClass;
+        this.flushIntervalNanos = flushIntervalNanos;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        final int sinkNumber = SINK_COUNTER.incrementAndGet();
+        writer = new Thread(this::work, "legacytester-sink-" + sinkNumber);
+        writer.setDaemon(true);
+        writer.start();
+        if (flushOnExit) {
+            Runtime.getRuntime().addShutdownHook(new Thread(this::close, "legacytester-sink-" + sinkNumber + "-close"));
+        }
+    }
+
+    public static FileTestSinkBuilder builder() {
+        return new FileTestSinkBuilder();
+    }
+
+    /**
+     * Hands the test over to the writer. The test is dropped if the queue is full.
+     */
+    @Override
+    public void accept(Class<?> testClass, String qualifier, TestConstructor test) {
+        if (open && queue.offer(new PendingTest(testClass, qualifier, test))) {
+            accepted.increment();
+        } else {
+            dropped.increment();
+            test.release();
+        }
+    }
+
+    private void work() {
+        long nextFlush = System.nanoTime() + flushIntervalNanos;
+        while (open || !queue.isEmpty()) {
+            PendingTest test;
+            try {
+                // short polls let close() stop the writer without interrupting a channel write
+                test = queue.poll(Math.min(POLL_TIMEOUT_NANOS, Math.max(0, nextFlush - System.nanoTime())),
+                        TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                break;
+            }
+            if (test != null) {
+                add(test);
+            }
+            if (System.nanoTime() - nextFlush >= 0) {
+                flushChanged();
+                nextFlush = System.nanoTime() + flushIntervalNanos;
+            }
+        }
+        flushChanged();
+    }
+
+    private void add(PendingTest pending) {
+        try {
+            final String key = pending.testClass.getName() + "#" + pending.qualifier;
+            TestClassFile file = files.get(key);
+            if (file == null) {
+                file = TestClassFile.open(directory, pending.testClass, pending.qualifier, classNameSuffix);
+                files.put(key, file);
+            }
+            if (file.getTestCount() >= maxTestsPerClass) {
+                dropped.increment();
+                pending.test.release();
+                return;
+            }
+            unwritten.add(pending.test);
+            StringBuilder text = new StringBuilder(4096);
+            pending.test.construct(text, file.getImports());
+            file.add(text.toString());
+        } catch (Exception e) {
+            failed.increment();
+            e.printStackTrace();
+        }
+    }
+
+    private void flushChanged() {
+        for (TestClassFile file : files.values()) {
+            if (!file.isDirty()) {
+                continue;
+            }
+            try {
+                file.write(buffer, encoder);
+                flushes.increment();
+            } catch (IOException e) {
+                failed.increment();
+                e.printStackTrace();
+            }
+        }
+        unwritten.forEach(TestConstructor::release);
+        unwritten.clear();
+    }
+
+    /**
+     * Stops accepting tests, writes queued ones and waits for the writer to finish.
+     */
+    @Override
+    public void close() {
+        open = false;
+        if (writer == Thread.currentThread()) {
+            return;
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public long getAcceptedCount() {
+        return accepted.sum();
+    }
+
+    /**
+     * @return tests rejected because of the full queue, a closed sink or the tests per class limit
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    /**
+     * @return count of class file writes
+     */
+    public long getFlushCount() {
+        return flushes.sum();
+    }
+
+    private static final class PendingTest {
+        private final Class<?> testClass;
+        private final String qualifier;
+        private final TestConstructor test;
+
+        private PendingTest(Class<?> testClass, String qualifier, TestConstructor test) {
+            this.testClass = testClass;
+            this.qualifier = qualifier;
+            this.test = test;
+        }
+    }
+
+    public static class FileTestSinkBuilder {
+        private static final String DEFAULT_CLASS_NAME_SUFFIX = "GeneratedTest";
+        private static final int DEFAULT_QUEUE_CAPACITY = 1024;
+        private static final int DEFAULT_MAX_TESTS_PER_CLASS = 500;
+        private static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 1000;
+
+        private Path directory;
+        private String classNameSuffix = DEFAULT_CLASS_NAME_SUFFIX;
+        private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+        private int maxTestsPerClass = DEFAULT_MAX_TESTS_PER_CLASS;
+        private long flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_FLUSH_INTERVAL_MILLIS);
+        private boolean flushOnExit = true;
+
+        FileTestSinkBuilder() {
+        }
+
+        public FileTestSink build() {
+            if (directory == null) {
+                throw new IllegalArgumentException("Sink directory is required");
+            }
+            if (queueCapacity <= 0 || maxTestsPerClass <= 0 || flushIntervalNanos <= 0) {
+                throw new IllegalArgumentException("Queue capacity, tests per class and flush interval must be positive");
+            }
+            return new FileTestSink(directory, classNameSuffix, queueCapacity, maxTestsPerClass,
+                    flushIntervalNanos, flushOnExit);
+        }
+
+        /**
+         * @param directory source root of generated classes, e.g. {@code src/test/java}
+         */
+        public FileTestSinkBuilder directory(Path directory) {
+            this.directory = directory;
+            return this;
+        }
+
+        public FileTestSinkBuilder classNameSuffix(String classNameSuffix) {
+            this.classNameSuffix = classNameSuffix;
+            return this;
+        }
+
+        public FileTestSinkBuilder queueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        public FileTestSinkBuilder maxTestsPerClass(int maxTestsPerClass) {
+            this.maxTestsPerClass = maxTestsPerClass;
+            return this;
+        }
+
+        public FileTestSinkBuilder flushInterval(long flushInterval, TimeUnit unit) {
+            this.flushIntervalNanos = unit.toNanos(flushInterval);
+            return this;
+        }
+
+        /**
+         * @param flushOnExit write queued tests on JVM exit
+         */
+        public FileTestSinkBuilder flushOnExit(boolean flushOnExit) {
+            this.flushOnExit = flushOnExit;
+            return this;
+        }
+
+        public String toString() {
+            return "FileTestSink.FileTestSinkBuilder(directory=" + this.directory +
+                    ", classNameSuffix=" + this.classNameSuffix +
+                    ", queueCapacity=" + this.queueCapacity +
+                    ", maxTestsPerClass=" + this.maxTestsPerClass +
+                    ", flushIntervalNanos=" + this.flushIntervalNanos +
+                    ", flushOnExit=" + this.flushOnExit + ")";
+        }
+    }
+}
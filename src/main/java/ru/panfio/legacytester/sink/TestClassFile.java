@@ -0,0 +1,196 @@
+package ru.panfio.legacytester.sink;
+
+import ru.panfio.legacytester.constructor.ImportTable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * JUnit class assembled from generated test methods of one test class and qualifier.
+ * Methods of an existing file are kept, so tests accumulate across application restarts.
+ */
+final class TestClassFile {
+    private static final Pattern METHOD_NAME = Pattern.compile("public void (\\w+)\\(");
+    private static final String CLASS_DECLARATION = "public class ";
+
+    private final Path path;
+    private final String packageName;
+    private final String className;
+    private final ImportTable imports;
+    private final Set<String> methodNames = new HashSet<>();
+    private final StringBuilder methods = new StringBuilder();
+    private boolean dirty;
+
+    private TestClassFile(Path path, String packageName, String className) {
+        this.path = path;
+        this.packageName = packageName;
+        this.className = className;
+        this.imports = new ImportTable(packageName);
+    }
+
+    static TestClassFile open(Path directory, Class<?> testClass, String qualifier, String classNameSuffix) throws IOException {
+        final String packageName = testClass.getPackage() == null ? "" : testClass.getPackage().getName();
+        final String className = testClass.getSimpleName() + qualifierName(qualifier) + classNameSuffix;
+        Path packageDirectory = packageName.isEmpty() ? directory : directory.resolve(packageName.replace('.', '/'));
+        TestClassFile file = new TestClassFile(packageDirectory.resolve(className + ".java"), packageName, className);
+        if (Files.exists(file.path)) {
+            file.load(new String(Files.readAllBytes(file.path), StandardCharsets.UTF_8));
+        }
+        return file;
+    }
+
+    private static String qualifierName(String qualifier) {
+        if (qualifier == null || "default".equals(qualifier)) {
+            return "";
+        }
+        StringBuilder name = new StringBuilder();
+        for (char c : qualifier.toCharArray()) {
+            if (Character.isJavaIdentifierPart(c)) {
+                name.append(name.length() == 0 ? Character.toUpperCase(c) : c);
+            }
+        }
+        return name.toString();
+    }
+
+    private void load(String text) {
+        for (String line : text.split("\n")) {
+            if (line.startsWith("import ") && line.endsWith(";")) {
+                imports.reference(line.substring("import ".length(), line.length() - 1).trim());
+            }
+        }
+        int declaration = text.indexOf(CLASS_DECLARATION);
+        int bodyStart = declaration < 0 ? -1 : text.indexOf('\n', declaration);
+        int bodyEnd = text.lastIndexOf('}');
+        if (bodyStart < 0 || bodyEnd <= bodyStart) {
+            return;
+        }
+        int from = bodyStart + 1;
+        while (from < bodyEnd && (text.charAt(from) == '\n' || text.charAt(from) == '\r')) {
+            from++;
+        }
+        // leading indentation of the first method is kept
+        String body = text.substring(from, bodyEnd).replaceAll("\\s+$", "");
+        if (body.isEmpty()) {
+            return;
+        }
+        methods.append(body).append("\n\n");
+        Matcher matcher = METHOD_NAME.matcher(body);
+        while (matcher.find()) {
+            methodNames.add(matcher.group(1));
+        }
+    }
+
+    /**
+     * Adds the test method written through {@link #getImports()}. A method name that is already taken
+     * gets a numeric suffix.
+     */
+    void add(String test) {
+        Matcher matcher = METHOD_NAME.matcher(test);
+        if (matcher.find()) {
+            String name = matcher.group(1);
+            String uniqueName = name;
+            for (int index = 2; methodNames.contains(uniqueName); index++) {
+                uniqueName = name + "_" + index;
+            }
+            if (!uniqueName.equals(name)) {
+                test = test.substring(0, matcher.start(1)) + uniqueName + test.substring(matcher.end(1));
+            }
+            methodNames.add(uniqueName);
+        }
+        methods.append(test).append("\n\n");
+        dirty = true;
+    }
+
+    /**
+     * @return imports shared by tests of the class, a simple name always refers to one class
+     */
+    ImportTable getImports() {
+        return imports;
+    }
+
+    int getTestCount() {
+        return methodNames.size();
+    }
+
+    boolean isDirty() {
+        return dirty;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    /**
+     * Writes the class into a temporary file through the reusable buffer
+     * and atomically replaces the class file with it.
+     */
+    void write(ByteBuffer buffer, CharsetEncoder encoder) throws IOException {
+        Files.createDirectories(path.getParent());
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            encoder.reset();
+            buffer.clear();
+            encode(header(), channel, buffer, encoder, false);
+            encode(methods, channel, buffer, encoder, false);
+            encode("}\n", channel, buffer, encoder, true);
+            encoder.flush(buffer);
+            drain(channel, buffer);
+            channel.force(false);
+        }
+        try {
+            Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+        dirty = false;
+    }
+
+    private String header() {
+        StringBuilder header = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            header.append("package ").append(packageName).append(";\n\n");
+        }
+        for (String name : imports.getImports()) {
+            header.append("import ").append(name).append(";\n");
+        }
+        return header.append("\n").append(CLASS_DECLARATION).append(className).append(" {\n\n").toString();
+    }
+
+    private static void encode(CharSequence text, FileChannel channel, ByteBuffer buffer,
+                               CharsetEncoder encoder, boolean endOfInput) throws IOException {
+        CharBuffer chars = CharBuffer.wrap(text);
+        while (true) {
+            CoderResult result = encoder.encode(chars, buffer, endOfInput);
+            if (result.isOverflow()) {
+                drain(channel, buffer);
+            } else if (result.isUnderflow()) {
+                return;
+            } else {
+                result.throwException();
+            }
+        }
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
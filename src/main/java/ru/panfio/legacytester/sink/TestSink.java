@@ -0,0 +1,17 @@
+package ru.panfio.legacytester.sink;
+
+import ru.panfio.legacytester.constructor.TestConstructor;
+
+/**
+ * Destination of generated tests. A sink calls {@link TestConstructor#release()} once a test is written or dropped.
+ */
+@FunctionalInterface
+public interface TestSink {
+
+    /**
+     * @param testClass class of the testee
+     * @param qualifier testee qualifier
+     * @param test      constructor of the generated test
+     */
+    void accept(Class<?> testClass, String qualifier, TestConstructor test);
+}
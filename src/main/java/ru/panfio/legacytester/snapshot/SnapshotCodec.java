@@ -0,0 +1,256 @@
+package ru.panfio.legacytester.snapshot;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import ru.panfio.legacytester.CapturedValue;
+import ru.panfio.legacytester.MethodCapture;
+import ru.panfio.legacytester.util.AppendableWriter;
+import ru.panfio.legacytester.util.JsonUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.MonthDay;
+import java.time.OffsetDateTime;
+import java.time.OffsetTime;
+import java.time.Period;
+import java.time.Year;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Encodes captured values into {@link ValueSnapshot}s.
+ * Immutable values (strings, numbers, enums) are kept as is, primitive arrays are copied,
+ * other values are encoded with Smile through a per-thread reusable buffer.
+ * A value that can't be encoded becomes a non-replayable snapshot, the live reference is never kept.
+ */
+public final class SnapshotCodec {
+    private static final int MAX_POOLED_BUFFER = 1024 * 1024;
+    private static final ThreadLocal<ReusableBuffer> BUFFERS = ThreadLocal.withInitial(ReusableBuffer::new);
+    private static final Set<Class<?>> IMMUTABLE_TYPES = new HashSet<>(Arrays.asList(String.class,
+            Integer.class, Long.class, Short.class, Byte.class, Double.class, Float.class, Boolean.class, Character.class,
+            BigDecimal.class, BigInteger.class, UUID.class,
+            Instant.class, Duration.class, Period.class, LocalDate.class, LocalTime.class, LocalDateTime.class,
+            OffsetTime.class, OffsetDateTime.class, ZonedDateTime.class, Year.class, YearMonth.class, MonthDay.class));
+    private static volatile Mappers mappers = new Mappers(JsonUtils.getMapper());
+
+    private SnapshotCodec() {
+        throw new RuntimeException("Utility class");
+    }
+
+    /**
+     * Snapshots arguments and the result of the capture.
+     * Text forms are kept where the generated test compares {@code toString()}:
+     * affected invocation arguments and the testee result.
+     */
+    public static MethodCapture snapshot(MethodCapture capture) {
+        final MethodCapture.Type type = capture.getType();
+        return MethodCapture.builder()
+                .method(capture.getMethod())
+                .type(type)
+                .arguments(snapshot(capture.getArguments(), type == MethodCapture.Type.AFFECT))
+                .result(snapshot(capture.getResult(), type == MethodCapture.Type.TEST))
+                .exception(capture.getException())
+                .fieldName(capture.getFieldName())
+                .build();
+    }
+
+    /**
+     * @return encoded bytes of snapshots among the arguments and the result of the capture
+     */
+    public static long encodedSize(MethodCapture capture) {
+        long size = encodedSize(capture.getResult());
+        if (capture.getArguments() != null) {
+            for (Object argument : capture.getArguments()) {
+                size += encodedSize(argument);
+            }
+        }
+        return size;
+    }
+
+    private static long encodedSize(Object value) {
+        return value instanceof ValueSnapshot ? ((ValueSnapshot) value).size() : 0;
+    }
+
+    /**
+     * @return count of values of the capture that couldn't be encoded
+     */
+    public static int unencodableCount(MethodCapture capture) {
+        int count = isUnencodable(capture.getResult()) ? 1 : 0;
+        if (capture.getArguments() != null) {
+            for (Object argument : capture.getArguments()) {
+                if (isUnencodable(argument)) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static boolean isUnencodable(Object value) {
+        return value instanceof ValueSnapshot && !((ValueSnapshot) value).isReplayable();
+    }
+
+    /**
+     * Snapshots arguments of a call, e.g. before the capture is completed on another thread.
+     *
+     * @param keepText keep {@code toString()} of the values
+     */
+    public static Object[] snapshot(Object[] values, boolean keepText) {
+        if (values == null) {
+            return null;
+        }
+        Object[] snapshots = new Object[values.length];
+        for (int index = 0; index < values.length; index++) {
+            snapshots[index] = snapshot(values[index], keepText);
+        }
+        return snapshots;
+    }
+
+    /**
+     * @param keepText keep {@code toString()} of the value
+     * @return the value itself if it is immutable, a copy of a primitive array or a {@link ValueSnapshot}
+     */
+    public static Object snapshot(Object value, boolean keepText) {
+        if (value == null || value instanceof CapturedValue || isImmutable(value)) {
+            return value;
+        }
+        if (value.getClass().isArray() && value.getClass().getComponentType().isPrimitive()) {
+            return copyPrimitiveArray(value);
+        }
+        try {
+            return new ValueSnapshot(value.getClass(), encode(value), keepText ? value.toString() : null);
+        } catch (IOException e) {
+            // the live reference would break the snapshot, only the text form is kept
+            e.printStackTrace();
+            return ValueSnapshot.unencodable(value.getClass(), text(value));
+        }
+    }
+
+    private static String text(Object value) {
+        try {
+            return value.toString();
+        } catch (RuntimeException e) {
+            return value.getClass().getName();
+        }
+    }
+
+    /**
+     * Subclasses of {@code BigDecimal} and {@code BigInteger} may be mutable, so only the exact classes are kept.
+     */
+    private static boolean isImmutable(Object value) {
+        return IMMUTABLE_TYPES.contains(value.getClass())
+                || value instanceof Enum || value instanceof Class || value instanceof ZoneId;
+    }
+
+    private static Object copyPrimitiveArray(Object array) {
+        if (array instanceof byte[]) return ((byte[]) array).clone();
+        if (array instanceof short[]) return ((short[]) array).clone();
+        if (array instanceof int[]) return ((int[]) array).clone();
+        if (array instanceof long[]) return ((long[]) array).clone();
+        if (array instanceof float[]) return ((float[]) array).clone();
+        if (array instanceof double[]) return ((double[]) array).clone();
+        if (array instanceof boolean[]) return ((boolean[]) array).clone();
+        return ((char[]) array).clone();
+    }
+
+    /**
+     * Encodes the value with Smile.
+     */
+    public static byte[] encode(Object value) throws IOException {
+        ReusableBuffer buffer = BUFFERS.get();
+        try {
+            mappers().smile.writeValue(buffer, value);
+            return buffer.toByteArray();
+        } finally {
+            if (buffer.capacity() > MAX_POOLED_BUFFER) {
+                BUFFERS.remove();
+            } else {
+                buffer.reset();
+            }
+        }
+    }
+
+    /**
+     * Decodes the snapshot into a new object of the given type.
+     */
+    public static <T> T decode(ValueSnapshot snapshot, JavaType type) throws IOException {
+        return mappers().smile.readValue(snapshot.data(), type);
+    }
+
+    /**
+     * Restores a snapshot from encoded bytes, e.g. read from a capture journal.
+     */
+    public static ValueSnapshot restore(Class<?> type, byte[] data, String text) {
+        return new ValueSnapshot(type, data, text);
+    }
+
+    /**
+     * @return encoded bytes of the snapshot, must not be modified
+     */
+    public static byte[] bytes(ValueSnapshot snapshot) {
+        return snapshot.data();
+    }
+
+    static void transcodeToJson(byte[] data, Appendable out) throws IOException {
+        final Mappers current = mappers();
+        Writer writer = AppendableWriter.of(out);
+        try (JsonParser parser = current.smile.getFactory().createParser(data);
+             JsonGenerator generator = current.json.getFactory().createGenerator(writer)) {
+            generator.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+            if (parser.nextToken() != null) {
+                generator.copyCurrentStructure(parser);
+            }
+        }
+    }
+
+    private static Mappers mappers() {
+        Mappers current = mappers;
+        if (current.json != JsonUtils.getMapper()) {
+            // modules were registered after the codec was initialized
+            current = new Mappers(JsonUtils.getMapper());
+            mappers = current;
+        }
+        return current;
+    }
+
+    private static final class Mappers {
+        private final ObjectMapper json;
+        private final ObjectMapper smile;
+
+        private Mappers(ObjectMapper json) {
+            this.json = json;
+            this.smile = JsonUtils.createMapper(new SmileFactory());
+        }
+    }
+
+    private static final class ReusableBuffer extends ByteArrayOutputStream {
+        private ReusableBuffer() {
+            super(4096);
+        }
+
+        int capacity() {
+            return buf.length;
+        }
+
+        @Override
+        public synchronized byte[] toByteArray() {
+            return Arrays.copyOf(buf, count);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package ru.panfio.legacytester.snapshot;
+
+import ru.panfio.legacytester.CapturedValue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Value encoded into a compact binary form (Smile) at capture time.
+ * The live object graph can be garbage-collected right after the capture,
+ * and later caller mutations don't affect the generated test.
+ * <p>
+ * {@link #toString()} returns the text form of the original value if it was kept,
+ * otherwise the JSON form.
+ * <p>
+ * A value that can't be encoded is kept as a non-replayable snapshot with its text form only,
+ * never as the live object.
+ */
+public final class ValueSnapshot implements CapturedValue {
+    private final Class<?> type;
+    private final byte[] data;
+    private final String text;
+    private final boolean replayable;
+
+    ValueSnapshot(Class<?> type, byte[] data, String text) {
+        this(type, data, text, true);
+    }
+
+    private ValueSnapshot(Class<?> type, byte[] data, String text, boolean replayable) {
+        this.type = type;
+        this.data = data;
+        this.text = text;
+        this.replayable = replayable;
+    }
+
+    static ValueSnapshot unencodable(Class<?> type, String text) {
+        return new ValueSnapshot(type, new byte[0], text, false);
+    }
+
+    @Override
+    public Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * @return encoded size in bytes
+     */
+    public int size() {
+        return data.length;
+    }
+
+    byte[] data() {
+        return data;
+    }
+
+    /**
+     * @return false if the value couldn't be encoded, the snapshot holds its text form only
+     */
+    public boolean isReplayable() {
+        return replayable;
+    }
+
+    /**
+     * @return text form of the original value or null if it was not kept
+     */
+    public String getText() {
+        return text;
+    }
+
+    public String toJson() {
+        StringBuilder json = new StringBuilder(data.length * 2);
+        try {
+            writeJson(json);
+        } catch (IOException e) {
+            return "";
+        }
+        return json.toString();
+    }
+
+    /**
+     * Transcodes the snapshot into JSON without materializing the original object.
+     */
+    public void writeJson(Appendable out) throws IOException {
+        SnapshotCodec.transcodeToJson(data, out);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ValueSnapshot that = (ValueSnapshot) o;
+        return type == that.type && replayable == that.replayable && Arrays.equals(data, that.data)
+                && Objects.equals(text, that.text);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Objects.hashCode(type) + Arrays.hashCode(data);
+    }
+
+    @Override
+    public String toString() {
+        return text != null ? text : toJson();
+    }
+}
@@ -4,19 +4,39 @@ import ru.panfio.legacytester.FieldInvocationHandler;
 import ru.panfio.legacytester.LegacyTester;
 import ru.panfio.legacytester.Testee;
 
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 public class LegacyTesterBeanPostProcessor {
+    private static final ClassValue<List<Field>> DEPENDENCY_FIELDS = new ClassValue<List<Field>>() {
+        @Override
+        protected List<Field> computeValue(Class<?> type) {
+            return Collections.unmodifiableList(resolveDependencyFields(type));
+        }
+    };
 
     private final Object bean;
     private final String beanName;
     private final Class<?> beanClass;
+    private final boolean armable;
 
     public LegacyTesterBeanPostProcessor(Object bean, String beanName) {
+        this(bean, beanName, false);
+    }
+
+    /**
+     * @param armable capture only while armed through {@link ru.panfio.legacytester.control.CaptureControl},
+     *                dependency proxies are created by the first armed call
+     */
+    public LegacyTesterBeanPostProcessor(Object bean, String beanName, boolean armable) {
         this.bean = bean;
         this.beanName = beanName;
         this.beanClass = bean.getClass();
+        this.armable = armable;
     }
 
     public Object createProxy() {
@@ -24,30 +44,72 @@ public class LegacyTesterBeanPostProcessor {
             return bean;
         }
 
-        LegacyTester tester = new LegacyTester(beanClass);
-        final Field[] declaredFields = beanClass.getDeclaredFields();
-        for (Field field : declaredFields) {
-            if (Modifier.isStatic(field.getModifiers())) {
-                continue;
-            }
+        LegacyTester tester = new LegacyTester(beanClass).armable(armable);
+        tester.whenArmed(() -> proxyFields(tester));
+        return LegacyTester.classProxy(bean, tester);
+    }
 
-            Class<?> fieldClass = field.getType();
-            String fieldName = field.getName();
-            field.setAccessible(true);
+    private void proxyFields(LegacyTester tester) {
+        for (Field field : getDependencyFields(beanClass)) {
             try {
                 Object target = field.get(bean);
-                String[] affectedMethods = extractAffectedMethods(field);
-                if (affectedMethods == null || affectedMethods.length == 0) {
-                    // TODO replace with cglib proxy
-                    field.set(bean, tester.fieldProxy(fieldClass, new FieldInvocationHandler(target).setFieldName(fieldName), fieldClass));
-                } else {
-                    field.set(bean, tester.fieldProxy(fieldClass, new FieldInvocationHandler(target, affectedMethods).setFieldName(fieldName), fieldClass));
+                if (target == null) {
+                    continue;
                 }
-            } catch (IllegalAccessException e) {
+                String[] affectedMethods = extractAffectedMethods(field);
+                FieldInvocationHandler handler = affectedMethods == null || affectedMethods.length == 0
+                        ? new FieldInvocationHandler(target)
+                        : new FieldInvocationHandler(target, affectedMethods);
+                field.set(bean, tester.fieldProxy(field.getType(), handler.setFieldName(field.getName())));
+            } catch (IllegalAccessException | RuntimeException e) {
                 e.printStackTrace();
             }
         }
-        return LegacyTester.classProxy(bean, tester);
+    }
+
+    /**
+     * Fields of the bean that hold dependencies a proxy can stand in for: interfaces and classes
+     * a CGLib subclass can extend. Values such as strings, numbers, collections and JDK classes are left as they are.
+     */
+    public static List<Field> getDependencyFields(Class<?> beanClass) {
+        return DEPENDENCY_FIELDS.get(beanClass);
+    }
+
+    private static List<Field> resolveDependencyFields(Class<?> beanClass) {
+        List<Field> fields = new ArrayList<>();
+        for (Field field : beanClass.getDeclaredFields()) {
+            final int modifiers = field.getModifiers();
+            if (Modifier.isStatic(modifiers) || field.isSynthetic() || !isProxyable(field.getType())) {
+                continue;
+            }
+            try {
+                field.setAccessible(true);
+            } catch (RuntimeException e) {
+                continue;
+            }
+            fields.add(field);
+        }
+        return fields;
+    }
+
+    private static boolean isProxyable(Class<?> type) {
+        if (type.isPrimitive() || type.isArray() || type.isEnum() || LegacyTester.class.equals(type)) {
+            return false;
+        }
+        final String name = type.getName();
+        if (type.isInterface()) {
+            // collections and other value interfaces, not dependencies
+            return !name.startsWith("java.lang.") && !name.startsWith("java.util.") || name.startsWith("java.util.concurrent.");
+        }
+        if (Modifier.isFinal(type.getModifiers()) || name.startsWith("java.") || name.startsWith("javax.")) {
+            return false;
+        }
+        for (Constructor<?> constructor : type.getDeclaredConstructors()) {
+            if (!Modifier.isPrivate(constructor.getModifiers())) {
+                return true;
+            }
+        }
+        return false;
     }
 
     private String[] extractAffectedMethods(Field field) {
@@ -3,10 +3,13 @@ package ru.panfio.legacytester.spring;
 import net.sf.cglib.proxy.MethodInterceptor;
 import net.sf.cglib.proxy.MethodProxy;
 import ru.panfio.legacytester.LegacyTester;
-import ru.panfio.legacytester.Testee;
 
 import java.lang.reflect.Method;
 
+/**
+ * Captures testee method calls of a class proxy.
+ * Receives only methods routed by {@link TesteeCallbackFilter}, other methods never reach it.
+ */
 public class MethodInvocationInterceptor implements MethodInterceptor {
 
     private final Object target;
@@ -19,13 +22,9 @@ public class MethodInvocationInterceptor implements MethodInterceptor {
 
     @Override
     public Object intercept(Object o, Method method, Object[] params, MethodProxy methodProxy) throws Throwable {
-        if (method.isAnnotationPresent(Testee.class)) {
-            Testee testeeAnnotation = method.getAnnotation(Testee.class);
-            if (testeeAnnotation.qualifier().equals(legacyTester.getQualifier())) {
-                legacyTester.clearInvocations();
-                return legacyTester.test(() -> method.invoke(target, params), params);
-            }
+        if (!legacyTester.isArmed()) {
+            return methodProxy.invoke(target, params);
         }
-        return method.invoke(target, params);
+        return legacyTester.test(() -> methodProxy.invoke(target, params), params);
     }
 }
@@ -0,0 +1,43 @@
+package ru.panfio.legacytester.spring;
+
+import net.sf.cglib.proxy.CallbackFilter;
+import ru.panfio.legacytester.Testee;
+
+import java.lang.reflect.Method;
+
+/**
+ * Dispatch table of a class proxy, evaluated once per method when the proxy class is generated.
+ * Methods annotated with {@link Testee} of the tester qualifier go to the capturing interceptor,
+ * other methods are called on the target directly.
+ */
+public class TesteeCallbackFilter implements CallbackFilter {
+    public static final int DIRECT = 0;
+    public static final int CAPTURE = 1;
+
+    private final String qualifier;
+
+    public TesteeCallbackFilter(String qualifier) {
+        this.qualifier = qualifier;
+    }
+
+    @Override
+    public int accept(Method method) {
+        Testee testee = method.getAnnotation(Testee.class);
+        if (testee != null && testee.qualifier().equals(qualifier)) {
+            return CAPTURE;
+        }
+        return DIRECT;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return qualifier.equals(((TesteeCallbackFilter) o).qualifier);
+    }
+
+    @Override
+    public int hashCode() {
+        return qualifier.hashCode();
+    }
+}
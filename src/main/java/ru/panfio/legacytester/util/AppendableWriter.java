@@ -0,0 +1,57 @@
+package ru.panfio.legacytester.util;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Adapts an {@link Appendable} to a {@link Writer} without intermediate buffering.
+ */
+public class AppendableWriter extends Writer {
+    private final Appendable target;
+
+    private AppendableWriter(Appendable target) {
+        this.target = target;
+    }
+
+    public static Writer of(Appendable appendable) {
+        if (appendable instanceof Writer) {
+            return (Writer) appendable;
+        }
+        return new AppendableWriter(appendable);
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        target.append((char) c);
+    }
+
+    @Override
+    public void write(char[] buffer, int offset, int length) throws IOException {
+        if (target instanceof StringBuilder) {
+            ((StringBuilder) target).append(buffer, offset, length);
+            return;
+        }
+        for (int index = offset; index < offset + length; index++) {
+            target.append(buffer[index]);
+        }
+    }
+
+    @Override
+    public void write(String text, int offset, int length) throws IOException {
+        target.append(text, offset, offset + length);
+    }
+
+    @Override
+    public Writer append(CharSequence text) throws IOException {
+        target.append(text);
+        return this;
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,85 @@
+package ru.panfio.legacytester.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-256 digest of the {@code toString} forms of method arguments, call after call.
+ * Generated tests use it to verify a large number of calls without keeping the passed values:
+ * <pre>{@code
+ *    final ArgumentDigest sendAllDigest = new ArgumentDigest();
+ *    Mockito.doAnswer(invocation -> sendAllDigest.answer(invocation.getArguments(),
+ *            Mockito.RETURNS_DEFAULTS.answer(invocation))).when(messageBus).sendAll(...);
+ * }</pre>
+ */
+public final class ArgumentDigest {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final MessageDigest digest;
+    private long calls;
+
+    public ArgumentDigest() {
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform supports SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Adds the arguments of one call.
+     */
+    public synchronized void add(Object... arguments) {
+        for (Object argument : arguments) {
+            update(String.valueOf(argument));
+        }
+        calls++;
+    }
+
+    /**
+     * Adds the arguments of one call.
+     *
+     * @return the answer of the call
+     */
+    public <T> T answer(Object[] arguments, T answer) {
+        add(arguments);
+        return answer;
+    }
+
+    /**
+     * Adds the {@code toString} form of one argument, a call is completed by {@link #endCall()}.
+     */
+    public synchronized void update(String argument) {
+        final byte[] bytes = argument.getBytes(StandardCharsets.UTF_8);
+        final int length = bytes.length;
+        digest.update(new byte[]{(byte) (length >>> 24), (byte) (length >>> 16), (byte) (length >>> 8), (byte) length});
+        digest.update(bytes);
+    }
+
+    public synchronized void endCall() {
+        calls++;
+    }
+
+    public synchronized long getCalls() {
+        return calls;
+    }
+
+    /**
+     * @return hex digest of the calls added so far
+     */
+    public synchronized String digest() {
+        MessageDigest copy;
+        try {
+            copy = (MessageDigest) digest.clone();
+        } catch (CloneNotSupportedException e) {
+            copy = digest;
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : copy.digest()) {
+            hex.append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+        }
+        return hex.toString();
+    }
+}
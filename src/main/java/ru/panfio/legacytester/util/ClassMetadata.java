@@ -0,0 +1,153 @@
+package ru.panfio.legacytester.util;
+
+import ru.panfio.legacytester.LegacyTester;
+import ru.panfio.legacytester.Testee;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reflection metadata of a class computed once and shared between threads.
+ * Metadata is attached to the class through {@link ClassValue}, so it doesn't outlive
+ * the class and doesn't pin class loaders of redeployed applications.
+ */
+public final class ClassMetadata {
+    private static final ClassValue<ClassMetadata> METADATA = new ClassValue<ClassMetadata>() {
+        @Override
+        protected ClassMetadata computeValue(Class<?> type) {
+            return new ClassMetadata(type);
+        }
+    };
+
+    private final Class<?> type;
+    private final Map<String, Method> testeeMethods;
+    private final List<Field> fields;
+    private final List<Field> proxyableFields;
+    private final int constructorArity;
+    private final Map<Method, MethodMetadata> methods = new ConcurrentHashMap<>();
+    private volatile List<Field> instanceFields;
+    private volatile boolean instanceFieldsResolved;
+
+    private ClassMetadata(Class<?> type) {
+        this.type = type;
+        this.testeeMethods = Collections.unmodifiableMap(resolveTesteeMethods(type));
+        this.fields = Collections.unmodifiableList(Arrays.asList(type.getDeclaredFields()));
+        this.proxyableFields = Collections.unmodifiableList(resolveProxyableFields(fields));
+        this.constructorArity = resolveConstructorArity(type);
+    }
+
+    public static ClassMetadata of(Class<?> type) {
+        return METADATA.get(type);
+    }
+
+    private static Map<String, Method> resolveTesteeMethods(Class<?> type) {
+        Map<String, Method> methods = new HashMap<>();
+        for (Method method : type.getDeclaredMethods()) {
+            Testee testee = method.getAnnotation(Testee.class);
+            if (testee != null) {
+                methods.putIfAbsent(testee.qualifier(), method);
+            }
+        }
+        return methods;
+    }
+
+    private static List<Field> resolveProxyableFields(List<Field> fields) {
+        List<Field> result = new ArrayList<>();
+        for (Field field : fields) {
+            if (Modifier.isStatic(field.getModifiers()) || LegacyTester.class.equals(field.getType())) {
+                continue;
+            }
+            result.add(field);
+        }
+        return result;
+    }
+
+    /**
+     * Returns first declared constructor argument count
+     */
+    private static int resolveConstructorArity(Class<?> type) {
+        for (Constructor<?> constructor : type.getDeclaredConstructors()) {
+            return constructor.getGenericParameterTypes().length;
+        }
+        return 0;
+    }
+
+    public Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * @return first declared method annotated with {@link Testee} with the given qualifier, or null
+     */
+    public Method testeeMethod(String qualifier) {
+        return testeeMethods.get(qualifier);
+    }
+
+    public List<Field> getFields() {
+        return fields;
+    }
+
+    /**
+     * @return non-static declared fields that can be replaced with a dependency mock
+     */
+    public List<Field> getProxyableFields() {
+        return proxyableFields;
+    }
+
+    public int getConstructorArity() {
+        return constructorArity;
+    }
+
+    /**
+     * Non-static, non-transient fields of the class and its superclasses, made accessible.
+     *
+     * @return null if some field is not accessible (e.g. a class of a closed module)
+     */
+    public List<Field> getInstanceFields() {
+        if (!instanceFieldsResolved) {
+            instanceFields = resolveInstanceFields(type);
+            instanceFieldsResolved = true;
+        }
+        return instanceFields;
+    }
+
+    private static List<Field> resolveInstanceFields(Class<?> type) {
+        List<Field> result = new ArrayList<>();
+        for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+            for (Field field : current.getDeclaredFields()) {
+                final int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+                    continue;
+                }
+                try {
+                    field.setAccessible(true);
+                } catch (RuntimeException e) {
+                    return null;
+                }
+                result.add(field);
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    MethodMetadata method(Method method) {
+        MethodMetadata metadata = methods.get(method);
+        if (metadata == null) {
+            metadata = new MethodMetadata(method);
+            MethodMetadata previous = methods.putIfAbsent(method, metadata);
+            if (previous != null) {
+                metadata = previous;
+            }
+        }
+        return metadata;
+    }
+}
@@ -1,30 +1,180 @@
 package ru.panfio.legacytester.util;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.Module;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * JSON serialization with a single shared {@link ObjectMapper}.
+ * Writers and per-type readers are created once and reused, so serializer discovery
+ * and type introspection are not repeated for every value. Readers are kept with the class that asks
+ * for them (the type or its {@link TypeReference}), so they don't keep redeployed class loaders reachable.
+ */
 public final class JsonUtils {
+    private static final List<Module> MODULES = new CopyOnWriteArrayList<>();
+    private static volatile Mapping mapping = new Mapping(createMapper());
+
     private JsonUtils() {
         throw new RuntimeException("Utility class");
     }
 
+    private static ObjectMapper createMapper() {
+        return createMapper(new JsonFactory());
+    }
+
+    /**
+     * Creates a mapper for another data format (e.g. Smile) configured like the shared one,
+     * with all registered modules.
+     */
+    public static ObjectMapper createMapper(JsonFactory factory) {
+        ObjectMapper objectMapper = new ObjectMapper(factory);
+        objectMapper.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+        objectMapper.registerModules(MODULES);
+        return objectMapper;
+    }
+
+    /**
+     * Registers a custom module for all subsequent serialization.
+     * Should be called once at startup, cached readers and writers are recreated.
+     */
+    public static synchronized void registerModule(Module module) {
+        MODULES.add(module);
+        ObjectMapper objectMapper = mapping.mapper.copy();
+        objectMapper.registerModule(module);
+        mapping = new Mapping(objectMapper);
+    }
+
+    /**
+     * Returns the shared mapper. It must not be reconfigured, use {@link #registerModule(Module)}.
+     */
+    public static ObjectMapper getMapper() {
+        return mapping.mapper;
+    }
+
     public static String toJson(Object object) {
         try {
-            return new ObjectMapper().writeValueAsString(object);
+            return mapping.writer.writeValueAsString(object);
         } catch (JsonProcessingException e) {
             return "";
         }
     }
 
+    /**
+     * Writes JSON straight into the appendable without building an intermediate string.
+     */
+    public static void writeJson(Object object, Appendable out) throws IOException {
+        mapping.writer.writeValue(AppendableWriter.of(out), object);
+    }
+
+    /**
+     * Writes UTF-8 encoded JSON straight into the stream. The stream is not closed.
+     */
+    public static void writeJson(Object object, OutputStream out) throws IOException {
+        mapping.writer.writeValue(out, object);
+    }
+
     public static <T> T parse(String json, TypeReference<T> reference) {
         try {
-            ObjectMapper mapper = new ObjectMapper();
-            return (T) mapper.readValue(json, reference);
+            return reader(reference.getClass(), reference.getType()).readValue(json);
+        } catch (IOException e) {
+            throw new RuntimeException("Parse Error" + e.getMessage());
+        }
+    }
+
+    public static <T> T parse(String json, JavaType type) {
+        try {
+            return reader(type).readValue(json);
+        } catch (IOException e) {
+            throw new RuntimeException("Parse Error" + e.getMessage());
+        }
+    }
+
+    public static <T> T parse(String json, Class<T> type) {
+        try {
+            return reader(type, type).readValue(json);
+        } catch (IOException e) {
+            throw new RuntimeException("Parse Error" + e.getMessage());
+        }
+    }
+
+    public static <T> T parse(Reader json, TypeReference<T> reference) {
+        try {
+            return reader(reference.getClass(), reference.getType()).readValue(json);
         } catch (IOException e) {
             throw new RuntimeException("Parse Error" + e.getMessage());
         }
     }
+
+    /**
+     * Parses JSON of a classpath resource, e.g. a fixture file of a generated test.
+     * The resource is streamed through a buffer without being loaded into a string.
+     */
+    public static <T> T parseResource(String resource, TypeReference<T> reference) {
+        try (InputStream json = Resources.open(resource)) {
+            return reader(reference.getClass(), reference.getType()).readValue(json);
+        } catch (IOException e) {
+            throw new RuntimeException("Parse Error" + e.getMessage());
+        }
+    }
+
+    /**
+     * @param owner class the reader is kept with
+     */
+    private static ObjectReader reader(Class<?> owner, Type type) {
+        final Mapping current = mapping;
+        ObjectReader reader = current.readers.get(owner).get(type);
+        if (reader == null) {
+            reader = current.mapper.readerFor(current.mapper.getTypeFactory().constructType(type));
+            current.readers.get(owner).putIfAbsent(type, reader);
+        }
+        return reader;
+    }
+
+    private static ObjectReader reader(JavaType type) {
+        final Mapping current = mapping;
+        ObjectReader reader = current.typeReaders.get(type);
+        if (reader == null) {
+            reader = current.mapper.readerFor(type);
+            current.typeReaders.putIfAbsent(type, reader);
+        }
+        return reader;
+    }
+
+    /**
+     * The mapper with its writer and readers, replaced as a whole when a module is registered,
+     * so a reader of the previous mapper never gets into the cache of the new one.
+     */
+    private static final class Mapping {
+        private final ObjectMapper mapper;
+        private final ObjectWriter writer;
+        private final ClassValue<Map<Type, ObjectReader>> readers = new ClassValue<Map<Type, ObjectReader>>() {
+            @Override
+            protected Map<Type, ObjectReader> computeValue(Class<?> owner) {
+                return new ConcurrentHashMap<>();
+            }
+        };
+        // constructed types have no owner class, their readers live as long as the mapper
+        private final Map<JavaType, ObjectReader> typeReaders = new ConcurrentHashMap<>();
+
+        private Mapping(ObjectMapper mapper) {
+            this.mapper = mapper;
+            this.writer = mapper.writer();
+        }
+    }
 }
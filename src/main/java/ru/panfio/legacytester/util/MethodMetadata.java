@@ -0,0 +1,61 @@
+package ru.panfio.legacytester.util;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reflection metadata of a method, cached in the {@link ClassMetadata} of the declaring class.
+ */
+public final class MethodMetadata {
+    private final List<Parameter> parameters;
+    private final List<String> parameterNames;
+    private final List<String> parameterTypeNames;
+    private final List<Type> genericParameterTypes;
+    private final Type genericReturnType;
+
+    MethodMetadata(Method method) {
+        Parameter[] params = method.getParameters();
+        List<String> names = new ArrayList<>(params.length);
+        for (Parameter param : params) {
+            names.add(param.getName());
+        }
+        List<String> typeNames = new ArrayList<>(params.length);
+        for (Class<?> parameterType : method.getParameterTypes()) {
+            typeNames.add(parameterType.getTypeName());
+        }
+        this.parameters = Collections.unmodifiableList(Arrays.asList(params));
+        this.parameterNames = Collections.unmodifiableList(names);
+        this.parameterTypeNames = Collections.unmodifiableList(typeNames);
+        this.genericParameterTypes = Collections.unmodifiableList(Arrays.asList(method.getGenericParameterTypes()));
+        this.genericReturnType = method.getGenericReturnType();
+    }
+
+    public static MethodMetadata of(Method method) {
+        return ClassMetadata.of(method.getDeclaringClass()).method(method);
+    }
+
+    public List<Parameter> getParameters() {
+        return parameters;
+    }
+
+    public List<String> getParameterNames() {
+        return parameterNames;
+    }
+
+    public List<String> getParameterTypeNames() {
+        return parameterTypeNames;
+    }
+
+    public List<Type> getGenericParameterTypes() {
+        return genericParameterTypes;
+    }
+
+    public Type getGenericReturnType() {
+        return genericReturnType;
+    }
+}
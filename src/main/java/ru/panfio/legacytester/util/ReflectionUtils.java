@@ -2,45 +2,39 @@ package ru.panfio.legacytester.util;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.*;
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
+/**
+ * Reflection helpers backed by {@link ClassMetadata}.
+ * Returned lists are shared and unmodifiable.
+ */
 public final class ReflectionUtils {
     private ReflectionUtils() {
         throw new RuntimeException("Utility class");
     }
 
     public static List<Parameter> getMethodParameters(Method method) {
-        Parameter[] params = method.getParameters();
-        return new ArrayList<>(Arrays.asList(params));
+        return MethodMetadata.of(method).getParameters();
     }
 
     public static List<Field> getClassFields(Class targetClass) {
-        Field[] declaredFields = targetClass.getDeclaredFields();
-        return new ArrayList<>(Arrays.asList(declaredFields));
+        return ClassMetadata.of(targetClass).getFields();
+    }
+
+    public static List<Field> getProxyableFields(Class<?> targetClass) {
+        return ClassMetadata.of(targetClass).getProxyableFields();
     }
 
     public static List<String> getParameterTypes(Method method) {
-        List<String> parameters = new ArrayList<>();
-        Class[] gpType = method.getParameterTypes();
-        for (int i = 0; i < gpType.length; i++) {
-            parameters.add(gpType[i].getTypeName());
-        }
-        return parameters;
+        return MethodMetadata.of(method).getParameterTypeNames();
     }
 
     public static List<String> getParameterNames(Method method) {
-        List<String> parameters = new ArrayList<>();
-        Parameter[] params = method.getParameters();
-        for (int i = 0; i < params.length; i++) {
-            parameters.add(params[i].getName());
-        }
-        return parameters;
+        return MethodMetadata.of(method).getParameterNames();
     }
 
     public static String getmethodReturnType(Method method) {
-        Type returnType = method.getGenericReturnType();
+        Type returnType = MethodMetadata.of(method).getGenericReturnType();
         if (returnType instanceof ParameterizedType) {
             return returnType.getTypeName();
         } else {
@@ -52,10 +46,29 @@ public final class ReflectionUtils {
      * Returns first declared constructor argument count
      */
     public static int getConstructorArguments(Class<?> targetClass) {
-        for (Constructor constructor : targetClass.getDeclaredConstructors()) {
-            return constructor.getGenericParameterTypes().length;
+        return ClassMetadata.of(targetClass).getConstructorArity();
+    }
+
+    /**
+     * Returns first declared method annotated with {@link ru.panfio.legacytester.Testee} with the qualifier
+     */
+    public static Method getTesteeMethod(Class<?> targetClass, String qualifier) {
+        return ClassMetadata.of(targetClass).testeeMethod(qualifier);
+    }
+
+    /**
+     * @return true for {@code equals}, {@code hashCode} and {@code toString}, wherever they are declared
+     */
+    public static boolean isObjectMethod(Method method) {
+        switch (method.getName()) {
+            case "equals":
+                return method.getParameterCount() == 1 && method.getParameterTypes()[0] == Object.class;
+            case "hashCode":
+            case "toString":
+                return method.getParameterCount() == 0;
+            default:
+                return false;
         }
-        return 0;
     }
 
     public static boolean containAnnotation(Method method, Class<? extends Annotation> annotation) {
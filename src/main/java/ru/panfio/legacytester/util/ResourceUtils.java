@@ -0,0 +1,31 @@
+package ru.panfio.legacytester.util;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+public final class ResourceUtils {
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private ResourceUtils() {
+        throw new RuntimeException("Utility class");
+    }
+
+    /**
+     * Read the UTF-8 text of a classpath resource, e.g. a fixture file of a generated test.
+     */
+    public static String readString(String resource) {
+        try (Reader reader = new InputStreamReader(Resources.open(resource), StandardCharsets.UTF_8)) {
+            StringBuilder text = new StringBuilder();
+            char[] buffer = new char[BUFFER_SIZE];
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                text.append(buffer, 0, read);
+            }
+            return text.toString();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,32 @@
+package ru.panfio.legacytester.util;
+
+import java.io.BufferedInputStream;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+
+/**
+ * Classpath resources loaded by generated tests.
+ */
+final class Resources {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private Resources() {
+        throw new RuntimeException("Utility class");
+    }
+
+    /**
+     * @param resource resource name relative to the classpath root
+     * @return buffered stream of the resource
+     */
+    static InputStream open(String resource) throws FileNotFoundException {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        InputStream in = classLoader == null ? null : classLoader.getResourceAsStream(resource);
+        if (in == null) {
+            in = Resources.class.getClassLoader().getResourceAsStream(resource);
+        }
+        if (in == null) {
+            throw new FileNotFoundException("Resource not found: " + resource);
+        }
+        return new BufferedInputStream(in, BUFFER_SIZE);
+    }
+}
@@ -25,16 +25,36 @@ public final class SerializableUtils {
         return null;
     }
 
+    /**
+     * Deserialize the object from a classpath resource, e.g. a fixture file of a generated test.
+     */
+    public static Object deserializeResource(String resource) {
+        try (ObjectInputStream ois = new ObjectInputStream(Resources.open(resource))) {
+            return ois.readObject();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
     /**
      * Serialize the object to a Base64 string.
      */
     public static String serializeToString(Serializable object) {
+        byte[] data = serialize(object);
+        return data == null ? null : Base64.getEncoder().encodeToString(data);
+    }
+
+    /**
+     * Serialize the object to bytes.
+     */
+    public static byte[] serialize(Serializable object) {
         try {
             ByteArrayOutputStream baos = new ByteArrayOutputStream();
             ObjectOutputStream oos = new ObjectOutputStream(baos);
             oos.writeObject(object);
             oos.close();
-            return Base64.getEncoder().encodeToString(baos.toByteArray());
+            return baos.toByteArray();
         } catch (Exception e) {
             e.printStackTrace();
         }
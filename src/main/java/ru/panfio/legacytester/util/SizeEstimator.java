@@ -0,0 +1,145 @@
+package ru.panfio.legacytester.util;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cheap estimation of bytes retained by an object graph.
+ * Sizes are approximate (compressed references, 16 byte headers). Large collections
+ * are estimated from their first elements, so the cost does not grow with the collection size.
+ */
+public final class SizeEstimator {
+    private static final int HEADER = 16;
+    private static final int REFERENCE = 4;
+    private static final int SAMPLED_ELEMENTS = 32;
+    private static final int MAX_DEPTH = 16;
+
+    private final Map<Object, Boolean> visited = new IdentityHashMap<>();
+
+    private SizeEstimator() {
+    }
+
+    public static long estimate(Object value) {
+        return new SizeEstimator().estimate(value, 0);
+    }
+
+    public static long estimate(Object[] values) {
+        if (values == null) {
+            return 0;
+        }
+        SizeEstimator estimator = new SizeEstimator();
+        long size = HEADER + (long) REFERENCE * values.length;
+        for (Object value : values) {
+            size += estimator.estimate(value, 0);
+        }
+        return size;
+    }
+
+    private long estimate(Object value, int depth) {
+        if (value == null || depth > MAX_DEPTH || visited.put(value, Boolean.TRUE) != null) {
+            return 0;
+        }
+        final Class<?> type = value.getClass();
+        if (value instanceof String) {
+            return HEADER + 24 + 2L * ((String) value).length();
+        }
+        if (value instanceof Number || value instanceof Boolean || value instanceof Character || type.isEnum()) {
+            return HEADER + 8;
+        }
+        if (type.isArray()) {
+            return estimateArray(value, depth);
+        }
+        if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            return HEADER + 32 + estimateSampled(map.entrySet(), map.size(), depth, true);
+        }
+        if (value instanceof Collection) {
+            Collection<?> collection = (Collection<?>) value;
+            return HEADER + 24 + estimateSampled(collection, collection.size(), depth, false);
+        }
+        return estimateFields(value, depth);
+    }
+
+    private long estimateArray(Object array, int depth) {
+        final int length = Array.getLength(array);
+        final Class<?> componentType = array.getClass().getComponentType();
+        if (componentType.isPrimitive()) {
+            return HEADER + (long) primitiveSize(componentType) * length;
+        }
+        long size = HEADER + (long) REFERENCE * length;
+        final int sampled = Math.min(length, SAMPLED_ELEMENTS);
+        long elements = 0;
+        for (int index = 0; index < sampled; index++) {
+            elements += estimate(Array.get(array, index), depth + 1);
+        }
+        return size + extrapolate(elements, sampled, length);
+    }
+
+    private long estimateSampled(Collection<?> elements, int size, int depth, boolean entries) {
+        long sampledSize = 0;
+        int sampled = 0;
+        Iterator<?> iterator = elements.iterator();
+        while (iterator.hasNext() && sampled < SAMPLED_ELEMENTS) {
+            Object element = iterator.next();
+            if (entries) {
+                Map.Entry<?, ?> entry = (Map.Entry<?, ?>) element;
+                sampledSize += HEADER + 3 * REFERENCE
+                        + estimate(entry.getKey(), depth + 1)
+                        + estimate(entry.getValue(), depth + 1);
+            } else {
+                sampledSize += REFERENCE + estimate(element, depth + 1);
+            }
+            sampled++;
+        }
+        return extrapolate(sampledSize, sampled, size);
+    }
+
+    private long estimateFields(Object value, int depth) {
+        List<Field> fields = value.getClass().getName().startsWith("java.")
+                ? null
+                : ClassMetadata.of(value.getClass()).getInstanceFields();
+        if (fields == null) {
+            return HEADER + 32;
+        }
+        long size = HEADER;
+        for (Field field : fields) {
+            final Class<?> fieldType = field.getType();
+            if (fieldType.isPrimitive()) {
+                size += primitiveSize(fieldType);
+                continue;
+            }
+            size += REFERENCE;
+            try {
+                size += estimate(field.get(value), depth + 1);
+            } catch (IllegalAccessException e) {
+                // counted as a reference only
+            }
+        }
+        return size;
+    }
+
+    private static long extrapolate(long sampledSize, int sampled, int total) {
+        if (sampled == 0 || sampled == total) {
+            return sampledSize;
+        }
+        return sampledSize / sampled * total;
+    }
+
+    private static int primitiveSize(Class<?> type) {
+        if (type == long.class || type == double.class) {
+            return 8;
+        }
+        if (type == int.class || type == float.class) {
+            return 4;
+        }
+        if (type == short.class || type == char.class) {
+            return 2;
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,23 @@
+package ru.panfio.legacytester.spring;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Registers {@link TesteeBeanPostProcessor}. Imported with {@code @Import(LegacyTesterConfiguration.class)}
+ * or picked up by Spring Boot auto-configuration.
+ * <p>
+ * Capture is armable by default, set {@code legacytester.armable=false} to capture every testee call.
+ */
+@Configuration
+public class LegacyTesterConfiguration {
+
+    /**
+     * Static, so the post processor is created before other beans without initializing the configuration.
+     */
+    @Bean
+    public static TesteeBeanPostProcessor testeeBeanPostProcessor(@Value("${legacytester.armable:true}") boolean armable) {
+        return new TesteeBeanPostProcessor(armable);
+    }
+}
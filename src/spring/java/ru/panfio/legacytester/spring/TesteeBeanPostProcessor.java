@@ -0,0 +1,43 @@
+package ru.panfio.legacytester.spring;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.Ordered;
+import ru.panfio.legacytester.Testee;
+
+/**
+ * Replaces beans of classes annotated with {@link Testee} by class proxies that capture their testee methods.
+ * Other beans are returned after a single annotation check. Proxy classes are generated once per bean class,
+ * dependency proxies of an armable bean are created when its capture is armed for the first time.
+ */
+public class TesteeBeanPostProcessor implements BeanPostProcessor, Ordered {
+    private final boolean armable;
+
+    /**
+     * @param armable capture only while armed through {@link ru.panfio.legacytester.control.CaptureControl}
+     */
+    public TesteeBeanPostProcessor(boolean armable) {
+        this.armable = armable;
+    }
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException {
+        return bean;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+        if (!bean.getClass().isAnnotationPresent(Testee.class)) {
+            return bean;
+        }
+        return new LegacyTesterBeanPostProcessor(bean, beanName, armable).createProxy();
+    }
+
+    /**
+     * Runs after other post processors, so the proxy wraps the fully initialized bean.
+     */
+    @Override
+    public int getOrder() {
+        return Ordered.LOWEST_PRECEDENCE;
+    }
+}
@@ -0,0 +1,90 @@
+package ru.panfio.legacytester;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ru.panfio.legacytester.dependencies.soundcloud.PlayHistory;
+import ru.panfio.legacytester.dependencies.soundcloud.SoundCloudClient;
+import ru.panfio.legacytester.testclasses.AsyncService;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import static ru.panfio.legacytester.testclasses.Data.recentlyPlayed;
+import static ru.panfio.legacytester.testclasses.TestSupport.awaitFirst;
+
+public class AsyncResultTest {
+    @Test
+    void asyncResults() throws InterruptedException {
+        List<String> generatedTest = Collections.synchronizedList(new ArrayList<>());
+        LegacyTester tester = new LegacyTester(AsyncService.class)
+                .asyncResultTimeout(100, TimeUnit.MILLISECONDS)
+                .testHandler(test -> generatedTest.add(test.construct()));
+        CompletableFuture<List<PlayHistory>> recentlyPlayedFuture = new CompletableFuture<>();
+        AsyncService service = new AsyncService(tester.fieldProxy(SoundCloudClient.class,
+                new FieldInvocationHandler((SoundCloudClient) () -> recentlyPlayedFuture).setFieldName("soundCloudClient")));
+
+        CompletableFuture<List<String>> externalIds = tester.test(() -> service.externalIds(2), 2);
+        Assertions.assertTrue(generatedTest.isEmpty());
+        recentlyPlayedFuture.complete(recentlyPlayed);
+        Assertions.assertEquals(2, externalIds.join().size());
+        String test = awaitFirst(generatedTest);
+        Assertions.assertTrue(test.contains("CompletableFuture<List<PlayHistory>> recentlyPlayed0ResultInvocation = " +
+                "CompletableFuture.completedFuture(recentlyPlayed0ResultInvocationValue);"));
+        Assertions.assertTrue(test.contains("String expectedResult = \"" + externalIds.join() + "\";"));
+        Assertions.assertTrue(test.contains("Assertions.assertEquals(expectedResult, result.get().toString());"));
+
+        // not completed within the timeout
+        generatedTest.clear();
+        AsyncService pendingService = new AsyncService(tester.fieldProxy(SoundCloudClient.class,
+                new FieldInvocationHandler((SoundCloudClient) CompletableFuture::new).setFieldName("soundCloudClient")));
+        tester.test(() -> pendingService.externalIds(2), 2);
+        test = awaitFirst(generatedTest);
+        Assertions.assertTrue(test.contains("//Was not completed when the test was generated\n" +
+                "        CompletableFuture<List<PlayHistory>> recentlyPlayed0ResultInvocation = new CompletableFuture<>();"));
+        Assertions.assertTrue(test.contains("//Result was not completed when the test was generated"));
+
+        // captures beyond the limit are dropped while earlier ones wait for their results
+        generatedTest.clear();
+        tester.maxDeferredCaptures(1);
+        tester.test(() -> pendingService.externalIds(2), 2);
+        tester.test(() -> pendingService.externalIds(2), 2);
+        awaitFirst(generatedTest);
+        Thread.sleep(200);
+        Assertions.assertEquals(1, generatedTest.size());
+
+        // a plain future is polled instead of waiting for the timeout
+        generatedTest.clear();
+        tester.asyncResultTimeout(1, TimeUnit.MINUTES);
+        FutureTask<List<String>> plainFuture = new FutureTask<>(() -> Arrays.asList("732251920", "745949599"));
+        tester.test(() -> plainFuture, 2);
+        Assertions.assertTrue(generatedTest.isEmpty());
+        plainFuture.run();
+        test = awaitFirst(generatedTest);
+        Assertions.assertTrue(test.contains("String expectedResult = \"[732251920, 745949599]\";"));
+    }
+
+    @Test
+    void asyncTestArgumentsAreCapturedOnCall() throws InterruptedException {
+        List<String> generatedTest = Collections.synchronizedList(new ArrayList<>());
+        LegacyTester tester = new LegacyTester(AsyncService.class)
+                .qualifier("excluding")
+                .testHandler(test -> generatedTest.add(test.construct()));
+        CompletableFuture<List<PlayHistory>> recentlyPlayedFuture = new CompletableFuture<>();
+        AsyncService service = new AsyncService(tester.fieldProxy(SoundCloudClient.class,
+                new FieldInvocationHandler((SoundCloudClient) () -> recentlyPlayedFuture).setFieldName("soundCloudClient")));
+
+        List<String> excluded = new ArrayList<>(Collections.singletonList("732251920"));
+        tester.test(() -> service.externalIdsExcluding(excluded), excluded);
+        // the caller reuses the list before the result completes
+        excluded.set(0, "changedAfterCall");
+        recentlyPlayedFuture.complete(recentlyPlayed);
+        String test = awaitFirst(generatedTest);
+        Assertions.assertTrue(test.contains("732251920"));
+        Assertions.assertFalse(test.contains("changedAfterCall"));
+    }
+}
@@ -0,0 +1,79 @@
+package ru.panfio.legacytester;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ru.panfio.legacytester.constructor.TestConstructor;
+import ru.panfio.legacytester.dependencies.soundcloud.SoundCloudDao;
+import ru.panfio.legacytester.fingerprint.DuplicateFilter;
+import ru.panfio.legacytester.testclasses.ManualProxy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static ru.panfio.legacytester.testclasses.TestSupport.manualProxy;
+import static ru.panfio.legacytester.testclasses.TestSupport.mockSoundCloudDao;
+
+public class CaptureBudgetTest {
+    private final SoundCloudDao soundCloudDao = mockSoundCloudDao();
+
+    @Test
+    void captureBudget() {
+        List<String> generatedTest = new ArrayList<>();
+        CaptureBudget truncate = CaptureBudget.builder().maxEntriesPerInvocation(1).build();
+        ManualProxy service = manualProxy(new LegacyTester(ManualProxy.class)
+                .captureBudget(truncate)
+                .testHandler(test -> generatedTest.add(test.construct())));
+        service.process();
+        Assertions.assertEquals(1, generatedTest.size());
+        Assertions.assertEquals(1, generatedTest.get(0).split("Mockito.when\\(").length - 1);
+        Assertions.assertEquals(1, truncate.getTruncatedCount());
+
+        CaptureBudget abandon = CaptureBudget.builder()
+                .maxBytesPerInvocation(1024)
+                .policy(CaptureBudget.Policy.ABANDON)
+                .build();
+        service.tester.captureBudget(abandon);
+        service.process();
+        Assertions.assertEquals(1, generatedTest.size());
+        Assertions.assertEquals(1, abandon.getAbandonedCount());
+
+        // nested invocations charge the tester once, summaries are charged too
+        for (CaptureBudget budget : new CaptureBudget[]{CaptureBudget.builder().build(),
+                CaptureBudget.builder().maxBytesPerInvocation(1).policy(CaptureBudget.Policy.SUMMARISE).build()}) {
+            LegacyTester tester = new LegacyTester(ManualProxy.class)
+                    .captureBudget(budget)
+                    .testHandler(test -> generatedTest.add(test.construct()));
+            SoundCloudDao dao = tester.fieldProxy(SoundCloudDao.class,
+                    new FieldInvocationHandler(soundCloudDao).setFieldName("soundCloudDao"));
+            long[] charged = new long[2];
+            tester.test(() -> tester.test(() -> {
+                dao.tracksInfo();
+                charged[0] = tester.getCapturedBytes().get();
+                charged[1] = CaptureContext.current(tester).getCapturedBytes();
+                return null;
+            }));
+            Assertions.assertTrue(charged[1] > 0);
+            Assertions.assertEquals(charged[1], charged[0]);
+            Assertions.assertEquals(0, tester.getCapturedBytes().get());
+        }
+
+        // bytes stay charged until the test is written, a dropped test releases them at once
+        List<TestConstructor> heldTests = new ArrayList<>();
+        LegacyTester tester = new LegacyTester(ManualProxy.class)
+                .captureBudget(CaptureBudget.builder().build())
+                .duplicateFilter(DuplicateFilter.lru(16))
+                .sink((testClass, qualifier, test) -> heldTests.add(test));
+        SoundCloudDao dao = tester.fieldProxy(SoundCloudDao.class,
+                new FieldInvocationHandler(soundCloudDao).setFieldName("soundCloudDao"));
+        tester.test(dao::tracksInfo);
+        Assertions.assertEquals(1, heldTests.size());
+        final long charged = tester.getCapturedBytes().get();
+        Assertions.assertTrue(charged > 0);
+        tester.test(dao::tracksInfo);
+        Assertions.assertEquals(1, heldTests.size());
+        Assertions.assertEquals(charged, tester.getCapturedBytes().get());
+        heldTests.get(0).release();
+        heldTests.get(0).release();
+        Assertions.assertEquals(0, tester.getCapturedBytes().get());
+    }
+}
@@ -0,0 +1,42 @@
+package ru.panfio.legacytester;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ru.panfio.legacytester.dependencies.soundcloud.SoundCloudDao;
+import ru.panfio.legacytester.testclasses.ManualProxy;
+import ru.panfio.legacytester.testclasses.StubSoundCloudDao;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+public class CapturePropagationTest {
+    @Test
+    void capturePropagation() throws Exception {
+        LegacyTester tester = new LegacyTester(ManualProxy.class).testHandler(test -> {
+        });
+        FieldInvocationHandler handler = new FieldInvocationHandler(new StubSoundCloudDao()).setFieldName("soundCloudDao");
+        SoundCloudDao dao = tester.fieldProxy(SoundCloudDao.class, handler);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        List<MethodCapture> captures = new ArrayList<>();
+        tester.test(() -> {
+            CompletableFuture.supplyAsync(dao::recentlyPlayed, CapturePropagation.executorService(pool)).join();
+            CompletableFuture.supplyAsync(CapturePropagation.supplier(dao::tracksInfo)).join();
+            Arrays.asList(1, 2, 3).parallelStream()
+                    .map(CapturePropagation.function(id -> dao.recentlyPlayed()))
+                    .collect(Collectors.toList());
+            // not propagated
+            pool.submit(dao::tracksInfo).get();
+            captures.addAll(handler.getCapturedInvocations());
+        }, (Object[]) null);
+
+        Assertions.assertEquals(5, captures.size());
+        Assertions.assertEquals(4, captures.stream().filter(capture -> capture.getMethod().getName().equals("recentlyPlayed")).count());
+        Assertions.assertNull(pool.submit(() -> CaptureContext.current()).get());
+        pool.shutdown();
+    }
+}
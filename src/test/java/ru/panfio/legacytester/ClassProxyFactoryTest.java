@@ -0,0 +1,29 @@
+package ru.panfio.legacytester;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ru.panfio.legacytester.dependencies.soundcloud.SoundCloudDao;
+import ru.panfio.legacytester.testclasses.ProxiedService;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static ru.panfio.legacytester.testclasses.TestSupport.mockSoundCloudDao;
+
+public class ClassProxyFactoryTest {
+    private final SoundCloudDao soundCloudDao = mockSoundCloudDao();
+
+    @Test
+    void classProxyDispatch() {
+        List<String> generatedTest = new ArrayList<>();
+        LegacyTester tester = new LegacyTester(ProxiedService.class)
+                .testHandler(test -> generatedTest.add(test.construct()));
+        ProxiedService bean = new ProxiedService(soundCloudDao);
+        ProxiedService proxy = (ProxiedService) LegacyTester.classProxy(bean, tester);
+
+        Assertions.assertEquals("proxied", proxy.name());
+        Assertions.assertEquals(0, generatedTest.size());
+        Assertions.assertEquals(2, proxy.externalIds(2).size());
+        Assertions.assertEquals(1, generatedTest.size());
+    }
+}
@@ -0,0 +1,64 @@
+package ru.panfio.legacytester;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ru.panfio.legacytester.dependencies.soundcloud.SoundCloudDao;
+import ru.panfio.legacytester.testclasses.ManualProxy;
+import ru.panfio.legacytester.testclasses.StubSoundCloudDao;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static ru.panfio.legacytester.testclasses.Data.recentlyPlayed;
+import static ru.panfio.legacytester.testclasses.TestSupport.fixedNameConfig;
+import static ru.panfio.legacytester.testclasses.TestSupport.manualProxy;
+import static ru.panfio.legacytester.testclasses.TestSupport.mockSoundCloudDao;
+
+public class DependencyProxyFactoryTest {
+    private final SoundCloudDao soundCloudDao = mockSoundCloudDao();
+
+    @Test
+    void cglibFieldProxies() {
+        List<String> generatedTest = new ArrayList<>();
+        for (ProxyBackend backend : ProxyBackend.values()) {
+            ManualProxy service = manualProxy(new LegacyTester(ManualProxy.class)
+                    .proxyBackend(backend)
+                    .constructorConfig(() -> fixedNameConfig().build())
+                    .testHandler(test -> generatedTest.add(test.construct())));
+            service.process();
+        }
+        Assertions.assertEquals(2, generatedTest.size());
+        Assertions.assertEquals(generatedTest.get(0), generatedTest.get(1));
+
+        LegacyTester tester = new LegacyTester(ManualProxy.class).testHandler(test -> {
+        });
+        FieldInvocationHandler handler = new FieldInvocationHandler(new StubSoundCloudDao(), "stub").setFieldName("soundCloudDao");
+        StubSoundCloudDao dao = tester.fieldProxy(StubSoundCloudDao.class, handler);
+        StubSoundCloudDao otherDao = tester.fieldProxy(StubSoundCloudDao.class,
+                new FieldInvocationHandler(new StubSoundCloudDao(), "stub").setFieldName("otherSoundCloudDao"));
+        Assertions.assertSame(dao.getClass(), otherDao.getClass());
+        tester.test(() -> {
+            dao.hashCode();
+            Assertions.assertSame(recentlyPlayed, dao.recentlyPlayed());
+            dao.stub("track", 1, recentlyPlayed);
+            List<MethodCapture> captures = handler.getCapturedInvocations();
+            Assertions.assertEquals(2, captures.size());
+            Assertions.assertEquals(MethodCapture.Type.DEPENDENCY, captures.get(0).getType());
+            Assertions.assertEquals(MethodCapture.Type.AFFECT, captures.get(1).getType());
+        }, (Object[]) null);
+
+        // both backends pass Object methods to the target without capture
+        for (ProxyBackend backend : ProxyBackend.values()) {
+            LegacyTester objectMethods = new LegacyTester(ManualProxy.class).proxyBackend(backend);
+            FieldInvocationHandler daoHandler = new FieldInvocationHandler(soundCloudDao).setFieldName("soundCloudDao");
+            SoundCloudDao proxy = objectMethods.fieldProxy(SoundCloudDao.class, daoHandler);
+            objectMethods.test(() -> {
+                Assertions.assertEquals(soundCloudDao.toString(), proxy.toString());
+                Assertions.assertEquals(soundCloudDao.hashCode(), proxy.hashCode());
+                Assertions.assertNotEquals(proxy, new Object());
+                proxy.recentlyPlayed();
+                Assertions.assertEquals(1, daoHandler.getCapturedInvocations().size(), backend.name());
+            }, (Object[]) null);
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package ru.panfio.legacytester;
 
 import org.junit.jupiter.api.Assertions;
-import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import ru.panfio.legacytester.constructor.ConstructorConfiguration;
 import ru.panfio.legacytester.constructor.MockTestConstructor;
@@ -9,26 +8,23 @@ import ru.panfio.legacytester.dependencies.MessageBus;
 import ru.panfio.legacytester.dependencies.soundcloud.SoundCloudDao;
 import ru.panfio.legacytester.testclasses.ManualProxy;
 import ru.panfio.legacytester.testclasses.QualifierPure;
+import ru.panfio.legacytester.testclasses.StubMessageBus;
+import ru.panfio.legacytester.testclasses.StubSoundCloudDao;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
-import static ru.panfio.legacytester.testclasses.Data.recentlyPlayed;
-import static ru.panfio.legacytester.testclasses.Data.tracksInfo;
+import static ru.panfio.legacytester.testclasses.TestSupport.manualProxy;
+import static ru.panfio.legacytester.testclasses.TestSupport.mockMessageBus;
+import static ru.panfio.legacytester.testclasses.TestSupport.mockSoundCloudDao;
 
 public class LegacyTesterTest {
-    MessageBus messageBus;
-    SoundCloudDao soundCloudDao;
-
-    @BeforeEach
-    public void setUp() {
-        messageBus = mock(MessageBus.class);
-        soundCloudDao = mock(SoundCloudDao.class);
-        when(soundCloudDao.recentlyPlayed()).thenReturn(recentlyPlayed);
-        when(soundCloudDao.tracksInfo()).thenReturn(tracksInfo);
-    }
+    private final MessageBus messageBus = mockMessageBus();
+    private final SoundCloudDao soundCloudDao = mockSoundCloudDao();
 
     @Test
     void qualifierTest() {
@@ -39,8 +35,7 @@ public class LegacyTesterTest {
     @Test
     void manualProxyConfiguration() {
         List<String> generatedTest = new ArrayList<>();
-        ManualProxy service = new ManualProxy(messageBus, soundCloudDao);
-        service.tester = new LegacyTester(ManualProxy.class)
+        ManualProxy service = manualProxy(new LegacyTester(ManualProxy.class)
                 .testConstructor(MockTestConstructor::new)
                 .constructorConfig(() ->
                         ConstructorConfiguration.builder()
@@ -48,8 +43,7 @@ public class LegacyTesterTest {
                                 .testMethodNameGenerator(method -> method.getName() + "Test777")
                                 .assertionClass(Assertions.class)
                                 .build())
-                .testHandler(test -> generatedTest.add(test.construct()));
-        service.setTester();
+                .testHandler(test -> generatedTest.add(test.construct())));
         service.tester.test(service::process, null);
         Assertions.assertEquals(
                 "    @Test\n" +
@@ -95,4 +89,24 @@ public class LegacyTesterTest {
         service.throwsException();
 //        Assertions.assertThrows(IllegalArgumentException.class, () -> service.throwsException());
     }
+
+    @Test
+    void concurrentInvocationsAreCapturedSeparately() throws InterruptedException {
+        List<String> generatedTest = Collections.synchronizedList(new ArrayList<>());
+        ManualProxy service = manualProxy(new LegacyTester(ManualProxy.class)
+                .testHandler(test -> generatedTest.add(test.construct())), new StubMessageBus(), new StubSoundCloudDao());
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int call = 0; call < 64; call++) {
+            executor.execute(service::process);
+        }
+        executor.shutdown();
+        Assertions.assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        Assertions.assertEquals(64, generatedTest.size());
+        for (String test : generatedTest) {
+            Assertions.assertEquals(2, test.split("Mockito.when\\(").length - 1);
+            Assertions.assertEquals(1, test.split("Mockito.verify\\(").length - 1);
+        }
+    }
 }
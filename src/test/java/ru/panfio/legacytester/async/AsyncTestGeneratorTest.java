@@ -0,0 +1,61 @@
+package ru.panfio.legacytester.async;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ru.panfio.legacytester.LegacyTester;
+import ru.panfio.legacytester.testclasses.ManualProxy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static ru.panfio.legacytester.testclasses.TestSupport.manualProxy;
+
+public class AsyncTestGeneratorTest {
+    @Test
+    void shutDownGeneratorsReuseWorkers() {
+        int before = generatorThreads();
+        for (int generation = 0; generation < 20; generation++) {
+            AtomicInteger ran = new AtomicInteger();
+            AsyncTestGenerator generator = AsyncTestGenerator.builder().workers(2).build();
+            Assertions.assertTrue(generator.submit(ran::incrementAndGet));
+            // workers waiting for tasks wake up at once
+            Assertions.assertTrue(generator.shutdown(1, TimeUnit.SECONDS));
+            Assertions.assertEquals(1, ran.get());
+            // a task the generator won't run is dropped
+            AtomicInteger dropped = new AtomicInteger();
+            Assertions.assertFalse(generator.submit(GenerationTask.of(ran::incrementAndGet, dropped::incrementAndGet)));
+            Assertions.assertEquals(1, dropped.get());
+        }
+        Assertions.assertTrue(generatorThreads() - before <= 2);
+    }
+
+    private static int generatorThreads() {
+        return (int) Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().startsWith("legacytester-generator-"))
+                .count();
+    }
+
+    @Test
+    void asyncGeneration() {
+        List<String> generatedTest = Collections.synchronizedList(new ArrayList<>());
+        AsyncTestGenerator generator = AsyncTestGenerator.builder()
+                .queueCapacity(4)
+                .overflowPolicy(OverflowPolicy.BLOCK)
+                .blockTimeout(1, TimeUnit.SECONDS)
+                .drainOnExit(false)
+                .build();
+        ManualProxy service = manualProxy(new LegacyTester(ManualProxy.class)
+                .async(generator)
+                .testHandler(test -> generatedTest.add(test.construct())));
+        service.tester.test(service::process, (Object[]) null);
+
+        Assertions.assertTrue(generator.shutdown(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(2, generatedTest.size());
+        Assertions.assertEquals(0, generator.getDroppedCount());
+        Assertions.assertFalse(generator.submit(() -> {
+        }));
+    }
+}
@@ -0,0 +1,63 @@
+package ru.panfio.legacytester.constructor;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import ru.panfio.legacytester.LegacyTester;
+import ru.panfio.legacytester.dependencies.MessageBus;
+import ru.panfio.legacytester.dependencies.soundcloud.SoundCloudDao;
+import ru.panfio.legacytester.testclasses.ManualProxy;
+import ru.panfio.legacytester.util.ArgumentDigest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.Mockito.mock;
+import static ru.panfio.legacytester.testclasses.TestSupport.manualProxy;
+import static ru.panfio.legacytester.testclasses.TestSupport.mockSoundCloudDao;
+
+public class MockTestConstructorTest {
+    private final SoundCloudDao soundCloudDao = mockSoundCloudDao();
+
+    @Test
+    void typeNamesUseImportTable() throws NoSuchMethodException {
+        ConstructorConfiguration conf = ConstructorConfiguration.defaultConfig();
+        Assertions.assertEquals("Date", conf.type(java.util.Date.class));
+        Assertions.assertEquals("java.sql.Date", conf.type(java.sql.Date.class));
+        Assertions.assertEquals("int", conf.type(int.class));
+        Assertions.assertEquals("Map.Entry", conf.type(Map.Entry.class));
+        Assertions.assertEquals("Map<String, TrackInfo>", conf.type(SoundCloudDao.class.getMethod("tracksInfo")));
+        Assertions.assertTrue(conf.getImports().contains("java.util.Date"));
+        Assertions.assertFalse(conf.getImports().contains("java.sql.Date"));
+        Assertions.assertTrue(conf.getImports().contains("ru.panfio.legacytester.dependencies.soundcloud.TrackInfo"));
+        Assertions.assertFalse(conf.getImports().contains("java.lang.String"));
+
+        ConstructorConfiguration verbose = ConstructorConfiguration.builder().verbose(true).build();
+        Assertions.assertEquals("java.util.Map<java.lang.String, ru.panfio.legacytester.dependencies.soundcloud.TrackInfo>",
+                verbose.type(SoundCloudDao.class.getMethod("tracksInfo")));
+    }
+
+    @Test
+    void digestedAffectedCalls() throws Throwable {
+        List<String> generatedTest = new ArrayList<>();
+        ManualProxy service = manualProxy(new LegacyTester(ManualProxy.class)
+                .constructorConfig(() -> ConstructorConfiguration.builder().maxInlinedInvocations(0).build())
+                .testHandler(test -> generatedTest.add(test.construct())));
+        service.process();
+        String test = generatedTest.get(0);
+        Assertions.assertFalse(test.contains("ArgumentCaptor"));
+        Assertions.assertTrue(test.contains("Mockito.doAnswer(invocation -> sendAllDigest.answer(invocation.getArguments(), " +
+                "Mockito.RETURNS_DEFAULTS.answer(invocation))).when(messageBus).sendAll(Mockito.<String>any(), Mockito.<List>any());"));
+        Assertions.assertTrue(test.contains("Mockito.verify(messageBus, Mockito.times(1)).sendAll(Mockito.<String>any(), Mockito.<List>any());"));
+
+        // the generated verification run against the testee
+        MessageBus verifiedBus = mock(MessageBus.class);
+        final ArgumentDigest sendAllDigest = new ArgumentDigest();
+        Mockito.doAnswer(invocation -> sendAllDigest.answer(invocation.getArguments(),
+                Mockito.RETURNS_DEFAULTS.answer(invocation))).when(verifiedBus).sendAll(Mockito.<String>any(), Mockito.<List<Object>>any());
+        new ManualProxy(verifiedBus, soundCloudDao).process();
+        Mockito.verify(verifiedBus, Mockito.times(1)).sendAll(Mockito.<String>any(), Mockito.<List<Object>>any());
+        Assertions.assertTrue(test.contains("Assertions.assertEquals(\"" + sendAllDigest.digest() + "\", sendAllDigest.digest());"));
+    }
+}
@@ -0,0 +1,63 @@
+package ru.panfio.legacytester.constructor;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.panfio.legacytester.LegacyTester;
+import ru.panfio.legacytester.fixture.FixtureStore;
+import ru.panfio.legacytester.testclasses.ManualProxy;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static ru.panfio.legacytester.testclasses.TestSupport.fixedNameConfig;
+import static ru.panfio.legacytester.testclasses.TestSupport.manualProxy;
+
+public class RenderCacheTest {
+    @Test
+    void renderCache() {
+        RenderCache cache = new RenderCache();
+        List<String> generatedTest = new ArrayList<>();
+        for (RenderCache renderCache : new RenderCache[]{null, cache, cache}) {
+            ManualProxy service = manualProxy(new LegacyTester(ManualProxy.class)
+                    .renderCache(renderCache)
+                    .constructorConfig(() -> fixedNameConfig().build())
+                    .testHandler(test -> generatedTest.add(test.construct())));
+            service.process();
+        }
+        Assertions.assertEquals(generatedTest.get(0), generatedTest.get(1));
+        Assertions.assertEquals(generatedTest.get(0), generatedTest.get(2));
+        // equal dependency results are taken from the cache, the music list sent by each call is built anew
+        Assertions.assertEquals(2, cache.getHits());
+        Assertions.assertEquals(4, cache.size());
+    }
+
+    @Test
+    void renderCacheHandsOutFixtures(@TempDir Path directory) {
+        RenderCache cache = new RenderCache();
+        FixtureStore fixtures = FixtureStore.builder()
+                .directory(directory)
+                .thresholdChars(200)
+                .contentAddressed(true)
+                .build();
+        List<TestConstructor> buffered = new ArrayList<>();
+        for (int call = 0; call < 2; call++) {
+            ManualProxy service = manualProxy(new LegacyTester(ManualProxy.class)
+                    .renderCache(cache)
+                    .constructorConfig(() -> ConstructorConfiguration.builder().fixtureStore(fixtures).build())
+                    .sink((testClass, qualifier, test) -> {
+                        test.construct();
+                        buffered.add(test);
+                    }));
+            service.process();
+        }
+        Assertions.assertTrue(cache.getHits() > 0);
+        Assertions.assertEquals(2, fixtures.getHandedOut());
+        // the test rendered from the cache keeps the fixtures too
+        buffered.get(0).release();
+        Assertions.assertEquals(2, fixtures.getHandedOut());
+        buffered.get(1).release();
+        Assertions.assertEquals(0, fixtures.getHandedOut());
+    }
+}
@@ -0,0 +1,64 @@
+package ru.panfio.legacytester.control;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ru.panfio.legacytester.LegacyTester;
+import ru.panfio.legacytester.dependencies.soundcloud.SoundCloudDao;
+import ru.panfio.legacytester.metrics.LegacyTesterMetrics;
+import ru.panfio.legacytester.testclasses.ManualProxy;
+import ru.panfio.legacytester.testclasses.ProxiedService;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static ru.panfio.legacytester.testclasses.TestSupport.fixedNameConfig;
+import static ru.panfio.legacytester.testclasses.TestSupport.manualProxy;
+import static ru.panfio.legacytester.testclasses.TestSupport.mockSoundCloudDao;
+
+public class CaptureControlTest {
+    private final SoundCloudDao soundCloudDao = mockSoundCloudDao();
+
+    @Test
+    void armedCapture() throws JMException {
+        List<String> generatedTest = new ArrayList<>();
+        ManualProxy service = manualProxy(new LegacyTester(ManualProxy.class)
+                .armable(true)
+                .constructorConfig(() -> fixedNameConfig().build())
+                .testHandler(test -> generatedTest.add(test.construct())));
+        service.process();
+        Assertions.assertFalse(service.tester.isArmed());
+        Assertions.assertEquals(0, generatedTest.size());
+
+        CaptureControl.arm(ManualProxy.class, "default", 1);
+        service.process();
+        service.process();
+        Assertions.assertFalse(service.tester.isArmed());
+        Assertions.assertEquals(1, generatedTest.size());
+        // the call that disarmed the switch still records its dependency calls
+        List<String> alwaysCaptured = new ArrayList<>();
+        ManualProxy reference = manualProxy(new LegacyTester(ManualProxy.class)
+                .constructorConfig(() -> fixedNameConfig().build())
+                .testHandler(test -> alwaysCaptured.add(test.construct())));
+        reference.process();
+        Assertions.assertEquals(alwaysCaptured, generatedTest);
+
+        ProxiedService proxy = (ProxiedService) LegacyTester.classProxy(new ProxiedService(soundCloudDao),
+                new LegacyTester(ProxiedService.class)
+                        .armable(true)
+                        .testHandler(test -> generatedTest.add(test.construct())));
+        ObjectName name = new ObjectName(LegacyTesterMetrics.DOMAIN + ":type=Capture,class=" +
+                ObjectName.quote(ProxiedService.class.getName()) + ",qualifier=" + ObjectName.quote("default"));
+        ManagementFactory.getPlatformMBeanServer().invoke(name, "arm",
+                new Object[]{0L, 60L}, new String[]{long.class.getName(), long.class.getName()});
+        Assertions.assertEquals(true, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Armed"));
+        proxy.externalIds(1);
+        proxy.externalIds(2);
+        CaptureControl.disarm(ProxiedService.class, "default");
+        proxy.externalIds(3);
+        Assertions.assertEquals(3, generatedTest.size());
+        Assertions.assertEquals(2L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "CapturedCalls"));
+    }
+}
@@ -0,0 +1,8 @@
+package ru.panfio.legacytester.dependencies.soundcloud;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public interface SoundCloudClient {
+    CompletableFuture<List<PlayHistory>> recentlyPlayed();
+}
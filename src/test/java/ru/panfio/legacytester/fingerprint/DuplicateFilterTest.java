@@ -0,0 +1,28 @@
+package ru.panfio.legacytester.fingerprint;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ru.panfio.legacytester.LegacyTester;
+import ru.panfio.legacytester.testclasses.ManualProxy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static ru.panfio.legacytester.testclasses.TestSupport.manualProxy;
+
+public class DuplicateFilterTest {
+    @Test
+    void duplicateSuppression() {
+        List<String> generatedTest = new ArrayList<>();
+        DuplicateFilter duplicateFilter = DuplicateFilter.lru(16);
+        for (int call = 0; call < 10; call++) {
+            ManualProxy service = manualProxy(new LegacyTester(ManualProxy.class)
+                    .duplicateFilter(duplicateFilter)
+                    .testHandler(test -> generatedTest.add(test.construct())));
+            service.process();
+        }
+        Assertions.assertEquals(1, generatedTest.size());
+        Assertions.assertEquals(9, duplicateFilter.getHitCount());
+        Assertions.assertEquals(1, duplicateFilter.getMissCount());
+    }
+}
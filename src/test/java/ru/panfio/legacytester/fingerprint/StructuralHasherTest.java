@@ -0,0 +1,36 @@
+package ru.panfio.legacytester.fingerprint;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class StructuralHasherTest {
+    @Test
+    void structuralHash() {
+        Map<String, Object> forward = new LinkedHashMap<>();
+        Map<String, Object> backward = new LinkedHashMap<>();
+        for (int key = 0; key < 10; key++) {
+            forward.put("key" + key, key);
+            backward.put("key" + (9 - key), 9 - key);
+        }
+        Assertions.assertEquals(StructuralHasher.hash(forward), StructuralHasher.hash(backward));
+        backward.put("key0", -1);
+        Assertions.assertNotEquals(StructuralHasher.hash(forward), StructuralHasher.hash(backward));
+
+        Assertions.assertEquals(StructuralHasher.hash(new byte[]{1, 2, 3}), StructuralHasher.hash(new byte[]{1, 2, 3}));
+        Assertions.assertNotEquals(StructuralHasher.hash(new byte[]{1, 2, 3}), StructuralHasher.hash(new byte[]{3, 2, 1}));
+
+        // a shared node is hashed once, 2^30 paths lead to the innermost list
+        Object node = Collections.singletonList("leaf");
+        for (int level = 0; level < 30; level++) {
+            node = Arrays.asList(node, node);
+        }
+        Object graph = node;
+        Assertions.assertTimeoutPreemptively(Duration.ofSeconds(5), () -> StructuralHasher.hash(graph));
+    }
+}
@@ -0,0 +1,185 @@
+package ru.panfio.legacytester.fixture;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.panfio.legacytester.LegacyTester;
+import ru.panfio.legacytester.constructor.ConstructorConfiguration;
+import ru.panfio.legacytester.constructor.TestConstructor;
+import ru.panfio.legacytester.dependencies.soundcloud.PlayHistory;
+import ru.panfio.legacytester.dependencies.soundcloud.SoundCloudDao;
+import ru.panfio.legacytester.dependencies.soundcloud.TrackInfo;
+import ru.panfio.legacytester.testclasses.ManualProxy;
+import ru.panfio.legacytester.testclasses.ProxiedService;
+import ru.panfio.legacytester.util.JsonUtils;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.mockito.Mockito.when;
+import static ru.panfio.legacytester.testclasses.Data.recentlyPlayed;
+import static ru.panfio.legacytester.testclasses.Data.tracksInfo;
+import static ru.panfio.legacytester.testclasses.TestSupport.fixedNameConfig;
+import static ru.panfio.legacytester.testclasses.TestSupport.manualProxy;
+import static ru.panfio.legacytester.testclasses.TestSupport.mockMessageBus;
+import static ru.panfio.legacytester.testclasses.TestSupport.mockSoundCloudDao;
+
+public class FixtureStoreTest {
+    private final SoundCloudDao soundCloudDao = mockSoundCloudDao();
+
+    @Test
+    void fixtureFiles(@TempDir Path directory) throws IOException {
+        FixtureStore fixtures = FixtureStore.builder()
+                .directory(directory)
+                .thresholdChars(200)
+                .build();
+        List<String> generatedTest = new ArrayList<>();
+        ManualProxy service = manualProxy(new LegacyTester(ManualProxy.class)
+                .constructorConfig(() -> ConstructorConfiguration.builder().fixtureStore(fixtures).build())
+                .testHandler(test -> generatedTest.add(test.construct())));
+        service.process();
+
+        String test = generatedTest.get(0);
+        Assertions.assertTrue(test.contains("JsonUtils.parseResource(\"fixtures/ManualProxy/tracksInfo0ResultInvocation-"));
+        Assertions.assertTrue(test.contains("JsonUtils.parseResource(\"fixtures/ManualProxy/recentlyPlayed1ResultInvocation-"));
+        Assertions.assertEquals(2, fixtures.getFixtures());
+        String resource = test.substring(test.indexOf("fixtures/ManualProxy/tracksInfo"));
+        resource = resource.substring(0, resource.indexOf('"'));
+
+        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        try (URLClassLoader resources = new URLClassLoader(new URL[]{directory.toUri().toURL()})) {
+            Thread.currentThread().setContextClassLoader(resources);
+            Assertions.assertEquals(tracksInfo, JsonUtils.parseResource(resource, new TypeReference<Map<String, TrackInfo>>() {
+            }));
+        } finally {
+            Thread.currentThread().setContextClassLoader(contextClassLoader);
+        }
+    }
+
+    @Test
+    void expectedResultFixture(@TempDir Path directory) throws IOException {
+        FixtureStore fixtures = FixtureStore.builder()
+                .directory(directory)
+                .thresholdChars(20)
+                .build();
+        List<String> generatedTest = new ArrayList<>();
+        LegacyTester tester = new LegacyTester(ProxiedService.class)
+                .constructorConfig(() -> ConstructorConfiguration.builder().fixtureStore(fixtures).build())
+                .testHandler(test -> generatedTest.add(test.construct()));
+        ProxiedService proxy = (ProxiedService) LegacyTester.classProxy(new ProxiedService(soundCloudDao), tester);
+        List<String> externalIds = proxy.externalIds(3);
+
+        String test = generatedTest.get(0);
+        Assertions.assertTrue(test.contains("String expectedResult = ResourceUtils.readString(\"fixtures/ProxiedService/expectedResult-"));
+        String resource = test.substring(test.indexOf("fixtures/ProxiedService/expectedResult-"));
+        resource = resource.substring(0, resource.indexOf('"'));
+        Assertions.assertEquals(externalIds.toString(),
+                new String(Files.readAllBytes(directory.resolve(resource)), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void contentAddressedFixtures(@TempDir Path directory) throws IOException {
+        FixtureStore fixtures = FixtureStore.builder()
+                .directory(directory.resolve("resources"))
+                .thresholdChars(200)
+                .contentAddressed(true)
+                .build();
+        List<String> generatedTest = new ArrayList<>();
+        for (int call = 0; call < 2; call++) {
+            ManualProxy service = manualProxy(new LegacyTester(ManualProxy.class)
+                    .constructorConfig(() -> fixedNameConfig()
+                            .fixtureStore(fixtures)
+                            .build())
+                    .testHandler(test -> generatedTest.add(test.construct())));
+            service.process();
+        }
+        Assertions.assertEquals(generatedTest.get(0), generatedTest.get(1));
+        Assertions.assertEquals(2, fixtures.getFixtures());
+        Assertions.assertEquals(2, fixtures.getDeduplicated());
+
+        Path sources = Files.createDirectories(directory.resolve("java"));
+        Files.write(sources.resolve("ManualProxyGeneratedTest.java"), generatedTest.get(0).getBytes(StandardCharsets.UTF_8));
+        Map<String, Integer> references = fixtures.references(sources);
+        Assertions.assertEquals(2, references.size());
+        Assertions.assertEquals(0, fixtures.collectGarbage(sources));
+
+        Files.delete(sources.resolve("ManualProxyGeneratedTest.java"));
+        // kept while a sink buffers the test referring to them
+        List<TestConstructor> buffered = new ArrayList<>();
+        ManualProxy service = manualProxy(new LegacyTester(ManualProxy.class)
+                .constructorConfig(() -> ConstructorConfiguration.builder().fixtureStore(fixtures).build())
+                .sink((testClass, qualifier, test) -> {
+                    test.construct();
+                    buffered.add(test);
+                }));
+        service.process();
+        Assertions.assertEquals(2, fixtures.getHandedOut());
+        Assertions.assertEquals(0, fixtures.collectGarbage(sources));
+        buffered.forEach(TestConstructor::release);
+        Assertions.assertEquals(0, fixtures.getHandedOut());
+        // a temporary file of another store, e.g. of a process still writing it
+        Path foreign = Files.createFile(directory.resolve("resources/fixtures/store-1234-tracksInfo0ResultInvocation.tmp"));
+        Assertions.assertEquals(2, fixtures.collectGarbage(sources));
+        Assertions.assertTrue(Files.exists(foreign));
+
+        // hand-outs never released are bounded
+        FixtureStore bounded = FixtureStore.builder()
+                .directory(directory.resolve("resources"))
+                .thresholdChars(200)
+                .contentAddressed(true)
+                .maxHandedOut(1)
+                .build();
+        service = manualProxy(new LegacyTester(ManualProxy.class)
+                .constructorConfig(() -> ConstructorConfiguration.builder().fixtureStore(bounded).build())
+                .sink((testClass, qualifier, test) -> test.construct()));
+        service.process();
+        Assertions.assertEquals(1, bounded.getHandedOut());
+        Assertions.assertEquals(1, bounded.collectGarbage(sources));
+    }
+
+    @Test
+    void unserializableValue(@TempDir Path directory) throws IOException {
+        List<PlayHistory> played = new ArrayList<>(recentlyPlayed);
+        played.add(new PlayHistory(1579855591641L, "746114747", Instant.EPOCH) {
+            public String getBroken() {
+                throw new IllegalStateException("not serializable");
+            }
+        });
+        when(soundCloudDao.recentlyPlayed()).thenReturn(played);
+        FixtureStore fixtures = FixtureStore.builder()
+                .directory(directory)
+                .thresholdChars(200)
+                .build();
+        List<String> generatedTest = new ArrayList<>();
+        for (FixtureStore fixtureStore : new FixtureStore[]{null, fixtures}) {
+            ManualProxy service = manualProxy(new LegacyTester(ManualProxy.class)
+                    .constructorConfig(() -> ConstructorConfiguration.builder().fixtureStore(fixtureStore).build())
+                    .testHandler(test -> generatedTest.add(test.construct())), mockMessageBus(), soundCloudDao);
+            service.process();
+        }
+
+        // partial JSON of the list is neither inlined nor left in a fixture file
+        for (String test : generatedTest) {
+            Assertions.assertTrue(test.contains("recentlyPlayed1ResultInvocation = JsonUtils.parse(\"\", "));
+            Assertions.assertFalse(test.contains("{\\\"id\\\":1579856369307"));
+        }
+        Assertions.assertEquals(1, fixtures.getFixtures());
+        try (Stream<Path> files = Files.list(directory.resolve("fixtures/ManualProxy"))) {
+            Assertions.assertEquals(Collections.singletonList("tracksInfo0ResultInvocation-"), files
+                    .map(file -> file.getFileName().toString().replaceAll("\\d+\\.json$", ""))
+                    .collect(Collectors.toList()));
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package ru.panfio.legacytester.journal;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.panfio.legacytester.LegacyTester;
+import ru.panfio.legacytester.constructor.ConstructorConfiguration;
+import ru.panfio.legacytester.constructor.MockTestConstructor;
+import ru.panfio.legacytester.testclasses.ManualProxy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static ru.panfio.legacytester.testclasses.TestSupport.fixedNameConfig;
+import static ru.panfio.legacytester.testclasses.TestSupport.manualProxy;
+
+public class CaptureJournalTest {
+    @Test
+    void journalRoundTrip(@TempDir Path directory) throws IOException {
+        Supplier<ConstructorConfiguration> config = () -> fixedNameConfig().build();
+        List<String> generatedTest = new ArrayList<>();
+        ManualProxy service = manualProxy(new LegacyTester(ManualProxy.class)
+                .constructorConfig(config)
+                .testHandler(test -> generatedTest.add(test.construct())));
+        service.process();
+
+        CaptureJournal journal = CaptureJournal.builder()
+                .directory(directory)
+                .segmentSize(64 * 1024)
+                .commitOnExit(false)
+                .build();
+        service = manualProxy(new LegacyTester(ManualProxy.class).journal(journal));
+        service.process();
+        service.process();
+        journal.close();
+
+        // tear the last record as a crash in the middle of the write would do
+        Path segment = new JournalReader(directory).segments().get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer length = ByteBuffer.allocate(4);
+            channel.read(length, 16);
+            length.flip();
+            channel.write(ByteBuffer.wrap(new byte[]{42}), 16 + 8 + length.getInt() + 8 + 10);
+        }
+
+        List<String> journaledTest = new ArrayList<>();
+        JournalReader reader = new JournalReader(directory);
+        reader.read(record -> journaledTest.add(new MockTestConstructor(ManualProxy.class,
+                config.get(), record.getCaptures()).construct()));
+        Assertions.assertEquals(generatedTest, journaledTest);
+        Assertions.assertEquals(1, reader.getCorruptedSegmentCount());
+
+        // appending continues after the last valid record
+        journal = CaptureJournal.builder().directory(directory).segmentSize(64 * 1024).commitOnExit(false).build();
+        service.tester.journal(journal);
+        service.process();
+        journal.close();
+        reader = new JournalReader(directory);
+        reader.read(record -> Assertions.assertEquals("default", record.getQualifier()));
+        Assertions.assertEquals(2, reader.getRecordCount());
+        Assertions.assertEquals(0, reader.getCorruptedSegmentCount());
+    }
+}
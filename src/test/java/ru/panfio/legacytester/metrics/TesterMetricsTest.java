@@ -0,0 +1,49 @@
+package ru.panfio.legacytester.metrics;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ru.panfio.legacytester.LegacyTester;
+import ru.panfio.legacytester.testclasses.ManualProxy;
+import ru.panfio.legacytester.testclasses.ProxiedService;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static ru.panfio.legacytester.testclasses.TestSupport.manualProxy;
+
+public class TesterMetricsTest {
+    @Test
+    void metrics() throws JMException {
+        List<String> generatedTest = new ArrayList<>();
+        ManualProxy service = manualProxy(new LegacyTester(ManualProxy.class)
+                .metrics(true)
+                .testHandler(test -> generatedTest.add(test.construct())));
+        service.process();
+        service.process();
+
+        TesterMetrics metrics = service.tester.getMetrics();
+        Assertions.assertEquals(2, generatedTest.size());
+        Assertions.assertEquals(2, metrics.getInterceptedCalls());
+        Assertions.assertEquals(2, metrics.getCaptures());
+        Assertions.assertEquals(0, metrics.getDroppedCaptures());
+        Assertions.assertTrue(metrics.getCallOverheadMaxNanos() > 0);
+        Assertions.assertEquals(4, metrics.field("soundCloudDao").getCalls());
+
+        ObjectName name = new ObjectName(LegacyTesterMetrics.DOMAIN + ":type=Tester,class=" +
+                ObjectName.quote(ManualProxy.class.getName()) + ",qualifier=" + ObjectName.quote("default"));
+        Assertions.assertEquals(2L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Captures"));
+
+        // a renamed tester unregisters metrics of its previous qualifier
+        LegacyTester renamed = new LegacyTester(ProxiedService.class).metrics(true).qualifier("renamed");
+        Assertions.assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(new ObjectName(
+                LegacyTesterMetrics.DOMAIN + ":type=Tester,class=" + ObjectName.quote(ProxiedService.class.getName()) +
+                        ",qualifier=" + ObjectName.quote("default"))));
+        Assertions.assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(new ObjectName(
+                LegacyTesterMetrics.DOMAIN + ":type=Tester,class=" + ObjectName.quote(ProxiedService.class.getName()) +
+                        ",qualifier=" + ObjectName.quote("renamed"))));
+        Assertions.assertEquals("renamed", renamed.getMetrics().getQualifier());
+    }
+}
@@ -0,0 +1,77 @@
+package ru.panfio.legacytester.offline;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.panfio.legacytester.LegacyTester;
+import ru.panfio.legacytester.constructor.ConstructorConfiguration;
+import ru.panfio.legacytester.journal.CaptureJournal;
+import ru.panfio.legacytester.testclasses.ManualProxy;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static ru.panfio.legacytester.testclasses.TestSupport.fixedNameConfig;
+import static ru.panfio.legacytester.testclasses.TestSupport.manualProxy;
+
+public class OfflineTestGeneratorTest {
+    @Test
+    void offlineGeneration(@TempDir Path directory) throws IOException {
+        Supplier<ConstructorConfiguration> config = () -> fixedNameConfig().build();
+        StringBuilder generatedTests = new StringBuilder();
+        CaptureJournal journal = CaptureJournal.builder()
+                .directory(directory.resolve("journal"))
+                .segmentSize(4 * 1024)
+                .commitOnExit(false)
+                .build();
+        for (int index = 0; index < 5; index++) {
+            ManualProxy service = manualProxy(new LegacyTester(ManualProxy.class)
+                    .constructorConfig(config)
+                    .testHandler(test -> generatedTests.append(test.construct()).append("\n\n")));
+            service.process();
+            service.tester.journal(journal);
+            service.process();
+        }
+        journal.close();
+        Assertions.assertTrue(journal.getRolloverCount() > 0);
+
+        GenerationReport report = OfflineTestGenerator.builder()
+                .journalDirectory(directory.resolve("journal"))
+                .outputDirectory(directory.resolve("tests"))
+                .constructorConfig(config)
+                .parallelism(4)
+                .chunkSize(1)
+                .build()
+                .generate();
+        Assertions.assertEquals(5, report.getGenerated());
+        Assertions.assertEquals(1, report.getShards());
+        String offlineTests = new String(Files.readAllBytes(directory.resolve("tests")
+                .resolve(ManualProxy.class.getName() + ".default.txt")), StandardCharsets.UTF_8);
+        Assertions.assertEquals(generatedTests.toString(), offlineTests);
+
+        // a capture that is not rendered in time is reported as failed
+        CompletableFuture<Void> release = new CompletableFuture<>();
+        report = OfflineTestGenerator.builder()
+                .journalDirectory(directory.resolve("journal"))
+                .outputDirectory(directory.resolve("timedOut"))
+                .testConstructor((type, conf, captures) -> () -> {
+                    release.join();
+                    return "late";
+                })
+                .parallelism(2)
+                .chunkSize(1)
+                .renderTimeout(50, TimeUnit.MILLISECONDS)
+                .build()
+                .generate();
+        release.complete(null);
+        Assertions.assertEquals(0, report.getGenerated());
+        Assertions.assertEquals(5, report.getFailed());
+        Assertions.assertEquals(0, Files.size(directory.resolve("timedOut")
+                .resolve(ManualProxy.class.getName() + ".default.txt")));
+    }
+}
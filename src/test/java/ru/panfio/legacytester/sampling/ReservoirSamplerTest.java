@@ -0,0 +1,61 @@
+package ru.panfio.legacytester.sampling;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ru.panfio.legacytester.LegacyTester;
+import ru.panfio.legacytester.testclasses.ManualProxy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static ru.panfio.legacytester.testclasses.TestSupport.awaitFirst;
+import static ru.panfio.legacytester.testclasses.TestSupport.manualProxy;
+
+public class ReservoirSamplerTest {
+    @Test
+    void reservoirSampling() throws InterruptedException {
+        List<String> generatedTest = Collections.synchronizedList(new ArrayList<>());
+        ManualProxy service = manualProxy(new LegacyTester(ManualProxy.class)
+                .sampler(Sampler.reservoir(1, 1, TimeUnit.SECONDS))
+                .testHandler(test -> generatedTest.add(Thread.currentThread().getName())));
+        for (int call = 0; call < 3; call++) {
+            service.process();
+        }
+        // held until the window closes, without further calls
+        Assertions.assertTrue(generatedTest.isEmpty());
+        // generated by a generator, not by the reservoir timer
+        Assertions.assertTrue(awaitFirst(generatedTest).startsWith("legacytester-generator-"));
+    }
+
+    @Test
+    void reservoirKeepsUniformSample() throws InterruptedException {
+        final int windows = 2000;
+        final int calls = 4;
+        ReservoirSampler sampler = new ReservoirSampler(1, TimeUnit.HOURS.toNanos(1));
+        int[] wins = new int[calls];
+        CountDownLatch generated = new CountDownLatch(windows);
+        for (int window = 0; window < windows; window++) {
+            for (int call = 0; call < calls; call++) {
+                final int winner = call;
+                Object ticket = sampler.select(null);
+                if (ticket != null) {
+                    sampler.admit(() -> {
+                        wins[winner]++;
+                        generated.countDown();
+                    }, ticket);
+                }
+            }
+            sampler.flush();
+        }
+        Assertions.assertTrue(generated.await(10, TimeUnit.SECONDS));
+        // one test per window, each call wins with probability 1/4
+        Assertions.assertEquals(windows, Arrays.stream(wins).sum());
+        for (int win : wins) {
+            Assertions.assertTrue(win > 400 && win < 600, Arrays.toString(wins));
+        }
+    }
+}
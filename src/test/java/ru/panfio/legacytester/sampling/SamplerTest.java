@@ -0,0 +1,43 @@
+package ru.panfio.legacytester.sampling;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ru.panfio.legacytester.LegacyTester;
+import ru.panfio.legacytester.testclasses.ManualProxy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static ru.panfio.legacytester.testclasses.TestSupport.manualProxy;
+
+public class SamplerTest {
+    @Test
+    void sampling() {
+        List<String> generatedTest = new ArrayList<>();
+        ManualProxy service = manualProxy(new LegacyTester(ManualProxy.class)
+                .sampler(Sampler.tokenBucket(1, 1, TimeUnit.HOURS))
+                .testHandler(test -> generatedTest.add(test.construct())));
+        service.tester.test(service::process, (Object[]) null);
+        service.tester.test(service::process, (Object[]) null);
+        Assertions.assertEquals(1, generatedTest.size());
+
+        // concurrent calls don't take the bucket below zero, a refunded token is available again
+        Sampler bucket = Sampler.tokenBucket(2, 1, TimeUnit.HOURS);
+        IntStream.range(0, 10_000).parallel().forEach(call -> bucket.sample(null));
+        bucket.refund(Boolean.TRUE);
+        Assertions.assertTrue(bucket.sample(null));
+        Assertions.assertFalse(bucket.sample(null));
+        // not above the capacity either
+        Sampler full = Sampler.tokenBucket(1, 1, TimeUnit.HOURS);
+        full.refund(Boolean.TRUE);
+        Assertions.assertTrue(full.sample(null));
+        Assertions.assertFalse(full.sample(null));
+
+        Sampler byKey = Sampler.consistentHash(0.5, params -> params[0]);
+        for (int key = 0; key < 100; key++) {
+            Assertions.assertEquals(byKey.sample(new Object[]{key}), byKey.sample(new Object[]{key}));
+        }
+    }
+}
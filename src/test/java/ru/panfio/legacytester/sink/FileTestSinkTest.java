@@ -0,0 +1,43 @@
+package ru.panfio.legacytester.sink;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.panfio.legacytester.LegacyTester;
+import ru.panfio.legacytester.testclasses.ManualProxy;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static ru.panfio.legacytester.testclasses.TestSupport.fixedNameConfig;
+import static ru.panfio.legacytester.testclasses.TestSupport.manualProxy;
+
+public class FileTestSinkTest {
+    @Test
+    void fileSinkAssemblesTestClass(@TempDir Path directory) throws IOException {
+        Path testClassFile = directory.resolve("ru/panfio/legacytester/testclasses/ManualProxyGeneratedTest.java");
+        for (int run = 0; run < 2; run++) {
+            FileTestSink sink = FileTestSink.builder()
+                    .directory(directory)
+                    .flushOnExit(false)
+                    .build();
+            ManualProxy service = manualProxy(new LegacyTester(ManualProxy.class)
+                    .constructorConfig(() -> fixedNameConfig().build())
+                    .sink(sink));
+            service.process();
+            service.process();
+            sink.close();
+            Assertions.assertEquals(2, sink.getAcceptedCount());
+        }
+        String text = new String(Files.readAllBytes(testClassFile), StandardCharsets.UTF_8);
+        Assertions.assertTrue(text.startsWith("package ru.panfio.legacytester.testclasses;\n\n"));
+        Assertions.assertTrue(text.contains("import org.junit.jupiter.api.Test;\n"));
+        Assertions.assertTrue(text.contains("import org.mockito.Mockito;\n"));
+        Assertions.assertTrue(text.contains("public class ManualProxyGeneratedTest {\n"));
+        Assertions.assertTrue(text.contains("public void processTest777()"));
+        Assertions.assertTrue(text.contains("public void processTest777_4()"));
+        Assertions.assertTrue(text.endsWith("    }\n\n}\n"));
+    }
+}
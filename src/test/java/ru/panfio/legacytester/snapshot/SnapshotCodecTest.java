@@ -0,0 +1,68 @@
+package ru.panfio.legacytester.snapshot;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ru.panfio.legacytester.LegacyTester;
+import ru.panfio.legacytester.dependencies.soundcloud.Music;
+import ru.panfio.legacytester.testclasses.ManualProxy;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static ru.panfio.legacytester.testclasses.TestSupport.fixedNameConfig;
+import static ru.panfio.legacytester.testclasses.TestSupport.manualProxy;
+
+public class SnapshotCodecTest {
+    @Test
+    void immutableSnapshotValues() {
+        for (Object value : new Object[]{"id", 42L, new BigDecimal("1.50"), BigInteger.TEN, UUID.randomUUID(),
+                Instant.EPOCH, Duration.ofSeconds(5), LocalDate.of(2020, 1, 24), LocalDateTime.of(2020, 1, 24, 8, 59),
+                ZonedDateTime.of(2020, 1, 24, 8, 59, 0, 0, ZoneOffset.UTC), ZoneOffset.UTC, Music.Type.SOUNDCLOUD}) {
+            Assertions.assertSame(value, SnapshotCodec.snapshot(value, false));
+        }
+        // a subclass may be mutable
+        BigDecimal subclass = new BigDecimal("1.50") {
+        };
+        Assertions.assertNotSame(subclass, SnapshotCodec.snapshot(subclass, false));
+    }
+
+    @Test
+    void unencodableValueIsNotKeptLive() {
+        Object value = new Object() {
+            public String getBroken() {
+                throw new IllegalStateException("not encodable");
+            }
+
+            @Override
+            public String toString() {
+                return "broken value";
+            }
+        };
+        Object snapshot = SnapshotCodec.snapshot(value, false);
+        Assertions.assertNotSame(value, snapshot);
+        Assertions.assertFalse(((ValueSnapshot) snapshot).isReplayable());
+        Assertions.assertEquals("broken value", snapshot.toString());
+    }
+
+    @Test
+    void snapshotModeGeneratesSameTest() {
+        List<String> generatedTest = new ArrayList<>();
+        for (boolean snapshot : new boolean[]{false, true}) {
+            ManualProxy service = manualProxy(new LegacyTester(ManualProxy.class)
+                    .snapshot(snapshot)
+                    .constructorConfig(() -> fixedNameConfig().build())
+                    .testHandler(test -> generatedTest.add(test.construct())));
+            service.process();
+        }
+        Assertions.assertEquals(generatedTest.get(0), generatedTest.get(1));
+    }
+}
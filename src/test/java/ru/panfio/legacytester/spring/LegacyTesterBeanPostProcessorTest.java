@@ -0,0 +1,49 @@
+package ru.panfio.legacytester.spring;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ru.panfio.legacytester.control.CaptureControl;
+import ru.panfio.legacytester.dependencies.soundcloud.SoundCloudDao;
+import ru.panfio.legacytester.testclasses.BeanService;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.List;
+
+import static ru.panfio.legacytester.testclasses.TestSupport.mockSoundCloudDao;
+
+public class LegacyTesterBeanPostProcessorTest {
+    private final SoundCloudDao soundCloudDao = mockSoundCloudDao();
+
+    @Test
+    void beanPostProcessor() {
+        List<Field> fields = LegacyTesterBeanPostProcessor.getDependencyFields(BeanService.class);
+        Assertions.assertEquals(1, fields.size());
+        Assertions.assertEquals("soundCloudDao", fields.get(0).getName());
+
+        BeanService bean = new BeanService(soundCloudDao, "beans", Collections.singletonList("732251920"));
+        BeanService otherBean = new BeanService(soundCloudDao, "other beans", Collections.emptyList());
+        int constructed = BeanService.CONSTRUCTED.get();
+        BeanService proxy = (BeanService) new LegacyTesterBeanPostProcessor(bean, "beanService", true).createProxy();
+        BeanService otherProxy = (BeanService) new LegacyTesterBeanPostProcessor(otherBean, "otherBeanService", true).createProxy();
+        Assertions.assertSame(proxy.getClass(), otherProxy.getClass());
+        // proxies don't run the bean constructor, which rejects nulls
+        Assertions.assertEquals(constructed, BeanService.CONSTRUCTED.get());
+        Assertions.assertEquals("other beans", otherProxy.getName());
+        // dependency proxies are created by the first armed call
+        Assertions.assertSame(soundCloudDao, bean.getSoundCloudDao());
+        try {
+            CaptureControl.arm(BeanService.class, "default", 1);
+            Assertions.assertSame(soundCloudDao, bean.getSoundCloudDao());
+            // calls of methods that are not captured also enter after the fields are swapped
+            Assertions.assertTrue(Proxy.isProxyClass(otherProxy.getSoundCloudDao().getClass()));
+            Assertions.assertSame(soundCloudDao, bean.getSoundCloudDao());
+            Assertions.assertEquals(2, proxy.externalIds().size());
+            Assertions.assertTrue(Proxy.isProxyClass(bean.getSoundCloudDao().getClass()));
+            Assertions.assertEquals("beans", bean.getName());
+        } finally {
+            CaptureControl.disarm(BeanService.class, "default");
+        }
+    }
+}
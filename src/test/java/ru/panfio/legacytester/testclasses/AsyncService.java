@@ -0,0 +1,34 @@
+package ru.panfio.legacytester.testclasses;
+
+import ru.panfio.legacytester.Testee;
+import ru.panfio.legacytester.dependencies.soundcloud.PlayHistory;
+import ru.panfio.legacytester.dependencies.soundcloud.SoundCloudClient;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+@Testee
+public class AsyncService {
+    SoundCloudClient soundCloudClient;
+
+    public AsyncService(SoundCloudClient soundCloudClient) {
+        this.soundCloudClient = soundCloudClient;
+    }
+
+    @Testee
+    public CompletableFuture<List<String>> externalIds(int limit) {
+        return soundCloudClient.recentlyPlayed().thenApply(history -> history.stream()
+                .map(PlayHistory::getExternalId)
+                .limit(limit)
+                .collect(Collectors.toList()));
+    }
+
+    @Testee(qualifier = "excluding")
+    public CompletableFuture<List<String>> externalIdsExcluding(List<String> excluded) {
+        return soundCloudClient.recentlyPlayed().thenApply(history -> history.stream()
+                .map(PlayHistory::getExternalId)
+                .filter(id -> !excluded.contains(id))
+                .collect(Collectors.toList()));
+    }
+}
@@ -0,0 +1,42 @@
+package ru.panfio.legacytester.testclasses;
+
+import ru.panfio.legacytester.Testee;
+import ru.panfio.legacytester.dependencies.soundcloud.PlayHistory;
+import ru.panfio.legacytester.dependencies.soundcloud.SoundCloudDao;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+@Testee
+public class BeanService {
+    public static final AtomicInteger CONSTRUCTED = new AtomicInteger();
+
+    private final SoundCloudDao soundCloudDao;
+    private final String name;
+    private final List<String> excludedIds;
+
+    public BeanService(SoundCloudDao soundCloudDao, String name, List<String> excludedIds) {
+        this.soundCloudDao = Objects.requireNonNull(soundCloudDao);
+        this.name = Objects.requireNonNull(name);
+        this.excludedIds = Objects.requireNonNull(excludedIds);
+        CONSTRUCTED.incrementAndGet();
+    }
+
+    @Testee
+    public List<String> externalIds() {
+        return soundCloudDao.recentlyPlayed().stream()
+                .map(PlayHistory::getExternalId)
+                .filter(id -> !excludedIds.contains(id))
+                .collect(Collectors.toList());
+    }
+
+    public SoundCloudDao getSoundCloudDao() {
+        return soundCloudDao;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
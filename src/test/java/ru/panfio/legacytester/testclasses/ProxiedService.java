@@ -0,0 +1,32 @@
+package ru.panfio.legacytester.testclasses;
+
+import ru.panfio.legacytester.Testee;
+import ru.panfio.legacytester.dependencies.soundcloud.PlayHistory;
+import ru.panfio.legacytester.dependencies.soundcloud.SoundCloudDao;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Testee
+public class ProxiedService {
+    SoundCloudDao soundCloudDao;
+
+    public ProxiedService() {
+    }
+
+    public ProxiedService(SoundCloudDao soundCloudDao) {
+        this.soundCloudDao = soundCloudDao;
+    }
+
+    @Testee
+    public List<String> externalIds(int limit) {
+        return soundCloudDao.recentlyPlayed().stream()
+                .map(PlayHistory::getExternalId)
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    public String name() {
+        return "proxied";
+    }
+}
@@ -0,0 +1,19 @@
+package ru.panfio.legacytester.testclasses;
+
+import ru.panfio.legacytester.dependencies.MessageBus;
+
+import java.util.List;
+
+public class StubMessageBus implements MessageBus {
+    @Override
+    public void send(String topic, String message) {
+    }
+
+    @Override
+    public void send(String topic, Object message) {
+    }
+
+    @Override
+    public <T> void sendAll(String topic, List<T> messages) {
+    }
+}
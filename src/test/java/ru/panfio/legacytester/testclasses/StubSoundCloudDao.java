@@ -0,0 +1,28 @@
+package ru.panfio.legacytester.testclasses;
+
+import ru.panfio.legacytester.dependencies.soundcloud.PlayHistory;
+import ru.panfio.legacytester.dependencies.soundcloud.SoundCloudDao;
+import ru.panfio.legacytester.dependencies.soundcloud.TrackInfo;
+
+import java.util.List;
+import java.util.Map;
+
+import static ru.panfio.legacytester.testclasses.Data.recentlyPlayed;
+import static ru.panfio.legacytester.testclasses.Data.tracksInfo;
+
+public class StubSoundCloudDao implements SoundCloudDao {
+    @Override
+    public Map<String, TrackInfo> tracksInfo() {
+        return tracksInfo;
+    }
+
+    @Override
+    public List<PlayHistory> recentlyPlayed() {
+        return recentlyPlayed;
+    }
+
+    @Override
+    public List<PlayHistory> stub(String str, int inte, List<PlayHistory> list) {
+        return list;
+    }
+}
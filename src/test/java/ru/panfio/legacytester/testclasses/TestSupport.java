@@ -0,0 +1,67 @@
+package ru.panfio.legacytester.testclasses;
+
+import org.junit.jupiter.api.Assertions;
+import ru.panfio.legacytester.LegacyTester;
+import ru.panfio.legacytester.constructor.ConstructorConfiguration;
+import ru.panfio.legacytester.dependencies.MessageBus;
+import ru.panfio.legacytester.dependencies.soundcloud.SoundCloudDao;
+
+import java.util.List;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static ru.panfio.legacytester.testclasses.Data.recentlyPlayed;
+import static ru.panfio.legacytester.testclasses.Data.tracksInfo;
+
+/**
+ * Setup shared by the tests: mocked dependencies returning {@link Data} and a {@link ManualProxy} wired to a tester.
+ */
+public final class TestSupport {
+    private TestSupport() {
+        throw new RuntimeException("Utility class");
+    }
+
+    public static MessageBus mockMessageBus() {
+        return mock(MessageBus.class);
+    }
+
+    public static SoundCloudDao mockSoundCloudDao() {
+        SoundCloudDao soundCloudDao = mock(SoundCloudDao.class);
+        when(soundCloudDao.recentlyPlayed()).thenReturn(recentlyPlayed);
+        when(soundCloudDao.tracksInfo()).thenReturn(tracksInfo);
+        return soundCloudDao;
+    }
+
+    /**
+     * @return service with mocked dependencies proxied by the tester
+     */
+    public static ManualProxy manualProxy(LegacyTester tester) {
+        return manualProxy(tester, mockMessageBus(), mockSoundCloudDao());
+    }
+
+    public static ManualProxy manualProxy(LegacyTester tester, MessageBus messageBus, SoundCloudDao soundCloudDao) {
+        ManualProxy service = new ManualProxy(messageBus, soundCloudDao);
+        service.tester = tester;
+        service.setTester();
+        return service;
+    }
+
+    /**
+     * Configuration naming test methods {@code <method>Test777}, so tests generated by different testers compare equal.
+     */
+    public static ConstructorConfiguration.ConstructorConfigurationBuilder fixedNameConfig() {
+        return ConstructorConfiguration.builder()
+                .testMethodNameGenerator(method -> method.getName() + "Test777");
+    }
+
+    /**
+     * Waits for the only test generated off the calling thread.
+     */
+    public static String awaitFirst(List<String> generatedTest) throws InterruptedException {
+        for (int attempt = 0; attempt < 100 && generatedTest.isEmpty(); attempt++) {
+            Thread.sleep(50);
+        }
+        Assertions.assertEquals(1, generatedTest.size());
+        return generatedTest.get(0);
+    }
+}